@@ -22,7 +22,10 @@ import org.jlab.clara.util.report.ReportType;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.StringJoiner;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -214,6 +217,8 @@ public final class ClaraRequests {
 
         private String initialState = ClaraConstants.UNDEFINED;
 
+        private final Map<String, Object> options = new LinkedHashMap<>();
+
         DeployServiceRequest(ClaraBase base, ClaraComponent frontEnd,
                              ServiceName service, String classPath) {
             super(base, frontEnd, getDpeTopic(service));
@@ -232,15 +237,154 @@ public final class ClaraRequests {
             return self();
         }
 
+        /**
+         * Executes the requests to the service in batches.
+         * <p>
+         * Each engine of the service will wait until it has received the given
+         * number of requests, or until the given amount of time has passed
+         * since the first request of the batch, and then it will execute all
+         * requests with a single call to {@link
+         * org.jlab.clara.engine.Engine#executeGroup Engine.executeGroup}.
+         * The result of the group is sent to the next services of the first
+         * request, and the other requests are only reported as done.
+         * Engines that do not support groups will execute each request
+         * separately.
+         *
+         * @param maxSize the maximum number of requests in a batch
+         * @param maxDelay the maximum time to wait for a batch to be filled
+         * @param unit the unit of time
+         * @return this object, so methods can be chained
+         */
+        public DeployServiceRequest withBatching(int maxSize, long maxDelay, TimeUnit unit) {
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("Invalid batch size: " + maxSize);
+            }
+            if (maxDelay < 0) {
+                throw new IllegalArgumentException("Invalid batch delay: " + maxDelay);
+            }
+            options.put(ClaraConstants.SERVICE_BATCH_SIZE, maxSize);
+            options.put(ClaraConstants.SERVICE_BATCH_TIME, unit.toMicros(maxDelay));
+            return self();
+        }
+
+        /**
+         * Sets the limits to join the inputs of the service, when the service
+         * is an AND element of a composition (as {@code S3} in
+         * {@code S1,S2+&S3;}).
+         * <p>
+         * The results of the joined services are kept until all of them
+         * have been received, and then they are executed with a single call to
+         * {@link org.jlab.clara.engine.Engine#executeGroup Engine.executeGroup}.
+         * Inputs that would exceed the memory limit are rejected, and joins
+         * that are not completed before the timeout are reported as errors.
+         *
+         * @param maxBytes the maximum size of the pending inputs, in bytes
+         * @param timeout the maximum time to wait for all the inputs of a join
+         * @param unit the unit of time
+         * @return this object, so methods can be chained
+         */
+        public DeployServiceRequest withJoinLimits(long maxBytes, long timeout, TimeUnit unit) {
+            if (maxBytes <= 0) {
+                throw new IllegalArgumentException("Invalid join memory: " + maxBytes);
+            }
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("Invalid join timeout: " + timeout);
+            }
+            options.put(ClaraConstants.SERVICE_JOIN_MEMORY, maxBytes);
+            options.put(ClaraConstants.SERVICE_JOIN_TIMEOUT, unit.toMillis(timeout));
+            return self();
+        }
+
+        /**
+         * Creates a new instance of the engine for every thread of the pool.
+         * <p>
+         * By default, all threads of the service share a single instance of
+         * the engine, which must be thread-safe. With this option, every
+         * request is executed by an instance that is only used by the same
+         * thread, so the engine can keep its state without synchronization.
+         * All instances are configured with the same configuration data:
+         * the instance that receives a configure request applies it right
+         * away, and the other instances apply it before their next request.
+         * The reply to the configure request does not wait for them.
+         *
+         * @return this object, so methods can be chained
+         */
+        public DeployServiceRequest withEnginePerSlot() {
+            options.put(ClaraConstants.SERVICE_ENGINE_PER_SLOT, true);
+            return self();
+        }
+
+        /**
+         * Resizes the pool of the service according to the load.
+         * <p>
+         * The service starts with the requested pool size. A new engine is
+         * added when all the engines are busy and the queue of pending
+         * requests is not smaller than the pool. An engine is removed when it
+         * has been idle for a while. The pool size is always kept within the
+         * given bounds, which are extended to include the requested pool size.
+         *
+         * @param minSize the minimum number of engines
+         * @param maxSize the maximum number of engines
+         * @return this object, so methods can be chained
+         */
+        public DeployServiceRequest withElasticPool(int minSize, int maxSize) {
+            if (minSize <= 0) {
+                throw new IllegalArgumentException("Invalid minimum pool size: " + minSize);
+            }
+            if (maxSize < minSize) {
+                throw new IllegalArgumentException("Invalid maximum pool size: " + maxSize);
+            }
+            options.put(ClaraConstants.SERVICE_MIN_POOL_SIZE, minSize);
+            options.put(ClaraConstants.SERVICE_MAX_POOL_SIZE, maxSize);
+            return self();
+        }
+
+        /**
+         * Sets the weight of the service in the shared scheduler of the DPE.
+         * <p>
+         * When the DPE runs the engines of all services in a shared pool of
+         * threads, every engine of the service executes up to this number of
+         * requests before yielding its thread to other services.
+         * The number of concurrent engines is still bounded by the pool size
+         * of the service. The weight is ignored if the DPE does not use
+         * a shared scheduler.
+         *
+         * @param weight the maximum number of requests per turn
+         * @return this object, so methods can be chained
+         */
+        public DeployServiceRequest withSchedulerWeight(int weight) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Invalid weight: " + weight);
+            }
+            options.put(ClaraConstants.SERVICE_WEIGHT, weight);
+            return self();
+        }
+
         @Override
         String getData() {
+            if (options.isEmpty()) {
+                return MessageUtil.buildData(ClaraConstants.START_SERVICE,
+                                             service.container().name(),
+                                             service.name(),
+                                             classPath,
+                                             poolSize,
+                                             description,
+                                             initialState);
+            }
             return MessageUtil.buildData(ClaraConstants.START_SERVICE,
                                          service.container().name(),
                                          service.name(),
                                          classPath,
                                          poolSize,
                                          description,
-                                         initialState);
+                                         initialState,
+                                         getOptions());
+        }
+
+        private String getOptions() {
+            var sj = new StringJoiner(ClaraConstants.OPTIONS_SEP);
+            options.forEach((k, v) -> sj.add(k + "=" + v));
+            return sj.toString();
         }
     }
 
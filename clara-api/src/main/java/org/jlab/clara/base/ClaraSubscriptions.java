@@ -382,6 +382,38 @@ public class ClaraSubscriptions {
             return new BaseDpeReportSubscription(base, subscriptions, frontEnd, topic);
         }
 
+        /**
+         * A subscription to the periodic delta reports of all running DPEs.
+         * Only DPEs started with delta reports enabled publish them.
+         * <p>
+         * A delta report contains the service counters that changed since the
+         * previous report of the DPE, and the version of that report.
+         * The full reports of the same sequence are still published as
+         * {@link #dpeReport() DPE reports}, with the version in the runtime
+         * data.
+         *
+         * @return a subscription to listen DPE delta reports
+         */
+        public JsonReportSubscription dpeDeltaReport() {
+            var topic = MessageUtil.buildTopic(ClaraConstants.DPE_DELTA, "");
+            return new JsonReportSubscription(base, subscriptions, frontEnd, topic);
+        }
+
+        /**
+         * A subscription to the periodic delta reports of the running DPEs
+         * with the given session.
+         * <p>
+         * If the session is empty, only DPEs with no session will be listened.
+         *
+         * @param session the session to select with DPEs to monitor
+         * @return a subscription to listen DPE delta reports
+         */
+        public JsonReportSubscription dpeDeltaReport(String session) {
+            ArgUtils.requireNonNull(session, "session");
+            var topic = buildMatchingTopic(ClaraConstants.DPE_DELTA, session);
+            return new JsonReportSubscription(base, subscriptions, frontEnd, topic);
+        }
+
         /**
          * A subscription for all events published to the Clara data-ring.
          *
@@ -23,6 +23,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
@@ -465,4 +466,28 @@ public final class ClaraUtil {
             Thread.currentThread().interrupt();
         }
     }
+
+    /**
+     * Sets if the subscriptions and callbacks of the Clara actors created
+     * after the call should run in virtual threads.
+     * Virtual threads are only supported by Java 21 or newer.
+     *
+     * @param enable true to use virtual threads, false to use platform threads
+     * @return false if virtual threads are not supported by the JVM
+     */
+    public static boolean setVirtualThreads(boolean enable) {
+        return ActorUtils.setVirtualThreads(enable);
+    }
+
+    /**
+     * Creates a new unbounded pool that creates threads as needed.
+     * The threads will be virtual threads if they were enabled with
+     * {@link #setVirtualThreads}.
+     *
+     * @param namePrefix the prefix for the name of the threads
+     * @return the created thread pool
+     */
+    public static ExecutorService newCachedThreadPool(String namePrefix) {
+        return ActorUtils.newCachedThreadPool(namePrefix);
+    }
 }
@@ -0,0 +1,247 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.base;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies, in microseconds.
+ * <p>
+ * Values smaller than 16 µs are counted exactly, and every larger power of
+ * two is split into 16 buckets, so the percentiles are reported with an error
+ * smaller than 1/16 of the value. Values larger than 2^40 µs (about 12 days)
+ * are counted in the last bucket.
+ * <p>
+ * Values can be recorded concurrently without locking.
+ * Histograms can be merged, or subtracted to obtain the values recorded
+ * between two snapshots of the same histogram.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_BITS = 40;
+    private static final int BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Receives the non-empty buckets of a histogram.
+     */
+    @FunctionalInterface
+    public interface BucketConsumer {
+
+        /**
+         * Receives a bucket.
+         *
+         * @param lowerBound the lowest value of the bucket, in microseconds
+         * @param count the number of values counted in the bucket
+         */
+        void accept(long lowerBound, long count);
+    }
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() { }
+
+    /**
+     * Counts a new value.
+     *
+     * @param value the latency, in microseconds
+     */
+    public void record(long value) {
+        counts.getAndIncrement(index(value));
+    }
+
+    /**
+     * Adds all the values counted by the given histogram into this histogram.
+     *
+     * @param other the histogram to be merged
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            var count = other.counts.get(i);
+            if (count > 0) {
+                counts.getAndAdd(i, count);
+            }
+        }
+    }
+
+    /**
+     * Returns a new histogram with the values counted by this histogram but
+     * not by the given histogram.
+     * When the given histogram is an older snapshot of this one, the result
+     * contains the values recorded since the snapshot.
+     *
+     * @param other the histogram to be subtracted
+     * @return the difference between both histograms
+     */
+    public LatencyHistogram minus(LatencyHistogram other) {
+        var result = new LatencyHistogram();
+        for (int i = 0; i < BUCKETS; i++) {
+            var count = counts.get(i) - other.counts.get(i);
+            if (count > 0) {
+                result.counts.set(i, count);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the total number of values counted by the histogram.
+     *
+     * @return the number of values
+     */
+    public long count() {
+        var total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Gets the value below which the given percentage of values fall.
+     * The result is the highest value of the bucket containing the percentile.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency at the given percentile, in microseconds,
+     *         or zero if the histogram is empty
+     */
+    public long percentile(double percentile) {
+        var values = new long[BUCKETS];
+        var total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            values[i] = counts.get(i);
+            total += values[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        var rank = Math.max((long) Math.ceil(percentile / 100.0 * total), 1);
+        var seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += values[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * Gets the maximum value counted by the histogram.
+     * The result is the highest value of the last non-empty bucket.
+     *
+     * @return the maximum latency, in microseconds,
+     *         or zero if the histogram is empty
+     */
+    public long max() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the cumulative number of values up to each of the given bounds.
+     * A value is counted up to a bound if the lowest value of its bucket is
+     * not larger than the bound, so the counts have the same error as the
+     * percentiles.
+     * <p>
+     * The histogram is scanned once, and no memory is allocated.
+     *
+     * @param bounds the upper bounds, in microseconds, in ascending order
+     * @param cumulativeCounts the array to store the count for every bound
+     * @return the total number of values
+     */
+    public long cumulativeCounts(long[] bounds, long[] cumulativeCounts) {
+        var total = 0L;
+        var b = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            var count = counts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            var lower = lowerBound(i);
+            while (b < bounds.length && lower > bounds[b]) {
+                cumulativeCounts[b++] = total;
+            }
+            total += count;
+        }
+        while (b < bounds.length) {
+            cumulativeCounts[b++] = total;
+        }
+        return total;
+    }
+
+    /**
+     * Passes the non-empty buckets of the histogram to the given action,
+     * in ascending order.
+     * The histogram is scanned once, and no memory is allocated.
+     *
+     * @param action the action that receives every bucket
+     */
+    public void forEachBucket(BucketConsumer action) {
+        for (int i = 0; i < BUCKETS; i++) {
+            var count = counts.get(i);
+            if (count > 0) {
+                action.accept(lowerBound(i), count);
+            }
+        }
+    }
+
+    /**
+     * Returns the non-empty buckets of the histogram as a JSON object.
+     * The keys are the lowest values of the buckets and the values are the
+     * counts.
+     *
+     * @return the JSON representation of the histogram
+     */
+    public JSONObject toJson() {
+        var json = new JSONObject();
+        forEachBucket((bound, count) -> json.put(String.valueOf(bound), count));
+        return json;
+    }
+
+    static LatencyHistogram fromJson(JSONObject json) {
+        var histogram = new LatencyHistogram();
+        for (var key : json.keySet()) {
+            histogram.counts.getAndAdd(index(Long.parseLong(key)), json.getLong(key));
+        }
+        return histogram;
+    }
+
+    static int index(long value) {
+        var v = Math.min(Math.max(value, 0), MAX_VALUE);
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        var exp = 63 - Long.numberOfLeadingZeros(v);
+        var sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        var exp = index / SUB_BUCKETS + SUB_BITS - 1;
+        var sub = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+    }
+
+    static long upperBound(int index) {
+        return lowerBound(index + 1) - 1;
+    }
+}
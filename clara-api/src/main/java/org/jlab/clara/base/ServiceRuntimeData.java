@@ -10,12 +10,40 @@ import org.jlab.clara.util.report.JsonUtils;
 import org.json.JSONObject;
 
 import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * The runtime data of a running service.
  */
 public class ServiceRuntimeData implements ClaraReportData<ServiceName> {
 
+    /**
+     * The phases of the execution of a request by a service.
+     */
+    public enum Phase {
+        /** The time the request waited in the queue of the service. */
+        QUEUE,
+        /** The time to deserialize the input data. */
+        DESERIALIZE,
+        /** The time spent by the engine. */
+        EXECUTE,
+        /** The time to serialize the output data. */
+        SERIALIZE,
+        /** The time to publish the output data. */
+        SEND;
+
+        /**
+         * Gets the name of the phase in the runtime report.
+         *
+         * @return the key of the phase
+         */
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
     private final ServiceName name;
     private final LocalDateTime snapshotTime;
     private final long numRequest;
@@ -25,6 +53,7 @@ public class ServiceRuntimeData implements ClaraReportData<ServiceName> {
     private final long bytesRecv;
     private final long bytesSent;
     private final long execTime;
+    private final Map<Phase, LatencyHistogram> latencies;
 
     ServiceRuntimeData(JSONObject json) {
         this.name = new ServiceName(json.getString("name"));
@@ -36,6 +65,18 @@ public class ServiceRuntimeData implements ClaraReportData<ServiceName> {
         this.bytesRecv = json.optLong("bytes_recv");
         this.bytesSent = json.optLong("bytes_sent");
         this.execTime = json.optLong("exec_time");
+        this.latencies = parseLatencies(json.optJSONObject("latency"));
+    }
+
+    private static Map<Phase, LatencyHistogram> parseLatencies(JSONObject json) {
+        var latencies = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+        for (var phase : Phase.values()) {
+            var histogram = json != null ? json.optJSONObject(phase.key()) : null;
+            latencies.put(phase, histogram != null
+                    ? LatencyHistogram.fromJson(histogram)
+                    : new LatencyHistogram());
+        }
+        return latencies;
     }
 
     @Override
@@ -147,4 +188,17 @@ public class ServiceRuntimeData implements ClaraReportData<ServiceName> {
     public long executionTime() {
         return execTime;
     }
+
+    /**
+     * Gets the histogram of the latencies of the given phase of the execution
+     * of the requests.
+     * It counts all the requests processed by the service since it was deployed.
+     * The histogram is empty if the service does not report latencies.
+     *
+     * @param phase the phase of the execution
+     * @return the accumulated latencies of the phase, in microseconds
+     */
+    public LatencyHistogram latency(Phase phase) {
+        return latencies.get(phase);
+    }
 }
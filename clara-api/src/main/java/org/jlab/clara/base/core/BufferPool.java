@@ -0,0 +1,183 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.base.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of direct byte buffers, to serialize data without allocating new
+ * buffers for every message.
+ * <p>
+ * The buffers are grouped in size classes (powers of two).
+ * A request is served with a buffer of the smallest class that fits the
+ * requested size, with the limit set to the requested size.
+ * Every thread keeps the last released buffer of each class, so the engine
+ * threads can reuse their own buffers without contention.
+ * Other released buffers are kept in a shared pool, up to a maximum number
+ * of pooled bytes.
+ * <p>
+ * Requests larger than the biggest class are served with new buffers that
+ * are not pooled.
+ * Only buffers obtained from the pool should be released, and only once,
+ * after they are not used anymore.
+ */
+public final class BufferPool {
+
+    private static final int MIN_CLASS_SHIFT = 12;  // 4 KiB
+    private static final int MAX_CLASS_SHIFT = 26;  // 64 MiB
+    private static final int NUM_CLASSES = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+
+    private static final long DEFAULT_MAX_POOLED_BYTES = 256L * 1024 * 1024;
+
+    private static final BufferPool DEFAULT_POOL = new BufferPool(DEFAULT_MAX_POOLED_BYTES);
+
+    private final long maxPooledBytes;
+
+    private final ConcurrentLinkedDeque<ByteBuffer>[] shared;
+    private final ThreadLocal<ByteBuffer[]> local;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesInUse = new AtomicLong();
+    private final AtomicLong bytesPooled = new AtomicLong();
+
+    /**
+     * Returns the pool shared by all components of the JVM.
+     *
+     * @return the default pool
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT_POOL;
+    }
+
+    /**
+     * Creates a new pool.
+     *
+     * @param maxPooledBytes the maximum number of bytes kept in the shared pool
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        this.shared = new ConcurrentLinkedDeque[NUM_CLASSES];
+        for (int i = 0; i < NUM_CLASSES; i++) {
+            shared[i] = new ConcurrentLinkedDeque<>();
+        }
+        this.local = ThreadLocal.withInitial(() -> new ByteBuffer[NUM_CLASSES]);
+    }
+
+    /**
+     * Obtains a direct buffer with at least the given capacity.
+     * The position of the buffer is zero and the limit is the requested size.
+     *
+     * @param size the required size of the buffer
+     * @return a buffer from the pool, or a new buffer
+     */
+    public ByteBuffer acquire(int size) {
+        var sizeClass = sizeClass(size);
+        if (sizeClass < 0) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        var cache = local.get();
+        var buffer = cache[sizeClass];
+        if (buffer != null) {
+            cache[sizeClass] = null;
+        } else {
+            buffer = shared[sizeClass].pollFirst();
+            if (buffer != null) {
+                bytesPooled.addAndGet(-buffer.capacity());
+            }
+        }
+
+        if (buffer != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(1 << (sizeClass + MIN_CLASS_SHIFT));
+        }
+        bytesInUse.addAndGet(buffer.capacity());
+
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     * Buffers that were not obtained from the pool are ignored.
+     *
+     * @param buffer a buffer obtained with {@link #acquire}, or a view of it
+     *               with the same capacity
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        var capacity = buffer.capacity();
+        var sizeClass = sizeClass(capacity);
+        if (sizeClass < 0 || capacity != 1 << (sizeClass + MIN_CLASS_SHIFT)) {
+            return;
+        }
+        bytesInUse.addAndGet(-capacity);
+
+        buffer.clear();
+        var cache = local.get();
+        if (cache[sizeClass] == null) {
+            cache[sizeClass] = buffer;
+        } else if (bytesPooled.addAndGet(capacity) <= maxPooledBytes) {
+            shared[sizeClass].offerFirst(buffer);
+        } else {
+            bytesPooled.addAndGet(-capacity);
+        }
+    }
+
+    private static int sizeClass(int size) {
+        if (size > 1 << MAX_CLASS_SHIFT) {
+            return -1;
+        }
+        var shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift, MIN_CLASS_SHIFT) - MIN_CLASS_SHIFT;
+    }
+
+    /**
+     * Returns the number of requests served with a pooled buffer.
+     *
+     * @return the number of pool hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests that needed a new buffer.
+     *
+     * @return the number of pool misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the total capacity of the pooled buffers that are in use.
+     *
+     * @return the number of bytes in use
+     */
+    public long getBytesInUse() {
+        return bytesInUse.get();
+    }
+
+    /**
+     * Returns the total capacity of the buffers kept in the shared pool.
+     *
+     * @return the number of pooled bytes
+     */
+    public long getBytesPooled() {
+        return bytesPooled.get();
+    }
+}
@@ -24,6 +24,8 @@ import org.jlab.clara.util.EnvUtils;
 import org.jlab.clara.util.report.ReportType;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
 
@@ -61,13 +63,12 @@ public class ClaraBase extends Actor {
                         .withProxy(me.getProxyAddress())
                         .withRegistrar(getRegAddress(frontEnd))
                         .withPoolSize(me.getSubscriptionPoolSize())
-                        .withPreConnectionSetup(s -> {
-                            s.setRcvHWM(0);
-                            s.setSndHWM(0);
-                        })
                         .withPostConnectionSetup(() -> ActorUtils.sleep(100));
         if (me.isOrchestrator()) {
             builder.checkSubscription(false);
+            builder.withDiscoveryCache(ClaraConstants.DISCOVERY_CACHE_AGE);
+        } else {
+            builder.withRegistrationTtl(ClaraConstants.REGISTRATION_TTL);
         }
         return builder.build();
     }
@@ -292,6 +293,68 @@ public class ClaraBase extends Actor {
         }
     }
 
+    /**
+     * Registers the given components with the front-end as subscribers to
+     * their topics, using a single request.
+     * The components must use the same proxy as this component.
+     *
+     * @param components the components to be registered
+     * @throws ClaraException if registration failed
+     */
+    public void register(Collection<ClaraComponent> components) throws ClaraException {
+        var address = getRegAddress(frontEnd);
+        try {
+            var infos = new LinkedHashMap<String, RegInfo>();
+            for (var comp : components) {
+                infos.put(comp.getCanonicalName(),
+                          RegInfo.subscriber(comp.getTopic(), comp.getDescription()));
+            }
+            register(infos, address, ActorSetup.REGISTRATION_TIMEOUT);
+        } catch (ClaraMsgException e) {
+            throw new ClaraException("could not register with front-end = " + address, e);
+        }
+    }
+
+    /**
+     * Removes the registration of the given components from the front-end,
+     * using a single request.
+     *
+     * @param components the components to be removed
+     * @throws ClaraException if removing the registration failed
+     */
+    public void removeRegistration(Collection<ClaraComponent> components)
+            throws ClaraException {
+        var address = getRegAddress(frontEnd);
+        try {
+            var infos = new LinkedHashMap<String, RegInfo>();
+            for (var comp : components) {
+                infos.put(comp.getCanonicalName(), RegInfo.subscriber(comp.getTopic()));
+            }
+            deregister(infos, address, ActorSetup.REGISTRATION_TIMEOUT);
+        } catch (ClaraMsgException e) {
+            throw new ClaraException("could not deregister from front-end = " + address, e);
+        }
+    }
+
+    /**
+     * Renews the lease of the registrations of all components that use the
+     * same proxy as this component.
+     * The registrations will be removed by the front-end if they are not
+     * renewed again before the given TTL.
+     *
+     * @param ttl the new time to live of the registrations, in milliseconds
+     * @throws ClaraException if renewing the registrations failed
+     */
+    public void renewRegistration(long ttl) throws ClaraException {
+        var address = getRegAddress(frontEnd);
+        try {
+            renewRegistration(address, ttl);
+        } catch (ClaraMsgException e) {
+            throw new ClaraException("could not renew registration with front-end = "
+                                     + address, e);
+        }
+    }
+
     /**
      * Retrieves Clara actor registration information from the registrar service.
      *
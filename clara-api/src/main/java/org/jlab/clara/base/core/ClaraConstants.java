@@ -23,6 +23,10 @@ public final class ClaraConstants {
 
     public static final int MONITOR_PORT = 9000;
 
+    public static final long REGISTRATION_TTL = 60_000;
+
+    public static final long DISCOVERY_CACHE_AGE = 30_000;
+
     public static final String DPE = "dpe";
     public static final String SESSION = "claraSession";
     public static final String START_DPE = "startDpe";
@@ -33,6 +37,7 @@ public final class ClaraConstants {
     public static final String PING_REMOTE_DPE = "pingRemoteDpe";
     public static final String DPE_ALIVE = "dpeAlive";
     public static final String DPE_REPORT = "dpeReport";
+    public static final String DPE_DELTA = "dpeDelta";
     public static final String MONITOR_REPORT = "ring";
 
     public static final String CONTAINER = "container";
@@ -57,6 +62,15 @@ public final class ClaraConstants {
     public static final String SERVICE_REPORT_DATA = "serviceReportData";
     public static final String SERVICE_REPORT_RING = "serviceReportRing";
 
+    public static final String SERVICE_BATCH_SIZE = "batchSize";
+    public static final String SERVICE_BATCH_TIME = "batchTime";
+    public static final String SERVICE_JOIN_MEMORY = "joinMemory";
+    public static final String SERVICE_JOIN_TIMEOUT = "joinTimeout";
+    public static final String SERVICE_ENGINE_PER_SLOT = "enginePerSlot";
+    public static final String SERVICE_MIN_POOL_SIZE = "minPoolSize";
+    public static final String SERVICE_MAX_POOL_SIZE = "maxPoolSize";
+    public static final String SERVICE_WEIGHT = "weight";
+
     public static final String SET_FRONT_END = "setFrontEnd";
     public static final String SET_FRONT_END_REMOTE = "setFrontEndRemote";
 
@@ -70,6 +84,7 @@ public final class ClaraConstants {
 
     public static final String REGISTRATION_KEY = "DPERegistration";
     public static final String RUNTIME_KEY = "DPERuntime";
+    public static final String DELTA_KEY = "DPEDelta";
 
     public static final String SHARED_MEMORY_KEY = "clara/shmkey";
 
@@ -77,6 +92,7 @@ public final class ClaraConstants {
     public static final String DATA_SEP = "?";
     public static final String LANG_SEP = "_";
     public static final String PORT_SEP = "%";
+    public static final String OPTIONS_SEP = ";";
 
     public static final String INFO = "INFO";
     public static final String WARNING = "WARNING";
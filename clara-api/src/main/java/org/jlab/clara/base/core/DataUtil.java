@@ -18,6 +18,7 @@ import org.jlab.clara.msg.data.MetaDataProto.MetaData;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Set;
+import java.util.function.IntFunction;
 
 public final class DataUtil {
 
@@ -47,6 +48,7 @@ public final class DataUtil {
     /**
      * Builds a message by serializing passed data object using serialization
      * routine defined in one of the data types objects.
+     * The serialized buffer is used as the message data without copying it.
      *
      * @param topic     the topic where the data will be published
      * @param data      the data to be serialized
@@ -57,34 +59,57 @@ public final class DataUtil {
                                     EngineData data,
                                     Set<EngineDataType> dataTypes)
             throws ClaraException {
+        return serialize(topic, data, dataTypes, ByteBuffer::allocate);
+    }
+
+    /**
+     * Builds a message by serializing passed data object using serialization
+     * routine defined in one of the data types objects.
+     * The serializer can write the data into buffers obtained from the given
+     * allocator (i.e. a {@link BufferPool}).
+     * The serialized buffer is used as the message data without copying it.
+     * The data is delimited as described in
+     * {@link org.jlab.clara.engine.ClaraSerializer ClaraSerializer}.
+     *
+     * @param topic     the topic where the data will be published
+     * @param data      the data to be serialized
+     * @param dataTypes the set of registered data types
+     * @param allocator provides the buffers for the serialized data
+     * @throws ClaraException if the data could not be serialized
+     */
+    public static Message serialize(Topic topic,
+                                    EngineData data,
+                                    Set<EngineDataType> dataTypes,
+                                    IntFunction<ByteBuffer> allocator)
+            throws ClaraException {
 
         var metadata = DATA_ACCESSOR.getMetadata(data);
         var mimeType = metadata.getDataType();
         for (EngineDataType dataType : dataTypes) {
             if (dataType.mimeType().equals(mimeType)) {
                 try {
-                    ByteBuffer bb = dataType.serializer().write(data.getData());
+                    ByteBuffer bb = dataType.serializer().write(data.getData(), allocator);
                     if (bb.order() == ByteOrder.BIG_ENDIAN) {
                         metadata.setByteOrder(MetaData.Endian.Big);
                     } else {
                         metadata.setByteOrder(MetaData.Endian.Little);
                     }
-                    return new Message(topic, metadata, bb.array());
+                    return new Message(topic, metadata, bb);
                 } catch (ClaraException e) {
                     throw new ClaraException("Could not serialize " + mimeType, e);
                 }
             }
         }
         if (mimeType.equals(EngineDataType.STRING.mimeType())) {
-            ByteBuffer bb = EngineDataType.STRING.serializer().write(data.getData());
-            return new Message(topic, metadata, bb.array());
+            ByteBuffer bb = EngineDataType.STRING.serializer().write(data.getData(), allocator);
+            return new Message(topic, metadata, bb);
         }
         throw new ClaraException("Unsupported mime-type = " + mimeType);
     }
 
     /**
      * De-serializes data of the message {@link Message},
-     * represented as a byte[] into an object of az type defined using the mimeType/dataType
+     * represented as a ByteBuffer into an object of az type defined using the mimeType/dataType
      * of the meta-data (also as a part of the Message). Second argument is used to
      * pass the serialization routine as a method of the
      * {@link org.jlab.clara.engine.EngineDataType} object.
@@ -102,10 +127,7 @@ public final class DataUtil {
         for (EngineDataType dataType : dataTypes) {
             if (dataType.mimeType().equals(mimeType)) {
                 try {
-                    var bb = ByteBuffer.wrap(msg.getData());
-                    if (metadata.getByteOrder() == MetaData.Endian.Little) {
-                        bb.order(ByteOrder.LITTLE_ENDIAN);
-                    }
+                    var bb = msg.getDataBuffer();
                     Object data = dataType.serializer().read(bb);
                     return DATA_ACCESSOR.build(data, metadata);
                 } catch (ClaraException e) {
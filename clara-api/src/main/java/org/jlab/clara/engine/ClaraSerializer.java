@@ -9,15 +9,34 @@ package org.jlab.clara.engine;
 import org.jlab.clara.base.error.ClaraException;
 
 import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
 
 /**
  * Provides the custom serialization methods to send user defined data through
  * the network.
+ * <p>
+ * The buffers can be heap or direct buffers.
+ * Implementations should not assume that a buffer is backed by an accessible
+ * array, and they must read the data between the position and the limit
+ * of the buffer.
+ * <p>
+ * The serialized data is delimited according to the method that wrote it:
+ * <ul>
+ * <li>for {@link #write(Object)}, the data is the whole backing array of the
+ *     returned buffer, as in previous versions, regardless of its position
+ *     and limit. Only when the buffer has no accessible array (i.e. it is a
+ *     direct buffer) the data is delimited by its position and limit.
+ * <li>for {@link #write(Object, IntFunction)}, the data is always delimited
+ *     by the position and the limit of the returned buffer.
+ * </ul>
  */
 public interface ClaraSerializer {
 
     /**
      * Serializes the user object into a byte buffer and returns it.
+     * If the returned buffer is backed by an accessible array,
+     * the serialized data is the whole array.
+     * Otherwise, it is the bytes between the position and the limit.
      *
      * @param data the user object stored on the {@link EngineData}
      * @throws ClaraException if the data could not be serialized
@@ -25,6 +44,33 @@ public interface ClaraSerializer {
      */
     ByteBuffer write(Object data) throws ClaraException;
 
+    /**
+     * Serializes the user object into a byte buffer obtained from the given
+     * allocator, and returns it.
+     * The allocator returns a buffer with at least the requested capacity.
+     * The returned buffer must be ready to be read
+     * (i.e. its position and limit must delimit the serialized data).
+     * <p>
+     * Serializers that know the size of the serialized data should override
+     * this method, to write the data directly into the provided buffer,
+     * which can then be sent without further copies.
+     * The default implementation calls {@link #write(Object)}, and returns
+     * a buffer that delimits the whole backing array of the result, if any.
+     *
+     * @param data the user object stored on the {@link EngineData}
+     * @param allocator provides buffers of the requested capacity
+     * @throws ClaraException if the data could not be serialized
+     * @return the serialized user object
+     */
+    default ByteBuffer write(Object data, IntFunction<ByteBuffer> allocator)
+            throws ClaraException {
+        var buffer = write(data);
+        if (buffer.hasArray()) {
+            return ByteBuffer.wrap(buffer.array()).order(buffer.order());
+        }
+        return buffer;
+    }
+
     /**
      * De-serializes the byte buffer into the user object and returns it.
      *
@@ -42,6 +42,10 @@ public interface Engine {
      * Executes the engine with the given set of input data.
      * <p>
      * This method can be executed concurrently in several threads.
+     * <p>
+     * When the inputs are a batch of requests, the result is routed once,
+     * as the result of the first request of the batch. The other requests
+     * only get a status report, with the status of the result.
      *
      * @param inputs the data set to execute the engine with
      * @return the result and/or status of the execution request,
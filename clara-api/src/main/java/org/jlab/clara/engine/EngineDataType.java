@@ -14,8 +14,11 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import org.jlab.clara.base.error.ClaraException;
 
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.Objects;
+import java.util.function.IntFunction;
 
 /**
  * Defines a data type used by a {@link Engine service engine}.
@@ -151,9 +154,56 @@ public class EngineDataType {
             return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
         }
 
+        @Override
+        public ByteBuffer write(Object data, IntFunction<ByteBuffer> allocator)
+                throws ClaraException {
+            var text = (String) data;
+            var size = encodedLength(text);
+            if (size > Integer.MAX_VALUE) {
+                return write(data);
+            }
+            var encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            var buffer = allocator.apply((int) size);
+            if (encoder.encode(CharBuffer.wrap(text), buffer, true).isOverflow()
+                    || encoder.flush(buffer).isOverflow()) {
+                return write(data);
+            }
+            return buffer.flip();
+        }
+
+        /*
+         * The exact size of the UTF-8 encoded text, so the buffer is not
+         * larger than needed. Malformed surrogates are replaced by the
+         * encoder with a single byte.
+         */
+        private static long encodedLength(String text) {
+            long size = 0;
+            int length = text.length();
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    size += 1;
+                } else if (c < 0x800) {
+                    size += 2;
+                } else if (Character.isHighSurrogate(c)
+                        && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    size += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    size += 1;
+                } else {
+                    size += 3;
+                }
+            }
+            return size;
+        }
+
         @Override
         public Object read(ByteBuffer data) throws ClaraException {
-            return new String(data.array(), StandardCharsets.UTF_8);
+            return StandardCharsets.UTF_8.decode(data.duplicate()).toString();
         }
     }
 
@@ -194,7 +244,7 @@ public class EngineDataType {
 
         @Override
         public Object read(ByteBuffer data) throws ClaraException {
-            var bytes = data.array();
+            var bytes = data.duplicate();
             try {
                 return switch (mimeType) {
                     case INT32 -> Int32Value.parseFrom(bytes).getValue();
@@ -19,6 +19,8 @@ import spock.lang.Rollup
 import spock.lang.Specification
 import spock.lang.Subject
 
+import java.util.concurrent.TimeUnit
+
 class BaseOrchestratorSpec extends Specification {
 
     private static final String FE_HOST = "10.2.9.1_java"
@@ -106,6 +108,24 @@ class BaseOrchestratorSpec extends Specification {
         )
     }
 
+    def "Deploy service with batches"() {
+        given:
+        var service = new ServiceName("10.2.9.96_java:master:E1")
+
+        when:
+        request = orchestrator.deploy(service, "org.example.service.E1")
+                              .withPoolsize(10)
+                              .withBatching(16, 2, TimeUnit.MILLISECONDS)
+
+        then:
+        assertRequest(
+            host: "10.2.9.96",
+            topic: "dpe:10.2.9.96_java",
+            data: "startService?master?E1?org.example.service.E1?10?undefined?undefined" +
+                  "?batchSize=16;batchTime=2000"
+        )
+    }
+
     def "Exit service"() {
         given:
         var service = new ServiceName("10.2.9.96_java:master:E1")
@@ -0,0 +1,114 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.base
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+class LatencyHistogramSpec extends Specification {
+
+    @Subject
+    LatencyHistogram histogram = new LatencyHistogram()
+
+    def "An empty histogram has no values"() {
+        expect:
+        histogram.count() == 0
+        histogram.percentile(50) == 0
+        histogram.max() == 0
+    }
+
+    def "Small values are counted exactly"() {
+        given:
+        (1..10).each { histogram.record(it) }
+
+        expect:
+        histogram.count() == 10
+        histogram.percentile(50) == 5
+        histogram.percentile(90) == 9
+        histogram.max() == 10
+    }
+
+    def "Large values are counted with bounded error"() {
+        when:
+        histogram.record(value)
+
+        then:
+        histogram.max() >= value
+        histogram.max() - value < value / 16
+
+        where:
+        value << [16, 17, 100, 1_000, 123_456, 987_654_321]
+    }
+
+    def "Bucket bounds are contiguous"() {
+        expect:
+        (1..<500).every { i ->
+            LatencyHistogram.lowerBound(i) == LatencyHistogram.upperBound(i - 1) + 1
+        }
+        (0..<500).every { i ->
+            LatencyHistogram.index(LatencyHistogram.lowerBound(i)) == i
+        }
+    }
+
+    def "Histograms can be merged and subtracted"() {
+        given:
+        histogram.record(10)
+        var snapshot = new LatencyHistogram()
+        snapshot.add(histogram)
+        histogram.record(2_000)
+        histogram.record(3_000)
+
+        when:
+        var delta = histogram.minus(snapshot)
+
+        then:
+        snapshot.count() == 1
+        delta.count() == 2
+        delta.percentile(50) >= 2_000
+        delta.percentile(50) < 3_000
+    }
+
+    def "Cumulative counts are computed for the given bounds"() {
+        given:
+        [5, 20, 20, 4_000, 90_000].each { histogram.record(it) }
+        long[] bounds = [1, 10, 100, 10_000]
+        var counts = new long[bounds.length]
+
+        when:
+        var total = histogram.cumulativeCounts(bounds, counts)
+
+        then:
+        total == 5
+        counts == [0, 1, 3, 4] as long[]
+    }
+
+    def "The non-empty buckets are visited in ascending order"() {
+        given:
+        [4_000, 5, 20, 20].each { histogram.record(it) }
+
+        when:
+        var buckets = []
+        histogram.forEachBucket { bound, count -> buckets << [bound, count] }
+
+        then:
+        buckets == [[5, 1], [20, 2], [3968, 1]]
+    }
+
+    def "Histograms are converted to and from JSON"() {
+        given:
+        [5, 20, 20, 4_000].each { histogram.record(it) }
+
+        when:
+        var json = histogram.toJson()
+        var parsed = LatencyHistogram.fromJson(json)
+
+        then:
+        json.keySet() == ["5", "20", "3968"] as Set
+        parsed.count() == 4
+        parsed.max() == histogram.max()
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.base.core
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.ByteBuffer
+
+class BufferPoolSpec extends Specification {
+
+    @Subject
+    BufferPool pool = new BufferPool(1024 * 1024)
+
+    def "Acquiring a buffer returns a direct buffer of the next size class"() {
+        when:
+        var buffer = pool.acquire(5000)
+
+        then:
+        buffer.direct
+        buffer.capacity() == 8192
+        buffer.position() == 0
+        buffer.limit() == 5000
+
+        and:
+        pool.misses == 1
+        pool.hits == 0
+        pool.bytesInUse == 8192
+    }
+
+    def "Released buffers are reused by the next request of the same class"() {
+        given:
+        var buffer = pool.acquire(5000)
+        buffer.put(0, (byte) 1)
+
+        when:
+        pool.release(buffer)
+        var reused = pool.acquire(6000)
+
+        then:
+        reused.is(buffer)
+        reused.limit() == 6000
+
+        and:
+        pool.hits == 1
+        pool.misses == 1
+        pool.bytesInUse == 8192
+    }
+
+    def "Released buffers are shared with other threads"() {
+        given:
+        var first = pool.acquire(100)
+        var second = pool.acquire(100)
+        pool.release(first)
+        pool.release(second)
+
+        when:
+        ByteBuffer reused = null
+        var thread = Thread.start { reused = pool.acquire(100) }
+        thread.join()
+
+        then:
+        reused.is(second)
+        pool.bytesPooled == 0
+        pool.bytesInUse == 4096
+    }
+
+    def "Buffers not obtained from the pool are ignored"() {
+        when:
+        pool.release(ByteBuffer.allocate(4096))
+        pool.release(ByteBuffer.allocateDirect(5000))
+
+        then:
+        pool.bytesInUse == 0
+        pool.acquire(4096).capacity() == 4096
+        pool.misses == 1
+    }
+}
@@ -49,6 +49,24 @@ class EngineDataTypeSpec extends Specification {
         result == "high-energy physics"
     }
 
+    def "Strings are written into a buffer of the exact encoded size"() {
+        given:
+        var serializer = EngineDataType.STRING.serializer()
+        var text = "h\u00e9llo \u20ac\ud834\udd1e"
+        var requested = []
+
+        when:
+        var buffer = serializer.write(text) { int size ->
+            requested << size
+            ByteBuffer.allocateDirect(size)
+        }
+
+        then:
+        requested == [14]
+        buffer.remaining() == 14
+        serializer.read(buffer) == text
+    }
+
     def "Serialize raw bytes"() {
         given: "the default raw bytes serializer"
         var serializer = EngineDataType.BYTES.serializer()
@@ -67,4 +85,24 @@ class EngineDataTypeSpec extends Specification {
         and: "the original byte order is kept"
         result.order() == ByteOrder.LITTLE_ENDIAN
     }
+
+    def "Serializers without an allocator write the whole backing array"() {
+        given: "a serializer that returns a positioned buffer"
+        var serializer = new ClaraSerializer() {
+            ByteBuffer write(Object data) {
+                ByteBuffer.wrap([0x0, 0x1, 0x2, 0x3] as byte[]).position(4)
+            }
+
+            Object read(ByteBuffer data) {
+                data
+            }
+        }
+
+        when:
+        var buffer = serializer.write(null, { int size -> ByteBuffer.allocate(size) })
+
+        then:
+        buffer.remaining() == 4
+        buffer.get(3) == 0x3 as byte
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.ccc;
+
+import org.jlab.clara.base.error.ClaraException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original {@link CompositionCompiler} with the
+ * {@link RoutingTable}, compiling a composition and getting the links of a
+ * result (as the service engines do for every request).
+ * <p>
+ * Run with {@code ./gradlew :clara-core:jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoutingBenchmark {
+
+    private static final String SERVICE = service(5);
+    private static final String INPUT = service(4);
+
+    private static final String COMPOSITION = composition();
+
+    private CompositionCompiler compiler;
+    private RoutingTable table;
+
+    private static String service(int i) {
+        return "10.1.1.1_java:cont:S" + i;
+    }
+
+    private static String composition() {
+        var sb = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            sb.append(service(i)).append(i < 10 ? "+" : ";\n");
+        }
+        sb.append("if (").append(SERVICE).append(" == \"skip\") {\n");
+        sb.append("  ").append(SERVICE).append("+").append(service(7)).append(";\n");
+        sb.append("} else {\n");
+        sb.append("  ").append(SERVICE).append("+").append(service(11)).append(";\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Compiles the composition with both compilers.
+     *
+     * @throws ClaraException if the composition is invalid
+     */
+    @Setup
+    public void setup() throws ClaraException {
+        compiler = new CompositionCompiler(SERVICE);
+        compiler.compile(COMPOSITION);
+        table = RoutingTable.compile(COMPOSITION, SERVICE);
+    }
+
+    /**
+     * Compiles the composition with the original compiler.
+     *
+     * @return the compiler
+     * @throws ClaraException if the composition is invalid
+     */
+    @Benchmark
+    public CompositionCompiler compileOriginal() throws ClaraException {
+        var c = new CompositionCompiler(SERVICE);
+        c.compile(COMPOSITION);
+        return c;
+    }
+
+    /**
+     * Compiles the composition into a routing table.
+     *
+     * @return the routing table
+     * @throws ClaraException if the composition is invalid
+     */
+    @Benchmark
+    public RoutingTable compileRoutingTable() throws ClaraException {
+        return RoutingTable.compile(COMPOSITION, SERVICE);
+    }
+
+    /**
+     * Gets the links of a result with the original compiler.
+     *
+     * @return the output links
+     */
+    @Benchmark
+    public Set<String> linksOriginal() {
+        var ownerState = new ServiceState(SERVICE, "done");
+        var inputState = new ServiceState(INPUT, "done");
+        return compiler.getLinks(ownerState, inputState);
+    }
+
+    /**
+     * Gets the links of a result with the routing table.
+     *
+     * @return the output links
+     */
+    @Benchmark
+    public Destination[] linksRoutingTable() {
+        return table.links(SERVICE, "done", INPUT, "done");
+    }
+}
@@ -82,7 +82,7 @@ abstract class AbstractActor {
                                              String description) throws ClaraException {
         var sub = base.listen(topic, callback);
         try {
-            base.register(topic, description);
+            register(topic, description);
         } catch (Exception e) {
             base.unsubscribe(sub);
             throw e;
@@ -90,6 +90,13 @@ abstract class AbstractActor {
         return sub;
     }
 
+    /**
+     * Registers this component with the front-end as subscriber to the given topic.
+     */
+    void register(Topic topic, String description) throws ClaraException {
+        base.register(topic, description);
+    }
+
     void sendResponse(Message msg, MetaData.Status status, String data) {
         try {
             var response = MessageUtil.buildRequest(msg.getReplyTopic(), data);
@@ -0,0 +1,128 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys;
+
+import org.jlab.clara.base.error.ClaraException;
+import org.jlab.clara.sys.ccc.RoutingTable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the compiled compositions of all the services of the DPE,
+ * so every composition is compiled only once per service,
+ * instead of once per engine.
+ * <p>
+ * The routing tables are cached by composition and service name.
+ * When the cache is full, the least recently used table is evicted.
+ * Compositions that cannot be compiled are not cached.
+ */
+public final class CompositionCache {
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private static final CompositionCache DEFAULT_CACHE = new CompositionCache(DEFAULT_CAPACITY);
+
+    private final Map<Key, RoutingTable> tables;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    private record Key(String composition, String service) { }
+
+    /**
+     * Returns the cache shared by all services of the JVM.
+     *
+     * @return the default cache
+     */
+    public static CompositionCache getDefault() {
+        return DEFAULT_CACHE;
+    }
+
+    CompositionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        this.tables = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, RoutingTable> eldest) {
+                if (size() > capacity) {
+                    evicted.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the routing table of the composition for the given service,
+     * compiling it if it is not cached.
+     *
+     * @param composition the composition of the request
+     * @param service the name of the service
+     * @return the compiled routing table
+     * @throws ClaraException if the composition could not be compiled
+     */
+    RoutingTable get(String composition, String service) throws ClaraException {
+        var key = new Key(composition, service);
+        synchronized (tables) {
+            var table = tables.get(key);
+            if (table != null) {
+                hits.incrementAndGet();
+                return table;
+            }
+        }
+        misses.incrementAndGet();
+        // compile outside the lock, a concurrent miss just compiles it twice
+        var table = RoutingTable.compile(composition, service);
+        synchronized (tables) {
+            var prev = tables.putIfAbsent(key, table);
+            return prev != null ? prev : table;
+        }
+    }
+
+    /**
+     * Returns the number of compositions served from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of compositions that had to be compiled.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of routing tables evicted to keep the cache bounded.
+     *
+     * @return the number of evicted tables
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * Returns the number of cached routing tables.
+     *
+     * @return the number of entries
+     */
+    public int getEntries() {
+        synchronized (tables) {
+            return tables.size();
+        }
+    }
+}
@@ -15,28 +15,41 @@ class ConnectionPools implements AutoCloseable {
     final ConnectionPool mainPool;
     final ConnectionPool uncheckedPool;
 
-    ConnectionPools(ProxyAddress defaultProxy) {
+    /**
+     * Creates the connection pools used by the services.
+     * When the send high-water mark is set, results are published through
+     * bounded queues, and publishing blocks at most the send timeout.
+     * Reports are never blocked, they are dropped if their queue is full.
+     *
+     * @param defaultProxy the address of the local proxy
+     * @param sendHwm the send high-water mark (zero means no limit)
+     * @param sendTimeout the send timeout in milliseconds (negative means no timeout)
+     */
+    ConnectionPools(ProxyAddress defaultProxy, int sendHwm, int sendTimeout) {
         mainPool = ConnectionPool.newBuilder()
                 .withProxy(defaultProxy)
-                .withPreConnectionSetup(s -> {
-                    s.setRcvHWM(0);
-                    s.setSndHWM(0);
-                })
+                .withSendHighWaterMark(sendHwm)
+                .withSendTimeout(sendTimeout)
                 .withPostConnectionSetup(() -> ActorUtils.sleep(100))
                 .build();
 
         uncheckedPool = ConnectionPool.newBuilder()
                 .withProxy(defaultProxy)
-                .withPreConnectionSetup(s -> {
-                    s.setRcvHWM(0);
-                    s.setSndHWM(0);
-                })
+                .withSendHighWaterMark(sendHwm)
+                .withSendTimeout(0)
                 .withPostConnectionSetup(() -> ActorUtils.sleep(100))
                 .checkConnection(false)
                 .checkSubscription(false)
                 .build();
     }
 
+    /**
+     * Returns the number of idle connections stored in the pools.
+     */
+    int cachedConnections() {
+        return mainPool.cachedConnections() + uncheckedPool.cachedConnections();
+    }
+
     @Override
     public void close() {
         mainPool.close();
@@ -15,6 +15,7 @@ import org.jlab.clara.msg.errors.ClaraMsgException;
 import org.jlab.clara.sys.report.ContainerReport;
 import org.jlab.clara.util.EnvUtils;
 
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -27,11 +28,15 @@ class Container extends AbstractActor {
 
     private final ConcurrentHashMap<String, Service> myServices = new ConcurrentHashMap<>();
     private final ContainerReport myReport;
+    private final RegistrationBatcher registrations;
 
     private boolean isRegistered = false;
 
-    Container(ClaraComponent comp, ClaraComponent frontEnd) {
+    Container(ClaraComponent comp,
+              ClaraComponent frontEnd,
+              RegistrationBatcher registrations) {
         super(comp, frontEnd);
+        this.registrations = registrations;
 
         myReport = new ContainerReport(base, EnvUtils.userName());
     }
@@ -60,11 +65,14 @@ class Container extends AbstractActor {
     public void addService(ClaraComponent comp,
                            ClaraComponent frontEnd,
                            ConnectionPools connectionPools,
+                           EngineScheduler scheduler,
+                           ServiceOptions options,
                            String session) throws ClaraException {
         var serviceName = comp.getCanonicalName();
         var service = myServices.get(serviceName);
         if (service == null) {
-            service = new Service(comp, frontEnd, connectionPools, session);
+            service = new Service(comp, frontEnd, connectionPools, scheduler, registrations,
+                                  options, session);
             var prev = myServices.putIfAbsent(serviceName, service);
             if (prev == null) {
                 try {
@@ -93,8 +101,24 @@ class Container extends AbstractActor {
         return false;
     }
 
+    /*
+     * The registrations of all services are removed with a single request
+     * before stopping the services.
+     */
     private void removeAllServices() {
-        myServices.values().parallelStream().forEach(Service::stop);
+        var services = List.copyOf(myServices.values());
+        if (shouldDeregister()) {
+            var registered = services.stream()
+                    .filter(Service::releaseRegistration)
+                    .map(s -> s.base.getMe())
+                    .toList();
+            try {
+                registrations.remove(registered);
+            } catch (ClaraException e) {
+                Logging.error("container = %s: %s", base.getName(), e.getMessage());
+            }
+        }
+        services.parallelStream().forEach(Service::stop);
         myServices.clear();
     }
 
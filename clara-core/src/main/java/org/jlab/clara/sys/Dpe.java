@@ -24,6 +24,7 @@ import org.jlab.clara.msg.net.ProxyAddress;
 import org.jlab.clara.msg.net.SocketFactory;
 import org.jlab.clara.sys.DpeOptionsParser.DpeOptionsException;
 import org.jlab.clara.sys.RequestParser.RequestException;
+import org.jlab.clara.sys.report.DeltaReportBuilder;
 import org.jlab.clara.sys.report.DpeReport;
 import org.jlab.clara.sys.report.JsonReportBuilder;
 import org.jlab.clara.util.VersionUtils;
@@ -60,6 +61,14 @@ public final class Dpe extends AbstractActor {
     static final int DEFAULT_MAX_CORES = Runtime.getRuntime().availableProcessors();
     static final int DEFAULT_POOL_SIZE = DpeConfig.calculatePoolSize(DEFAULT_MAX_CORES);
     static final long DEFAULT_REPORT_PERIOD = 10_000;
+    static final int DEFAULT_QUEUE_SIZE = 0;
+    static final QueuePolicy DEFAULT_QUEUE_POLICY = QueuePolicy.BLOCK;
+    static final int DEFAULT_SEND_HWM = 0;
+    static final long DEFAULT_SEND_TIMEOUT = -1;
+    static final boolean DEFAULT_LOCAL_DISPATCH = true;
+    static final boolean DEFAULT_SHARED_SCHEDULER = false;
+    static final boolean DEFAULT_REPORT_DELTAS = false;
+    static final int DEFAULT_METRICS_PORT = 0;
 
     static final int DEFAULT_MAX_SOCKETS = 1024;
     static final int DEFAULT_IO_THREADS = 1;
@@ -78,8 +87,17 @@ public final class Dpe extends AbstractActor {
     // The containers running on this DPE
     private final ConcurrentMap<String, Container> myContainers = new ConcurrentHashMap<>();
 
+    // Groups the registrations of the services
+    private final RegistrationBatcher registrations;
+
     private final ReportService reportService;
+    private final int metricsPort;
+    private MetricsServer metricsServer;
     private final int maxCores;
+    private final ServiceOptions serviceOptions;
+    private final EngineScheduler scheduler;
+    private final int sendHwm;
+    private final long sendTimeout;
 
 
     public static void main(String[] args) {
@@ -99,6 +117,11 @@ public final class Dpe extends AbstractActor {
             Context.getInstance().setIOThreads(options.ioThreads());
             Context.getInstance().setMaxSockets(options.maxSockets());
 
+            // config actor threads
+            if (options.useVirtualThreads() && !ActorUtils.setVirtualThreads(true)) {
+                System.err.println("Warning: virtual threads are not supported by this JVM");
+            }
+
             // start a dpe
             var dpe = new Dpe(options.isFrontEnd(), options.localAddress(), options.frontEnd(),
                               options.config(), options.session(), options.description());
@@ -134,6 +157,14 @@ public final class Dpe extends AbstractActor {
         int poolSize = DEFAULT_POOL_SIZE;
         int maxCores = DEFAULT_MAX_CORES;
         long reportPeriod = DEFAULT_REPORT_PERIOD;
+        int queueSize = DEFAULT_QUEUE_SIZE;
+        QueuePolicy queuePolicy = DEFAULT_QUEUE_POLICY;
+        int sendHwm = DEFAULT_SEND_HWM;
+        long sendTimeout = DEFAULT_SEND_TIMEOUT;
+        boolean localDispatch = DEFAULT_LOCAL_DISPATCH;
+        boolean sharedScheduler = DEFAULT_SHARED_SCHEDULER;
+        boolean reportDeltas = DEFAULT_REPORT_DELTAS;
+        int metricsPort = DEFAULT_METRICS_PORT;
         String description = "";
 
         /**
@@ -266,6 +297,131 @@ public final class Dpe extends AbstractActor {
             return this;
         }
 
+        /**
+         * Sets the maximum number of pending requests that a service can hold.
+         * By default, the queue of pending requests has the same size
+         * as the pool size of the service.
+         *
+         * @param queueSize the size of the queue of pending requests
+         * @return this builder, so methods can be chained
+         */
+        public Builder withQueueSize(int queueSize) {
+            if (queueSize <= 0) {
+                throw new IllegalArgumentException("Invalid queue size: " + queueSize);
+            }
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * Sets what a service does with new requests when its queue of pending
+         * requests is full.
+         *
+         * @param queuePolicy the policy for a full queue
+         * @return this builder, so methods can be chained
+         */
+        public Builder withQueuePolicy(QueuePolicy queuePolicy) {
+            Objects.requireNonNull(queuePolicy, "queuePolicy parameter is null");
+            this.queuePolicy = queuePolicy;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of outgoing messages that can be queued
+         * by a connection to a proxy.
+         * When the queue is full, services will block until the result can
+         * be sent (see {@link #withSendTimeout}).
+         * The same limit is used for the queues of the local proxy,
+         * which will then block its publishers instead of dropping messages
+         * for slow subscribers.
+         * By default there is no limit.
+         *
+         * @param sendHwm the send high-water mark
+         * @return this builder, so methods can be chained
+         */
+        public Builder withSendHwm(int sendHwm) {
+            if (sendHwm <= 0) {
+                throw new IllegalArgumentException("Invalid send high-water mark: " + sendHwm);
+            }
+            this.sendHwm = sendHwm;
+            return this;
+        }
+
+        /**
+         * Sets how long a service can wait for space in a full send queue.
+         * If the timeout expires, the result is dropped and an error is
+         * reported. By default, services wait until the result is sent.
+         *
+         * @param timeout the time to wait for a full send queue
+         * @param unit the time unit for the timeout
+         * @return this builder, so methods can be chained
+         */
+        public Builder withSendTimeout(long timeout, TimeUnit unit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("Invalid send timeout: " + timeout);
+            }
+            this.sendTimeout = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets if the services pass their results directly to the next
+         * services running in this DPE, without publishing the results
+         * through the proxy. It is enabled by default.
+         *
+         * @param localDispatch false to always publish through the proxy
+         * @return this builder, so methods can be chained
+         */
+        public Builder withLocalDispatch(boolean localDispatch) {
+            this.localDispatch = localDispatch;
+            return this;
+        }
+
+        /**
+         * Sets if the engines of all services run in a single work-stealing
+         * pool of threads, sized to the maximum number of cores.
+         * By default, every service runs its engines in its own threads.
+         *
+         * @param sharedScheduler true to share the threads between services
+         * @return this builder, so methods can be chained
+         */
+        public Builder withSharedScheduler(boolean sharedScheduler) {
+            this.sharedScheduler = sharedScheduler;
+            return this;
+        }
+
+        /**
+         * Sets if the DPE publishes delta reports between its full reports.
+         * A delta report only contains the service counters that changed
+         * and the latencies recorded since the previous report,
+         * and the full report is only published
+         * every few periods or when services are deployed or removed.
+         * By default, the full report is published on every period.
+         *
+         * @param reportDeltas true to publish delta reports
+         * @return this builder, so methods can be chained
+         */
+        public Builder withReportDeltas(boolean reportDeltas) {
+            this.reportDeltas = reportDeltas;
+            return this;
+        }
+
+        /**
+         * Sets the port of the HTTP server that serves the metrics of the DPE
+         * in the OpenMetrics text format, for Prometheus and other scrapers.
+         * The metrics are published at {@code /metrics}.
+         * By default, the server is not started.
+         *
+         * @param metricsPort the port of the server, or zero to disable it
+         * @return this builder, so methods can be chained
+         */
+        public Builder withMetricsPort(int metricsPort) {
+            if (metricsPort < 0 || metricsPort > 65535) {
+                throw new IllegalArgumentException("Invalid metrics port: " + metricsPort);
+            }
+            this.metricsPort = metricsPort;
+            return this;
+        }
 
         /**
          * Sets a description for this DPE.
@@ -285,7 +441,11 @@ public final class Dpe extends AbstractActor {
          * @return a new DPE
          */
         public Dpe build() {
-            var config = new DpeConfig(poolSize, maxCores, reportPeriod);
+            var config = new DpeConfig(maxCores, poolSize, reportPeriod,
+                                       queueSize, queuePolicy,
+                                       sendHwm, sendTimeout,
+                                       localDispatch, sharedScheduler,
+                                       reportDeltas, metricsPort);
             return new Dpe(isFrontEnd, localAddress, frontEndAddress,
                            config, session, description);
         }
@@ -318,9 +478,20 @@ public final class Dpe extends AbstractActor {
                       1, "Front End"));
 
         AbstractActor.isFrontEnd.set(isFrontEnd);
-        this.reportService = new ReportService(config.reportPeriod(), session);
+        this.reportService = new ReportService(config.reportPeriod(), session,
+                                               config.reportDeltas());
+        this.registrations = new RegistrationBatcher(base);
         this.session = session;
         this.maxCores = config.maxCores();
+        this.serviceOptions = new ServiceOptions(config.queueSize(),
+                                                 config.queuePolicy(),
+                                                 config.localDispatch());
+        this.scheduler = config.sharedScheduler()
+                ? new EngineScheduler(config.maxCores())
+                : null;
+        this.sendHwm = config.sendHwm();
+        this.sendTimeout = config.sendTimeout();
+        this.metricsPort = config.metricsPort();
     }
 
     /**
@@ -372,6 +543,7 @@ public final class Dpe extends AbstractActor {
                 startConnectionPool();
                 startSubscription();
                 startHeartBeatReport();
+                startMetricsServer();
             } catch (ClaraException e) {
                 stop();
                 throw e;
@@ -383,9 +555,11 @@ public final class Dpe extends AbstractActor {
     void end() {
         isShutDown.set(true);
         if (proxy != null) {
+            stopMetricsServer();
             stopHeartBeatReport();
             stopSubscription();
             stopContainers();
+            stopScheduler();
             stopConnectionPool();
             stopProxyAndFrontEnd();
         }
@@ -393,7 +567,7 @@ public final class Dpe extends AbstractActor {
 
     private void startProxyAndFrontEnd() throws ClaraException {
         // start the proxy
-        proxy = new Proxy(base.getMe());
+        proxy = new Proxy(base.getMe(), sendHwm);
         proxy.start();
 
         // start the front-end
@@ -404,7 +578,9 @@ public final class Dpe extends AbstractActor {
     }
 
     private void startConnectionPool() throws ClaraException {
-        connectionPools = new ConnectionPools(base.getDefaultProxyAddress());
+        var timeout = (int) Math.min(sendTimeout, Integer.MAX_VALUE);
+        connectionPools = new ConnectionPools(base.getDefaultProxyAddress(), sendHwm, timeout);
+        reportService.report().setCachedConnections(connectionPools::cachedConnections);
     }
 
     private void cacheConnections() throws ClaraException {
@@ -455,6 +631,20 @@ public final class Dpe extends AbstractActor {
         reportService.stop();
     }
 
+    private void startMetricsServer() throws ClaraException {
+        if (metricsPort > 0) {
+            metricsServer = new MetricsServer(metricsPort, reportService.report());
+            metricsServer.start();
+        }
+    }
+
+    private void stopMetricsServer() {
+        if (metricsServer != null) {
+            metricsServer.stop();
+            metricsServer = null;
+        }
+    }
+
     private void stopSubscription() {
         if (subscriptionHandler != null) {
             base.stopListening(subscriptionHandler);
@@ -474,6 +664,12 @@ public final class Dpe extends AbstractActor {
         myContainers.clear();
     }
 
+    private void stopScheduler() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
     private void stopConnectionPool() {
         if (connectionPools != null) {
             connectionPools.close();
@@ -506,12 +702,21 @@ public final class Dpe extends AbstractActor {
         System.out.println(" Version          = " + VersionUtils.getClaraVersion());
         System.out.println(" Lang             = Java");
         System.out.println(" Pool size        = " + base.getPoolSize());
+        if (ActorUtils.useVirtualThreads()) {
+            System.out.println(" Actor threads    = virtual");
+        }
+        if (scheduler != null) {
+            System.out.println(" Engine threads   = " + scheduler.parallelism() + " (shared)");
+        }
         if (!base.getDescription().isEmpty()) {
             System.out.println(" Description      = " + base.getDescription());
         }
         System.out.println();
         System.out.println(" Proxy Host       = " + base.getMe().getDpeHost());
         System.out.println(" Proxy Port       = " + base.getMe().getDpePort());
+        if (metricsPort > 0) {
+            System.out.println(" Metrics Port     = " + metricsPort);
+        }
         if (!isFrontEnd.get()) {
             System.out.println();
             System.out.println(" FrontEnd Host    = " + base.getFrontEnd().getDpeHost());
@@ -542,7 +747,7 @@ public final class Dpe extends AbstractActor {
 
         var container = myContainers.get(containerName);
         if (container == null) {
-            container = new Container(contComp, base.getFrontEnd());
+            container = new Container(contComp, base.getFrontEnd(), registrations);
             var prev = myContainers.putIfAbsent(containerName, container);
             if (prev == null) {
                 try {
@@ -568,6 +773,7 @@ public final class Dpe extends AbstractActor {
         var poolSize = parser.nextInteger();
         var description = parser.nextString();
         var initialState = parser.nextString();
+        var options = serviceOptions.withDeployOptions(parser.nextString(""));
         if (poolSize <= 0) {
             poolSize = 1;
         } else if (poolSize > maxCores) {
@@ -589,7 +795,8 @@ public final class Dpe extends AbstractActor {
             throw new RequestException(String.format(error, serComp));
         }
         try {
-            container.addService(serComp, base.getFrontEnd(), connectionPools, session);
+            container.addService(serComp, base.getFrontEnd(), connectionPools, scheduler,
+                                 options, session);
         } catch (ClaraException e) {
             throw new DpeException("could not start service " + serComp, e);
         }
@@ -660,22 +867,31 @@ public final class Dpe extends AbstractActor {
      */
     private class ReportService {
 
+        // with delta reports, publish a full report every N periods,
+        // so new subscribers do not wait too long to build their state
+        private static final int FULL_REPORT_INTERVAL = 10;
+
         private final SocketFactory socketFactory;
 
         private final DpeReport myReport;
         private final JsonReportBuilder myReportBuilder = new JsonReportBuilder();
+        private final DeltaReportBuilder myDeltaBuilder;
+        private int deltaCount;
 
         private final ScheduledExecutorService scheduledPingService;
         private final AtomicBoolean isReporting = new AtomicBoolean();
         private final long reportPeriod;
+        private final long registrationTtl;
 
-        ReportService(long periodMillis, String session) {
+        ReportService(long periodMillis, String session, boolean reportDeltas) {
 
             socketFactory = new SocketFactory(Context.getInstance().getContext());
             myReport = new DpeReport(base, session);
             myReport.setPoolSize(base.getPoolSize());
             scheduledPingService = Executors.newSingleThreadScheduledExecutor();
             reportPeriod = periodMillis;
+            registrationTtl = Math.max(ClaraConstants.REGISTRATION_TTL, 3 * periodMillis);
+            myDeltaBuilder = reportDeltas ? new DeltaReportBuilder(myReportBuilder) : null;
         }
 
         public void start() {
@@ -708,6 +924,10 @@ public final class Dpe extends AbstractActor {
             myReport.removeContainer(container.getReport());
         }
 
+        public DpeReport report() {
+            return myReport;
+        }
+
         public String aliveReport() {
             return myReport.getAliveData();
         }
@@ -745,7 +965,20 @@ public final class Dpe extends AbstractActor {
         }
 
         private Message jsonMessage() {
-            return serializeJson(ClaraConstants.DPE_REPORT, jsonReport());
+            if (myDeltaBuilder == null) {
+                return serializeJson(ClaraConstants.DPE_REPORT, jsonReport());
+            }
+            if (deltaCount >= FULL_REPORT_INTERVAL - 1) {
+                deltaCount = 0;
+                return serializeJson(ClaraConstants.DPE_REPORT, myDeltaBuilder.fullReport(myReport));
+            }
+            var report = myDeltaBuilder.nextReport(myReport);
+            if (report.isFull()) {
+                deltaCount = 0;
+                return serializeJson(ClaraConstants.DPE_REPORT, report.json());
+            }
+            deltaCount++;
+            return serializeJson(ClaraConstants.DPE_DELTA, report.json());
         }
 
         private Message serializeJson(String topicPrefix, String json) {
@@ -753,6 +986,20 @@ public final class Dpe extends AbstractActor {
             return new Message(topic, EngineDataType.JSON.mimeType(), json.getBytes());
         }
 
+        private void expireJoins() {
+            for (var container : myContainers.values()) {
+                container.geServices().values().forEach(Service::expireJoins);
+            }
+        }
+
+        private void renewRegistration() {
+            try {
+                base.renewRegistration(registrationTtl);
+            } catch (ClaraException e) {
+                Logging.error("could not renew registration: %s", e.getMessage());
+            }
+        }
+
         private void run() {
             try {
                 var feHost = base.getFrontEnd().getProxyAddress();
@@ -760,6 +1007,9 @@ public final class Dpe extends AbstractActor {
                 ActorUtils.sleep(100);
                 try {
                     while (isReporting.get()) {
+                        SharedMemory.evictExpired();
+                        expireJoins();
+                        renewRegistration();
                         send(socket, aliveMessage());
                         send(socket, jsonMessage());
                         ActorUtils.sleep(reportPeriod);
@@ -829,6 +1079,7 @@ public final class Dpe extends AbstractActor {
      * <li>
      *     CConstants.START_SERVICE ?
      *     containerName ? engineName ? engineClass ? poolSize ? description ? initialState
+     *     [? options]
      * </li>
      * <li>
      *     CConstants.STOP_SERVICE ?
@@ -6,7 +6,17 @@
 
 package org.jlab.clara.sys;
 
-record DpeConfig(int maxCores, int poolSize, long reportPeriod) {
+record DpeConfig(int maxCores,
+                 int poolSize,
+                 long reportPeriod,
+                 int queueSize,
+                 QueuePolicy queuePolicy,
+                 int sendHwm,
+                 long sendTimeout,
+                 boolean localDispatch,
+                 boolean sharedScheduler,
+                 boolean reportDeltas,
+                 int metricsPort) {
 
     static int calculatePoolSize(int cores) {
         int halfCores = cores / 2;
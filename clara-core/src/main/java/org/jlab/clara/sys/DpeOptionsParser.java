@@ -10,6 +10,8 @@ import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
+import joptsimple.ValueConversionException;
+import joptsimple.ValueConverter;
 import org.jlab.clara.msg.net.ProxyAddress;
 import org.jlab.clara.util.OptUtils;
 
@@ -31,9 +33,18 @@ class DpeOptionsParser {
     private final OptionSpec<Integer> poolSize;
     private final OptionSpec<Integer> maxCores;
     private final OptionSpec<Long> reportPeriod;
+    private final OptionSpec<Integer> queueSize;
+    private final OptionSpec<QueuePolicy> queuePolicy;
+    private final OptionSpec<Integer> sendHwm;
+    private final OptionSpec<Long> sendTimeout;
+    private final OptionSpec<Void> noLocalDispatch;
+    private final OptionSpec<Void> sharedScheduler;
+    private final OptionSpec<Void> reportDeltas;
+    private final OptionSpec<Integer> metricsPort;
 
     private final OptionSpec<Integer> maxSockets;
     private final OptionSpec<Integer> ioThreads;
+    private final OptionSpec<Void> virtualThreads;
 
     private final OptionSpec<String> description;
 
@@ -63,9 +74,19 @@ class DpeOptionsParser {
         poolSize = parser.accepts("poolsize").withRequiredArg().ofType(Integer.class);
         maxCores = parser.accepts("max-cores").withRequiredArg().ofType(Integer.class);
         reportPeriod = parser.accepts("report").withRequiredArg().ofType(Long.class);
+        queueSize = parser.accepts("queue-size").withRequiredArg().ofType(Integer.class);
+        queuePolicy = parser.accepts("queue-policy").withRequiredArg()
+                            .withValuesConvertedBy(new QueuePolicyConverter());
+        sendHwm = parser.accepts("send-hwm").withRequiredArg().ofType(Integer.class);
+        sendTimeout = parser.accepts("send-timeout").withRequiredArg().ofType(Long.class);
+        noLocalDispatch = parser.accepts("no-local-dispatch");
+        sharedScheduler = parser.accepts("shared-scheduler");
+        reportDeltas = parser.accepts("report-deltas");
+        metricsPort = parser.accepts("metrics-port").withRequiredArg().ofType(Integer.class);
 
         maxSockets = parser.accepts("max-sockets").withRequiredArg().ofType(Integer.class);
         ioThreads = parser.accepts("io-threads").withRequiredArg().ofType(Integer.class);
+        virtualThreads = parser.accepts("virtual-threads");
 
         description = parser.accepts("description").withRequiredArg();
 
@@ -99,6 +120,18 @@ class DpeOptionsParser {
                 frontEndAddress = new ProxyAddress(host, port);
             }
 
+            // Reject values that would fail when the services are deployed
+            checkPositive(poolSize, "pool size");
+            checkPositive(maxCores, "number of cores");
+            checkPositive(reportPeriod, "report period");
+            checkPositive(queueSize, "queue size");
+            checkPositive(sendHwm, "send high-water mark");
+            checkNotNegative(sendTimeout, "send timeout");
+            checkNotNegative(metricsPort, "metrics port");
+            if (valueOf(metricsPort, 0) > 65535) {
+                error("Invalid metrics port: " + options.valueOf(metricsPort));
+            }
+
         } catch (OptionException e) {
             throw new DpeOptionsException(e);
         }
@@ -108,6 +141,20 @@ class DpeOptionsParser {
         throw new DpeOptionsException(msg);
     }
 
+    private <V extends Number> void checkPositive(OptionSpec<V> spec, String name) {
+        var value = valueOf(spec, null);
+        if (value != null && value.longValue() <= 0) {
+            error("Invalid " + name + ": " + value);
+        }
+    }
+
+    private <V extends Number> void checkNotNegative(OptionSpec<V> spec, String name) {
+        var value = valueOf(spec, null);
+        if (value != null && value.longValue() < 0) {
+            error("Invalid " + name + ": " + value);
+        }
+    }
+
     private <V> V valueOf(OptionSpec<V> spec, V defaultValue) {
         try {
             if (options.has(spec)) {
@@ -139,7 +186,22 @@ class DpeOptionsParser {
         long reportPeriodSeconds = valueOf(reportPeriod, defaultPeriodSeconds);
         long dpeReportPeriod = TimeUnit.SECONDS.toMillis(reportPeriodSeconds);
 
-        return new DpeConfig(dpeMaxCores, dpePoolSize, dpeReportPeriod);
+        int dpeQueueSize = valueOf(queueSize, Dpe.DEFAULT_QUEUE_SIZE);
+        var dpeQueuePolicy = valueOf(queuePolicy, Dpe.DEFAULT_QUEUE_POLICY);
+
+        int dpeSendHwm = valueOf(sendHwm, Dpe.DEFAULT_SEND_HWM);
+        long dpeSendTimeout = valueOf(sendTimeout, Dpe.DEFAULT_SEND_TIMEOUT);
+
+        boolean dpeLocalDispatch = Dpe.DEFAULT_LOCAL_DISPATCH && !options.has(noLocalDispatch);
+        boolean dpeSharedScheduler = Dpe.DEFAULT_SHARED_SCHEDULER || options.has(sharedScheduler);
+        boolean dpeReportDeltas = Dpe.DEFAULT_REPORT_DELTAS || options.has(reportDeltas);
+        int dpeMetricsPort = valueOf(metricsPort, Dpe.DEFAULT_METRICS_PORT);
+
+        return new DpeConfig(dpeMaxCores, dpePoolSize, dpeReportPeriod,
+                             dpeQueueSize, dpeQueuePolicy,
+                             dpeSendHwm, dpeSendTimeout,
+                             dpeLocalDispatch, dpeSharedScheduler,
+                             dpeReportDeltas, dpeMetricsPort);
     }
 
     public int maxSockets() {
@@ -150,6 +212,10 @@ class DpeOptionsParser {
         return valueOf(ioThreads, Dpe.DEFAULT_IO_THREADS);
     }
 
+    public boolean useVirtualThreads() {
+        return options.has(virtualThreads);
+    }
+
     public String description() {
         return valueOf(description, "");
     }
@@ -178,9 +244,58 @@ class DpeOptionsParser {
              + OptUtils.optionHelp(poolSize, "size", "size of thread pool to handle requests")
              + OptUtils.optionHelp(maxCores, "cores", "how many cores can be used by a service")
              + OptUtils.optionHelp(reportPeriod, "seconds", "the period to publish reports")
+             + OptUtils.optionHelp(queueSize, "size",
+                     "maximum number of pending requests per service",
+                     "(default: the pool size of the service)")
+             + OptUtils.optionHelp(queuePolicy, "policy",
+                     "what to do when the queue of a service is full:",
+                     "block (wait for a free engine) or reject (report an error)")
+             + OptUtils.optionHelp(sendHwm, "messages",
+                     "maximum number of queued outgoing messages per connection",
+                     "and per client of the proxy (default: no limit)")
+             + OptUtils.optionHelp(sendTimeout, "ms",
+                     "how long to wait for space in a full send queue before",
+                     "dropping a result and reporting an error (default: wait forever)")
+             + OptUtils.optionHelp(noLocalDispatch, null,
+                     "publish results through the proxy even when the next service",
+                     "runs in this DPE")
+             + OptUtils.optionHelp(sharedScheduler, null,
+                     "run the engines of all services in a single pool of threads",
+                     "sized to the maximum number of cores")
+             + OptUtils.optionHelp(reportDeltas, null,
+                     "publish only the changed values between full reports",
+                     "(full reports are published every 10 periods)")
+             + OptUtils.optionHelp(metricsPort, "port",
+                     "serve the metrics of the DPE for Prometheus scrapers",
+                     "at http://<host>:<port>/metrics (default: disabled)")
              + String.format("%n  Advanced options:%n")
              + OptUtils.optionHelp(maxSockets, "sockets", "maximum number of allowed ZMQ sockets")
-             + OptUtils.optionHelp(ioThreads, "threads", "size of ZMQ thread pool to handle I/O");
+             + OptUtils.optionHelp(ioThreads, "threads", "size of ZMQ thread pool to handle I/O")
+             + OptUtils.optionHelp(virtualThreads, null,
+                     "use virtual threads for subscriptions and callbacks",
+                     "(requires Java 21 or newer)");
+    }
+
+    private static class QueuePolicyConverter implements ValueConverter<QueuePolicy> {
+
+        @Override
+        public QueuePolicy convert(String value) {
+            try {
+                return QueuePolicy.valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ValueConversionException("invalid queue policy: " + value);
+            }
+        }
+
+        @Override
+        public Class<? extends QueuePolicy> valueType() {
+            return QueuePolicy.class;
+        }
+
+        @Override
+        public String valuePattern() {
+            return "block|reject";
+        }
     }
 
     static class DpeOptionsException extends RuntimeException {
@@ -0,0 +1,75 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A work-stealing pool of threads shared by the engines of all the services
+ * of the DPE.
+ * <p>
+ * By default every service runs its engines in its own threads, so the number
+ * of threads of the DPE grows with the number of deployed services.
+ * When the DPE uses a shared scheduler, the services submit turns of their
+ * engines to this pool instead, and the number of engine threads is bounded
+ * by the number of cores, no matter how many services are deployed.
+ * <p>
+ * The pool runs the tasks in FIFO order, so the services take turns.
+ * The pool only compensates for the threads waiting to fill a batch
+ * of requests, so engines that block for a long time while executing a
+ * request reduce the throughput of all services.
+ */
+class EngineScheduler {
+
+    private final ForkJoinPool pool;
+
+    EngineScheduler(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism, EngineScheduler::newThread, null, true);
+    }
+
+    private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("clara-engine-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    /**
+     * Submits a task to the pool.
+     *
+     * @param task the turn of a service engine
+     */
+    void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    /**
+     * Returns the maximum number of threads of the pool.
+     */
+    int parallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stops the pool once all submitted tasks have been executed.
+     */
+    void shutdown() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+                if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                    Logging.error("engine scheduler did not terminate");
+                }
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
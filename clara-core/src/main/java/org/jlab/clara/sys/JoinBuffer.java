@@ -0,0 +1,170 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys;
+
+import org.jlab.clara.base.error.ClaraException;
+import org.jlab.clara.msg.core.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers the inputs of a service that joins the results of other services
+ * (an AND element of the composition, as {@code S8} in {@code S4,S5+&S8;}).
+ * <p>
+ * The inputs are grouped by composition and communication ID. A join is
+ * complete when every joined service has sent its result, and then all the
+ * inputs can be executed as a group.
+ * <p>
+ * The buffer is bounded by the total size of the pending messages
+ * (data in the shared memory is not counted), and joins that are not completed
+ * before the timeout expire, releasing their inputs.
+ */
+class JoinBuffer {
+
+    private final long maxBytes;
+    private final long timeout;
+
+    // ordered by start time, so the oldest joins are checked first
+    private final Map<Key, Pending> pending = new LinkedHashMap<>();
+    private long bytes;
+
+    private record Key(String composition, long id) { }
+
+    /**
+     * A completed join.
+     *
+     * @param inputs the inputs, in the order of the joined services
+     * @param waitTime the time since the first input was received,
+     *                 in nanoseconds
+     */
+    record Join(List<Message> inputs, long waitTime) { }
+
+    /**
+     * An expired join.
+     *
+     * @param input the first received input
+     * @param inputs all the received inputs
+     * @param missing the joined services that did not send their results
+     */
+    record Expired(Message input, List<Message> inputs, List<String> missing) { }
+
+    private static final class Pending {
+
+        private final String[] services;
+        private final Message[] inputs;
+        private final long startTime;
+        private int received;
+        private long bytes;
+
+        private Pending(String[] services, long startTime) {
+            this.services = services;
+            this.inputs = new Message[services.length];
+            this.startTime = startTime;
+        }
+    }
+
+
+    JoinBuffer(long maxBytes, long timeout, TimeUnit unit) {
+        this.maxBytes = maxBytes;
+        this.timeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Adds the result of a joined service.
+     *
+     * @param msg the result, sent by one of the joined services
+     * @param services the joined services
+     * @param now the current time, in nanoseconds
+     * @return the completed join, or null if there are missing inputs
+     * @throws ClaraException if the buffer is full or the input is duplicated
+     */
+    synchronized Join add(Message msg, String[] services, long now) throws ClaraException {
+        var metadata = msg.getMetaData();
+        var sender = metadata.getAuthor();
+        var index = Arrays.asList(services).indexOf(sender);
+        if (index < 0) {
+            throw new ClaraException("unexpected input from " + sender);
+        }
+
+        var size = msg.getDataSize();
+        if (bytes + size > maxBytes) {
+            throw new ClaraException(String.format(
+                    "join buffer is full (size = %d bytes)", maxBytes));
+        }
+
+        var key = new Key(metadata.getComposition(), metadata.getCommunicationId());
+        var join = pending.get(key);
+        if (join == null) {
+            join = new Pending(services, now);
+            pending.put(key, join);
+        }
+        if (join.inputs[index] != null) {
+            throw new ClaraException("duplicated input from " + sender);
+        }
+        join.inputs[index] = msg;
+        join.received++;
+        join.bytes += size;
+        bytes += size;
+
+        if (join.received < join.inputs.length) {
+            return null;
+        }
+        pending.remove(key);
+        bytes -= join.bytes;
+        return new Join(List.of(join.inputs), now - join.startTime);
+    }
+
+    /**
+     * Removes the joins that were not completed before the timeout.
+     *
+     * @param now the current time, in nanoseconds
+     * @return the expired joins
+     */
+    synchronized List<Expired> expire(long now) {
+        var expired = new ArrayList<Expired>();
+        var iter = pending.values().iterator();
+        while (iter.hasNext()) {
+            var join = iter.next();
+            if (now - join.startTime < timeout) {
+                break;
+            }
+            iter.remove();
+            bytes -= join.bytes;
+
+            var inputs = new ArrayList<Message>();
+            var missing = new ArrayList<String>();
+            for (int i = 0; i < join.inputs.length; i++) {
+                if (join.inputs[i] == null) {
+                    missing.add(join.services[i]);
+                } else {
+                    inputs.add(join.inputs[i]);
+                }
+            }
+            expired.add(new Expired(inputs.get(0), inputs, missing));
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the number of incomplete joins.
+     */
+    synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Returns the total size of the pending messages.
+     */
+    synchronized long bytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys;
+
+import org.jlab.clara.msg.core.Message;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The running services of this JVM that can receive requests directly,
+ * without publishing the requests through the proxy.
+ * <p>
+ * A service is registered once it is ready to process requests,
+ * and it is removed before it is stopped.
+ */
+final class LocalServices {
+
+    private static final Map<String, Service>
+            services = new ConcurrentHashMap<>(); // nocheck: ConstantName
+
+    private LocalServices() {
+    }
+
+    static void register(String name, Service service) {
+        services.put(name, service);
+    }
+
+    static void remove(String name, Service service) {
+        services.remove(name, service);
+    }
+
+    /**
+     * Passes the request directly to the queue of the given local service.
+     * It never blocks.
+     *
+     * @param name the canonical name of the receiver service
+     * @param msg the request
+     * @return true if the request was queued, false if the service is not
+     *         running in this JVM or its queue is full
+     */
+    static boolean dispatch(String name, Message msg) {
+        var service = services.get(name);
+        return service != null && service.tryDispatch(msg);
+    }
+}
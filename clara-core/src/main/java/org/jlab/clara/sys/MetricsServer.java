@@ -0,0 +1,86 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jlab.clara.base.error.ClaraException;
+import org.jlab.clara.sys.report.DpeReport;
+import org.jlab.clara.sys.report.OpenMetricsWriter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the metrics of the DPE over HTTP, for Prometheus and other
+ * OpenMetrics scrapers.
+ * <p>
+ * The metrics are published at {@code http://<host>:<port>/metrics}.
+ * They are written from the live reports of the DPE on every request, so they
+ * do not depend on the report period, and a scrape does not publish any
+ * message to the proxy.
+ * <p>
+ * Requests are handled by a single thread, which reuses the same buffers for
+ * every scrape.
+ */
+class MetricsServer {
+
+    static final String PATH = "/metrics";
+
+    private final HttpServer server;
+    private final DpeReport report;
+    private final OpenMetricsWriter writer = new OpenMetricsWriter();
+
+    MetricsServer(int port, DpeReport report) throws ClaraException {
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException e) {
+            throw new ClaraException("could not start metrics server on port " + port, e);
+        }
+        this.report = report;
+        this.server.createContext(PATH, this::handle);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body;
+            try {
+                body = writer.write(report).toString().getBytes(StandardCharsets.UTF_8);
+            } catch (RuntimeException e) {
+                Logging.error("could not write metrics: %s", e.getMessage());
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", OpenMetricsWriter.CONTENT_TYPE);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+}
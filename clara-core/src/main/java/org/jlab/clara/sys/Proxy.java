@@ -18,10 +18,10 @@ class Proxy {
     private final Context context;
     private final org.jlab.clara.msg.sys.Proxy proxy;
 
-    Proxy(ClaraComponent dpe) throws ClaraException {
+    Proxy(ClaraComponent dpe, int hwm) throws ClaraException {
         try {
             context = Context.newContext();
-            proxy = new org.jlab.clara.msg.sys.Proxy(context, dpe.getProxyAddress());
+            proxy = new org.jlab.clara.msg.sys.Proxy(context, dpe.getProxyAddress(), hwm);
             if (EnvUtils.get("CLARA_PROXY_DEBUG").isPresent()) {
                 proxy.verbose();
             }
@@ -0,0 +1,19 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys;
+
+/**
+ * Specifies what a service does with a new request when its queue of pending
+ * requests is full.
+ */
+public enum QueuePolicy {
+    /** The subscription waits until there is space in the queue. */
+    BLOCK,
+
+    /** The request is dropped and an error report is published. */
+    REJECT
+}
@@ -0,0 +1,140 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys;
+
+import org.jlab.clara.base.core.ClaraBase;
+import org.jlab.clara.base.core.ClaraComponent;
+import org.jlab.clara.base.core.ClaraConstants;
+import org.jlab.clara.base.error.ClaraException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Groups the registration requests of the services of a DPE.
+ * <p>
+ * When many services are deployed or removed at the same time, their
+ * registrations are sent to the front-end with a single request.
+ * The first service sends a request with its own registration, and all
+ * services that arrive while the request is in flight are sent together in
+ * the next request. A single registration is never delayed.
+ * <p>
+ * Only Java front-ends support batch requests. Registrations for other
+ * front-ends are sent one by one.
+ */
+class RegistrationBatcher {
+
+    private final ClaraBase base;
+    private final Batch registrations = new Batch(true);
+    private final Batch removals = new Batch(false);
+
+    private record Pending(ClaraComponent component, CompletableFuture<Void> result) { }
+
+    private final class Batch {
+
+        private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final boolean register;
+
+        Batch(boolean register) {
+            this.register = register;
+        }
+
+        void submit(Collection<ClaraComponent> components) throws ClaraException {
+            var pending = new ArrayList<Pending>();
+            for (var comp : components) {
+                var p = new Pending(comp, new CompletableFuture<>());
+                pending.add(p);
+                queue.add(p);
+            }
+            lock.lock();
+            try {
+                if (pending.stream().anyMatch(p -> !p.result().isDone())) {
+                    flush();
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                for (var p : pending) {
+                    p.result().join();
+                }
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof ClaraException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        private void flush() {
+            var batch = new ArrayList<Pending>();
+            for (var p = queue.poll(); p != null; p = queue.poll()) {
+                batch.add(p);
+            }
+            if (isBatchSupported()) {
+                send(batch);
+            } else {
+                batch.forEach(p -> send(List.of(p)));
+            }
+        }
+
+        private void send(List<Pending> batch) {
+            var components = batch.stream().map(Pending::component).toList();
+            try {
+                if (register) {
+                    base.register(components);
+                } else {
+                    base.removeRegistration(components);
+                }
+                batch.forEach(p -> p.result().complete(null));
+            } catch (ClaraException | RuntimeException e) {
+                batch.forEach(p -> p.result().completeExceptionally(e));
+            }
+        }
+    }
+
+    RegistrationBatcher(ClaraBase base) {
+        this.base = base;
+    }
+
+    /**
+     * Registers the component with the front-end.
+     * Blocks until the request with the registration is completed.
+     */
+    void register(ClaraComponent component) throws ClaraException {
+        registrations.submit(List.of(component));
+    }
+
+    /**
+     * Removes the registration of the component from the front-end.
+     * Blocks until the request with the registration is completed.
+     */
+    void remove(ClaraComponent component) throws ClaraException {
+        removals.submit(List.of(component));
+    }
+
+    /**
+     * Removes the registration of all the components from the front-end.
+     * Blocks until the requests with the registrations are completed.
+     */
+    void remove(Collection<ClaraComponent> components) throws ClaraException {
+        if (!components.isEmpty()) {
+            removals.submit(components);
+        }
+    }
+
+    private boolean isBatchSupported() {
+        return base.getFrontEnd().getDpeLang().equals(ClaraConstants.JAVA_LANG);
+    }
+}
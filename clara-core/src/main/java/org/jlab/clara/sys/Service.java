@@ -10,19 +10,16 @@ import org.jlab.clara.base.core.ClaraComponent;
 import org.jlab.clara.base.core.ClaraConstants;
 import org.jlab.clara.base.error.ClaraException;
 import org.jlab.clara.engine.Engine;
-import org.jlab.clara.msg.core.ActorUtils;
 import org.jlab.clara.msg.core.Callback;
 import org.jlab.clara.msg.core.Message;
 import org.jlab.clara.msg.core.Subscription;
+import org.jlab.clara.msg.core.Topic;
 import org.jlab.clara.msg.data.MetaDataProto.MetaData;
 import org.jlab.clara.sys.RequestParser.RequestException;
 import org.jlab.clara.sys.report.ServiceReport;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.util.Arrays;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A Clara service listening and executing requests.
@@ -31,19 +28,31 @@ import java.util.concurrent.TimeUnit;
  * where N is user specified value (usually equals to the number of cores).
  * A thread pool contains threads to run each object within.
  * Number of threads in the pool is equal to the size of the object pool.
- * Thread pool is fixed size, however object pool is capable of expanding.
+ * Received requests are stored in a bounded queue, and the engines take
+ * the next pending request as soon as they are free
+ * (see {@link ServiceDispatcher}).
+ * If the deploy options set bounds for the pool, the object pool contains as
+ * many engines as the maximum bound, but only the active ones have a thread.
+ * If the DPE has a shared {@link EngineScheduler}, the engines run in the
+ * threads of the scheduler instead, and the service creates no threads.
+ * <p>
+ * By default all the engines of the pool share a single instance of the user
+ * engine. If requested by the deploy options, every engine of the pool gets
+ * its own instance, which is only used by the thread of that engine.
  */
 class Service extends AbstractActor {
 
     private final String name;
-    private final Engine userEngine;
+    private final Engine[] userEngines;
 
-    private final ExecutorService executionPool;
     private final ServiceEngine[] enginePool;
+    private final ServiceDispatcher dispatcher;
     private final ServiceSysConfig sysConfig;
     private final ServiceReport sysReport;
+    private final RegistrationBatcher registrations;
 
     private Subscription subscription;
+    private final AtomicBoolean isRegistered = new AtomicBoolean();
 
     /**
      * Constructor of a service.
@@ -58,31 +67,43 @@ class Service extends AbstractActor {
     Service(ClaraComponent comp,
             ClaraComponent frontEnd,
             ConnectionPools connectionPools,
+            EngineScheduler scheduler,
+            RegistrationBatcher registrations,
+            ServiceOptions options,
             String session) throws ClaraException {
         super(comp, frontEnd);
 
         name = comp.getCanonicalName();
+        this.registrations = registrations;
         sysConfig = new ServiceSysConfig(name, comp.getInitialState());
 
         // Dynamic loading of the Clara engine class
         // Note: using system class loader
         var cl = new EngineLoader(ClassLoader.getSystemClassLoader());
-        userEngine = cl.load(comp.getEngineClass());
-
-        sysReport = new ServiceReport(comp, userEngine, session);
+        var poolSize = comp.getSubscriptionPoolSize();
+        var maxPoolSize = options.maxPoolSize(poolSize);
+        userEngines = new Engine[options.enginePerSlot() ? maxPoolSize : 1];
+        for (int i = 0; i < userEngines.length; i++) {
+            userEngines[i] = cl.load(comp.getEngineClass());
+        }
 
-        // Creating thread pool
-        executionPool = ActorUtils.newThreadPool(comp.getSubscriptionPoolSize(), name);
+        sysReport = new ServiceReport(comp, userEngines[0], session, options.enginePerSlot());
 
         // Creating service object pool
-        enginePool = new ServiceEngine[comp.getSubscriptionPoolSize()];
+        enginePool = new ServiceEngine[maxPoolSize];
 
         // Fill the object pool
         var engineActor = new ServiceActor(comp, frontEnd, connectionPools);
-        for (int i = 0; i < comp.getSubscriptionPoolSize(); i++) {
-            enginePool[i] = new ServiceEngine(userEngine, engineActor, sysConfig, sysReport);
+        for (int i = 0; i < maxPoolSize; i++) {
+            var userEngine = userEngines[i % userEngines.length];
+            enginePool[i] = new ServiceEngine(userEngine, engineActor, sysConfig, sysReport,
+                                              options.localDispatch());
         }
 
+        // Creating the queue of requests and the thread pool
+        dispatcher = new ServiceDispatcher(name, enginePool, poolSize, scheduler,
+                                           options, sysReport);
+
         // Register with the shared memory
         SharedMemory.addReceiver(name);
     }
@@ -104,25 +125,33 @@ class Service extends AbstractActor {
         } catch (WrappedException e) {
             throw e.getCause();
         }
+        dispatcher.start();
 
         // subscribe and register
         var topic = base.getMe().getTopic();
         var callback = new ServiceCallBack();
         var description = base.getDescription();
         subscription = startRegisteredSubscription(topic, callback, description);
+        isRegistered.set(true);
+
+        // receive requests from local services
+        LocalServices.register(name, this);
     }
 
 
     @Override
     void end() {
+        LocalServices.remove(name, this);
         stopSubscription();
         destroyEngines();
+        SharedMemory.removeReceiver(name);
     }
 
 
     @Override
     void startMsg() {
-        Logging.info("started service = %s  pool_size = %d", name, base.getPoolSize());
+        Logging.info("started service = %s  pool_size = %d  queue_size = %d",
+                     name, base.getPoolSize(), dispatcher.queueCapacity());
     }
 
 
@@ -132,43 +161,33 @@ class Service extends AbstractActor {
     }
 
 
-    private void configure(final Message msg) throws Exception {
-        while (true) {
-            for (final ServiceEngine engine : enginePool) {
-                if (engine.tryAcquire()) {
-                    executionPool.submit(() -> {
-                        try {
-                            engine.configure(msg);
-                        } catch (Exception e) {
-                            printUnhandledException(e);
-                        } finally {
-                            engine.release();
-                        }
-                    });
-                    return;
-                }
-            }
+    private void dispatch(Message msg) throws ClaraException {
+        if (!dispatcher.submit(msg)) {
+            sysReport.incrementRejectedCount();
+            var error = String.format("request rejected: queue is full (size = %d)",
+                                      dispatcher.queueCapacity());
+            Logging.error("service = %s: %s", name, error);
+            enginePool[0].reject(msg, error);
         }
     }
 
 
-    private void execute(final Message msg) {
-        while (true) {
-            for (final ServiceEngine engine : enginePool) {
-                if (engine.tryAcquire()) {
-                    executionPool.submit(() -> {
-                        try {
-                            engine.execute(msg);
-                        } catch (Exception e) {
-                            printUnhandledException(e);
-                        } finally {
-                            engine.release();
-                        }
-                    });
-                    return;
-                }
-            }
-        }
+    /**
+     * Queues a request sent directly by a service running in the same JVM.
+     *
+     * @return false if the queue is full, and the request must be published
+     *         through the proxy
+     */
+    boolean tryDispatch(Message msg) {
+        return dispatcher.offer(msg);
+    }
+
+
+    /**
+     * Reports the joins of inputs that were not completed before the timeout.
+     */
+    void expireJoins() {
+        dispatcher.expireJoins();
     }
 
 
@@ -199,13 +218,24 @@ class Service extends AbstractActor {
     }
 
 
-    private void printUnhandledException(Exception e) {
-        var errors = new StringWriter();
-        errors.write(name + ": Clara error: ");
-        e.printStackTrace(new PrintWriter(errors));
-        System.err.println(errors);
+    /*
+     * Concurrent registrations of many services are grouped in a single
+     * request to the front-end.
+     */
+    @Override
+    void register(Topic topic, String description) throws ClaraException {
+        registrations.register(base.getMe());
     }
 
+    /**
+     * Marks the registration of this service as removed, so it is not
+     * removed again when the service is stopped.
+     *
+     * @return true if the service was registered
+     */
+    boolean releaseRegistration() {
+        return isRegistered.getAndSet(false);
+    }
 
     void setFrontEnd(ClaraComponent frontEnd) {
         base.setFrontEnd(frontEnd);
@@ -221,8 +251,8 @@ class Service extends AbstractActor {
             base.stopListening(subscription);
             base.stopCallbacks();
             try {
-                if (shouldDeregister()) {
-                    base.removeRegistration(base.getMe().getTopic());
+                if (isRegistered.getAndSet(false) && shouldDeregister()) {
+                    registrations.remove(base.getMe());
                 }
             } catch (ClaraException e) {
                 Logging.error("service = %s: %s", name, e.getMessage());
@@ -232,24 +262,10 @@ class Service extends AbstractActor {
 
 
     private void destroyEngines() {
-        destroyPool();
+        dispatcher.stop();
         Arrays.stream(enginePool).parallel().forEach(ServiceEngine::stop);
-        userEngine.destroy();
-    }
-
-
-    private void destroyPool() {
-        executionPool.shutdown();
-        try {
-            if (!executionPool.awaitTermination(10, TimeUnit.SECONDS)) {
-                executionPool.shutdownNow();
-                if (!executionPool.awaitTermination(10, TimeUnit.SECONDS)) {
-                    Logging.error("service = %s: execution pool did not terminate", name);
-                }
-            }
-        } catch (InterruptedException ie) {
-            executionPool.shutdownNow();
-            Thread.currentThread().interrupt();
+        for (var userEngine : userEngines) {
+            userEngine.destroy();
         }
     }
 
@@ -262,10 +278,8 @@ class Service extends AbstractActor {
                 var metadata = msg.getMetaData();
                 if (!metadata.hasAction()) {
                     setup(msg);
-                } else if (metadata.getAction().equals(MetaData.ControlAction.CONFIGURE)) {
-                    configure(msg);
                 } else {
-                    execute(msg);
+                    dispatch(msg);
                 }
             } catch (Exception e) {
                 e.printStackTrace();
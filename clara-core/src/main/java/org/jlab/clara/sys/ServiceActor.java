@@ -12,6 +12,7 @@ import org.jlab.clara.base.error.ClaraException;
 import org.jlab.clara.msg.core.ConnectionPool;
 import org.jlab.clara.msg.core.Message;
 import org.jlab.clara.msg.errors.ClaraMsgException;
+import org.jlab.clara.msg.errors.SendTimeoutException;
 import org.jlab.clara.msg.net.ProxyAddress;
 
 class ServiceActor {
@@ -40,12 +41,37 @@ class ServiceActor {
         sendMsg(connectionPools.mainPool, address, msg);
     }
 
+    /**
+     * Sends the message, unless the send queue to the given proxy is full
+     * and the send timeout expires.
+     *
+     * @return true if the message was sent, false if it could not be queued
+     */
+    public boolean trySend(ProxyAddress address, Message msg) throws ClaraException {
+        try {
+            sendMsg(connectionPools.mainPool, address, msg);
+            return true;
+        } catch (ClaraException e) {
+            if (e.getCause() instanceof SendTimeoutException) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
     public void sendUncheck(Message msg) throws ClaraException {
-        sendMsg(connectionPools.uncheckedPool, getLocal(), msg);
+        sendUncheck(getLocal(), msg);
     }
 
     public void sendUncheck(ProxyAddress address, Message msg) throws ClaraException {
-        sendMsg(connectionPools.uncheckedPool, address, msg);
+        try {
+            sendMsg(connectionPools.uncheckedPool, address, msg);
+        } catch (ClaraException e) {
+            // monitoring data is dropped if the send queue is full
+            if (!(e.getCause() instanceof SendTimeoutException)) {
+                throw e;
+            }
+        }
     }
 
     private void sendMsg(ConnectionPool pool, ProxyAddress address, Message msg)
@@ -0,0 +1,595 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys;
+
+import org.jlab.clara.base.core.ClaraConstants;
+import org.jlab.clara.base.error.ClaraException;
+import org.jlab.clara.msg.core.ActorUtils;
+import org.jlab.clara.msg.core.Message;
+import org.jlab.clara.msg.data.MetaDataProto.MetaData;
+import org.jlab.clara.sys.report.ServiceReport;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches the requests received by a service to its engines.
+ * <p>
+ * The requests are stored in a bounded queue of pending requests.
+ * Every {@link ServiceEngine} runs in its own thread, taking the next request
+ * from the queue as soon as it is free.
+ * When the queue is full, new requests are handled according to the
+ * {@link QueuePolicy} of the service.
+ * <p>
+ * If batches are enabled, each engine takes as many execute requests as
+ * the batch size, waiting at most the batch time for the batch to be filled,
+ * and executes all of them as a group.
+ * <p>
+ * If the service joins the results of other services (it is an AND element
+ * of the composition), the results are kept in a {@link JoinBuffer} when
+ * taken from the queue, until all of them have been received. Then all the
+ * inputs are executed as a group.
+ * <p>
+ * The pool of engines is elastic when its bounds are set. A new engine thread
+ * is started when a request arrives while all the engines are busy and the
+ * queue is at least half full. An engine thread
+ * stops when it has been idle for some time, unless the pool is at its
+ * minimum size.
+ * <p>
+ * If the DPE has a shared {@link EngineScheduler}, the service does not create
+ * threads. When there are pending requests, the idle engines of the service
+ * submit turns to the scheduler, and every turn executes up to the weight of
+ * the service in requests before yielding the thread to other services.
+ * The number of concurrent turns is bounded by the number of engines.
+ * A turn waiting to fill a batch lets the scheduler run the turns of other
+ * services in a spare thread.
+ * <p>
+ * If every engine has its own instance of the user engine, a configure
+ * request is executed by the engine that takes it, and then queued for the
+ * other engines, which apply all their queued configurations lazily,
+ * in their own threads, before their next request.
+ * The configuration is queued before the reply is sent, so any request
+ * received after the reply runs with the new configuration, although idle
+ * engines may not have applied it yet when the reply is sent.
+ */
+class ServiceDispatcher {
+
+    private static final long POLL_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String name;
+    private final ServiceEngine[] engines;
+    private final QueuePolicy policy;
+    private final ServiceReport report;
+
+    private final int batchSize;
+    private final long batchTime;
+    private final boolean enginePerSlot;
+
+    private final BlockingQueue<Request> queue;
+    private final ExecutorService workers;
+    private final EngineScheduler scheduler;
+    private final int weight;
+
+    // the engines without a running thread, guarded by this
+    private final Deque<ServiceEngine> idleEngines = new ArrayDeque<>();
+    private final int initialPoolSize;
+    private final int minPoolSize;
+    private final int growThreshold;
+    private final AtomicInteger busyEngines = new AtomicInteger();
+    private volatile int poolSize;
+
+    private final CompositionCache compositions;
+    private final JoinBuffer joins;
+
+    // the services joined by every composition, to not look up the routing
+    // table of every request in the shared cache
+    private final Map<String, String[]> joinInputs = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    /*
+     * The inputs of a completed join are kept in the request of the last
+     * received input.
+     */
+    private record Request(Message msg, List<Message> joined, long enqueueTime) {
+
+        Request(Message msg, long enqueueTime) {
+            this(msg, null, enqueueTime);
+        }
+    }
+
+
+    /**
+     * Creates a dispatcher for the given engines.
+     * The number of engines is the maximum size of the pool.
+     */
+    ServiceDispatcher(String name,
+                      ServiceEngine[] engines,
+                      int poolSize,
+                      EngineScheduler scheduler,
+                      ServiceOptions options,
+                      ServiceReport report) {
+        this.name = name;
+        this.engines = engines;
+        this.policy = options.queuePolicy();
+        this.report = report;
+        this.batchSize = options.batchSize();
+        this.batchTime = TimeUnit.MICROSECONDS.toNanos(options.batchTime());
+        this.enginePerSlot = options.enginePerSlot();
+        this.queue = new ArrayBlockingQueue<>(options.queueSize(poolSize));
+        this.growThreshold = Math.max(options.queueSize(poolSize) / 2, 1);
+        this.workers = scheduler == null
+                ? ActorUtils.newPlatformThreadPool(engines.length, name)
+                : null;
+        this.scheduler = scheduler;
+        this.weight = options.weight();
+        this.initialPoolSize = poolSize;
+        this.minPoolSize = options.minPoolSize(poolSize);
+        this.compositions = CompositionCache.getDefault();
+        this.joins = new JoinBuffer(options.joinMemory(),
+                                    options.joinTimeout(),
+                                    TimeUnit.MILLISECONDS);
+        this.report.setLoadGauges(busyEngines::get, queue::size);
+    }
+
+    synchronized void start() {
+        running = true;
+        for (int i = engines.length - 1; i >= 0; i--) {
+            idleEngines.push(engines[i]);
+        }
+        if (scheduler != null) {
+            // all engines can run turns, so the pool never grows
+            poolSize = engines.length;
+        } else {
+            for (int i = 0; i < initialPoolSize; i++) {
+                startEngine();
+            }
+        }
+        report.setActivePoolSize(poolSize);
+    }
+
+    /**
+     * Adds the request to the queue of pending requests.
+     *
+     * @param msg the request
+     * @return true if the request was queued, false if it was rejected
+     * @throws ClaraException if interrupted while waiting for space in the queue
+     */
+    boolean submit(Message msg) throws ClaraException {
+        checkLoad();
+        var request = new Request(msg, System.nanoTime());
+        if (policy == QueuePolicy.REJECT) {
+            return scheduleIf(queue.offer(request));
+        }
+        try {
+            queue.put(request);
+            return scheduleIf(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClaraException("interrupted while waiting for a free engine");
+        }
+    }
+
+    /**
+     * Adds the request to the queue of pending requests, if there is space.
+     * It never blocks, regardless of the queue policy.
+     *
+     * @param msg the request
+     * @return true if the request was queued, false if the queue is full
+     *         or the dispatcher is stopped
+     */
+    boolean offer(Message msg) {
+        checkLoad();
+        return running && scheduleIf(queue.offer(new Request(msg, System.nanoTime())));
+    }
+
+    /**
+     * Stops the workers once all pending requests have been processed.
+     */
+    void stop() {
+        running = false;
+        if (scheduler != null) {
+            awaitTurns();
+            queue.clear();
+            return;
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+                if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                    Logging.error("service = %s: execution pool did not terminate", name);
+                }
+            }
+        } catch (InterruptedException ie) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        queue.clear();
+    }
+
+    int queueSize() {
+        return queue.size();
+    }
+
+    int queueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    private boolean scheduleIf(boolean queued) {
+        if (queued) {
+            schedule();
+        }
+        return queued;
+    }
+
+    /*
+     * Submits a turn of an idle engine to the shared scheduler,
+     * if there are pending requests.
+     */
+    private void schedule() {
+        if (scheduler == null) {
+            return;
+        }
+        ServiceEngine engine;
+        synchronized (this) {
+            if (queue.isEmpty() || idleEngines.isEmpty()) {
+                return;
+            }
+            engine = idleEngines.pop();
+        }
+        scheduler.execute(() -> runTurn(engine));
+    }
+
+    /*
+     * The engine is returned before scheduling the next turn, so requests
+     * queued while all engines were busy are not missed.
+     */
+    private void runTurn(ServiceEngine engine) {
+        var batch = new ArrayList<Message>(batchSize);
+        try {
+            for (int i = 0; i < weight; i++) {
+                var request = take(0);
+                if (request == null) {
+                    break;
+                }
+                handle(engine, request, batch);
+            }
+        } catch (InterruptedException e) {
+            if (!batch.isEmpty()) {
+                executeBatch(engine, batch);
+            }
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                idleEngines.push(engine);
+                notifyAll();
+            }
+            schedule();
+        }
+    }
+
+    private synchronized void awaitTurns() {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try {
+            while (idleEngines.size() < engines.length) {
+                var timeout = deadline - System.nanoTime();
+                if (timeout <= 0) {
+                    Logging.error("service = %s: engines did not finish their turns", name);
+                    return;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Adds an engine when all engines are busy and the queue is filling up.
+     * The occupancy is relative to the capacity of the queue, which is fixed,
+     * so the pool can keep growing while the load stays high.
+     */
+    private void checkLoad() {
+        var size = poolSize;
+        if (size < engines.length && busyEngines.get() >= size && queue.size() >= growThreshold) {
+            grow();
+        }
+    }
+
+    private synchronized void grow() {
+        if (!running || idleEngines.isEmpty() || busyEngines.get() < poolSize) {
+            return;
+        }
+        startEngine();
+        report.setActivePoolSize(poolSize);
+        Logging.info("service = %s: pool size increased to %d (queued requests = %d)",
+                     name, poolSize, queue.size());
+    }
+
+    /*
+     * Returns true if the engine must stop.
+     */
+    private synchronized boolean shrink(ServiceEngine engine) {
+        if (!running || poolSize <= minPoolSize) {
+            return false;
+        }
+        poolSize--;
+        idleEngines.push(engine);
+        report.setActivePoolSize(poolSize);
+        Logging.info("service = %s: pool size decreased to %d (idle engine)", name, poolSize);
+        return true;
+    }
+
+    private void startEngine() {
+        var engine = idleEngines.pop();
+        poolSize++;
+        workers.submit(() -> process(engine));
+    }
+
+    private void process(ServiceEngine engine) {
+        var batch = new ArrayList<Message>(batchSize);
+        var idleSince = System.nanoTime();
+        while (running || !queue.isEmpty()) {
+            try {
+                var request = take(POLL_TIMEOUT_NANOS);
+                if (request == null) {
+                    if (System.nanoTime() - idleSince > IDLE_TIMEOUT_NANOS && shrink(engine)) {
+                        return;
+                    }
+                    continue;
+                }
+                handle(engine, request, batch);
+                idleSince = System.nanoTime();
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) {
+                    executeBatch(engine, batch);
+                }
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void handle(ServiceEngine engine, Request request, List<Message> batch)
+            throws InterruptedException {
+        busyEngines.incrementAndGet();
+        try {
+            if (enginePerSlot) {
+                engine.applyPendingConfigs();
+            }
+            if (batchSize > 1 && isBatchable(request) && engine.supportsGroups()) {
+                var next = fillBatch(request, batch);
+                executeBatch(engine, batch);
+                if (next != null) {
+                    execute(engine, next);
+                }
+            } else {
+                execute(engine, request);
+            }
+        } finally {
+            busyEngines.decrementAndGet();
+        }
+    }
+
+    /*
+     * The inputs of incomplete joins are not returned,
+     * but they count for the timeout.
+     */
+    private Request take(long timeout) throws InterruptedException {
+        var deadline = System.nanoTime() + timeout;
+        while (true) {
+            expireJoins();
+            var request = queue.poll(Math.max(deadline - System.nanoTime(), 0),
+                                     TimeUnit.NANOSECONDS);
+            if (request == null) {
+                return null;
+            }
+            var waitTime = System.nanoTime() - request.enqueueTime();
+            report.addQueueTime(TimeUnit.NANOSECONDS.toMicros(waitTime));
+            request = join(request);
+            if (request != null) {
+                return request;
+            }
+        }
+    }
+
+    /*
+     * Returns null if the request is an input of a join that is not complete.
+     * Invalid compositions are reported by the engine.
+     */
+    private Request join(Request request) {
+        if (!isBatchable(request)) {
+            return request;
+        }
+        var msg = request.msg();
+        var metadata = msg.getMetaData();
+        String[] inputs;
+        try {
+            inputs = joinInputs(metadata.getComposition());
+        } catch (ClaraException e) {
+            return request;
+        }
+        if (inputs.length == 0 || !Arrays.asList(inputs).contains(metadata.getAuthor())) {
+            return request;
+        }
+        try {
+            var join = joins.add(msg, inputs, System.nanoTime());
+            if (join == null) {
+                return null;
+            }
+            report.addJoin(TimeUnit.NANOSECONDS.toMicros(join.waitTime()));
+            return new Request(msg, join.inputs(), request.enqueueTime());
+        } catch (ClaraException e) {
+            report.incrementRejectedCount();
+            discardData(msg);
+            reject(msg, e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+     * The cache is small, since a service is part of a few compositions.
+     * It is just cleared if it grows too much.
+     */
+    private String[] joinInputs(String composition) throws ClaraException {
+        var inputs = joinInputs.get(composition);
+        if (inputs == null) {
+            inputs = compositions.get(composition, name).joinInputs();
+            if (joinInputs.size() >= CompositionCache.DEFAULT_CAPACITY) {
+                joinInputs.clear();
+            }
+            joinInputs.put(composition, inputs);
+        }
+        return inputs;
+    }
+
+    /**
+     * Reports the joins that were not completed before the timeout.
+     * The engine threads check the joins every time they poll the queue,
+     * but the turns of the shared scheduler only run when there are pending
+     * requests, so this is also called periodically by the DPE.
+     */
+    void expireJoins() {
+        for (var join : joins.expire(System.nanoTime())) {
+            report.incrementJoinTimeouts();
+            join.inputs().forEach(this::discardData);
+            reject(join.input(), "join timeout: missing inputs from " + join.missing());
+        }
+    }
+
+    /*
+     * Removes the data of a dropped input from the shared memory.
+     */
+    private void discardData(Message msg) {
+        var metadata = msg.getMetaData();
+        if (metadata.getDataType().equals(ClaraConstants.SHARED_MEMORY_KEY)) {
+            SharedMemory.getEngineData(name, metadata.getSender(), metadata.getCommunicationId());
+        }
+    }
+
+    private void reject(Message msg, String reason) {
+        Logging.error("service = %s: %s", name, reason);
+        try {
+            engines[0].reject(msg, reason);
+        } catch (Exception e) {
+            printUnhandledException(e);
+        }
+    }
+
+    /**
+     * Adds execute requests to the batch until it is full or the batch time
+     * has passed. Returns the request that stopped the batch, if it cannot
+     * be part of the batch.
+     */
+    private Request fillBatch(Request first, List<Message> batch) throws InterruptedException {
+        batch.add(first.msg());
+        var deadline = first.enqueueTime() + batchTime;
+        while (batch.size() < batchSize) {
+            var next = takeBatched(Math.max(deadline - System.nanoTime(), 0));
+            if (next == null) {
+                break;
+            }
+            if (!isBatchable(next)) {
+                return next;
+            }
+            batch.add(next.msg());
+        }
+        return null;
+    }
+
+    /*
+     * The turns of the shared scheduler run in the threads of a fork-join
+     * pool, so the wait for the next request of a batch is reported to the
+     * pool, which can start a spare thread to run the turns of other services.
+     */
+    private Request takeBatched(long timeout) throws InterruptedException {
+        if (scheduler == null || timeout == 0) {
+            return take(timeout);
+        }
+        var blocker = new ForkJoinPool.ManagedBlocker() {
+            private Request request;
+            private boolean done;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                request = take(timeout);
+                done = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return done;
+            }
+        };
+        ForkJoinPool.managedBlock(blocker);
+        return blocker.request;
+    }
+
+    private static boolean isBatchable(Request request) {
+        var metadata = request.msg().getMetaData();
+        return request.joined() == null
+                && metadata.getAction() == MetaData.ControlAction.EXECUTE
+                && !metadata.hasReplyTo();
+    }
+
+    private void execute(ServiceEngine engine, Request request) {
+        try {
+            var msg = request.msg();
+            var metadata = msg.getMetaData();
+            if (request.joined() != null) {
+                engine.executeJoin(request.joined());
+            } else if (metadata.getAction() == MetaData.ControlAction.CONFIGURE) {
+                engine.configure(msg, config -> {
+                    if (enginePerSlot) {
+                        for (var other : engines) {
+                            if (other != engine) {
+                                other.configureLater(config);
+                            }
+                        }
+                    }
+                });
+            } else {
+                engine.execute(msg);
+            }
+        } catch (Exception e) {
+            printUnhandledException(e);
+        }
+    }
+
+    private void executeBatch(ServiceEngine engine, List<Message> batch) {
+        try {
+            engine.executeGroup(batch);
+        } catch (Exception e) {
+            printUnhandledException(e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private void printUnhandledException(Exception e) {
+        var errors = new StringWriter();
+        errors.write(name + ": Clara error: ");
+        e.printStackTrace(new PrintWriter(errors));
+        System.err.println(errors);
+    }
+}
@@ -6,6 +6,7 @@
 
 package org.jlab.clara.sys;
 
+import org.jlab.clara.base.core.BufferPool;
 import org.jlab.clara.base.core.ClaraComponent;
 import org.jlab.clara.base.core.ClaraConstants;
 import org.jlab.clara.base.core.DataUtil;
@@ -17,17 +18,24 @@ import org.jlab.clara.engine.EngineStatus;
 import org.jlab.clara.msg.core.Message;
 import org.jlab.clara.msg.core.Topic;
 import org.jlab.clara.msg.data.MetaDataProto.MetaData;
-import org.jlab.clara.sys.ccc.CompositionCompiler;
-import org.jlab.clara.sys.ccc.ServiceState;
+import org.jlab.clara.sys.ccc.Destination;
+import org.jlab.clara.sys.ccc.RoutingTable;
 import org.jlab.clara.sys.report.ServiceReport;
 
-import java.util.Set;
-import java.util.concurrent.Semaphore;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * A Service engine.
  * Every engine process a request in its own thread.
+ * Each engine is confined to a single worker thread of the service
+ * (see {@link ServiceDispatcher}).
  *
  * @author gurjyan
  * @version 4.x
@@ -40,28 +48,38 @@ class ServiceEngine {
     private final ServiceSysConfig sysConfig;
     private final ServiceReport sysReport;
 
-    private final Semaphore semaphore = new Semaphore(1);
-
-    private final CompositionCompiler compiler;
+    private final CompositionCache compositions;
 
     private final ClaraComponent monitorFe;
 
-    // Already recorded (previous) composition
-    private String prevComposition = ClaraConstants.UNDEFINED;
+    // The routing table of the previous composition
+    private RoutingTable routing;
 
     // The last execution time
     private long executionTime;
 
+    // Set to false when the engine returns null for a group of inputs
+    private boolean supportsGroups = true;
+
+    // Pass results directly to services running in the same JVM
+    private final boolean localDispatch;
+
+    // The configurations received by other engines of the pool,
+    // when every engine has its own instance of the user engine
+    private final Queue<EngineData> pendingConfigs = new ConcurrentLinkedQueue<>();
+
 
     ServiceEngine(Engine userEngine,
                   ServiceActor base,
                   ServiceSysConfig config,
-                  ServiceReport report) {
+                  ServiceReport report,
+                  boolean localDispatch) {
         this.base = base;
         this.engine = userEngine;
         this.sysConfig = config;
         this.sysReport = report;
-        this.compiler = new CompositionCompiler(base.getName());
+        this.localDispatch = localDispatch;
+        this.compositions = CompositionCache.getDefault();
 
         this.monitorFe = FrontEnd.getMonitorFrontEnd()
                                  .map(dpe -> ClaraComponent.dpe(dpe.canonicalName()))
@@ -76,9 +94,20 @@ class ServiceEngine {
         // nothing
     }
 
-    public void configure(Message message) throws ClaraException {
+    /**
+     * Configures the engine.
+     * <p>
+     * If the configuration data could be read, it is passed to the given
+     * action before the response is sent, so the other engines of the pool
+     * can queue it before the requester sees the reply.
+     *
+     * @param message the configure request
+     * @param propagate the action that receives the configuration data
+     */
+    public void configure(Message message, Consumer<EngineData> propagate)
+            throws ClaraException {
 
-        EngineData inputData;
+        EngineData inputData = null;
         EngineData outData = null;
         try {
             inputData = getEngineData(message);
@@ -96,6 +125,79 @@ class ServiceEngine {
             resetClock();
         }
 
+        if (inputData != null) {
+            propagate.accept(inputData);
+        }
+
+        String replyTo = getReplyTo(message);
+        if (replyTo != null) {
+            sendResponse(outData, replyTo);
+        } else {
+            reportProblem(outData);
+        }
+    }
+
+
+    /**
+     * Queues the configuration received by another engine of the pool,
+     * to be applied by the thread of this engine before its next request.
+     * Only used when every engine has its own instance of the user engine.
+     */
+    void configureLater(EngineData inputData) {
+        pendingConfigs.add(inputData);
+    }
+
+
+    /**
+     * Configures the engine with the pending configurations, if any,
+     * in the order they were received.
+     * The results are not reported, since the requests were already answered
+     * by the engines that received them.
+     */
+    void applyPendingConfigs() {
+        var inputData = pendingConfigs.poll();
+        while (inputData != null) {
+            applyConfig(inputData);
+            inputData = pendingConfigs.poll();
+        }
+    }
+
+
+    private void applyConfig(EngineData inputData) {
+        try {
+            var outData = configureEngine(inputData);
+            if (outData.getStatus() == EngineStatus.ERROR) {
+                Logging.error("service = %s: could not configure engine instance: %s",
+                              base.getName(), outData.getDescription());
+            }
+        } catch (Exception e) {
+            Logging.error("UNHANDLED EXCEPTION ON SERVICE CONFIGURATION: %s", base.getName());
+            e.printStackTrace();
+        } finally {
+            resetClock();
+        }
+    }
+
+
+    /**
+     * Reports that the given request could not be processed.
+     * This can be called from any thread, concurrently with the processing
+     * of other requests by this engine.
+     */
+    void reject(Message message, String reason) throws ClaraException {
+        var outData = new EngineData();
+        outData.setData(EngineDataType.STRING.mimeType(), reason);
+        outData.setDescription(reason);
+        outData.setStatus(EngineStatus.ERROR, 1);
+
+        var inMeta = message.getMetaData();
+        var outMeta = DataUtil.getMetadata(outData);
+        outMeta.setAuthor(base.getName());
+        outMeta.setVersion(engine.getVersion());
+        outMeta.setCommunicationId(inMeta.getCommunicationId());
+        outMeta.setComposition(inMeta.getComposition());
+        outMeta.setAction(inMeta.getAction());
+
         String replyTo = getReplyTo(message);
         if (replyTo != null) {
             sendResponse(outData, replyTo);
@@ -127,11 +229,162 @@ class ServiceEngine {
         sysConfig.addRequest();
         sysReport.incrementRequestCount();
 
-        EngineData inData = null;
+        execute(message, null);
+    }
+
+
+    /**
+     * Executes the engine with a batch of requests.
+     * <p>
+     * All the inputs are passed to {@link Engine#executeGroup} in a single call,
+     * and the returned result is routed once, as the result of the first
+     * request of the batch. The other requests are finished with a status
+     * report, without data, so the next services do not receive the same
+     * result many times.
+     * If the engine does not support groups (it returns null),
+     * every input is executed with {@link Engine#execute} instead,
+     * and the following batches will not be grouped.
+     */
+    public void executeGroup(List<Message> messages) throws ClaraException {
+        if (messages.size() == 1 || !supportsGroups) {
+            for (var message : messages) {
+                execute(message);
+            }
+            return;
+        }
+
+        sysReport.addBatch(messages.size());
+
+        var inputs = new ArrayList<EngineData>(messages.size());
+        var outData = executeInputs(messages, inputs);
+
+        if (outData == null) {
+            Logging.error("service = %s: engine does not support groups, disabling batches",
+                          base.getName());
+            supportsGroups = false;
+            for (int i = 0; i < messages.size(); i++) {
+                execute(messages.get(i), inputs.get(i));
+            }
+            return;
+        }
+
+        sendOutput(messages.get(0), inputs.isEmpty() ? null : inputs.get(0), outData);
+        for (int i = 1; i < messages.size(); i++) {
+            sendStatus(messages.get(i), outData);
+        }
+    }
+
+
+    /*
+     * Finishes another request of a batch with the status of the group result.
+     * The status has no data, it is only a reply or a report for the request.
+     */
+    private void sendStatus(Message message, EngineData outData) throws ClaraException {
+        var status = new EngineData();
+        status.setData(EngineDataType.STRING.mimeType(), ClaraConstants.DONE);
+        status.setDescription(outData.getDescription());
+        status.setStatus(outData.getStatus(), outData.getStatusSeverity());
+
+        var inMeta = message.getMetaData();
+        var outMeta = DataUtil.getMetadata(status);
+        outMeta.setAuthor(base.getName());
+        outMeta.setVersion(engine.getVersion());
+        outMeta.setCommunicationId(inMeta.getCommunicationId());
+        outMeta.setComposition(inMeta.getComposition());
+        outMeta.setExecutionTime(outData.getExecutionTime());
+        outMeta.setAction(inMeta.getAction());
+
+        String replyTo = getReplyTo(message);
+        if (replyTo != null) {
+            sendResponse(status, replyTo);
+            return;
+        }
+
+        reportProblem(status);
+        if (status.getStatus() == EngineStatus.ERROR) {
+            sysReport.incrementFailureCount();
+            return;
+        }
+
+        if (sysConfig.isDoneRequest()) {
+            reportDone(status);
+            sysConfig.resetDoneRequestCount();
+        }
+    }
+
+
+    /**
+     * Executes the engine with the inputs of a join.
+     * <p>
+     * All the inputs are passed to {@link Engine#executeGroup} in a single call,
+     * and the returned result is routed as the result of the first input.
+     * If the engine does not support groups, the join is reported as an error.
+     */
+    public void executeJoin(List<Message> messages) throws ClaraException {
+        var inputs = new ArrayList<EngineData>(messages.size());
+        var outData = executeInputs(messages, inputs);
+
+        if (outData == null) {
+            sysReport.incrementFailureCount();
+            reject(messages.get(0), "engine does not support groups, inputs cannot be joined");
+            return;
+        }
+
+        sendOutput(messages.get(0), inputs.isEmpty() ? null : inputs.get(0), outData);
+    }
+
+
+    /*
+     * Returns null if the engine does not support groups.
+     */
+    private EngineData executeInputs(List<Message> messages, List<EngineData> inputs) {
+        var message = messages.get(0);
+
         EngineData outData = null;
 
         try {
-            inData = getEngineData(message);
+            for (var msg : messages) {
+                sysConfig.addRequest();
+                sysReport.incrementRequestCount();
+                inputs.add(getEngineData(msg));
+            }
+            parseComposition(inputs.get(0));
+            outData = executeEngineGroup(inputs);
+            if (outData != null) {
+                sysReport.addExecutionTime(executionTime);
+            }
+        } catch (Exception e) {
+            Logging.error("UNHANDLED EXCEPTION ON SERVICE EXECUTION: %s", base.getName());
+            e.printStackTrace();
+            outData = DataUtil.buildErrorData("unhandled exception", 4, e);
+        } catch (Throwable e) {
+            Logging.error("UNHANDLED CRITICAL ERROR ON SERVICE EXECUTION: %s", base.getName());
+            e.printStackTrace();
+            outData = DataUtil.buildErrorData("unhandled critical error", 4, e);
+        } finally {
+            if (outData != null) {
+                updateMetadata(message.getMetaData(), DataUtil.getMetadata(outData));
+            }
+            resetClock();
+        }
+
+        return outData;
+    }
+
+
+    boolean supportsGroups() {
+        return supportsGroups;
+    }
+
+
+    private void execute(Message message, EngineData input) throws ClaraException {
+        EngineData inData = input;
+        EngineData outData = null;
+
+        try {
+            if (inData == null) {
+                inData = getEngineData(message);
+            }
             parseComposition(inData);
             outData = executeEngine(inData);
             sysReport.addExecutionTime(executionTime);
@@ -148,6 +401,12 @@ class ServiceEngine {
             resetClock();
         }
 
+        sendOutput(message, inData, outData);
+    }
+
+
+    private void sendOutput(Message message, EngineData inData, EngineData outData)
+            throws ClaraException {
         String replyTo = getReplyTo(message);
         if (replyTo != null) {
             sendResponse(outData, replyTo);
@@ -177,19 +436,14 @@ class ServiceEngine {
 
     private void parseComposition(EngineData inData) throws ClaraException {
         var currentComposition = inData.getComposition();
-        if (!currentComposition.equals(prevComposition)) {
-            compiler.compile(currentComposition);
-            prevComposition = currentComposition;
+        if (routing == null || !currentComposition.equals(routing.composition())) {
+            routing = compositions.get(currentComposition, base.getName());
         }
     }
 
-    private Set<String> getLinks(EngineData inData, EngineData outData) {
-        var ownerState = new ServiceState(outData.getEngineName(),
-                                          outData.getExecutionState());
-        var inputState = new ServiceState(inData.getEngineName(),
-                                          inData.getExecutionState());
-
-        return compiler.getLinks(ownerState, inputState);
+    private Destination[] getLinks(EngineData inData, EngineData outData) {
+        return routing.links(outData.getEngineName(), outData.getExecutionState(),
+                             inData.getEngineName(), inData.getExecutionState());
     }
 
     private EngineData executeEngine(EngineData inData)
@@ -215,6 +469,29 @@ class ServiceEngine {
         return outData;
     }
 
+    private EngineData executeEngineGroup(List<EngineData> inputs)
+            throws ClaraException {
+        var startTime = startClock();
+
+        var outData = engine.executeGroup(new LinkedHashSet<>(inputs));
+
+        stopClock(startTime);
+
+        if (outData == null) {
+            return null;
+        }
+        if (outData.getData() == null) {
+            if (outData.getStatus() == EngineStatus.ERROR) {
+                outData.setData(EngineDataType.STRING.mimeType(),
+                                ClaraConstants.UNDEFINED);
+            } else {
+                throw new ClaraException("empty engine result");
+            }
+        }
+
+        return outData;
+    }
+
     private void updateMetadata(MetaData.Builder inMeta, MetaData.Builder outMeta) {
         outMeta.setAuthor(base.getName());
         outMeta.setVersion(engine.getVersion());
@@ -243,15 +520,101 @@ class ServiceEngine {
     }
 
     private void sendResponse(EngineData outData, String replyTo) throws ClaraException {
-        base.send(putEngineData(outData, replyTo));
+        var buffers = new ArrayList<ByteBuffer>(1);
+        try {
+            var msg = putEngineData(outData, replyTo, Topic.wrap(replyTo), buffers);
+            base.send(msg);
+        } finally {
+            releaseBuffers(buffers);
+        }
     }
 
-    private void sendResult(EngineData outData, Set<String> outLinks) throws ClaraException {
-        for (var service : outLinks) {
-            var dpe = ClaraComponent.dpe(service);
-            var msg = putEngineData(outData, service);
-            base.send(dpe.getProxyAddress(), msg);
+    /*
+     * The destinations are resolved when the composition is compiled,
+     * so no names are parsed here. The connection to the proxy is still
+     * borrowed from the pool for every message, since connections cannot be
+     * shared between the engine threads.
+     */
+    private void sendResult(EngineData outData, Destination[] outLinks) throws ClaraException {
+        var buffers = new ArrayList<ByteBuffer>(1);
+        for (var link : outLinks) {
+            var service = link.name();
+            boolean sent;
+            try {
+                var msg = putEngineData(outData, service, link.topic(), buffers);
+                if (localDispatch && sendLocal(service, msg, buffers)) {
+                    continue;
+                }
+                sysReport.incrementRemoteHops();
+                var startTime = System.nanoTime();
+                sent = base.trySend(link.address(), msg);
+                var sendTime = System.nanoTime() - startTime;
+                sysReport.addSendBlockedTime(TimeUnit.NANOSECONDS.toMicros(sendTime));
+            } finally {
+                releaseBuffers(buffers);
+            }
+            if (!sent) {
+                reportDropped(outData, service);
+            }
+        }
+    }
+
+    /**
+     * Passes the result directly to the queue of the receiver, when it runs
+     * in this JVM. The data is already in the shared memory.
+     * If the receiver queue is full the message is published as usual,
+     * to not block this engine.
+     * <p>
+     * The receiver may read the message after the engine has moved on,
+     * so serialized data is copied out of the pooled buffers, which are
+     * released by the caller.
+     */
+    private boolean sendLocal(String service, Message msg, List<ByteBuffer> buffers) {
+        msg.getMetaData().setSender(base.getName());
+        var localMsg = buffers.isEmpty()
+                ? msg
+                : new Message(msg.getTopic(), msg.getMetaData(), msg.getData());
+        if (LocalServices.dispatch(service, localMsg)) {
+            sysReport.incrementLocalHops();
+            return true;
         }
+        return false;
+    }
+
+    private void reportDropped(EngineData outData, String service) throws ClaraException {
+        sysReport.incrementDroppedCount();
+
+        var reason = "could not send result to " + service + ": send queue is full";
+        var errorData = new EngineData();
+        errorData.setData(EngineDataType.STRING.mimeType(), reason);
+        errorData.setDescription(reason);
+        errorData.setStatus(EngineStatus.ERROR, 1);
+
+        var outMeta = DataUtil.getMetadata(outData);
+        var errorMeta = DataUtil.getMetadata(errorData);
+        errorMeta.setAuthor(base.getName());
+        errorMeta.setVersion(engine.getVersion());
+        errorMeta.setCommunicationId(outMeta.getCommunicationId());
+        errorMeta.setComposition(outMeta.getComposition());
+
+        Logging.error("service = %s: %s", base.getName(), reason);
+        reportProblem(errorData);
+    }
+
+    private static ByteBuffer borrowBuffer(int size, List<ByteBuffer> buffers) {
+        var buffer = BufferPool.getDefault().acquire(size);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    /*
+     * The message data is copied into the 0MQ frame when it is published,
+     * or into a new message when it is dispatched locally,
+     * so the buffers can be reused as soon as the message was sent.
+     */
+    private static void releaseBuffers(List<ByteBuffer> buffers) {
+        buffers.forEach(BufferPool.getDefault()::release);
+        buffers.clear();
     }
 
     private void reportDone(EngineData data) throws ClaraException {
@@ -303,19 +666,29 @@ class ServiceEngine {
             sysReport.incrementShrmReads();
             var sender = metadata.getSender();
             var id = metadata.getCommunicationId();
-            return SharedMemory.getEngineData(base.getName(), sender, id);
+            var data = SharedMemory.getEngineData(base.getName(), sender, id);
+            if (data == null) {
+                throw new ClaraException("missing shared memory data from " + sender
+                                         + " (id = " + id + ")");
+            }
+            return data;
         } else {
             sysReport.addBytesReceived(message.getDataSize());
-            return DataUtil.deserialize(message, engine.getInputDataTypes());
+            var startTime = System.nanoTime();
+            var data = DataUtil.deserialize(message, engine.getInputDataTypes());
+            var deserializeTime = System.nanoTime() - startTime;
+            sysReport.addDeserializeTime(TimeUnit.NANOSECONDS.toMicros(deserializeTime));
+            return data;
         }
     }
 
-    private Message putEngineData(EngineData data, String receiver)
+    private Message putEngineData(EngineData data,
+                                  String receiver,
+                                  Topic topic,
+                                  List<ByteBuffer> buffers)
             throws ClaraException {
-        var topic = Topic.wrap(receiver);
-        if (SharedMemory.containsReceiver(receiver)) {
-            var id = data.getCommunicationId();
-            SharedMemory.putEngineData(receiver, base.getName(), id, data);
+        var id = data.getCommunicationId();
+        if (SharedMemory.putEngineData(receiver, base.getName(), id, data)) {
             sysReport.incrementShrmWrites();
 
             var metadata = MetaData.newBuilder();
@@ -327,7 +700,11 @@ class ServiceEngine {
 
             return new Message(topic, metadata, ClaraConstants.SHARED_MEMORY_KEY.getBytes());
         } else {
-            var msg = DataUtil.serialize(topic, data, engine.getOutputDataTypes());
+            var startTime = System.nanoTime();
+            var msg = DataUtil.serialize(topic, data, engine.getOutputDataTypes(),
+                                         size -> borrowBuffer(size, buffers));
+            var serializeTime = System.nanoTime() - startTime;
+            sysReport.addSerializeTime(TimeUnit.NANOSECONDS.toMicros(serializeTime));
             sysReport.addBytesSent(msg.getDataSize());
             return msg;
         }
@@ -355,12 +732,4 @@ class ServiceEngine {
         executionTime = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - watch);
     }
 
-
-    public boolean tryAcquire() {
-        return semaphore.tryAcquire();
-    }
-
-    public void release() {
-        semaphore.release();
-    }
 }
@@ -0,0 +1,160 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys;
+
+import org.jlab.clara.base.core.ClaraConstants;
+import org.jlab.clara.sys.RequestParser.RequestException;
+
+/**
+ * The settings used to run a service.
+ * <p>
+ * The DPE provides the default values,
+ * which can be overridden by the options of the deploy request.
+ *
+ * @param queueSize the maximum number of pending requests
+ *                  (zero or negative to use the pool size of the service)
+ * @param queuePolicy what to do with new requests when the queue is full
+ * @param localDispatch if true, results for services running in the same JVM
+ *                      are passed directly to their queues
+ * @param batchSize the maximum number of requests executed as a group
+ *                  (one to disable batches)
+ * @param batchTime the maximum time to wait for a batch to be filled,
+ *                  in microseconds
+ * @param joinMemory the maximum size of the inputs waiting to be joined,
+ *                   in bytes
+ * @param joinTimeout the maximum time to wait for all the inputs of a join,
+ *                    in milliseconds
+ * @param enginePerSlot if true, every slot of the pool uses its own
+ *                      instance of the engine
+ * @param minPoolSize the minimum number of engines when the pool shrinks
+ *                    (zero or negative to use the pool size of the service)
+ * @param maxPoolSize the maximum number of engines when the pool grows
+ *                    (zero or negative to use the pool size of the service)
+ * @param weight the maximum number of requests executed by an engine in every
+ *               turn, when the engines run in the shared scheduler of the DPE
+ */
+record ServiceOptions(int queueSize,
+                      QueuePolicy queuePolicy,
+                      boolean localDispatch,
+                      int batchSize,
+                      long batchTime,
+                      long joinMemory,
+                      long joinTimeout,
+                      boolean enginePerSlot,
+                      int minPoolSize,
+                      int maxPoolSize,
+                      int weight) {
+
+    static final long DEFAULT_JOIN_MEMORY = 64 * 1024 * 1024;
+    static final long DEFAULT_JOIN_TIMEOUT = 30_000;
+    static final int DEFAULT_WEIGHT = 8;
+
+    ServiceOptions(int queueSize, QueuePolicy queuePolicy, boolean localDispatch) {
+        this(queueSize, queuePolicy, localDispatch, 1, 0,
+             DEFAULT_JOIN_MEMORY, DEFAULT_JOIN_TIMEOUT, false, 0, 0, DEFAULT_WEIGHT);
+    }
+
+    int queueSize(int poolSize) {
+        return queueSize > 0 ? queueSize : poolSize;
+    }
+
+    /**
+     * Returns the minimum size of an elastic pool.
+     * It is never larger than the pool size of the service.
+     */
+    int minPoolSize(int poolSize) {
+        return minPoolSize > 0 ? Math.min(minPoolSize, poolSize) : poolSize;
+    }
+
+    /**
+     * Returns the maximum size of an elastic pool.
+     * It is never smaller than the pool size of the service.
+     */
+    int maxPoolSize(int poolSize) {
+        return maxPoolSize > 0 ? Math.max(maxPoolSize, poolSize) : poolSize;
+    }
+
+
+    /**
+     * Returns a copy of these settings overridden by the given deploy options.
+     *
+     * @param options the options of the deploy request,
+     *                as a list of {@code key=value} pairs
+     * @throws RequestException if the options are not valid
+     */
+    ServiceOptions withDeployOptions(String options) throws RequestException {
+        if (options.isEmpty()) {
+            return this;
+        }
+
+        var newBatchSize = batchSize;
+        var newBatchTime = batchTime;
+        var newJoinMemory = joinMemory;
+        var newJoinTimeout = joinTimeout;
+        var newEnginePerSlot = enginePerSlot;
+        var newMinPoolSize = minPoolSize;
+        var newMaxPoolSize = maxPoolSize;
+        var newWeight = weight;
+
+        for (var option : options.split(ClaraConstants.OPTIONS_SEP)) {
+            var pair = option.split("=", 2);
+            if (pair.length != 2) {
+                throw new RequestException("Invalid service option: " + option);
+            }
+            var key = pair[0];
+            var value = pair[1];
+            switch (key) {
+                case ClaraConstants.SERVICE_BATCH_SIZE ->
+                    newBatchSize = (int) parseNumber(key, value, Integer.MAX_VALUE);
+                case ClaraConstants.SERVICE_BATCH_TIME ->
+                    newBatchTime = parseNumber(key, value, Long.MAX_VALUE);
+                case ClaraConstants.SERVICE_JOIN_MEMORY ->
+                    newJoinMemory = parseNumber(key, value, Long.MAX_VALUE);
+                case ClaraConstants.SERVICE_JOIN_TIMEOUT ->
+                    newJoinTimeout = parseNumber(key, value, Long.MAX_VALUE);
+                case ClaraConstants.SERVICE_ENGINE_PER_SLOT ->
+                    newEnginePerSlot = parseBoolean(key, value);
+                case ClaraConstants.SERVICE_MIN_POOL_SIZE ->
+                    newMinPoolSize = (int) parseNumber(key, value, Integer.MAX_VALUE);
+                case ClaraConstants.SERVICE_MAX_POOL_SIZE ->
+                    newMaxPoolSize = (int) parseNumber(key, value, Integer.MAX_VALUE);
+                case ClaraConstants.SERVICE_WEIGHT ->
+                    newWeight = (int) parseNumber(key, value, Integer.MAX_VALUE);
+                default -> throw new RequestException("Unknown service option: " + key);
+            }
+        }
+
+        return new ServiceOptions(queueSize, queuePolicy, localDispatch,
+                                  newBatchSize, newBatchTime,
+                                  newJoinMemory, newJoinTimeout,
+                                  newEnginePerSlot,
+                                  newMinPoolSize, newMaxPoolSize,
+                                  Math.max(newWeight, 1));
+    }
+
+    private static boolean parseBoolean(String key, String value) throws RequestException {
+        return switch (value) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new RequestException(
+                    "Invalid value for service option " + key + ": " + value);
+        };
+    }
+
+    private static long parseNumber(String key, String value, long max)
+            throws RequestException {
+        try {
+            var number = Long.parseLong(value);
+            if (number < 0 || number > max) {
+                throw new NumberFormatException();
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new RequestException("Invalid value for service option " + key + ": " + value);
+        }
+    }
+}
@@ -8,47 +8,156 @@ package org.jlab.clara.sys;
 
 import org.jlab.clara.engine.EngineData;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-final class SharedMemory {
+/**
+ * Passes engine data between services running in the same DPE without
+ * serialization.
+ * <p>
+ * Every receiver service has its own bounded store of pending inputs,
+ * identified by the sender service and the communication ID.
+ * When the store of a receiver is full, new data is not accepted and the
+ * sender must serialize the data and send it through the proxy.
+ * <p>
+ * Entries that are never consumed (because the request was dropped or
+ * failed before reaching the receiver) are evicted once they are older than
+ * the maximum age, by a periodic sweep of the store. A full store is not
+ * swept when new data arrives, so senders are never slowed down by a backlog.
+ * The store of a receiver is discarded when the service is removed.
+ */
+public final class SharedMemory {
 
-    /*
-      key = <receiver-service>
-      value = map where:
-          key = <sender-service>:<communication-id>,
-          value = EngineData object
-    */
-    private static final Map<String, Map<String, EngineData>>
+    static final int DEFAULT_CAPACITY = 1000;
+    static final long DEFAULT_MAX_AGE = TimeUnit.MINUTES.toNanos(5);
+
+    private static final long SWEEP_PERIOD = TimeUnit.SECONDS.toNanos(10);
+
+    private static final Map<String, Inbox>
             sharedData = new ConcurrentHashMap<>(); // nocheck: ConstantName
 
+    private static final AtomicLong evicted = new AtomicLong(); // nocheck: ConstantName
+    private static final AtomicLong rejected = new AtomicLong(); // nocheck: ConstantName
+
+    private record Key(String sender, int id) { }
+
+    private record Entry(EngineData data, long size, long timestamp) { }
+
+    private static final class Inbox {
+
+        private final int capacity;
+        private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+        Inbox(int capacity) {
+            this.capacity = capacity;
+        }
+
+        boolean put(Key key, EngineData data) {
+            if (!reserve()) {
+                return false;
+            }
+            var entry = new Entry(data, estimateSize(data), System.nanoTime());
+            bytes.addAndGet(entry.size());
+            release(entries.put(key, entry));
+            return true;
+        }
+
+        private boolean reserve() {
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        EngineData remove(Key key) {
+            var entry = entries.remove(key);
+            release(entry);
+            return entry != null ? entry.data() : null;
+        }
+
+        int evict(long maxAge) {
+            var now = System.nanoTime();
+            var count = 0;
+            lastSweep.set(now);
+            for (var e : entries.entrySet()) {
+                var entry = e.getValue();
+                if (now - entry.timestamp() >= maxAge && entries.remove(e.getKey(), entry)) {
+                    release(entry);
+                    count++;
+                }
+            }
+            evicted.addAndGet(count);
+            return count;
+        }
+
+        /*
+         * Only one of the senders sweeps the store in every period.
+         */
+        void sweep() {
+            var now = System.nanoTime();
+            var last = lastSweep.get();
+            if (now - last > SWEEP_PERIOD && lastSweep.compareAndSet(last, now)) {
+                evict(DEFAULT_MAX_AGE);
+            }
+        }
+
+        private void release(Entry entry) {
+            if (entry != null) {
+                size.decrementAndGet();
+                bytes.addAndGet(-entry.size());
+            }
+        }
+    }
+
     private SharedMemory() {
     }
 
-    static void putEngineData(String receiver, String sender, int id, EngineData data) {
-        Map<String, EngineData> inputs = sharedData.get(receiver);
-        if (inputs != null) {
-            var key = sender + ":" + id;
-            inputs.put(key, data);
-        } else {
-            throw new IllegalStateException("Receiver not registered: " + receiver);
+    /**
+     * Stores the data for the given receiver, if there is space.
+     *
+     * @return true if the data was stored, false if the receiver is not
+     *         registered or its store is full
+     */
+    static boolean putEngineData(String receiver, String sender, int id, EngineData data) {
+        var inbox = sharedData.get(receiver);
+        if (inbox == null) {
+            return false;
         }
+        inbox.sweep();
+        if (!inbox.put(new Key(sender, id), data)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
     }
 
-
+    /**
+     * Takes the data stored for the given receiver.
+     *
+     * @return the stored data, or null if there is no data (or it was evicted)
+     */
     static EngineData getEngineData(String receiver, String sender, int id) {
-        Map<String, EngineData> inputs = sharedData.get(receiver);
-        EngineData data = null;
-        if (inputs != null) {
-            var key = sender + ":" + id;
-            data = inputs.get(key);
-            inputs.remove(key);
+        var inbox = sharedData.get(receiver);
+        if (inbox == null) {
+            return null;
         }
-        return data;
+        return inbox.remove(new Key(sender, id));
     }
 
     static void addReceiver(String receiver) {
-        sharedData.put(receiver, new ConcurrentHashMap<>());
+        addReceiver(receiver, DEFAULT_CAPACITY);
+    }
+
+    static void addReceiver(String receiver, int capacity) {
+        sharedData.put(receiver, new Inbox(capacity));
     }
 
     static void removeReceiver(String receiver) {
@@ -58,4 +167,76 @@ final class SharedMemory {
     static boolean containsReceiver(String receiver) {
         return sharedData.containsKey(receiver);
     }
+
+    /**
+     * Evicts the entries of all receivers that are older than the given age.
+     *
+     * @return the number of evicted entries
+     */
+    static int evictExpired(long maxAge) {
+        var count = 0;
+        for (var inbox : sharedData.values()) {
+            count += inbox.evict(maxAge);
+        }
+        return count;
+    }
+
+    static void evictExpired() {
+        evictExpired(DEFAULT_MAX_AGE);
+    }
+
+    /*
+     * The size of the data is known only for the binary and string types.
+     * Other objects are not counted.
+     */
+    private static long estimateSize(EngineData data) {
+        var object = data.getData();
+        if (object instanceof ByteBuffer buffer) {
+            return buffer.remaining();
+        }
+        if (object instanceof byte[] array) {
+            return array.length;
+        }
+        if (object instanceof String string) {
+            return string.length();
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of entries that are waiting to be consumed.
+     *
+     * @return the number of stored entries of all receivers
+     */
+    public static long getEntries() {
+        return sharedData.values().stream().mapToLong(i -> i.size.get()).sum();
+    }
+
+    /**
+     * Returns the estimated size of the data that is waiting to be consumed.
+     * Only binary and string data are counted.
+     *
+     * @return the number of stored bytes of all receivers
+     */
+    public static long getBytes() {
+        return sharedData.values().stream().mapToLong(i -> i.bytes.get()).sum();
+    }
+
+    /**
+     * Returns the number of entries evicted because they were never consumed.
+     *
+     * @return the number of evicted entries
+     */
+    public static long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * Returns the number of entries not stored because the receiver was full.
+     *
+     * @return the number of rejected entries
+     */
+    public static long getRejected() {
+        return rejected.get();
+    }
 }
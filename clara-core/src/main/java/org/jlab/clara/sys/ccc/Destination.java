@@ -0,0 +1,34 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.ccc;
+
+import org.jlab.clara.base.core.ClaraComponent;
+import org.jlab.clara.msg.core.Topic;
+import org.jlab.clara.msg.net.ProxyAddress;
+
+/**
+ * A service linked to the output of another service, with its topic and the
+ * address of its DPE already resolved.
+ * The destinations are resolved when the composition is compiled, so the
+ * results can be sent without parsing the canonical names for every event.
+ *
+ * @param name the canonical name of the service
+ * @param topic the topic to send messages to the service
+ * @param address the address of the proxy of the service DPE
+ */
+public record Destination(String name, Topic topic, ProxyAddress address) {
+
+    /**
+     * Resolves the topic and proxy address of the given service.
+     *
+     * @param name the canonical name of the service
+     * @return the resolved destination
+     */
+    public static Destination of(String name) {
+        return new Destination(name, Topic.wrap(name), ClaraComponent.dpe(name).getProxyAddress());
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.ccc;
+
+import org.jlab.clara.base.core.ClaraConstants;
+import org.jlab.clara.base.error.ClaraException;
+import org.jlab.clara.sys.ccc.RoutingTable.Branch;
+import org.jlab.clara.sys.ccc.RoutingTable.Guard;
+import org.jlab.clara.sys.ccc.RoutingTable.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles a composition into the routing table of a service.
+ * <p>
+ * The composition is parsed in a single pass, without regular expressions.
+ * The language is the same accepted by {@link CompositionCompiler}:
+ * <pre>
+ * program     := ( statement ';' | conditional )*
+ * conditional := 'if' guard block ( 'elseif' guard block )* ( 'else' block )?
+ * block       := '{' ( statement ';' )* '}'
+ * statement   := element ( '+' element )*
+ * element     := '&amp;'? service ( ',' service )*
+ * guard       := '(' condition ( ( '&amp;&amp;' | '!!' ) condition )* ')'
+ * condition   := service ( '==' | '!=' ) '"' state '"'
+ * </pre>
+ * Blanks are ignored between tokens. The output links of the service in a
+ * statement are the services of the element that follows its first
+ * occurrence in the statement. If that occurrence is an AND element
+ * ({@code &service}), the services of the previous element are inputs that
+ * must be joined before executing the service.
+ */
+final class RoutingCompiler {
+
+    private static final String SYNTAX_ERROR = "Syntax error in the Clara routing program. ";
+
+    private final String code;
+    private final String service;
+    private int pos;
+
+    private final Set<Destination> unconditional = new LinkedHashSet<>();
+    private final List<Branch[]> chains = new ArrayList<>();
+    private final Map<String, Destination> destinations = new HashMap<>();
+    private final Set<String> joinInputs = new LinkedHashSet<>();
+    private boolean relevant;
+
+    private RoutingCompiler(String code, String service) {
+        this.code = code;
+        this.service = service;
+    }
+
+    static RoutingTable compile(String composition, String service) throws ClaraException {
+        return new RoutingCompiler(composition, service).compile();
+    }
+
+    private RoutingTable compile() throws ClaraException {
+        if (code.indexOf(';') < 0) {
+            throw syntaxError("Missing end of statement operator = \";\"");
+        }
+        while (skipBlanks()) {
+            if (accept("if")) {
+                parseConditional();
+            } else if (!accept(';')) {
+                unconditional.addAll(parseStatement());
+                expect(';');
+            }
+        }
+        if (!relevant) {
+            throw new ClaraException("Composition is irrelevant for a service.");
+        }
+        return new RoutingTable(code, service,
+                                unconditional.toArray(new Destination[0]),
+                                chains.toArray(new Branch[0][]),
+                                joinInputs.toArray(new String[0]));
+    }
+
+    private void parseConditional() throws ClaraException {
+        var branches = new ArrayList<Branch>();
+        branches.add(new Branch(parseGuard(), parseBlock()));
+        while (true) {
+            if (accept("elseif")) {
+                branches.add(new Branch(parseGuard(), parseBlock()));
+            } else if (accept("else")) {
+                branches.add(new Branch(null, parseBlock()));
+                break;
+            } else {
+                break;
+            }
+        }
+        // chains that do not route the output of the service are ignored
+        if (branches.stream().anyMatch(b -> b.links().length > 0)) {
+            chains.add(branches.toArray(new Branch[0]));
+        }
+    }
+
+    private Destination[] parseBlock() throws ClaraException {
+        expect('{');
+        var links = new LinkedHashSet<Destination>();
+        while (!accept('}')) {
+            if (!skipBlanks()) {
+                throw syntaxError("Missing closing brace");
+            }
+            if (!accept(';')) {
+                links.addAll(parseStatement());
+                expect(';');
+            }
+        }
+        return links.toArray(new Destination[0]);
+    }
+
+    private List<Destination> parseStatement() throws ClaraException {
+        var elements = new ArrayList<List<String>>();
+        var joins = new ArrayList<Boolean>();
+        do {
+            var isAnd = accept('&');
+            var services = new ArrayList<String>();
+            do {
+                services.add(parseService());
+            } while (accept(','));
+            if (isAnd && (elements.isEmpty() || services.size() > 1)) {
+                throw syntaxError("Malformed routing statement");
+            }
+            elements.add(services);
+            joins.add(isAnd);
+        } while (accept('+'));
+
+        for (int i = 0; i < elements.size(); i++) {
+            if (elements.get(i).contains(service)) {
+                relevant = true;
+                if (joins.get(i)) {
+                    joinInputs.addAll(elements.get(i - 1));
+                }
+                return i + 1 < elements.size() ? resolve(elements.get(i + 1)) : List.of();
+            }
+        }
+        return List.of();
+    }
+
+    private List<Destination> resolve(List<String> services) {
+        var result = new ArrayList<Destination>(services.size());
+        for (var name : services) {
+            result.add(destinations.computeIfAbsent(name, Destination::of));
+        }
+        return result;
+    }
+
+    private Guard parseGuard() throws ClaraException {
+        expect('(');
+        var equal = new ArrayList<State>();
+        var notEqual = new ArrayList<State>();
+        String operator = null;
+        do {
+            var name = parseService();
+            boolean isEqual;
+            if (accept("==")) {
+                isEqual = true;
+            } else if (accept("!=")) {
+                isEqual = false;
+            } else {
+                throw syntaxError("Malformed conditional statement");
+            }
+            var state = new State(name, parseState());
+            (isEqual ? equal : notEqual).add(state);
+            if (skipBlanks() && code.charAt(pos) != ')') {
+                String next = null;
+                if (accept("&&")) {
+                    next = "&&";
+                } else if (accept("!!")) {
+                    next = "!!";
+                }
+                if (next == null || operator != null && !operator.equals(next)) {
+                    throw syntaxError("Malformed conditional statement");
+                }
+                operator = next;
+            }
+        } while (!accept(')'));
+
+        // a single condition is evaluated as an OR condition
+        var none = new State[0];
+        var eq = equal.toArray(none);
+        var ne = notEqual.toArray(none);
+        if ("&&".equals(operator)) {
+            return new Guard(eq, ne, none, none);
+        }
+        return new Guard(none, none, eq, ne);
+    }
+
+    private String parseService() throws ClaraException {
+        skipBlanks();
+        var start = pos;
+        while (pos < code.length() && isNameChar(code.charAt(pos))) {
+            pos++;
+        }
+        var name = code.substring(start, pos);
+        if (!isServiceName(name)) {
+            throw syntaxError("Invalid service name = \"" + name + "\"");
+        }
+        return name;
+    }
+
+    private String parseState() throws ClaraException {
+        expect('"');
+        var start = pos;
+        while (pos < code.length() && isStateChar(code.charAt(pos))) {
+            pos++;
+        }
+        var state = code.substring(start, pos);
+        expect('"');
+        return state;
+    }
+
+    /*
+     * Returns false if the end of the code was reached.
+     */
+    private boolean skipBlanks() {
+        while (pos < code.length() && Character.isWhitespace(code.charAt(pos))) {
+            pos++;
+        }
+        return pos < code.length();
+    }
+
+    private boolean accept(char c) {
+        if (skipBlanks() && code.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean accept(String token) {
+        if (skipBlanks() && code.startsWith(token, pos)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) throws ClaraException {
+        if (!accept(c)) {
+            throw syntaxError("Expected '" + c + "'");
+        }
+    }
+
+    private ClaraException syntaxError(String msg) {
+        return new ClaraException(SYNTAX_ERROR + msg + " at position " + pos);
+    }
+
+    /**
+     * Checks if the name is a service canonical name, without regular
+     * expressions. The format is {@code host[%port]_lang:container:engine},
+     * with the same rules as {@link org.jlab.clara.base.core.ClaraComponent#SERVICE_NAME_REGEX}.
+     */
+    static boolean isServiceName(String name) {
+        var c1 = name.indexOf(':');
+        var c2 = c1 < 0 ? -1 : name.indexOf(':', c1 + 1);
+        if (c2 < 0 || name.indexOf(':', c2 + 1) >= 0) {
+            return false;
+        }
+        return isDpeName(name, c1)
+                && isWord(name, c1 + 1, c2, true)
+                && isWord(name, c2 + 1, name.length(), false);
+    }
+
+    private static boolean isDpeName(String name, int end) {
+        var langSep = name.lastIndexOf(ClaraConstants.LANG_SEP, end);
+        if (langSep < 0) {
+            return false;
+        }
+        var lang = name.substring(langSep + 1, end);
+        if (!lang.equals(ClaraConstants.JAVA_LANG)
+                && !lang.equals(ClaraConstants.CPP_LANG)
+                && !lang.equals(ClaraConstants.PYTHON_LANG)) {
+            return false;
+        }
+        var portSep = name.indexOf(ClaraConstants.PORT_SEP);
+        if (portSep >= 0 && portSep < langSep) {
+            return isIp(name, portSep) && isDigits(name, portSep + 1, langSep);
+        }
+        return isIp(name, langSep);
+    }
+
+    private static boolean isIp(String name, int end) {
+        var groups = 0;
+        var start = 0;
+        for (int i = 0; i <= end; i++) {
+            if (i == end || name.charAt(i) == '.') {
+                var length = i - start;
+                if (length < 1 || length > 3 || !isDigits(name, start, i)) {
+                    return false;
+                }
+                groups++;
+                start = i + 1;
+            }
+        }
+        return groups == 4;
+    }
+
+    private static boolean isDigits(String name, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            var c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWord(String name, int start, int end, boolean allowDash) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            var c = name.charAt(i);
+            if (!isWordChar(c) && !(allowDash && c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWordChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+    }
+
+    private static boolean isNameChar(char c) {
+        return isWordChar(c) || c == '-' || c == '.' || c == ':' || c == '%';
+    }
+
+    private static boolean isStateChar(char c) {
+        return isWordChar(c) || c == '-';
+    }
+}
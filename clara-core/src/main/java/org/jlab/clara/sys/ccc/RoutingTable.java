@@ -0,0 +1,229 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.ccc;
+
+import org.jlab.clara.base.error.ClaraException;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The compiled routing instructions of a composition, relative to a service.
+ * <p>
+ * The table contains the unconditional output links of the service, and the
+ * conditional links grouped in chains of {@code if/elseif/else} branches.
+ * The output links for every possible combination of chosen branches are
+ * precomputed, so getting the links of a result only evaluates the
+ * conditions and returns a shared array, without allocating.
+ * The links are {@link Destination destinations} with the topic and proxy
+ * address of the services already resolved.
+ * <p>
+ * A routing table is immutable once compiled, so it can be shared by all the
+ * engines of the service, and by all the services of the DPE.
+ */
+public final class RoutingTable {
+
+    // the maximum number of precomputed combinations of conditional branches
+    private static final int MAX_PRECOMPUTED = 256;
+
+    private static final Destination[] NO_LINKS = new Destination[0];
+
+    private final String composition;
+    private final String service;
+
+    private final Destination[] unconditional;
+    private final Branch[][] chains;
+    private final Destination[][] precomputed;
+    private final String[] joinInputs;
+
+    record State(String name, String state) {
+
+        boolean matches(String otherName, String otherState) {
+            return name.equals(otherName) && state.equals(otherState);
+        }
+    }
+
+    /*
+     * Evaluates the states as the original compiler did: every set of
+     * states must contain both the owner and the input states (AND
+     * conditions) or any of them (OR conditions).
+     */
+    record Guard(State[] and, State[] andNot, State[] or, State[] orNot) {
+
+        boolean test(String ownerName, String ownerState, String inputName, String inputState) {
+            return (and.length == 0
+                        || contains(and, ownerName, ownerState)
+                            && contains(and, inputName, inputState))
+                && (andNot.length == 0
+                        || !(contains(andNot, ownerName, ownerState)
+                            && contains(andNot, inputName, inputState)))
+                && (or.length == 0
+                        || contains(or, ownerName, ownerState)
+                            || contains(or, inputName, inputState))
+                && (orNot.length == 0
+                        || !(contains(orNot, ownerName, ownerState)
+                            || contains(orNot, inputName, inputState)));
+        }
+
+        private static boolean contains(State[] states, String name, String state) {
+            for (var s : states) {
+                if (s.matches(name, state)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /*
+     * An else branch has no guard.
+     */
+    record Branch(Guard guard, Destination[] links) { }
+
+    RoutingTable(String composition,
+                 String service,
+                 Destination[] unconditional,
+                 Branch[][] chains,
+                 String[] joinInputs) {
+        this.composition = composition;
+        this.service = service;
+        this.unconditional = unconditional;
+        this.chains = chains;
+        this.precomputed = precompute(chains);
+        this.joinInputs = joinInputs;
+    }
+
+    private Destination[][] precompute(Branch[][] chains) {
+        var combinations = 1;
+        for (var chain : chains) {
+            combinations *= chain.length + 1;
+            if (combinations > MAX_PRECOMPUTED) {
+                return null;
+            }
+        }
+        var result = new Destination[combinations][];
+        for (int i = 0; i < combinations; i++) {
+            result[i] = combine(i);
+        }
+        return result;
+    }
+
+    /**
+     * Compiles the composition relative to the given service.
+     *
+     * @param composition the composition to be compiled
+     * @param service the name of the service relative to which to compile
+     * @return the routing table of the service
+     * @throws ClaraException if the composition is invalid,
+     *                        or it does not contain the service
+     */
+    public static RoutingTable compile(String composition, String service)
+            throws ClaraException {
+        return RoutingCompiler.compile(composition, service);
+    }
+
+    /**
+     * Returns the compiled composition.
+     */
+    public String composition() {
+        return composition;
+    }
+
+    /**
+     * Returns the service relative to which the composition was compiled.
+     */
+    public String service() {
+        return service;
+    }
+
+    /**
+     * Returns the services whose results must be joined before executing
+     * the service, when the service is an AND element of the composition
+     * (as {@code S8} in {@code S4,S5+&S8;}).
+     * The returned array is shared and must not be modified.
+     *
+     * @return the names of the joined services, or an empty array if the
+     *         service does not join its inputs
+     */
+    public String[] joinInputs() {
+        return joinInputs;
+    }
+
+    /**
+     * Returns the output links of the service for the given states of the
+     * service result and input.
+     * The returned array is shared and must not be modified.
+     *
+     * @param ownerName the service that produced the result
+     * @param ownerState the state of the result
+     * @param inputName the service that produced the input
+     * @param inputState the state of the input
+     * @return the services that must receive the result
+     */
+    public Destination[] links(String ownerName, String ownerState, String inputName, String inputState) {
+        if (chains.length == 0) {
+            return unconditional;
+        }
+        var index = 0;
+        for (var chain : chains) {
+            index = index * (chain.length + 1)
+                  + select(chain, ownerName, ownerState, inputName, inputState);
+        }
+        return precomputed != null ? precomputed[index] : combine(index);
+    }
+
+    /**
+     * Returns the output links of the service for the given states.
+     *
+     * @param ownerSS the state of the service result
+     * @param inputSS the state of the service input
+     * @return the names of the services that must receive the result
+     */
+    public Set<String> getLinks(ServiceState ownerSS, ServiceState inputSS) {
+        var links = links(ownerSS.getName(), ownerSS.getState(),
+                          inputSS.getName(), inputSS.getState());
+        return Stream.of(links).map(Destination::name).collect(Collectors.toSet());
+    }
+
+    /*
+     * Only the first branch with a passing condition is chosen.
+     * Returns the number of branches if no branch is chosen.
+     */
+    private static int select(Branch[] chain,
+                              String ownerName, String ownerState,
+                              String inputName, String inputState) {
+        for (int i = 0; i < chain.length; i++) {
+            var guard = chain[i].guard();
+            if (guard == null || guard.test(ownerName, ownerState, inputName, inputState)) {
+                return i;
+            }
+        }
+        return chain.length;
+    }
+
+    private Destination[] combine(int index) {
+        var choices = new int[chains.length];
+        for (int i = chains.length - 1; i >= 0; i--) {
+            choices[i] = index % (chains[i].length + 1);
+            index /= chains[i].length + 1;
+        }
+        var links = new LinkedHashSet<Destination>();
+        for (var link : unconditional) {
+            links.add(link);
+        }
+        for (int i = 0; i < chains.length; i++) {
+            if (choices[i] < chains[i].length) {
+                for (var link : chains[i][choices[i]].links()) {
+                    links.add(link);
+                }
+            }
+        }
+        return links.isEmpty() ? NO_LINKS : links.toArray(new Destination[0]);
+    }
+}
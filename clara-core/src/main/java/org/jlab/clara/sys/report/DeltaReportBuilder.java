@@ -0,0 +1,196 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.report;
+
+import org.jlab.clara.base.ClaraUtil;
+import org.jlab.clara.base.LatencyHistogram;
+import org.jlab.clara.base.ServiceRuntimeData.Phase;
+import org.jlab.clara.base.core.ClaraConstants;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a sequence of versioned full and delta reports of a DPE.
+ * <p>
+ * A full report is the usual JSON report of the DPE, with the version of the
+ * report in the runtime data. A delta report contains the system, buffer pool,
+ * shared memory and composition cache stats of the DPE, and only the counters
+ * and batch sizes of the services that changed since the previous report of
+ * the sequence, with their current values.
+ * The latencies are reported in {@code latency_delta}, with only the values
+ * recorded since the previous report, which must be added to the previous
+ * histograms:
+ * <pre>
+ * {"DPEDelta": {"name": "10.1.1.10_java", "snapshot_time": "...",
+ *               "version": 12, "base_version": 11,
+ *               "cpu_usage": 45.2, "memory_usage": 631222786, "load": 2.38,
+ *               "buffer_pool": {...}, "shared_memory": {...},
+ *               "composition_cache": {...},
+ *               "services": {"10.1.1.10_java:cont:S1": {
+ *                   "n_requests": 2000,
+ *                   "latency_delta": {"execute": {"320": 2}}}}}}
+ * </pre>
+ * Subscribers apply a delta over the state built from the report with the
+ * {@code base_version}. If a report is missed, they must wait for the next
+ * full report.
+ * A full report is written when the deployed services change, since the
+ * deltas do not contain registration data.
+ * <p>
+ * The builder is not thread-safe, it must be used by the reporting thread
+ * only.
+ */
+public class DeltaReportBuilder {
+
+    private static final LatencyHistogram EMPTY_HISTOGRAM = new LatencyHistogram();
+
+    private final JsonReportBuilder fullReportBuilder;
+    private final Map<String, Snapshot> lastValues = new HashMap<>();
+    private long version;
+
+    private record Snapshot(long[] counters,
+                            long[] batchSizes,
+                            Map<Phase, LatencyHistogram> latencies) { }
+
+    public DeltaReportBuilder(JsonReportBuilder fullReportBuilder) {
+        this.fullReportBuilder = fullReportBuilder;
+    }
+
+    /**
+     * Writes the next full report.
+     *
+     * @param dpeReport the report of the DPE
+     * @return the JSON report
+     */
+    public String fullReport(DpeReport dpeReport) {
+        version++;
+        lastValues.clear();
+        for (var containerReport : dpeReport.getContainers()) {
+            for (var serviceReport : containerReport.getServices()) {
+                lastValues.put(serviceReport.getName(), snapshot(serviceReport));
+            }
+        }
+        return fullReportBuilder.generateReport(dpeReport, version);
+    }
+
+    /**
+     * Writes the next delta report, or the next full report if services were
+     * deployed or removed since the previous report.
+     *
+     * @param dpeReport the report of the DPE
+     * @return the JSON report, and true if it is a full report
+     */
+    public Result nextReport(DpeReport dpeReport) {
+        if (version == 0 || servicesChanged(dpeReport)) {
+            return new Result(fullReport(dpeReport), true);
+        }
+
+        var writer = new JsonWriter(1024);
+        writer.beginObject();
+        writer.name(ClaraConstants.DELTA_KEY).beginObject();
+        writer.field("name", dpeReport.getHost());
+        writer.field("snapshot_time", ClaraUtil.getCurrentTime());
+        writer.field("version", version + 1);
+        writer.field("base_version", version);
+        JsonReportBuilder.writeSystemStats(writer, dpeReport);
+        JsonReportBuilder.writeBufferPool(writer, dpeReport.getBufferPool());
+        JsonReportBuilder.writeSharedMemory(writer, dpeReport);
+        JsonReportBuilder.writeCompositionCache(writer, dpeReport.getCompositionCache());
+
+        writer.name("services").beginObject();
+        for (var containerReport : dpeReport.getContainers()) {
+            for (var serviceReport : containerReport.getServices()) {
+                writeChanges(writer, serviceReport);
+            }
+        }
+        writer.endObject();
+
+        writer.endObject();
+        writer.endObject();
+
+        version++;
+        return new Result(writer.toString(), false);
+    }
+
+    /**
+     * A report of the sequence.
+     *
+     * @param json the JSON report
+     * @param isFull true if it is a full report, false if it is a delta report
+     */
+    public record Result(String json, boolean isFull) { }
+
+    private boolean servicesChanged(DpeReport dpeReport) {
+        var count = 0;
+        for (var containerReport : dpeReport.getContainers()) {
+            for (var serviceReport : containerReport.getServices()) {
+                if (!lastValues.containsKey(serviceReport.getName())) {
+                    return true;
+                }
+                count++;
+            }
+        }
+        return count != lastValues.size();
+    }
+
+    private void writeChanges(JsonWriter writer, ServiceReport serviceReport) {
+        var current = snapshot(serviceReport);
+        var last = lastValues.put(serviceReport.getName(), current);
+
+        var latencies = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+        for (var phase : Phase.values()) {
+            var histogram = current.latencies().get(phase);
+            if (last != null) {
+                histogram = histogram.minus(last.latencies().get(phase));
+            }
+            if (histogram.count() > 0) {
+                latencies.put(phase, histogram);
+            }
+        }
+        var countersChanged = last == null || !Arrays.equals(current.counters(), last.counters());
+        var batchesChanged = last == null || !Arrays.equals(current.batchSizes(), last.batchSizes());
+        if (!countersChanged && !batchesChanged && latencies.isEmpty()) {
+            return;
+        }
+
+        writer.name(serviceReport.getName()).beginObject();
+        var counters = JsonReportBuilder.SERVICE_COUNTERS;
+        var values = current.counters();
+        for (int i = 0; i < values.length; i++) {
+            if (last == null || values[i] != last.counters()[i]) {
+                writer.field(counters.get(i).key(), values[i]);
+            }
+        }
+        if (batchesChanged) {
+            JsonReportBuilder.writeBatchSizes(writer, current.batchSizes());
+        }
+        JsonReportBuilder.writeLatencies(writer, "latency_delta",
+                phase -> latencies.getOrDefault(phase, EMPTY_HISTOGRAM));
+        writer.endObject();
+    }
+
+    /*
+     * The histograms are copied, so the next delta is computed against the
+     * values that were reported, and no recorded value is lost or repeated.
+     */
+    private static Snapshot snapshot(ServiceReport serviceReport) {
+        var counters = JsonReportBuilder.SERVICE_COUNTERS;
+        var values = new long[counters.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = counters.get(i).value().applyAsLong(serviceReport);
+        }
+        var latencies = new EnumMap<Phase, LatencyHistogram>(Phase.class);
+        for (var phase : Phase.values()) {
+            var histogram = new LatencyHistogram();
+            histogram.add(serviceReport.getLatency(phase));
+            latencies.put(phase, histogram);
+        }
+        return new Snapshot(values, serviceReport.getBatchSizes(), latencies);
+    }
+}
@@ -6,13 +6,17 @@
 
 package org.jlab.clara.sys.report;
 
+import org.jlab.clara.base.core.BufferPool;
 import org.jlab.clara.base.core.ClaraBase;
+import org.jlab.clara.sys.CompositionCache;
+import org.jlab.clara.sys.SharedMemory;
 import org.jlab.clara.util.EnvUtils;
 import org.json.JSONObject;
 
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
 
 /**
  * @author gurjyan
@@ -32,6 +36,8 @@ public class DpeReport extends BaseReport {
 
     private final Map<String, ContainerReport> containers = new ConcurrentHashMap<>();
 
+    private volatile IntSupplier cachedConnections = () -> 0;
+
     public DpeReport(ClaraBase base, String session) {
         super(base.getName(), EnvUtils.userName(), base.getDescription());
 
@@ -85,6 +91,38 @@ public class DpeReport extends BaseReport {
         return SystemStats.getSystemLoad();
     }
 
+    public BufferPool getBufferPool() {
+        return BufferPool.getDefault();
+    }
+
+    public CompositionCache getCompositionCache() {
+        return CompositionCache.getDefault();
+    }
+
+    public long getSharedMemoryEntries() {
+        return SharedMemory.getEntries();
+    }
+
+    public long getSharedMemoryBytes() {
+        return SharedMemory.getBytes();
+    }
+
+    public long getSharedMemoryEvicted() {
+        return SharedMemory.getEvicted();
+    }
+
+    public long getSharedMemoryRejected() {
+        return SharedMemory.getRejected();
+    }
+
+    public int getCachedConnections() {
+        return cachedConnections.getAsInt();
+    }
+
+    public void setCachedConnections(IntSupplier cachedConnections) {
+        this.cachedConnections = cachedConnections;
+    }
+
     public Collection<ContainerReport> getContainers() {
         return containers.values();
     }
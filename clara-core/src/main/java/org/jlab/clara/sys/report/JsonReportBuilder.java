@@ -7,106 +7,265 @@
 package org.jlab.clara.sys.report;
 
 import org.jlab.clara.base.ClaraUtil;
+import org.jlab.clara.base.LatencyHistogram;
+import org.jlab.clara.base.ServiceRuntimeData.Phase;
+import org.jlab.clara.base.core.BufferPool;
 import org.jlab.clara.base.core.ClaraConstants;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.jlab.clara.sys.CompositionCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
+ * Writes the JSON report of a DPE.
+ * <p>
+ * The registration data of the DPE only changes when containers or services
+ * are deployed or removed, so it is written once and cached until the set of
+ * reports changes. The runtime data is written on every call.
+ *
  * @author gurjyan
  * @version 4.x
  */
 public class JsonReportBuilder implements ExternalReport {
 
+    record Counter(String key, ToLongFunction<ServiceReport> value) { }
+
+    /**
+     * The runtime counters of every service.
+     */
+    static final List<Counter> SERVICE_COUNTERS = List.of(
+            new Counter("n_requests", ServiceReport::getRequestCount),
+            new Counter("n_failures", ServiceReport::getFailureCount),
+            new Counter("shm_reads", ServiceReport::getShrmReads),
+            new Counter("shm_writes", ServiceReport::getShrmWrites),
+            new Counter("bytes_recv", ServiceReport::getBytesReceived),
+            new Counter("bytes_sent", ServiceReport::getBytesSent),
+            new Counter("exec_time", ServiceReport::getExecutionTime),
+            new Counter("queue_time", ServiceReport::getQueueTime),
+            new Counter("n_rejected", ServiceReport::getRejectedCount),
+            new Counter("send_blocked_time", ServiceReport::getSendBlockedTime),
+            new Counter("n_dropped", ServiceReport::getDroppedCount),
+            new Counter("n_local_hops", ServiceReport::getLocalHops),
+            new Counter("n_remote_hops", ServiceReport::getRemoteHops),
+            new Counter("n_joins", ServiceReport::getJoinCount),
+            new Counter("join_wait_time", ServiceReport::getJoinWaitTime),
+            new Counter("n_join_timeouts", ServiceReport::getJoinTimeouts),
+            new Counter("active_pool_size", ServiceReport::getActivePoolSize)
+    );
+
+    private List<BaseReport> registrationKey = List.of();
+    private String registration;
+
     @Override
     public String generateReport(DpeReport dpeReport) {
+        return generateReport(dpeReport, 0);
+    }
+
+    /**
+     * Writes the full report of the DPE.
+     *
+     * @param dpeReport the report of the DPE
+     * @param version the version of the report, or zero if the report is not
+     *                part of a sequence of full and delta reports
+     * @return the JSON report
+     */
+    public String generateReport(DpeReport dpeReport, long version) {
         var snapshotTime = ClaraUtil.getCurrentTime();
+        var registrationData = registration(dpeReport);
 
-        var dpeRuntime = new JSONObject();
-        dpeRuntime.put("name", dpeReport.getHost());
-        dpeRuntime.put("snapshot_time", snapshotTime);
-        dpeRuntime.put("cpu_usage", dpeReport.getCpuUsage());
-        dpeRuntime.put("memory_usage", dpeReport.getMemoryUsage());
-        dpeRuntime.put("load", dpeReport.getLoad());
+        var writer = new JsonWriter(registrationData.length() * 2);
+        writer.beginObject();
+        writer.name(ClaraConstants.RUNTIME_KEY);
+        writeRuntime(writer, dpeReport, snapshotTime, version);
+        writer.name(ClaraConstants.REGISTRATION_KEY).rawValue(registrationData);
+        writer.endObject();
 
-        var containersRuntimeArray = new JSONArray();
-        for (var containerReport : dpeReport.getContainers()) {
-            var containerRuntime = new JSONObject();
-            containerRuntime.put("name", containerReport.getName());
-            containerRuntime.put("snapshot_time", snapshotTime);
+        return writer.toString();
+    }
+
+    private static void writeRuntime(JsonWriter writer,
+                                     DpeReport dpeReport,
+                                     String snapshotTime,
+                                     long version) {
+        writer.beginObject();
+        writer.field("name", dpeReport.getHost());
+        writer.field("snapshot_time", snapshotTime);
+        if (version > 0) {
+            writer.field("version", version);
+        }
+        writeSystemStats(writer, dpeReport);
+        writeBufferPool(writer, dpeReport.getBufferPool());
+        writeSharedMemory(writer, dpeReport);
+        writeCompositionCache(writer, dpeReport.getCompositionCache());
 
+        writer.name("containers").beginArray();
+        for (var containerReport : dpeReport.getContainers()) {
             var containerRequests = 0L;
 
-            var servicesRuntimeArray = new JSONArray();
+            writer.beginObject();
+            writer.field("name", containerReport.getName());
+            writer.field("snapshot_time", snapshotTime);
+
+            writer.name("services").beginArray();
             for (var serviceReport : containerReport.getServices()) {
-                var serviceRuntime = new JSONObject();
-
-                var serviceRequests = serviceReport.getRequestCount();
-                containerRequests += serviceRequests;
-
-                serviceRuntime.put("name", serviceReport.getName());
-                serviceRuntime.put("snapshot_time", snapshotTime);
-                serviceRuntime.put("n_requests", serviceRequests);
-                serviceRuntime.put("n_failures", serviceReport.getFailureCount());
-                serviceRuntime.put("shm_reads", serviceReport.getShrmReads());
-                serviceRuntime.put("shm_writes", serviceReport.getShrmWrites());
-                serviceRuntime.put("bytes_recv", serviceReport.getBytesReceived());
-                serviceRuntime.put("bytes_sent", serviceReport.getBytesSent());
-                serviceRuntime.put("exec_time", serviceReport.getExecutionTime());
-
-                servicesRuntimeArray.put(serviceRuntime);
+                containerRequests += serviceReport.getRequestCount();
+
+                writer.beginObject();
+                writer.field("name", serviceReport.getName());
+                writer.field("snapshot_time", snapshotTime);
+                for (var counter : SERVICE_COUNTERS) {
+                    writer.field(counter.key(), counter.value().applyAsLong(serviceReport));
+                }
+                writeBatchSizes(writer, serviceReport.getBatchSizes());
+                writeLatencies(writer, "latency", serviceReport::getLatency);
+                writer.endObject();
             }
+            writer.endArray();
 
-            containerRuntime.put("n_requests", containerRequests);
-            containerRuntime.put("services", servicesRuntimeArray);
-            containersRuntimeArray.put(containerRuntime);
+            writer.field("n_requests", containerRequests);
+            writer.endObject();
         }
+        writer.endArray();
+
+        writer.endObject();
+    }
 
-        dpeRuntime.put("containers", containersRuntimeArray);
+    static void writeSystemStats(JsonWriter writer, DpeReport dpeReport) {
+        writer.field("cpu_usage", dpeReport.getCpuUsage());
+        writer.field("memory_usage", dpeReport.getMemoryUsage());
+        writer.field("load", dpeReport.getLoad());
+    }
 
-        var dpeRegistration = new JSONObject();
-        dpeRegistration.put("name", dpeReport.getHost());
-        dpeRegistration.put("session", dpeReport.getSession());
-        dpeRegistration.put("description", dpeReport.getDescription());
-        dpeRegistration.put("language", dpeReport.getLang());
-        dpeRegistration.put("clara_home", dpeReport.getClaraHome());
-        dpeRegistration.put("n_cores", dpeReport.getCoreCount());
-        dpeRegistration.put("memory_size", dpeReport.getMemorySize());
-        dpeRegistration.put("start_time", dpeReport.getStartTime());
+    static void writeBufferPool(JsonWriter writer, BufferPool pool) {
+        writer.name("buffer_pool").beginObject();
+        writer.field("hits", pool.getHits());
+        writer.field("misses", pool.getMisses());
+        writer.field("bytes_in_use", pool.getBytesInUse());
+        writer.field("bytes_pooled", pool.getBytesPooled());
+        writer.endObject();
+    }
 
-        var containersRegistrationArray = new JSONArray();
-        for (var containerReport : dpeReport.getContainers()) {
-            var containerRegistration = new JSONObject();
-            containerRegistration.put("name", containerReport.getName());
-            containerRegistration.put("language", containerReport.getLang());
-            containerRegistration.put("author", containerReport.getAuthor());
-            containerRegistration.put("start_time", containerReport.getStartTime());
+    static void writeSharedMemory(JsonWriter writer, DpeReport dpeReport) {
+        writer.name("shared_memory").beginObject();
+        writer.field("entries", dpeReport.getSharedMemoryEntries());
+        writer.field("bytes", dpeReport.getSharedMemoryBytes());
+        writer.field("n_evicted", dpeReport.getSharedMemoryEvicted());
+        writer.field("n_rejected", dpeReport.getSharedMemoryRejected());
+        writer.endObject();
+    }
 
-            var servicesRegistrationArray = new JSONArray();
-            for (var serviceReport : containerReport.getServices()) {
-                var serviceRegistration = new JSONObject();
-                serviceRegistration.put("name", serviceReport.getName());
-                serviceRegistration.put("class_name", serviceReport.getClassName());
-                serviceRegistration.put("author", serviceReport.getAuthor());
-                serviceRegistration.put("version", serviceReport.getVersion());
-                serviceRegistration.put("description", serviceReport.getDescription());
-                serviceRegistration.put("language", serviceReport.getLang());
-                serviceRegistration.put("pool_size", serviceReport.getPoolSize());
-                serviceRegistration.put("start_time", serviceReport.getStartTime());
-
-                servicesRegistrationArray.put(serviceRegistration);
+    static void writeCompositionCache(JsonWriter writer, CompositionCache cache) {
+        writer.name("composition_cache").beginObject();
+        writer.field("hits", cache.getHits());
+        writer.field("misses", cache.getMisses());
+        writer.field("n_evicted", cache.getEvicted());
+        writer.field("entries", cache.getEntries());
+        writer.endObject();
+    }
+
+    static void writeBatchSizes(JsonWriter writer, long[] batchSizes) {
+        var empty = true;
+        for (int i = 0; i < batchSizes.length; i++) {
+            if (batchSizes[i] > 0) {
+                if (empty) {
+                    writer.name("batch_sizes").beginObject();
+                    empty = false;
+                }
+                writer.field(String.valueOf(1 << i), batchSizes[i]);
+            }
+        }
+        if (!empty) {
+            writer.endObject();
+        }
+    }
+
+    static void writeLatencies(JsonWriter writer,
+                               String key,
+                               Function<Phase, LatencyHistogram> latencies) {
+        var empty = true;
+        for (var phase : Phase.values()) {
+            var histogram = latencies.apply(phase);
+            if (histogram.count() > 0) {
+                if (empty) {
+                    writer.name(key).beginObject();
+                    empty = false;
+                }
+                writer.name(phase.key()).beginObject();
+                histogram.forEachBucket((bound, count) -> writer.field(String.valueOf(bound), count));
+                writer.endObject();
             }
+        }
+        if (!empty) {
+            writer.endObject();
+        }
+    }
 
-            containerRegistration.put("services", servicesRegistrationArray);
-            containersRegistrationArray.put(containerRegistration);
+    /*
+     * The registration data is the same as long as the same container and
+     * service reports are registered, since all their registration fields are
+     * immutable.
+     */
+    private synchronized String registration(DpeReport dpeReport) {
+        var key = registrationKey(dpeReport);
+        if (registration == null || !key.equals(registrationKey)) {
+            registration = writeRegistration(dpeReport);
+            registrationKey = key;
+        }
+        return registration;
+    }
 
+    private static List<BaseReport> registrationKey(DpeReport dpeReport) {
+        var key = new ArrayList<BaseReport>();
+        for (var containerReport : dpeReport.getContainers()) {
+            key.add(containerReport);
+            key.addAll(containerReport.getServices());
         }
+        return key;
+    }
+
+    private static String writeRegistration(DpeReport dpeReport) {
+        var writer = new JsonWriter(1024);
+        writer.beginObject();
+        writer.field("name", dpeReport.getHost());
+        writer.field("session", dpeReport.getSession());
+        writer.field("description", dpeReport.getDescription());
+        writer.field("language", dpeReport.getLang());
+        writer.field("clara_home", dpeReport.getClaraHome());
+        writer.field("n_cores", dpeReport.getCoreCount());
+        writer.field("memory_size", dpeReport.getMemorySize());
+        writer.field("start_time", dpeReport.getStartTime());
 
-        dpeRegistration.put("containers", containersRegistrationArray);
+        writer.name("containers").beginArray();
+        for (var containerReport : dpeReport.getContainers()) {
+            writer.beginObject();
+            writer.field("name", containerReport.getName());
+            writer.field("language", containerReport.getLang());
+            writer.field("author", containerReport.getAuthor());
+            writer.field("start_time", containerReport.getStartTime());
 
-        var dpeJsonReport = new JSONObject();
-        dpeJsonReport.put(ClaraConstants.RUNTIME_KEY, dpeRuntime);
-        dpeJsonReport.put(ClaraConstants.REGISTRATION_KEY, dpeRegistration);
+            writer.name("services").beginArray();
+            for (var serviceReport : containerReport.getServices()) {
+                writer.beginObject();
+                writer.field("name", serviceReport.getName());
+                writer.field("class_name", serviceReport.getClassName());
+                writer.field("author", serviceReport.getAuthor());
+                writer.field("version", serviceReport.getVersion());
+                writer.field("description", serviceReport.getDescription());
+                writer.field("language", serviceReport.getLang());
+                writer.field("pool_size", serviceReport.getPoolSize());
+                writer.field("engine_per_slot", serviceReport.isEnginePerSlot());
+                writer.field("start_time", serviceReport.getStartTime());
+                writer.endObject();
+            }
+            writer.endArray();
+
+            writer.endObject();
+        }
+        writer.endArray();
 
-        return dpeJsonReport.toString();
+        writer.endObject();
+        return writer.toString();
     }
 }
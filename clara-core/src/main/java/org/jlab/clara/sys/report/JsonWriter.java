@@ -0,0 +1,124 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.report;
+
+import org.json.JSONObject;
+
+/**
+ * Writes a JSON document directly into a string buffer.
+ * <p>
+ * Reports are written field by field, without building a tree of
+ * {@link JSONObject} instances first.
+ * The writer does not validate the structure of the document.
+ */
+class JsonWriter {
+
+    private final StringBuilder sb;
+    private boolean first = true;
+
+    JsonWriter(int capacity) {
+        this.sb = new StringBuilder(capacity);
+    }
+
+    JsonWriter beginObject() {
+        separator();
+        sb.append('{');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endObject() {
+        sb.append('}');
+        first = false;
+        return this;
+    }
+
+    JsonWriter beginArray() {
+        separator();
+        sb.append('[');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endArray() {
+        sb.append(']');
+        first = false;
+        return this;
+    }
+
+    JsonWriter name(String name) {
+        separator();
+        sb.append(JSONObject.quote(name)).append(':');
+        first = true;
+        return this;
+    }
+
+    JsonWriter value(String value) {
+        separator();
+        sb.append(JSONObject.quote(value));
+        first = false;
+        return this;
+    }
+
+    JsonWriter value(long value) {
+        separator();
+        sb.append(value);
+        first = false;
+        return this;
+    }
+
+    JsonWriter value(double value) {
+        separator();
+        sb.append(Double.isFinite(value) ? JSONObject.numberToString(value) : "null");
+        first = false;
+        return this;
+    }
+
+    JsonWriter value(boolean value) {
+        separator();
+        sb.append(value);
+        first = false;
+        return this;
+    }
+
+    /**
+     * Writes an already serialized JSON value.
+     */
+    JsonWriter rawValue(String json) {
+        separator();
+        sb.append(json);
+        first = false;
+        return this;
+    }
+
+    JsonWriter field(String name, String value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, long value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, double value) {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    private void separator() {
+        if (!first) {
+            sb.append(',');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+}
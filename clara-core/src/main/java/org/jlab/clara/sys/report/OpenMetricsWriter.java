@@ -0,0 +1,348 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.report;
+
+import org.jlab.clara.base.ServiceRuntimeData.Phase;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Writes the metrics of a DPE in the OpenMetrics text format.
+ * <p>
+ * The metrics are read directly from the reports, so they are always
+ * up to date, no matter the report period of the DPE.
+ * The writer reuses its buffers between calls, and it must be used by a
+ * single thread.
+ * <p>
+ * Times are reported in seconds. The latency histograms are exported with
+ * fixed buckets, whose counts have the same error as the
+ * {@link org.jlab.clara.base.LatencyHistogram percentiles} of the histograms.
+ * The histograms do not keep the sum of the values, so they are exported
+ * without {@code _sum} and {@code _count} samples, as required by the format.
+ * The count is the value of the {@code +Inf} bucket.
+ */
+public class OpenMetricsWriter {
+
+    /**
+     * The content type of the OpenMetrics text format.
+     */
+    public static final String CONTENT_TYPE =
+            "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge");
+
+        private final String value;
+
+        Type(String value) {
+            this.value = value;
+        }
+    }
+
+    private record Metric(String name, Type type, String help, String unit,
+                          ToLongFunction<ServiceReport> value) { }
+
+    private static final String SERVICE_PREFIX = "clara_service_";
+
+    private static final List<Metric> SERVICE_METRICS = List.of(
+            counter("requests", "Requests received by the service",
+                    ServiceReport::getRequestCount),
+            counter("failures", "Requests that returned an error",
+                    ServiceReport::getFailureCount),
+            counter("shm_reads", "Requests received through the shared memory",
+                    ServiceReport::getShrmReads),
+            counter("shm_writes", "Results sent through the shared memory",
+                    ServiceReport::getShrmWrites),
+            counter("received_bytes", "Bytes received through the network",
+                    ServiceReport::getBytesReceived),
+            counter("sent_bytes", "Bytes sent through the network",
+                    ServiceReport::getBytesSent),
+            time("execution_seconds", "Time executing the engine",
+                    ServiceReport::getExecutionTime),
+            time("queue_seconds", "Time waiting in the queue of the service",
+                    ServiceReport::getQueueTime),
+            time("send_blocked_seconds", "Time blocked sending results",
+                    ServiceReport::getSendBlockedTime),
+            counter("rejected", "Requests rejected by the service",
+                    ServiceReport::getRejectedCount),
+            counter("dropped", "Results dropped because the send queue was full",
+                    ServiceReport::getDroppedCount),
+            counter("local_hops", "Results passed to services in the same DPE",
+                    ServiceReport::getLocalHops),
+            counter("remote_hops", "Results published through the proxy",
+                    ServiceReport::getRemoteHops),
+            counter("joins", "Joins completed by the service",
+                    ServiceReport::getJoinCount),
+            time("join_wait_seconds", "Time waiting for the inputs of a join",
+                    ServiceReport::getJoinWaitTime),
+            counter("join_timeouts", "Joins that expired",
+                    ServiceReport::getJoinTimeouts),
+            gauge("pool_size", "Engines of the service",
+                    ServiceReport::getActivePoolSize),
+            gauge("busy_engines", "Engines executing requests",
+                    ServiceReport::getBusyEngines),
+            gauge("queued_requests", "Requests waiting for an engine",
+                    ServiceReport::getQueuedRequests)
+    );
+
+    // 10 us to 10 s
+    private static final long[] LATENCY_BOUNDS = {
+        10, 25, 50, 100, 250, 500,
+        1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+        100_000, 250_000, 500_000, 1_000_000, 10_000_000,
+    };
+
+    private static final String[] LATENCY_LABELS = latencyLabels();
+
+    private final StringBuilder sb = new StringBuilder(16 * 1024);
+    private final long[] cumulativeCounts = new long[LATENCY_BOUNDS.length];
+    private final List<ServiceReport> services = new ArrayList<>();
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final List<GarbageCollectorMXBean> gcBeans =
+            ManagementFactory.getGarbageCollectorMXBeans();
+
+    private static Metric counter(String name, String help, ToLongFunction<ServiceReport> value) {
+        return new Metric(SERVICE_PREFIX + name, Type.COUNTER, help, null, value);
+    }
+
+    private static Metric time(String name, String help, ToLongFunction<ServiceReport> value) {
+        return new Metric(SERVICE_PREFIX + name, Type.COUNTER, help, "seconds", value);
+    }
+
+    private static Metric gauge(String name, String help, ToLongFunction<ServiceReport> value) {
+        return new Metric(SERVICE_PREFIX + name, Type.GAUGE, help, null, value);
+    }
+
+    private static String[] latencyLabels() {
+        var labels = new String[LATENCY_BOUNDS.length];
+        for (int i = 0; i < labels.length; i++) {
+            var label = new StringBuilder();
+            appendSeconds(label, LATENCY_BOUNDS[i]);
+            labels[i] = label.toString();
+        }
+        return labels;
+    }
+
+    /**
+     * Writes the metrics of the DPE.
+     * The returned buffer is reused by the next call.
+     *
+     * @param dpeReport the report of the DPE
+     * @return the metrics in the OpenMetrics text format
+     */
+    public CharSequence write(DpeReport dpeReport) {
+        sb.setLength(0);
+        services.clear();
+        for (var containerReport : dpeReport.getContainers()) {
+            services.addAll(containerReport.getServices());
+        }
+
+        writeDpe(dpeReport);
+        writeJvm();
+        for (var metric : SERVICE_METRICS) {
+            writeServiceMetric(metric);
+        }
+        writeLatencies();
+
+        sb.append("# EOF\n");
+        services.clear();
+        return sb;
+    }
+
+    private void writeDpe(DpeReport dpeReport) {
+        header("clara_dpe", "info", "Information about the DPE", null);
+        sb.append("clara_dpe_info{name=\"");
+        escape(dpeReport.getHost());
+        sb.append("\",session=\"");
+        escape(dpeReport.getSession());
+        sb.append("\"} 1\n");
+
+        gauge("clara_dpe_cores", "Cores of the node", dpeReport.getCoreCount());
+        gauge("clara_dpe_cpu_usage", "CPU usage of the DPE, in percent",
+              dpeReport.getCpuUsage());
+        gauge("clara_dpe_load", "System load average of the node", dpeReport.getLoad());
+        gauge("clara_dpe_memory_usage_bytes", "Heap memory used by the DPE",
+              dpeReport.getMemoryUsage());
+        gauge("clara_dpe_memory_size_bytes", "Maximum heap memory of the DPE",
+              dpeReport.getMemorySize());
+        gauge("clara_dpe_cached_connections", "Idle connections in the shared pools",
+              dpeReport.getCachedConnections());
+
+        var pool = dpeReport.getBufferPool();
+        counter("clara_buffer_pool_hits", "Buffers reused from the pool", pool.getHits());
+        counter("clara_buffer_pool_misses", "Buffers allocated by the pool", pool.getMisses());
+        gauge("clara_buffer_pool_in_use_bytes", "Bytes of buffers in use",
+              pool.getBytesInUse());
+        gauge("clara_buffer_pool_pooled_bytes", "Bytes of buffers kept in the pool",
+              pool.getBytesPooled());
+
+        gauge("clara_shared_memory_entries", "Data entries in the shared memory",
+              dpeReport.getSharedMemoryEntries());
+        gauge("clara_shared_memory_bytes", "Estimated size of the data in the shared memory",
+              dpeReport.getSharedMemoryBytes());
+        counter("clara_shared_memory_evicted", "Expired entries evicted from the shared memory",
+                dpeReport.getSharedMemoryEvicted());
+        counter("clara_shared_memory_rejected", "Entries rejected by the full shared memory",
+                dpeReport.getSharedMemoryRejected());
+
+        var cache = dpeReport.getCompositionCache();
+        counter("clara_composition_cache_hits", "Compositions found in the cache",
+                cache.getHits());
+        counter("clara_composition_cache_misses", "Compositions compiled",
+                cache.getMisses());
+        counter("clara_composition_cache_evicted", "Compositions evicted from the cache",
+                cache.getEvicted());
+        gauge("clara_composition_cache_entries", "Compositions in the cache",
+              cache.getEntries());
+    }
+
+    private void writeJvm() {
+        gauge("clara_jvm_threads", "Live threads of the JVM", threadBean.getThreadCount());
+
+        header("clara_jvm_gc_collections", "counter", "Collections of the garbage collectors",
+               null);
+        for (var gc : gcBeans) {
+            sb.append("clara_jvm_gc_collections_total{gc=\"");
+            escape(gc.getName());
+            sb.append("\"} ").append(Math.max(gc.getCollectionCount(), 0)).append('\n');
+        }
+        header("clara_jvm_gc_seconds", "counter", "Time spent by the garbage collectors",
+               "seconds");
+        for (var gc : gcBeans) {
+            sb.append("clara_jvm_gc_seconds_total{gc=\"");
+            escape(gc.getName());
+            sb.append("\"} ");
+            appendSeconds(sb, Math.max(gc.getCollectionTime(), 0) * 1000);
+            sb.append('\n');
+        }
+    }
+
+    private void writeServiceMetric(Metric metric) {
+        if (services.isEmpty()) {
+            return;
+        }
+        var name = metric.name();
+        header(name, metric.type().value, metric.help(), metric.unit());
+        for (var service : services) {
+            var value = metric.value().applyAsLong(service);
+            sb.append(name);
+            if (metric.type() == Type.COUNTER) {
+                sb.append("_total");
+            }
+            sb.append("{service=\"");
+            escape(service.getName());
+            sb.append("\"} ");
+            if (metric.unit() != null) {
+                appendSeconds(sb, value);
+            } else {
+                sb.append(value);
+            }
+            sb.append('\n');
+        }
+    }
+
+    private void writeLatencies() {
+        if (services.isEmpty()) {
+            return;
+        }
+        var name = "clara_service_latency_seconds";
+        header(name, "histogram", "Latency of each phase of the requests", "seconds");
+        for (var service : services) {
+            for (var phase : Phase.values()) {
+                var histogram = service.getLatency(phase);
+                var count = histogram.cumulativeCounts(LATENCY_BOUNDS, cumulativeCounts);
+                for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+                    bucketSample(name, service, phase, LATENCY_LABELS[i]);
+                    sb.append(cumulativeCounts[i]).append('\n');
+                }
+                bucketSample(name, service, phase, "+Inf");
+                sb.append(count).append('\n');
+            }
+        }
+    }
+
+    private void bucketSample(String name, ServiceReport service, Phase phase, String le) {
+        sb.append(name).append("_bucket{service=\"");
+        escape(service.getName());
+        sb.append("\",phase=\"").append(phase.key());
+        sb.append("\",le=\"").append(le);
+        sb.append("\"} ");
+    }
+
+    private void header(String name, String type, String help, String unit) {
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        if (unit != null) {
+            sb.append("# UNIT ").append(name).append(' ').append(unit).append('\n');
+        }
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private void counter(String name, String help, long value) {
+        header(name, "counter", help, null);
+        sb.append(name).append("_total ").append(value).append('\n');
+    }
+
+    private void gauge(String name, String help, long value) {
+        header(name, "gauge", help, null);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private void gauge(String name, String help, double value) {
+        header(name, "gauge", help, null);
+        sb.append(name).append(' ');
+        if (Double.isFinite(value)) {
+            sb.append(value);
+        } else {
+            sb.append("NaN");
+        }
+        sb.append('\n');
+    }
+
+    private void escape(String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '"' -> sb.append("\\\"");
+                case '\n' -> sb.append("\\n");
+                default -> sb.append(c);
+            }
+        }
+    }
+
+    /*
+     * Writes microseconds as seconds, without the exponent notation of small
+     * doubles and without allocating a string.
+     */
+    private static void appendSeconds(StringBuilder sb, long micros) {
+        sb.append(micros / 1_000_000).append('.');
+        var fraction = micros % 1_000_000;
+        var digits = 6;
+        while (digits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        var scale = 1L;
+        for (int i = 1; i < digits; i++) {
+            scale *= 10;
+        }
+        for (; scale > 1 && scale > fraction; scale /= 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+}
@@ -6,11 +6,17 @@
 
 package org.jlab.clara.sys.report;
 
+import org.jlab.clara.base.LatencyHistogram;
+import org.jlab.clara.base.ServiceRuntimeData.Phase;
 import org.jlab.clara.base.core.ClaraComponent;
 import org.jlab.clara.engine.Engine;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
 
 /**
  * @author gurjyan
@@ -18,11 +24,15 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class ServiceReport extends BaseReport {
 
+    // batches of size [1], [2,3], [4,7], ..., [2^(N-1), inf)
+    private static final int BATCH_BUCKETS = 12;
+
     private final String engineName;
     private final String className;
     private final String version;
     private final String session;
     private final int poolSize;
+    private final boolean enginePerSlot;
 
     private final AtomicInteger failureCount = new AtomicInteger();
     private final AtomicInteger shrmReads = new AtomicInteger();
@@ -30,14 +40,40 @@ public class ServiceReport extends BaseReport {
     private final AtomicLong bytesReceived = new AtomicLong();
     private final AtomicLong bytesSent = new AtomicLong();
     private final AtomicLong executionTime = new AtomicLong();
+    private final AtomicLong queueTime = new AtomicLong();
+    private final AtomicInteger rejectedCount = new AtomicInteger();
+    private final AtomicLong sendBlockedTime = new AtomicLong();
+    private final AtomicInteger droppedCount = new AtomicInteger();
+    private final AtomicLong localHops = new AtomicLong();
+    private final AtomicLong remoteHops = new AtomicLong();
+    private final AtomicLongArray batchSizes = new AtomicLongArray(BATCH_BUCKETS);
+    private final AtomicLong joinCount = new AtomicLong();
+    private final AtomicLong joinWaitTime = new AtomicLong();
+    private final AtomicInteger joinTimeouts = new AtomicInteger();
+    private final AtomicInteger activePoolSize = new AtomicInteger();
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+    private volatile IntSupplier busyEngines = () -> 0;
+    private volatile IntSupplier queuedRequests = () -> 0;
 
     public ServiceReport(ClaraComponent comp, Engine engine, String session) {
+        this(comp, engine, session, false);
+    }
+
+    public ServiceReport(ClaraComponent comp,
+                         Engine engine,
+                         String session,
+                         boolean enginePerSlot) {
         super(comp.getCanonicalName(), engine.getAuthor(), engine.getDescription());
         this.engineName = comp.getEngineName();
         this.className = comp.getEngineClass();
         this.version = engine.getVersion();
         this.session = session;
         this.poolSize = comp.getSubscriptionPoolSize();
+        this.enginePerSlot = enginePerSlot;
+        this.activePoolSize.set(poolSize);
+        for (var phase : Phase.values()) {
+            latencies.put(phase, new LatencyHistogram());
+        }
     }
 
     public String getEngineName() {
@@ -94,6 +130,117 @@ public class ServiceReport extends BaseReport {
 
     public void addExecutionTime(long deltaTime) {
         executionTime.getAndAdd(deltaTime);
+        latencies.get(Phase.EXECUTE).record(deltaTime);
+    }
+
+    public long getQueueTime() {
+        return queueTime.get();
+    }
+
+    public void addQueueTime(long deltaTime) {
+        queueTime.getAndAdd(deltaTime);
+        latencies.get(Phase.QUEUE).record(deltaTime);
+    }
+
+    public void addDeserializeTime(long deltaTime) {
+        latencies.get(Phase.DESERIALIZE).record(deltaTime);
+    }
+
+    public void addSerializeTime(long deltaTime) {
+        latencies.get(Phase.SERIALIZE).record(deltaTime);
+    }
+
+    public int getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public void incrementRejectedCount() {
+        rejectedCount.getAndIncrement();
+    }
+
+    public long getSendBlockedTime() {
+        return sendBlockedTime.get();
+    }
+
+    public void addSendBlockedTime(long deltaTime) {
+        sendBlockedTime.getAndAdd(deltaTime);
+        latencies.get(Phase.SEND).record(deltaTime);
+    }
+
+    /**
+     * Gets the histogram of the latencies of the given phase of the execution
+     * of the requests, in microseconds.
+     *
+     * @param phase the phase of the execution
+     * @return the latencies of the phase since the service was deployed
+     */
+    public LatencyHistogram getLatency(Phase phase) {
+        return latencies.get(phase);
+    }
+
+    public int getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public void incrementDroppedCount() {
+        droppedCount.getAndIncrement();
+    }
+
+    public long getLocalHops() {
+        return localHops.get();
+    }
+
+    public void incrementLocalHops() {
+        localHops.getAndIncrement();
+    }
+
+    public long getRemoteHops() {
+        return remoteHops.get();
+    }
+
+    public void incrementRemoteHops() {
+        remoteHops.getAndIncrement();
+    }
+
+    /**
+     * Gets the histogram of the sizes of the executed batches.
+     * The bucket {@code i} counts the batches with size in the range
+     * {@code [2^i, 2^(i+1))}, and the last bucket counts all larger batches.
+     *
+     * @return the number of batches per bucket
+     */
+    public long[] getBatchSizes() {
+        var counts = new long[BATCH_BUCKETS];
+        for (int i = 0; i < BATCH_BUCKETS; i++) {
+            counts[i] = batchSizes.get(i);
+        }
+        return counts;
+    }
+
+    public void addBatch(int size) {
+        var bucket = Math.min(31 - Integer.numberOfLeadingZeros(size), BATCH_BUCKETS - 1);
+        batchSizes.getAndIncrement(bucket);
+    }
+
+    public long getJoinCount() {
+        return joinCount.get();
+    }
+
+    public long getJoinWaitTime() {
+        return joinWaitTime.get();
+    }
+
+    public void addJoin(long waitTime) {
+        joinCount.getAndIncrement();
+        joinWaitTime.getAndAdd(waitTime);
+    }
+
+    public int getJoinTimeouts() {
+        return joinTimeouts.get();
+    }
+
+    public void incrementJoinTimeouts() {
+        joinTimeouts.getAndIncrement();
     }
 
     public String getVersion() {
@@ -107,4 +254,42 @@ public class ServiceReport extends BaseReport {
     public int getPoolSize() {
         return poolSize;
     }
+
+    /**
+     * Gets the current number of engines of the service,
+     * which can change when the pool is elastic.
+     *
+     * @return the size of the pool
+     */
+    public int getActivePoolSize() {
+        return activePoolSize.get();
+    }
+
+    public void setActivePoolSize(int size) {
+        activePoolSize.set(size);
+    }
+
+    /**
+     * Sets the gauges of the load of the service.
+     * They are read only when the report is published.
+     *
+     * @param busyEngines returns the number of engines executing requests
+     * @param queuedRequests returns the number of requests waiting for an engine
+     */
+    public void setLoadGauges(IntSupplier busyEngines, IntSupplier queuedRequests) {
+        this.busyEngines = busyEngines;
+        this.queuedRequests = queuedRequests;
+    }
+
+    public int getBusyEngines() {
+        return busyEngines.getAsInt();
+    }
+
+    public int getQueuedRequests() {
+        return queuedRequests.getAsInt();
+    }
+
+    public boolean isEnginePerSlot() {
+        return enginePerSlot;
+    }
 }
@@ -0,0 +1,63 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys
+
+import org.jlab.clara.base.error.ClaraException
+import spock.lang.Specification
+import spock.lang.Subject
+
+class CompositionCacheSpec extends Specification {
+
+    static final String S1 = "10.1.1.1_java:C:S1"
+    static final String S2 = "10.1.1.1_java:C:S2"
+    static final String S3 = "10.1.1.1_java:C:S3"
+
+    @Subject
+    CompositionCache cache = new CompositionCache(2)
+
+    def "A composition is compiled once per service"() {
+        given:
+        var composition = "$S1+$S2+$S3;"
+
+        when:
+        var first = cache.get(composition, S1)
+        var second = cache.get(composition, S1)
+        var other = cache.get(composition, S2)
+
+        then:
+        first.is(second)
+        !first.is(other)
+        cache.hits == 1
+        cache.misses == 2
+        cache.entries == 2
+    }
+
+    def "The least recently used composition is evicted"() {
+        given:
+        var first = cache.get("$S1+$S2;", S1)
+        cache.get("$S1+$S3;", S1)
+        cache.get("$S1+$S2;", S1)
+
+        when:
+        cache.get("$S1+$S2+$S3;", S1)
+
+        then:
+        cache.evicted == 1
+        cache.entries == 2
+        cache.get("$S1+$S2;", S1).is(first)
+        cache.misses == 3
+    }
+
+    def "Invalid compositions are not cached"() {
+        when:
+        cache.get("$S2+$S3;", S1)
+
+        then:
+        thrown ClaraException
+        cache.entries == 0
+    }
+}
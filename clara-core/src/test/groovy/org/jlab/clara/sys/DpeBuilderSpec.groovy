@@ -98,12 +98,20 @@ class DpeBuilderSpec extends Specification {
         builder."${option}" == defaultValue
 
         where:
-        option         || defaultValue
-        "session"      || ""
-        "description"  || ""
-        "maxCores"     || Dpe.DEFAULT_MAX_CORES
-        "poolSize"     || Dpe.DEFAULT_POOL_SIZE
-        "reportPeriod" || Dpe.DEFAULT_REPORT_PERIOD
+        option            || defaultValue
+        "session"         || ""
+        "description"     || ""
+        "maxCores"        || Dpe.DEFAULT_MAX_CORES
+        "poolSize"        || Dpe.DEFAULT_POOL_SIZE
+        "reportPeriod"    || Dpe.DEFAULT_REPORT_PERIOD
+        "queueSize"       || Dpe.DEFAULT_QUEUE_SIZE
+        "queuePolicy"     || Dpe.DEFAULT_QUEUE_POLICY
+        "sendHwm"         || Dpe.DEFAULT_SEND_HWM
+        "sendTimeout"     || Dpe.DEFAULT_SEND_TIMEOUT
+        "localDispatch"   || Dpe.DEFAULT_LOCAL_DISPATCH
+        "sharedScheduler" || Dpe.DEFAULT_SHARED_SCHEDULER
+        "reportDeltas"    || Dpe.DEFAULT_REPORT_DELTAS
+        "metricsPort"     || Dpe.DEFAULT_METRICS_PORT
     }
 
     def "DPE: set #option"() {
@@ -114,12 +122,20 @@ class DpeBuilderSpec extends Specification {
         builder."${option}" == value
 
         where:
-        option         | args                   || value
-        "session"      | ["XYZ"]                || "XYZ"
-        "description"  | ["desc"]               || "desc"
-        "maxCores"     | [32]                   || 32
-        "poolSize"     | [12]                   || 12
-        "reportPeriod" | [20, TimeUnit.SECONDS] || 20_000L
+        option            | args                   || value
+        "session"         | ["XYZ"]                || "XYZ"
+        "description"     | ["desc"]               || "desc"
+        "maxCores"        | [32]                   || 32
+        "poolSize"        | [12]                   || 12
+        "reportPeriod"    | [20, TimeUnit.SECONDS] || 20_000L
+        "queueSize"       | [50]                   || 50
+        "queuePolicy"     | [QueuePolicy.REJECT]   || QueuePolicy.REJECT
+        "sendHwm"         | [1000]                 || 1000
+        "sendTimeout"     | [2, TimeUnit.SECONDS]  || 2000L
+        "localDispatch"   | [false]                || false
+        "sharedScheduler" | [true]                 || true
+        "reportDeltas"    | [true]                 || true
+        "metricsPort"     | [9100]                 || 9100
 
         setter = "with${option.capitalize()}"
     }
@@ -25,9 +25,18 @@ class DpeOptionsParserSpec extends Specification {
     private static final String POOL_OPT = "--poolsize"
     private static final String CORES_OPT = "--max-cores"
     private static final String REPORT_OPT = "--report"
+    private static final String QUEUE_SIZE_OPT = "--queue-size"
+    private static final String QUEUE_POLICY_OPT = "--queue-policy"
+    private static final String SEND_HWM_OPT = "--send-hwm"
+    private static final String SEND_TIMEOUT_OPT = "--send-timeout"
+    private static final String NO_LOCAL_OPT = "--no-local-dispatch"
+    private static final String SHARED_SCHEDULER_OPT = "--shared-scheduler"
+    private static final String REPORT_DELTAS_OPT = "--report-deltas"
+    private static final String METRICS_PORT_OPT = "--metrics-port"
 
     private static final String SOCKETS_OPT = "--max-sockets"
     private static final String IO_THREADS_OPT = "--io-threads"
+    private static final String VIRTUAL_THREADS_OPT = "--virtual-threads"
 
     private static final String DEFAULT_HOST = Dpe.DEFAULT_PROXY_HOST
 
@@ -139,14 +148,21 @@ class DpeOptionsParserSpec extends Specification {
 
         // codenarc-disable SpaceAfterOpeningBrace
         where:
-        option         | getter                               || defaultValue
-        "session"      | ({ p -> p.session() })               || ""
-        "description"  | ({ p -> p.description() })           || ""
-        "maxCores"     | ({ p -> p.config().maxCores() })     || Dpe.DEFAULT_MAX_CORES
-        "poolSize"     | ({ p -> p.config().poolSize() })     || Dpe.DEFAULT_POOL_SIZE
-        "reportPeriod" | ({ p -> p.config().reportPeriod() }) || Dpe.DEFAULT_REPORT_PERIOD
-        "maxSockets"   | ({ p -> p.maxSockets() })            || Dpe.DEFAULT_MAX_SOCKETS
-        "ioThreads"    | ({ p -> p.ioThreads() })             || Dpe.DEFAULT_IO_THREADS
+        option           | getter                                || defaultValue
+        "session"        | ({ p -> p.session() })                || ""
+        "description"    | ({ p -> p.description() })            || ""
+        "maxCores"       | ({ p -> p.config().maxCores() })      || Dpe.DEFAULT_MAX_CORES
+        "poolSize"       | ({ p -> p.config().poolSize() })      || Dpe.DEFAULT_POOL_SIZE
+        "reportPeriod"   | ({ p -> p.config().reportPeriod() })  || Dpe.DEFAULT_REPORT_PERIOD
+        "queueSize"      | ({ p -> p.config().queueSize() })     || Dpe.DEFAULT_QUEUE_SIZE
+        "queuePolicy"    | ({ p -> p.config().queuePolicy() })   || Dpe.DEFAULT_QUEUE_POLICY
+        "sendHwm"        | ({ p -> p.config().sendHwm() })       || Dpe.DEFAULT_SEND_HWM
+        "sendTimeout"    | ({ p -> p.config().sendTimeout() })   || Dpe.DEFAULT_SEND_TIMEOUT
+        "localDispatch"  | ({ p -> p.config().localDispatch() }) || Dpe.DEFAULT_LOCAL_DISPATCH
+        "metricsPort"    | ({ p -> p.config().metricsPort() })   || Dpe.DEFAULT_METRICS_PORT
+        "maxSockets"     | ({ p -> p.maxSockets() })             || Dpe.DEFAULT_MAX_SOCKETS
+        "ioThreads"      | ({ p -> p.ioThreads() })              || Dpe.DEFAULT_IO_THREADS
+        "virtualThreads" | ({ p -> p.useVirtualThreads() })      || false
         // codenarc-enable
     }
 
@@ -159,19 +175,75 @@ class DpeOptionsParserSpec extends Specification {
 
         // codenarc-disable SpaceAfterOpeningBrace
         where:
-        option         | getter                               | optName        | optArg || value
-        "session"      | ({ p -> p.session() })               | SESSION_OPT    | "XYX"  || "XYX"
-        "description"  | ({ p -> p.description() })           | DESC_OPT       | "desc" || "desc"
-        "maxCores"     | ({ p -> p.config().maxCores() })     | CORES_OPT      | "32"   || 32
-        "poolSize"     | ({ p -> p.config().poolSize() })     | POOL_OPT       | "10"   || 10
-        "reportPeriod" | ({ p -> p.config().reportPeriod() }) | REPORT_OPT     | "20"   || 20_000
-        "maxSockets"   | ({ p -> p.maxSockets() })            | SOCKETS_OPT    | "4096" || 4096
-        "ioThreads"    | ({ p -> p.ioThreads() })             | IO_THREADS_OPT | "2"    || 2
+        option         | getter                               | optName          | optArg   || value
+        "session"      | ({ p -> p.session() })               | SESSION_OPT      | "XYX"    || "XYX"
+        "description"  | ({ p -> p.description() })           | DESC_OPT         | "desc"   || "desc"
+        "maxCores"     | ({ p -> p.config().maxCores() })     | CORES_OPT        | "32"     || 32
+        "poolSize"     | ({ p -> p.config().poolSize() })     | POOL_OPT         | "10"     || 10
+        "reportPeriod" | ({ p -> p.config().reportPeriod() }) | REPORT_OPT       | "20"     || 20_000
+        "queueSize"    | ({ p -> p.config().queueSize() })    | QUEUE_SIZE_OPT   | "50"     || 50
+        "queuePolicy"  | ({ p -> p.config().queuePolicy() })  | QUEUE_POLICY_OPT | "reject" || QueuePolicy.REJECT
+        "sendHwm"      | ({ p -> p.config().sendHwm() })      | SEND_HWM_OPT     | "1000"   || 1000
+        "sendTimeout"  | ({ p -> p.config().sendTimeout() })  | SEND_TIMEOUT_OPT | "500"    || 500
+        "metricsPort"  | ({ p -> p.config().metricsPort() })  | METRICS_PORT_OPT | "9100"   || 9100
+        "maxSockets"   | ({ p -> p.maxSockets() })            | SOCKETS_OPT      | "4096"   || 4096
+        "ioThreads"    | ({ p -> p.ioThreads() })             | IO_THREADS_OPT   | "2"      || 2
 
         args = [optName, optArg]
         // codenarc-enable
     }
 
+    def "DPE: reject invalid #option"() {
+        when:
+        parser.parse(optName, optArg)
+
+        then:
+        var ex = thrown(DpeOptionsParser.DpeOptionsException)
+        ex.message =~ "Invalid ${option}"
+
+        where:
+        option                 | optName          | optArg
+        "pool size"            | POOL_OPT         | "0"
+        "number of cores"      | CORES_OPT        | "-2"
+        "report period"        | REPORT_OPT       | "0"
+        "queue size"           | QUEUE_SIZE_OPT   | "-1"
+        "send high-water mark" | SEND_HWM_OPT     | "0"
+        "send timeout"         | SEND_TIMEOUT_OPT | "-5"
+        "metrics port"         | METRICS_PORT_OPT | "-1"
+    }
+
+    def "DPE: disable local dispatch"() {
+        when:
+        parser.parse(NO_LOCAL_OPT)
+
+        then:
+        !parser.config().localDispatch()
+    }
+
+    def "DPE: enable the shared scheduler"() {
+        when:
+        parser.parse(SHARED_SCHEDULER_OPT)
+
+        then:
+        parser.config().sharedScheduler()
+    }
+
+    def "DPE: enable delta reports"() {
+        when:
+        parser.parse(REPORT_DELTAS_OPT)
+
+        then:
+        parser.config().reportDeltas()
+    }
+
+    def "DPE: enable virtual threads"() {
+        when:
+        parser.parse(VIRTUAL_THREADS_OPT)
+
+        then:
+        parser.useVirtualThreads()
+    }
+
     private static def proxy(String host, int port = Dpe.DEFAULT_PROXY_PORT) {
         new ProxyAddress(host, port)
     }
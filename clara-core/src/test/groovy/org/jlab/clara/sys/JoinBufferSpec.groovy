@@ -0,0 +1,106 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys
+
+import org.jlab.clara.base.error.ClaraException
+import org.jlab.clara.msg.core.Message
+import org.jlab.clara.msg.core.Topic
+import org.jlab.clara.msg.data.MetaDataProto.MetaData
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.TimeUnit
+
+class JoinBufferSpec extends Specification {
+
+    static final String S1 = "10.1.1.1_java:C:S1"
+    static final String S2 = "10.1.1.1_java:C:S2"
+    static final String S3 = "10.1.1.1_java:C:S3"
+
+    static final String COMPOSITION = "$S1,$S2+&$S3;"
+    static final String[] INPUTS = [S1, S2]
+
+    @Subject
+    JoinBuffer buffer = new JoinBuffer(100, 10, TimeUnit.NANOSECONDS)
+
+    def "A join is completed when all inputs are received"() {
+        given:
+        var first = input(S2, 1)
+        var second = input(S1, 1)
+
+        when:
+        var pending = buffer.add(first, INPUTS, 0)
+        var join = buffer.add(second, INPUTS, 4)
+
+        then:
+        pending == null
+        join.inputs() == [second, first]
+        join.waitTime() == 4
+        buffer.size() == 0
+        buffer.bytes() == 0
+    }
+
+    def "Inputs are joined by communication ID"() {
+        when:
+        buffer.add(input(S1, 1), INPUTS, 0)
+        var join = buffer.add(input(S2, 2), INPUTS, 0)
+
+        then:
+        join == null
+        buffer.size() == 2
+    }
+
+    def "Duplicated inputs are rejected"() {
+        given:
+        buffer.add(input(S1, 1), INPUTS, 0)
+
+        when:
+        buffer.add(input(S1, 1), INPUTS, 0)
+
+        then:
+        thrown ClaraException
+        buffer.bytes() == 10
+    }
+
+    def "Inputs are rejected when the buffer is full"() {
+        when:
+        buffer.add(input(S1, 1, 60), INPUTS, 0)
+        buffer.add(input(S1, 2, 60), INPUTS, 0)
+
+        then:
+        thrown ClaraException
+        buffer.size() == 1
+        buffer.bytes() == 60
+    }
+
+    def "Incomplete joins expire after the timeout"() {
+        given:
+        var first = input(S1, 1)
+        buffer.add(first, INPUTS, 0)
+        buffer.add(input(S1, 2), INPUTS, 5)
+
+        when:
+        var expired = buffer.expire(12)
+
+        then:
+        expired.size() == 1
+        expired[0].input().is(first)
+        expired[0].inputs() == [first]
+        expired[0].missing() == [S2]
+        buffer.size() == 1
+        buffer.bytes() == 10
+    }
+
+    private static Message input(String sender, int id, int size = 10) {
+        var meta = MetaData.newBuilder()
+                .setAuthor(sender)
+                .setComposition(COMPOSITION)
+                .setCommunicationId(id)
+                .setAction(MetaData.ControlAction.EXECUTE)
+        new Message(Topic.wrap(S3), meta, new byte[size])
+    }
+}
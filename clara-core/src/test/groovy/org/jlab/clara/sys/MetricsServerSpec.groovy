@@ -0,0 +1,81 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys
+
+import org.jlab.clara.base.core.ClaraBase
+import org.jlab.clara.sys.report.DpeReport
+import org.jlab.clara.sys.report.OpenMetricsWriter
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpRequest.BodyPublishers
+import java.net.http.HttpResponse
+import java.net.http.HttpResponse.BodyHandlers
+
+class MetricsServerSpec extends Specification {
+
+    @Subject
+    MetricsServer server
+
+    HttpClient client = HttpClient.newHttpClient()
+
+    def setup() {
+        ClaraBase base = Stub {
+            getName() >> "10.1.1.10_java"
+            getDescription() >> "test"
+        }
+        server = new MetricsServer(0, new DpeReport(base, "test"))
+        server.start()
+    }
+
+    def cleanup() {
+        server.stop()
+    }
+
+    def "GET returns the metrics of the DPE"() {
+        when:
+        var response = send("GET")
+
+        then:
+        response.statusCode() == 200
+        response.headers().firstValue("Content-Type").get() == OpenMetricsWriter.CONTENT_TYPE
+        response.body().startsWith("# TYPE clara_dpe info\n")
+        response.body().endsWith("# EOF\n")
+    }
+
+    def "HEAD returns the headers without the metrics"() {
+        when:
+        var response = send("HEAD")
+
+        then:
+        response.statusCode() == 200
+        response.headers().firstValue("Content-Type").get() == OpenMetricsWriter.CONTENT_TYPE
+        response.body().isEmpty()
+    }
+
+    def "Other methods are not allowed"() {
+        when:
+        var response = send(method)
+
+        then:
+        response.statusCode() == 405
+        response.headers().firstValue("Allow").get() == "GET, HEAD"
+
+        where:
+        method << ["POST", "PUT", "DELETE"]
+    }
+
+    private HttpResponse<String> send(String method) {
+        var uri = URI.create("http://localhost:${server.port()}${MetricsServer.PATH}")
+        var request = HttpRequest.newBuilder(uri)
+                .method(method, BodyPublishers.noBody())
+                .build()
+        client.send(request, BodyHandlers.ofString())
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys
+
+import org.jlab.clara.base.core.ClaraConstants
+import org.jlab.clara.base.core.DataUtil
+import org.jlab.clara.engine.Engine
+import org.jlab.clara.engine.EngineData
+import org.jlab.clara.engine.EngineDataType
+import org.jlab.clara.msg.core.Message
+import org.jlab.clara.msg.core.Topic
+import org.jlab.clara.msg.data.MetaDataProto.MetaData
+import org.jlab.clara.sys.report.ServiceReport
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ServiceDispatcherSpec extends Specification {
+
+    static final String S1 = "10.1.1.1_java:C:S1"
+    static final String S2 = "10.1.1.1_java:C:S2"
+    static final String S3 = "10.1.1.1_java:C:S3"
+
+    static final String COMPOSITION = "$S1+$S2;"
+    static final Set<EngineDataType> TYPES = [EngineDataType.STRING] as Set
+
+    ServiceActor base = Mock()
+    ServiceReport report = Mock()
+
+    @Subject
+    ServiceDispatcher dispatcher
+
+    def setup() {
+        base.getName() >> S1
+    }
+
+    def cleanup() {
+        dispatcher?.stop()
+    }
+
+    def "Requests received after a configure reply run with the new configuration"() {
+        given:
+        var options = new ServiceOptions(0, QueuePolicy.BLOCK, false)
+                .withDeployOptions("enginePerSlot=true")
+        var engines = newEngines([newUserEngine(), newUserEngine()])
+        dispatcher = new ServiceDispatcher(S1, engines, 2, null, options, report)
+
+        and: "the next request is sent while the configured engine is still busy"
+        var replies = new LinkedBlockingQueue<String>()
+        var executed = new CountDownLatch(1)
+        base.send(_) >> { Message msg ->
+            if (msg.topic.toString() == "ret:configure") {
+                dispatcher.submit(request(MetaData.ControlAction.EXECUTE, "ret:execute", "event"))
+                executed.await(5, TimeUnit.SECONDS)
+            } else {
+                replies.add(new String(msg.data))
+                executed.countDown()
+            }
+        }
+        dispatcher.start()
+
+        when:
+        dispatcher.submit(request(MetaData.ControlAction.CONFIGURE, "ret:configure", "v2"))
+
+        then:
+        replies.poll(5, TimeUnit.SECONDS) == "config = v2"
+    }
+
+    def "The pool keeps growing while all the engines are busy"() {
+        given: "engines that do not finish until released"
+        var release = new CountDownLatch(1)
+        Engine userEngine = Stub {
+            getInputDataTypes() >> TYPES
+            getOutputDataTypes() >> TYPES
+            execute(_) >> { release.await(); result("done") }
+        }
+        var options = new ServiceOptions(0, QueuePolicy.REJECT, false)
+        dispatcher = new ServiceDispatcher(S1, newEngines([userEngine] * 6), 2, null, options, report)
+
+        and:
+        var poolSize = new AtomicInteger()
+        report.setActivePoolSize(_) >> { int size -> poolSize.set(size) }
+        dispatcher.start()
+
+        expect:
+        new PollingConditions(timeout: 5).eventually {
+            dispatcher.offer(request(MetaData.ControlAction.EXECUTE, "ret:execute", "event"))
+            assert poolSize.get() == 6
+        }
+
+        cleanup:
+        release.countDown()
+    }
+
+    def "Batched requests of a composition are executed as a group routed once"() {
+        given:
+        var groups = []
+        Engine userEngine = Stub {
+            getInputDataTypes() >> TYPES
+            getOutputDataTypes() >> TYPES
+            getVersion() >> "1.0"
+            executeGroup(_) >> { Set<EngineData> inputs ->
+                groups << inputs.size()
+                result("group of ${inputs.size()}")
+            }
+        }
+        var options = new ServiceOptions(10, QueuePolicy.BLOCK, false)
+                .withDeployOptions("batchSize=3;batchTime=5000000")
+        dispatcher = new ServiceDispatcher(S1, newEngines([userEngine]), 1, null, options, report)
+
+        and:
+        var results = new LinkedBlockingQueue<String>()
+        base.trySend(_, _) >> { address, Message msg -> results << new String(msg.data); true }
+
+        when:
+        3.times { dispatcher.submit(request(MetaData.ControlAction.EXECUTE, null, "event $it")) }
+        dispatcher.start()
+
+        then:
+        results.poll(5, TimeUnit.SECONDS) == "group of 3"
+
+        when:
+        dispatcher.stop()
+
+        then:
+        groups == [3]
+        results.isEmpty()
+    }
+
+    def "A turn of the shared scheduler waiting to fill a batch does not block other services"() {
+        given: "a single thread shared by two services"
+        var scheduler = new EngineScheduler(1)
+        var options = new ServiceOptions(10, QueuePolicy.BLOCK, false)
+        var batchOptions = options.withDeployOptions("batchSize=3;batchTime=30000000")
+        dispatcher = new ServiceDispatcher(S1, newEngines([newUserEngine()]), 1,
+                                           scheduler, batchOptions, report)
+        var other = new ServiceDispatcher(S2, newEngines([newUserEngine()]), 1,
+                                          scheduler, options, report)
+
+        and:
+        var replies = new LinkedBlockingQueue<String>()
+        base.send(_) >> { Message msg -> replies << new String(msg.data) }
+        base.trySend(_, _) >> true
+        dispatcher.start()
+        other.start()
+
+        when: "the batched service is waiting for the rest of the batch"
+        dispatcher.submit(request(MetaData.ControlAction.EXECUTE, null, "event 0"))
+        Thread.sleep(100)
+        other.submit(request(MetaData.ControlAction.EXECUTE, "ret:execute", "event"))
+
+        then:
+        replies.poll(5, TimeUnit.SECONDS) == "config = null"
+
+        cleanup:
+        2.times { dispatcher.submit(request(MetaData.ControlAction.EXECUTE, null, "event $it")) }
+        other.stop()
+        dispatcher.stop()
+        scheduler.shutdown()
+    }
+
+    def "Expired joins of the shared scheduler release their shared memory data"() {
+        given:
+        var scheduler = new EngineScheduler(1)
+        var options = new ServiceOptions(10, QueuePolicy.BLOCK, false)
+                .withDeployOptions("joinTimeout=1")
+        dispatcher = new ServiceDispatcher(S1, newEngines([newUserEngine()]), 1,
+                                           scheduler, options, report)
+        dispatcher.start()
+
+        and: "an input of the join with its data in the shared memory"
+        SharedMemory.addReceiver(S1)
+        SharedMemory.putEngineData(S1, S2, 7, result("event"))
+        var meta = MetaData.newBuilder().tap {
+            author = S2
+            sender = S2
+            communicationId = 7
+            composition = "$S2,$S3+&$S1;"
+            action = MetaData.ControlAction.EXECUTE
+            dataType = ClaraConstants.SHARED_MEMORY_KEY
+        }
+
+        when: "the input is taken by a turn and the join times out"
+        dispatcher.submit(new Message(Topic.wrap(S1), meta, new byte[0]))
+        Thread.sleep(100)
+        dispatcher.expireJoins()
+
+        then:
+        1 * report.incrementJoinTimeouts()
+        SharedMemory.getEngineData(S1, S2, 7) == null
+
+        cleanup:
+        dispatcher.stop()
+        scheduler.shutdown()
+        SharedMemory.removeReceiver(S1)
+    }
+
+    private ServiceEngine[] newEngines(List<Engine> userEngines) {
+        var config = new ServiceSysConfig(S1, "")
+        userEngines.collect {
+            new ServiceEngine(it, base, config, report, false)
+        } as ServiceEngine[]
+    }
+
+    /*
+     * A user engine that returns the configuration it was given.
+     */
+    private Engine newUserEngine() {
+        String config = null
+        Stub(Engine) {
+            getInputDataTypes() >> TYPES
+            getOutputDataTypes() >> TYPES
+            getVersion() >> "1.0"
+            configure(_) >> { EngineData data -> config = data.data; null }
+            execute(_) >> { EngineData data -> result("config = $config") }
+        }
+    }
+
+    private static Message request(MetaData.ControlAction action, String replyTo, String value) {
+        var data = result(value)
+        var meta = DataUtil.getMetadata(data)
+        meta.setComposition(COMPOSITION)
+        meta.setAction(action)
+        if (replyTo != null) {
+            meta.setReplyTo(replyTo)
+        }
+        DataUtil.serialize(Topic.wrap(S1), data, TYPES)
+    }
+
+    private static EngineData result(String value) {
+        var data = new EngineData()
+        data.setData(EngineDataType.STRING.mimeType(), value)
+        data
+    }
+}
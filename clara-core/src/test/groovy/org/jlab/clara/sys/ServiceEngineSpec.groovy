@@ -0,0 +1,142 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys
+
+import org.jlab.clara.base.core.BufferPool
+import org.jlab.clara.base.core.DataUtil
+import org.jlab.clara.engine.Engine
+import org.jlab.clara.engine.EngineData
+import org.jlab.clara.engine.EngineDataType
+import org.jlab.clara.msg.core.Message
+import org.jlab.clara.msg.core.Topic
+import org.jlab.clara.msg.data.MetaDataProto.MetaData
+import org.jlab.clara.sys.report.ServiceReport
+import spock.lang.Specification
+import spock.lang.Subject
+
+class ServiceEngineSpec extends Specification {
+
+    static final String S1 = "10.1.1.1_java:C:S1"
+    static final String S2 = "10.1.1.1_java:C:S2"
+
+    static final String COMPOSITION = "$S1+$S2;"
+    static final Set<EngineDataType> TYPES = [EngineDataType.STRING] as Set
+
+    ServiceActor base = Mock()
+    ServiceReport report = Mock()
+
+    Engine engine = Stub {
+        getInputDataTypes() >> TYPES
+        getOutputDataTypes() >> TYPES
+        getVersion() >> "1.0"
+        executeGroup(_) >> { Set<EngineData> inputs -> result("group of ${inputs.size()}") }
+    }
+
+    @Subject
+    ServiceEngine serviceEngine
+
+    def setup() {
+        base.getName() >> S1
+        var config = new ServiceSysConfig(S1, "")
+        serviceEngine = new ServiceEngine(engine, base, config, report, false)
+    }
+
+    def "Every request of a batch gets a reply"() {
+        given:
+        var replies = []
+
+        when:
+        serviceEngine.executeGroup([request(1, "ret:A"), request(2, "ret:B"), request(3, "ret:C")])
+
+        then:
+        3 * base.send(_) >> { Message msg -> replies << reply(msg) + new String(msg.data) }
+        replies == [["ret:A", 1, "group of 3"], ["ret:B", 2, "done"], ["ret:C", 3, "done"]]
+    }
+
+    def "The result of a batch is routed once to the next service"() {
+        given:
+        var results = []
+
+        when:
+        serviceEngine.executeGroup([request(1), request(2), request(3)])
+
+        then:
+        1 * base.trySend(_, _) >> { address, Message msg ->
+            results << reply(msg) + new String(msg.data)
+            true
+        }
+        results == [[S2, 1, "group of 3"]]
+    }
+
+    def "Results dispatched to a local service do not share the pooled buffers"() {
+        given:
+        Service receiver = Mock()
+        LocalServices.register(S2, receiver)
+        var localEngine = new ServiceEngine(engine, base, new ServiceSysConfig(S1, ""), report, true)
+        var dispatched = []
+
+        when:
+        localEngine.executeGroup([request(1), request(2)])
+
+        then:
+        1 * receiver.tryDispatch(_) >> { Message msg -> dispatched << msg; true }
+        0 * base.trySend(_, _)
+
+        when:
+        var buffer = BufferPool.getDefault().acquire(30)
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 'x')
+        }
+
+        then:
+        dispatched.collect { new String(it.data) } == ["group of 2"]
+
+        cleanup:
+        LocalServices.remove(S2, receiver)
+    }
+
+    def "All the configurations received by other engines are applied in order"() {
+        given:
+        var configs = []
+        Engine instance = Stub {
+            getVersion() >> "1.0"
+            configure(_) >> { EngineData data -> configs << data.data; null }
+        }
+        var otherEngine = new ServiceEngine(instance, base, new ServiceSysConfig(S1, ""), report, false)
+
+        when:
+        otherEngine.configureLater(result("v1"))
+        otherEngine.configureLater(result("v2"))
+        otherEngine.applyPendingConfigs()
+        otherEngine.applyPendingConfigs()
+
+        then:
+        configs == ["v1", "v2"]
+    }
+
+    private static Message request(int id, String replyTo = null) {
+        var data = result("event $id")
+        var meta = DataUtil.getMetadata(data)
+        meta.setCommunicationId(id)
+        meta.setComposition(COMPOSITION)
+        meta.setAction(MetaData.ControlAction.EXECUTE)
+        if (replyTo != null) {
+            meta.setReplyTo(replyTo)
+        }
+        DataUtil.serialize(Topic.wrap(S1), data, TYPES)
+    }
+
+    private static EngineData result(String value) {
+        var data = new EngineData()
+        data.setData(EngineDataType.STRING.mimeType(), value)
+        data
+    }
+
+    private static List reply(Message msg) {
+        [msg.topic.toString(), msg.metaData.communicationId]
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys
+
+import org.jlab.clara.sys.RequestParser.RequestException
+import spock.lang.Specification
+
+class ServiceOptionsSpec extends Specification {
+
+    private static final ServiceOptions DEFAULTS = new ServiceOptions(0, QueuePolicy.BLOCK, true)
+
+    def "Use the pool size of the service when the queue size is not set"() {
+        expect:
+        DEFAULTS.queueSize(8) == 8
+        new ServiceOptions(20, QueuePolicy.BLOCK, true).queueSize(8) == 20
+    }
+
+    def "Keep the defaults when the deploy request has no options"() {
+        expect:
+        DEFAULTS.withDeployOptions("") == DEFAULTS
+    }
+
+    def "Override the batch settings with the deploy options"() {
+        when:
+        var options = DEFAULTS.withDeployOptions("batchSize=16;batchTime=2000")
+
+        then:
+        options.batchSize() == 16
+        options.batchTime() == 2000
+        options.queuePolicy() == QueuePolicy.BLOCK
+        options.localDispatch()
+    }
+
+    def "Override the join settings with the deploy options"() {
+        when:
+        var options = DEFAULTS.withDeployOptions("joinMemory=1048576;joinTimeout=500")
+
+        then:
+        options.joinMemory() == 1048576
+        options.joinTimeout() == 500
+        options.batchSize() == 1
+    }
+
+    def "Use an engine instance per slot when requested by the deploy options"() {
+        expect:
+        !DEFAULTS.enginePerSlot()
+        DEFAULTS.withDeployOptions("enginePerSlot=true").enginePerSlot()
+    }
+
+    def "The bounds of an elastic pool include the pool size of the service"() {
+        given:
+        var options = DEFAULTS.withDeployOptions("minPoolSize=$min;maxPoolSize=$max")
+
+        expect:
+        options.minPoolSize(4) == minSize
+        options.maxPoolSize(4) == maxSize
+
+        where:
+        min | max || minSize | maxSize
+        0   | 0   || 4       | 4
+        2   | 8   || 2       | 8
+        6   | 8   || 4       | 8
+        1   | 2   || 1       | 4
+    }
+
+    def "Reject invalid deploy options"() {
+        when:
+        DEFAULTS.withDeployOptions(options)
+
+        then:
+        thrown(RequestException)
+
+        where:
+        options << ["batchSize", "batchSize=-1", "batchSize=abc", "enginePerSlot=yes", "foo=1"]
+    }
+}
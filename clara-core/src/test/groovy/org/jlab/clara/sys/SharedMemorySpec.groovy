@@ -0,0 +1,101 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys
+
+import org.jlab.clara.engine.EngineData
+import spock.lang.Specification
+
+class SharedMemorySpec extends Specification {
+
+    static final String RECEIVER = "10.1.1.1:cont:Receiver"
+    static final String SENDER = "10.1.1.1:cont:Sender"
+
+    def setup() {
+        SharedMemory.addReceiver(RECEIVER, 2)
+    }
+
+    def cleanup() {
+        SharedMemory.removeReceiver(RECEIVER)
+    }
+
+    def "Stored data is taken only once by the receiver"() {
+        given:
+        var data = engineData("some data")
+        SharedMemory.putEngineData(RECEIVER, SENDER, 1, data)
+
+        expect:
+        SharedMemory.getEngineData(RECEIVER, SENDER, 1).is(data)
+        SharedMemory.getEngineData(RECEIVER, SENDER, 1) == null
+    }
+
+    def "Data is identified by the sender and the communication ID"() {
+        given:
+        var first = engineData("first")
+        var second = engineData("second")
+        SharedMemory.putEngineData(RECEIVER, SENDER, 1, first)
+        SharedMemory.putEngineData(RECEIVER, "10.1.1.1:cont:Other", 1, second)
+
+        expect:
+        SharedMemory.getEngineData(RECEIVER, SENDER, 2) == null
+        SharedMemory.getEngineData(RECEIVER, SENDER, 1).is(first)
+    }
+
+    def "Data for unregistered receivers is not stored"() {
+        expect:
+        !SharedMemory.putEngineData("10.1.1.1:cont:Missing", SENDER, 1, engineData("data"))
+    }
+
+    def "Data is not stored when the receiver is full"() {
+        given:
+        var rejected = SharedMemory.rejected
+
+        when:
+        var stored = (1..3).collect { SharedMemory.putEngineData(RECEIVER, SENDER, it, engineData("data")) }
+
+        then:
+        stored == [true, true, false]
+        SharedMemory.rejected == rejected + 1
+    }
+
+    def "Data never taken by the receiver is evicted"() {
+        given:
+        var entries = SharedMemory.entries
+        var bytes = SharedMemory.bytes
+        SharedMemory.putEngineData(RECEIVER, SENDER, 1, engineData("data"))
+
+        expect:
+        SharedMemory.entries == entries + 1
+        SharedMemory.bytes == bytes + 4
+
+        when:
+        SharedMemory.evictExpired(0)
+
+        then:
+        SharedMemory.entries == entries
+        SharedMemory.bytes == bytes
+        SharedMemory.getEngineData(RECEIVER, SENDER, 1) == null
+    }
+
+    def "Removing the receiver discards its data"() {
+        given:
+        var entries = SharedMemory.entries
+        SharedMemory.putEngineData(RECEIVER, SENDER, 1, engineData("data"))
+
+        when:
+        SharedMemory.removeReceiver(RECEIVER)
+
+        then:
+        SharedMemory.entries == entries
+        !SharedMemory.containsReceiver(RECEIVER)
+    }
+
+    private static EngineData engineData(String value) {
+        var data = new EngineData()
+        data.setData(value)
+        data
+    }
+}
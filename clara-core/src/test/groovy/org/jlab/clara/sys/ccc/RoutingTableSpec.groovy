@@ -0,0 +1,144 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.ccc
+
+import org.jlab.clara.base.core.ClaraConstants
+import org.jlab.clara.base.error.ClaraException
+import spock.lang.Specification
+
+class RoutingTableSpec extends Specification {
+
+    static final String S1 = "10.10.10.1_java:C:S1"
+    static final String S2 = "10.10.10.1_java:C:S2"
+    static final String S3 = "10.10.10.1_java:C:S3"
+    static final String S4 = "10.10.10.1_java:C:S4"
+    static final String S5 = "10.10.10.1_java:C:S5"
+
+    static final String UNDEFINED = ClaraConstants.UNDEFINED
+
+    static final String CONDITIONAL = """\
+        $S1;
+        if ($S1 == "FOO") {
+          $S1+$S2;
+        } elseif ($S1 == "BAR" && $S2 == "BAZ") {
+          $S1+$S3;
+        } else {
+          $S1+$S4,$S5;
+        }""".stripIndent()
+
+    static final String SIMPLE_CONDITIONAL = """\
+        $S1;
+        if ($S1 == "FOO") {
+          $S1+$S2;
+        } elseif ($S2 != "BAR") {
+          $S1+$S3;
+          $S1+$S4;
+        }
+        $S2+$S5;""".stripIndent()
+
+    def "Invalid compositions are rejected"() {
+        when:
+        RoutingTable.compile(composition, S1)
+
+        then:
+        thrown ClaraException
+
+        where:
+        composition << [
+            "$S1+$S2",
+            "10.10.10.1_java:C:S1+10.10.10.1:C:S2;",
+            "10.10.10.1_ruby:C:S1+$S2;",
+            "$S1++$S2;",
+            "&$S1+$S2;",
+            "$S1+&$S2,$S3;",
+            "if ($S1 == \"FOO\") { $S1+$S2; ",
+            "if ($S1 == \"FOO\" && $S1 == \"BAR\" !! $S2 == \"BAZ\") { $S1+$S2; }",
+            "if ($S1 = \"FOO\") { $S1+$S2; }",
+            "$S2+$S3;",
+        ]
+    }
+
+    def "Get the unconditional links of the service"() {
+        given:
+        var table = RoutingTable.compile(composition, service)
+
+        expect:
+        table.links(service, UNDEFINED, S1, UNDEFINED)*.name() == links
+
+        where:
+        composition                      | service || links
+        "$S1+$S2+$S3;"                   | S1      || [S2]
+        "$S1+$S2+$S3;"                   | S3      || []
+        "$S1 + $S2 + $S3,$S4;"           | S2      || [S3, S4]
+        "$S1,$S2+$S3;"                   | S2      || [S3]
+        "$S1+$S2+$S3; $S2+$S4;"          | S2      || [S3, S4]
+        "$S1+$S3+$S1;"                   | S3      || [S1]
+        "$S1+$S3+$S1;"                   | S1      || [S3]
+        "$S1,$S2+&$S3;"                  | S1      || [S3]
+        "10.10.10.1%9999_java:C:S1+$S2;" | S2      || []
+    }
+
+    def "Get the conditional links of the service"() {
+        given:
+        var table = RoutingTable.compile(CONDITIONAL, S1)
+
+        expect:
+        table.links(S1, ownerState, S2, inputState)*.name() == links
+
+        where:
+        ownerState | inputState || links
+        "FOO"      | UNDEFINED  || [S2]
+        "BAR"      | UNDEFINED  || [S4, S5]
+        "BAR"      | "BAZ"      || [S3]
+        UNDEFINED  | UNDEFINED  || [S4, S5]
+    }
+
+    def "Get the joined inputs of the service"() {
+        given:
+        var table = RoutingTable.compile(composition, service)
+
+        expect:
+        table.joinInputs() as List == inputs
+
+        where:
+        composition             | service || inputs
+        "$S1+$S2,$S3+&$S4+$S5;" | S4      || [S2, S3]
+        "$S1+$S2,$S3+&$S4+$S5;" | S5      || []
+        "$S1+$S2,$S3+$S4+$S5;"  | S4      || []
+        "$S1+&$S3; $S2+&$S3;"   | S3      || [S1, S2]
+    }
+
+    def "Links are precomputed"() {
+        given:
+        var table = RoutingTable.compile(CONDITIONAL, S1)
+
+        expect:
+        table.links(S1, "FOO", S2, UNDEFINED).is(table.links(S1, "FOO", S2, UNDEFINED))
+    }
+
+    def "The links are the same of the original compiler"() {
+        given:
+        var compiler = new CompositionCompiler(service)
+        compiler.compile(composition)
+        var table = RoutingTable.compile(composition, service)
+
+        expect:
+        table.getLinks(owner, input) == compiler.getLinks(owner, input)
+
+        where:
+        composition        | service | owner            | input
+        "$S1+$S2+$S3;"     | S2      | state(S2, "FOO") | state(S1, UNDEFINED)
+        SIMPLE_CONDITIONAL | S1      | state(S1, "FOO") | state(S2, UNDEFINED)
+        SIMPLE_CONDITIONAL | S1      | state(S1, "BAR") | state(S2, "BAR")
+        SIMPLE_CONDITIONAL | S1      | state(S1, "BAR") | state(S2, "BAZ")
+        SIMPLE_CONDITIONAL | S2      | state(S2, "BAZ") | state(S1, UNDEFINED)
+    }
+
+    private static ServiceState state(String name, String state) {
+        new ServiceState(name, state)
+    }
+}
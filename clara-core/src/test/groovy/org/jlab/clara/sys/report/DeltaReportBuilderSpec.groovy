@@ -0,0 +1,188 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.report
+
+import org.jlab.clara.base.core.ClaraBase
+import org.jlab.clara.base.core.ClaraComponent
+import org.jlab.clara.base.core.ClaraConstants
+import org.jlab.clara.engine.Engine
+import org.json.JSONObject
+import spock.lang.Specification
+import spock.lang.Subject
+
+class DeltaReportBuilderSpec extends Specification {
+
+    static final String S1 = "10.1.1.10_java:C:S1"
+    static final String S2 = "10.1.1.10_java:C:S2"
+    static final String S3 = "10.1.1.10_java:C:S3"
+
+    DpeReport dpeReport
+    ContainerReport containerReport
+
+    @Subject
+    DeltaReportBuilder builder = new DeltaReportBuilder(new JsonReportBuilder())
+
+    def setup() {
+        dpeReport = new DpeReport(base("10.1.1.10_java"), "test")
+        containerReport = new ContainerReport(base("10.1.1.10_java:C"), "Author")
+        dpeReport.addContainer(containerReport)
+        containerReport.addService(service("S1"))
+        containerReport.addService(service("S2"))
+    }
+
+    def "The first report of the sequence is a full report"() {
+        when:
+        var result = builder.nextReport(dpeReport)
+
+        then:
+        result.isFull()
+        fullVersion(result) == 1
+    }
+
+    def "Delta reports only contain the counters that changed"() {
+        given:
+        builder.nextReport(dpeReport)
+
+        when:
+        serviceReport(S1).with {
+            incrementRequestCount()
+            incrementRequestCount()
+            incrementFailureCount()
+        }
+        var result = builder.nextReport(dpeReport)
+
+        then:
+        !result.isFull()
+        deltaServices(result) == [(S1): [n_requests: 2, n_failures: 1]]
+    }
+
+    def "Delta reports are written in sequence over the previous report"() {
+        given:
+        builder.nextReport(dpeReport)
+
+        when:
+        var deltas = (1..3).collect {
+            serviceReport(S2).incrementRequestCount()
+            delta(builder.nextReport(dpeReport))
+        }
+
+        then:
+        deltas*.getLong("base_version") == [1, 2, 3]
+        deltas*.getLong("version") == [2, 3, 4]
+        deltas.collect { it.getJSONObject("services").toMap() } == [
+            [(S2): [n_requests: 1]],
+            [(S2): [n_requests: 2]],
+            [(S2): [n_requests: 3]],
+        ]
+    }
+
+    def "Delta reports contain the latencies recorded since the previous report"() {
+        given:
+        serviceReport(S1).addExecutionTime(20)
+        builder.nextReport(dpeReport)
+
+        when:
+        serviceReport(S1).addExecutionTime(20)
+        serviceReport(S1).addExecutionTime(5)
+        var result = builder.nextReport(dpeReport)
+
+        then:
+        deltaServices(result)[S1].latency_delta == [execute: ["5": 1, "20": 1]]
+    }
+
+    def "Delta reports contain the stats of the DPE"() {
+        given:
+        builder.nextReport(dpeReport)
+
+        when:
+        var delta = delta(builder.nextReport(dpeReport))
+
+        then:
+        delta.has("buffer_pool")
+        delta.has("shared_memory")
+        delta.has("composition_cache")
+    }
+
+    def "Delta reports are empty when no counter changed"() {
+        given:
+        builder.nextReport(dpeReport)
+
+        when:
+        var result = builder.nextReport(dpeReport)
+
+        then:
+        !result.isFull()
+        deltaServices(result).isEmpty()
+    }
+
+    def "A full report is written when the deployed services change"() {
+        given:
+        builder.nextReport(dpeReport)
+        builder.nextReport(dpeReport)
+
+        when:
+        containerReport.addService(service("S3"))
+        var result = builder.nextReport(dpeReport)
+
+        then:
+        result.isFull()
+        fullVersion(result) == 3
+    }
+
+    def "A full report resets the values of the next delta report"() {
+        given:
+        builder.nextReport(dpeReport)
+        serviceReport(S1).incrementRequestCount()
+
+        when:
+        var full = builder.fullReport(dpeReport)
+        var result = builder.nextReport(dpeReport)
+
+        then:
+        fullVersion(full) == 2
+        delta(result).getLong("base_version") == 2
+        deltaServices(result).isEmpty()
+    }
+
+    private ClaraBase base(String name) {
+        Stub(ClaraBase) {
+            getName() >> name
+            getDescription() >> "test"
+            getClaraHome() >> "/opt/clara"
+        }
+    }
+
+    private ServiceReport service(String engine) {
+        Engine userEngine = Stub {
+            getAuthor() >> "Author"
+            getDescription() >> "test engine"
+            getVersion() >> "1.0"
+        }
+        var comp = ClaraComponent.service("10.1.1.10", "java", "C", engine)
+        new ServiceReport(comp, userEngine, "test")
+    }
+
+    private ServiceReport serviceReport(String name) {
+        containerReport.getServices().find { it.name == name }
+    }
+
+    private static long fullVersion(DeltaReportBuilder.Result result) {
+        fullVersion(result.json())
+    }
+
+    private static long fullVersion(String json) {
+        new JSONObject(json).getJSONObject(ClaraConstants.RUNTIME_KEY).getLong("version")
+    }
+
+    private static JSONObject delta(DeltaReportBuilder.Result result) {
+        new JSONObject(result.json()).getJSONObject(ClaraConstants.DELTA_KEY)
+    }
+
+    private static Map<String, Object> deltaServices(DeltaReportBuilder.Result result) {
+        delta(result).getJSONObject("services").toMap()
+    }
+}
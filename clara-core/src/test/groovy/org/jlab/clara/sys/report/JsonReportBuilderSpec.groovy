@@ -0,0 +1,123 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.report
+
+import org.jlab.clara.base.core.ClaraBase
+import org.jlab.clara.base.core.ClaraComponent
+import org.jlab.clara.base.core.ClaraConstants
+import org.jlab.clara.engine.Engine
+import org.json.JSONObject
+import spock.lang.Specification
+import spock.lang.Subject
+
+class JsonReportBuilderSpec extends Specification {
+
+    static final String DPE = "10.1.1.10_java"
+    static final String CONTAINER = "10.1.1.10_java:C"
+
+    DpeReport dpeReport
+    ContainerReport containerReport
+
+    @Subject
+    JsonReportBuilder builder = new JsonReportBuilder()
+
+    def setup() {
+        dpeReport = Spy(DpeReport, constructorArgs: [base(DPE), "test"])
+        containerReport = new ContainerReport(base(CONTAINER), "Author")
+        dpeReport.addContainer(containerReport)
+        containerReport.addService(service("S1"))
+    }
+
+    def "The registration data is written once while the reports do not change"() {
+        when:
+        var first = builder.generateReport(dpeReport)
+        containerReport.getServices().each { it.incrementRequestCount() }
+        var second = builder.generateReport(dpeReport)
+
+        then:
+        1 * dpeReport.getSession()
+        registration(second) == registration(first)
+        runtimeService(second, "S1").getInt("n_requests") == 1
+    }
+
+    def "The registration data is written again when a service is deployed"() {
+        given:
+        builder.generateReport(dpeReport)
+
+        when:
+        containerReport.addService(service("S2"))
+        var report = builder.generateReport(dpeReport)
+
+        then:
+        1 * dpeReport.getSession()
+        registeredServices(report) == [CONTAINER + ":S1", CONTAINER + ":S2"] as Set
+    }
+
+    def "The runtime data has the active pool size and the latency buckets"() {
+        given:
+        containerReport.getServices().each {
+            it.setActivePoolSize(3)
+            it.addExecutionTime(20)
+            it.addExecutionTime(20)
+        }
+
+        when:
+        var service = runtimeService(builder.generateReport(dpeReport), "S1")
+
+        then:
+        service.getInt("active_pool_size") == 3
+        !service.has("pool_size")
+        service.getJSONObject("latency").toMap() == [execute: ["20": 2]]
+    }
+
+    def "The version of the report is written only if it is part of a sequence"() {
+        expect:
+        !runtime(builder.generateReport(dpeReport)).has("version")
+        runtime(builder.generateReport(dpeReport, 3)).getLong("version") == 3
+    }
+
+    private ClaraBase base(String name) {
+        Stub(ClaraBase) {
+            getName() >> name
+            getDescription() >> "test"
+            getClaraHome() >> "/opt/clara"
+        }
+    }
+
+    private ServiceReport service(String engine) {
+        Engine userEngine = Stub {
+            getAuthor() >> "Author"
+            getDescription() >> "test engine"
+            getVersion() >> "1.0"
+        }
+        var comp = ClaraComponent.service("10.1.1.10", "java", "C", engine)
+        new ServiceReport(comp, userEngine, "test")
+    }
+
+    private static String registration(String report) {
+        new JSONObject(report).getJSONObject(ClaraConstants.REGISTRATION_KEY).toString()
+    }
+
+    private static JSONObject runtime(String report) {
+        new JSONObject(report).getJSONObject(ClaraConstants.RUNTIME_KEY)
+    }
+
+    private static JSONObject runtimeService(String report, String engine) {
+        var services = runtime(report).getJSONArray("containers")
+                .getJSONObject(0)
+                .getJSONArray("services")
+        services.find { it.getString("name") == CONTAINER + ":" + engine } as JSONObject
+    }
+
+    private static Set<String> registeredServices(String report) {
+        new JSONObject(report).getJSONObject(ClaraConstants.REGISTRATION_KEY)
+                .getJSONArray("containers")
+                .getJSONObject(0)
+                .getJSONArray("services")
+                .collect { it.getString("name") } as Set
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.report
+
+import org.json.JSONObject
+import spock.lang.Specification
+
+class JsonWriterSpec extends Specification {
+
+    def "Write nested objects and arrays"() {
+        given:
+        var writer = new JsonWriter(64)
+
+        when:
+        writer.beginObject()
+        writer.field("name", "S1")
+        writer.field("n_requests", 10)
+        writer.field("cpu_usage", 45.5d)
+        writer.field("engine_per_slot", true)
+        writer.name("services").beginArray()
+        writer.beginObject().field("name", "S2").endObject()
+        writer.beginObject().field("name", "S3").endObject()
+        writer.endArray()
+        writer.name("empty").beginObject().endObject()
+        writer.endObject()
+
+        then:
+        writer.toString() == '{"name":"S1","n_requests":10,"cpu_usage":45.5,' +
+                '"engine_per_slot":true,"services":[{"name":"S2"},{"name":"S3"}],"empty":{}}'
+    }
+
+    def "Write escaped strings"() {
+        given:
+        var writer = new JsonWriter(64)
+
+        when:
+        writer.beginObject().field("description", 'a "quoted"\nvalue').endObject()
+
+        then:
+        new JSONObject(writer.toString()).getString("description") == 'a "quoted"\nvalue'
+    }
+
+    def "Write raw values"() {
+        given:
+        var writer = new JsonWriter(64)
+
+        when:
+        writer.beginObject()
+        writer.name("a").rawValue('{"x":1}')
+        writer.field("b", 2)
+        writer.endObject()
+
+        then:
+        writer.toString() == '{"a":{"x":1},"b":2}'
+    }
+}
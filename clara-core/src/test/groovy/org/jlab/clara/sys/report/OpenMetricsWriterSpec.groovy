@@ -0,0 +1,128 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.sys.report
+
+import org.jlab.clara.base.core.ClaraBase
+import org.jlab.clara.base.core.ClaraComponent
+import org.jlab.clara.engine.Engine
+import spock.lang.Specification
+
+class OpenMetricsWriterSpec extends Specification {
+
+    static final String S1 = "10.1.1.10_java:C:S1"
+
+    List<String> lines
+
+    def setup() {
+        var dpeReport = new DpeReport(base("10.1.1.10_java"), 'run "1" \\ test')
+        var containerReport = new ContainerReport(base("10.1.1.10_java:C"), "Author")
+        var serviceReport = service("S1")
+        dpeReport.addContainer(containerReport)
+        containerReport.addService(serviceReport)
+
+        3.times { serviceReport.incrementRequestCount() }
+        serviceReport.incrementFailureCount()
+        serviceReport.addExecutionTime(20)
+        serviceReport.addExecutionTime(300)
+        serviceReport.addExecutionTime(2_000_000)
+
+        lines = new OpenMetricsWriter().write(dpeReport).toString().readLines()
+    }
+
+    def "The metrics end with the EOF marker"() {
+        expect:
+        lines.last() == "# EOF"
+        lines.count("# EOF") == 1
+    }
+
+    def "Every sample has the suffix required by the type of its family"() {
+        given:
+        var suffixes = [
+            counter: ["_total"],
+            gauge: [""],
+            info: ["_info"],
+            histogram: ["_bucket"],
+        ]
+        var family = null
+        var type = null
+
+        expect:
+        lines.findAll { it != "# EOF" }.each { line ->
+            if (line.startsWith("# TYPE ")) {
+                (family, type) = line.split(" ")[2..3]
+                assert type in suffixes
+            } else if (!line.startsWith("# ")) {
+                var name = line.split(/[{ ]/)[0]
+                assert suffixes[type].any { name == family + it }
+            }
+        }
+    }
+
+    def "The DPE is described by an info family with escaped labels"() {
+        expect:
+        lines.containsAll([
+            "# TYPE clara_dpe info",
+            'clara_dpe_info{name="10.1.1.10_java",session="run \\"1\\" \\\\ test"} 1',
+        ])
+    }
+
+    def "Service counters are written in their units"() {
+        expect:
+        lines.containsAll([
+            "# TYPE clara_service_requests counter",
+            "clara_service_requests_total{service=\"$S1\"} 3".toString(),
+            "clara_service_failures_total{service=\"$S1\"} 1".toString(),
+            "# TYPE clara_service_execution_seconds counter",
+            "# UNIT clara_service_execution_seconds seconds",
+            "clara_service_execution_seconds_total{service=\"$S1\"} 2.00032".toString(),
+            "# TYPE clara_service_pool_size gauge",
+            "clara_service_pool_size{service=\"$S1\"} 1".toString(),
+        ])
+    }
+
+    def "Latency buckets are cumulative and end with the +Inf bucket"() {
+        given:
+        var prefix = "clara_service_latency_seconds_bucket{service=\"$S1\",phase=\"execute\","
+        var buckets = lines.findAll { it.startsWith(prefix) }
+                .collectEntries { line ->
+                    var le = (line =~ /le="([^"]+)"/)[0][1]
+                    [(le): line.split(" ")[1] as long]
+                }
+
+        expect:
+        buckets.keySet().last() == "+Inf"
+        buckets.values().toList() == buckets.values().toList().sort(false)
+        buckets["0.00001"] == 0
+        buckets["0.001"] == 2
+        buckets["10.0"] == 3
+        buckets["+Inf"] == 3
+    }
+
+    def "Histograms without a sum have no count samples"() {
+        expect:
+        lines.findAll { it.startsWith("clara_service_latency_seconds_count") }.isEmpty()
+        lines.findAll { it.startsWith("clara_service_latency_seconds_sum") }.isEmpty()
+    }
+
+    private ClaraBase base(String name) {
+        Stub(ClaraBase) {
+            getName() >> name
+            getDescription() >> "test"
+            getClaraHome() >> "/opt/clara"
+        }
+    }
+
+    private ServiceReport service(String engine) {
+        Engine userEngine = Stub {
+            getAuthor() >> "Author"
+            getDescription() >> "test engine"
+            getVersion() >> "1.0"
+        }
+        var comp = ClaraComponent.service("10.1.1.10", "java", "C", engine)
+        new ServiceReport(comp, userEngine, "test")
+    }
+}
@@ -21,7 +21,11 @@ import org.zeromq.ZMQException;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.RejectedExecutionHandler;
@@ -107,6 +111,10 @@ public class Actor implements AutoCloseable {
 
     private final ResponseListener syncPubListener;
 
+    // cache of discovery results (null if disabled)
+    private final DiscoveryCache discoveryCache;
+    private final DiscoveryListener discoveryListener;
+
     /**
      * Creates an actor with default settings.
      * The local node and the standard ports will be used for both
@@ -228,6 +236,16 @@ public class Actor implements AutoCloseable {
         this.syncPubListener = new ResponseListener(myId, factory);
         this.syncPubListener.start();
 
+        // create the discovery cache
+        if (setup.discoveryCacheAge() > 0) {
+            this.discoveryCache = new DiscoveryCache(setup.discoveryCacheAge());
+            this.discoveryListener = new DiscoveryListener(myId, factory, discoveryCache);
+            this.discoveryListener.start();
+        } else {
+            this.discoveryCache = null;
+            this.discoveryListener = null;
+        }
+
         // create the map of running subscriptions
         this.mySubscriptions = new ConcurrentHashMap<>();
         this.callbackMode = setup.subscriptionMode();
@@ -253,6 +271,9 @@ public class Actor implements AutoCloseable {
         unsubscribeAll();
         terminateCallbacks();
         syncPubListener.stop();
+        if (discoveryListener != null) {
+            discoveryListener.stop();
+        }
         connectionManager.destroy(linger);
     }
 
@@ -437,6 +458,63 @@ public class Actor implements AutoCloseable {
      */
     public Message syncPublish(Connection connection, Message msg, long timeout)
             throws ClaraMsgException, TimeoutException {
+        var response = sendRequest(connection, msg, timeout);
+        return syncPubListener.waitMessage(response, timeout);
+    }
+
+    /**
+     * Publishes a message through the default proxy connection and returns
+     * a future for the response, without blocking the calling thread.
+     * <p>
+     * The subscriber must publish the response to the topic given by the
+     * {@code replyto} metadata field, through the same proxy.
+     * <p>
+     * The returned future will be completed exceptionally with a
+     * {@link TimeoutException} if a response is not received before the
+     * timeout expires.
+     *
+     * @param msg the message to be published
+     * @param timeout the length of time to wait a response, in milliseconds
+     * @return a future for the response message
+     * @throws ClaraMsgException if the message could not be published
+     */
+    public CompletableFuture<Message> syncPublishAsync(Message msg, long timeout)
+            throws ClaraMsgException {
+        try (var connection = getConnection()) {
+            return sendRequest(connection, msg, timeout);
+        }
+    }
+
+    /**
+     * Publishes a message through the specified proxy and returns
+     * a future for the response, without blocking the calling thread.
+     * <p>
+     * The subscriber must publish the response to the topic given by the
+     * {@code replyto} metadata field, through the same proxy.
+     * <p>
+     * The returned future will be completed exceptionally with a
+     * {@link TimeoutException} if a response is not received before the
+     * timeout expires.
+     *
+     * @param address the address to the proxy
+     * @param msg the message to be published
+     * @param timeout the length of time to wait a response, in milliseconds
+     * @return a future for the response message
+     * @throws ClaraMsgException if the message could not be published
+     */
+    public CompletableFuture<Message> syncPublishAsync(ProxyAddress address,
+                                                       Message msg,
+                                                       long timeout)
+            throws ClaraMsgException {
+        try (var connection = getConnection(address)) {
+            return sendRequest(connection, msg, timeout);
+        }
+    }
+
+    private CompletableFuture<Message> sendRequest(Connection connection,
+                                                   Message msg,
+                                                   long timeout)
+            throws ClaraMsgException {
         // topic where the subscriber should publish the response
         var replyTo = ActorUtils.getUniqueReplyTo(myId);
 
@@ -447,11 +525,18 @@ public class Actor implements AutoCloseable {
             // subscribe to the response topic
             syncPubListener.register(connection.getAddress());
 
-            // it must be the internal publish, to keep the replyTo field
-            connection.publish(msg);
+            // expect the response before publishing, to not miss it
+            var response = syncPubListener.expect(replyTo, timeout);
+
+            try {
+                // it must be the internal publish, to keep the replyTo field
+                connection.publish(msg);
+            } catch (ClaraMsgException | RuntimeException e) {
+                syncPubListener.cancel(replyTo, e);
+                throw e;
+            }
 
-            // wait for the response
-            return syncPubListener.waitMessage(replyTo, timeout);
+            return response;
         } finally {
             msg.getMetaData().clearReplyTo();
         }
@@ -726,6 +811,127 @@ public class Actor implements AutoCloseable {
         }
     }
 
+    /**
+     * Registers many actors on the specified registrar service with a single
+     * request.
+     * Every actor will be registered with its own name, as communicating
+     * through messages of the given topic, using the default proxy of this
+     * actor. This is useful when an actor manages many other actors
+     * that are started together.
+     * A single actor is registered with a normal registration request.
+     * Waits up to {@code timeout} milliseconds for a status response.
+     *
+     * @param infos the parameters of the registration of every actor,
+     *              by actor name
+     * @param address the address of the registrar service
+     * @param timeout milliseconds to wait for a response
+     * @throws ClaraMsgException if the registration failed
+     */
+    public void register(Map<String, RegInfo> infos, RegAddress address, long timeout)
+            throws ClaraMsgException {
+        if (infos.isEmpty()) {
+            return;
+        }
+        var connection = connectionManager.getRegistrarConnection(address);
+        try {
+            var data = createRegistrations(infos);
+            if (data.size() == 1) {
+                connection.addRegistration(myName, data.get(0), timeout);
+            } else {
+                connection.addRegistrations(myName, data, timeout);
+            }
+            connectionManager.releaseRegistrarConnection(connection);
+        } catch (ZMQException | ClaraMsgException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Removes many actors from the specified registrar service with a single
+     * request.
+     * Every actor will be removed from the registered actors communicating
+     * through messages of the given topic.
+     * Waits up to {@code timeout} milliseconds for a status response.
+     *
+     * @param infos the parameters used to register every actor, by actor name
+     * @param address the address of the registrar service
+     * @param timeout milliseconds to wait for a response
+     * @throws ClaraMsgException if the request failed
+     */
+    public void deregister(Map<String, RegInfo> infos, RegAddress address, long timeout)
+            throws ClaraMsgException {
+        if (infos.isEmpty()) {
+            return;
+        }
+        var connection = connectionManager.getRegistrarConnection(address);
+        try {
+            var data = createRegistrations(infos);
+            if (data.size() == 1) {
+                connection.removeRegistration(myName, data.get(0), timeout);
+            } else {
+                connection.removeRegistrations(myName, data, timeout);
+            }
+            connectionManager.releaseRegistrarConnection(connection);
+        } catch (ZMQException | ClaraMsgException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Renews the lease of all registrations of this actor on the <i>default</i>
+     * registrar service, using the {@link ActorSetup#registrationTtl registration TTL}.
+     * All actors registered with a TTL through the default proxy are renewed,
+     * since the lease is held by the proxy address.
+     *
+     * @throws ClaraMsgException if the request failed
+     */
+    public void renewRegistration() throws ClaraMsgException {
+        renewRegistration(setup.registrarAddress(), setup.registrationTtl());
+    }
+
+    /**
+     * Renews the lease of all registrations of this actor on the specified
+     * registrar service.
+     * All actors registered with a TTL through the default proxy are renewed,
+     * since the lease is held by the proxy address.
+     * Waits up to {@value ActorSetup#REGISTRATION_TIMEOUT}
+     * milliseconds for a status response.
+     *
+     * @param address the address of the registrar service
+     * @param ttl the new time to live of the lease, in milliseconds
+     * @throws ClaraMsgException if the request failed
+     */
+    public void renewRegistration(RegAddress address, long ttl) throws ClaraMsgException {
+        renewRegistration(address, ttl, ActorSetup.REGISTRATION_TIMEOUT);
+    }
+
+    /**
+     * Renews the lease of all registrations of this actor on the specified
+     * registrar service.
+     * All actors registered with a TTL through the default proxy are renewed,
+     * since the lease is held by the proxy address.
+     * Waits up to {@code timeout} milliseconds for a status response.
+     *
+     * @param address the address of the registrar service
+     * @param ttl the new time to live of the lease, in milliseconds
+     * @param timeout milliseconds to wait for a response
+     * @throws ClaraMsgException if the request failed
+     */
+    public void renewRegistration(RegAddress address, long ttl, long timeout)
+            throws ClaraMsgException {
+        var connection = connectionManager.getRegistrarConnection(address);
+        try {
+            var proxy = setup.proxyAddress();
+            connection.renewRegistration(myName, proxy.host(), proxy.pubPort(), ttl, timeout);
+            connectionManager.releaseRegistrarConnection(connection);
+        } catch (ZMQException | ClaraMsgException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
     /**
      * Searches the <i>default</i> registrar service for actors that match the given query.
      * A registered actor will be selected only if it matches all the parameters
@@ -768,6 +974,11 @@ public class Actor implements AutoCloseable {
      * of interest defined by the query. The registrar service will then reply
      * the registration data of all the matching actors.
      * Waits up to {@code timeout} milliseconds for a response.
+     * <p>
+     * If the {@link ActorSetup.Builder#withDiscoveryCache discovery cache}
+     * is enabled, a cached result is returned when the query was already
+     * sent to the registrar and no registration changes affecting the query
+     * were published since then.
      *
      * @param query the registration parameters to determine if an actor
      *              should be selected (publisher or subscriber, topic of interest)
@@ -778,6 +989,22 @@ public class Actor implements AutoCloseable {
      */
     public Set<RegRecord> discover(RegQuery query, RegAddress address, long timeout)
             throws ClaraMsgException {
+        if (discoveryCache == null) {
+            return requestDiscovery(query, address, timeout);
+        }
+        var cached = discoveryCache.get(address, query);
+        if (cached != null) {
+            return cached;
+        }
+        discoveryListener.subscribe(address);
+        var version = discoveryCache.version(address);
+        var records = requestDiscovery(query, address, timeout);
+        discoveryCache.put(address, query, records, version);
+        return records;
+    }
+
+    private Set<RegRecord> requestDiscovery(RegQuery query, RegAddress address, long timeout)
+            throws ClaraMsgException {
         var connection = connectionManager.getRegistrarConnection(address);
         try {
             RegData request = query.data();
@@ -796,6 +1023,16 @@ public class Actor implements AutoCloseable {
         }
     }
 
+    /**
+     * Returns the usage metrics of the discovery cache,
+     * if the cache is enabled.
+     *
+     * @return the metrics of the discovery cache
+     */
+    public Optional<DiscoveryCache.Metrics> getDiscoveryMetrics() {
+        return Optional.ofNullable(discoveryCache).map(DiscoveryCache::metrics);
+    }
+
     /**
      * Returns the name of this actor.
      *
@@ -833,8 +1070,22 @@ public class Actor implements AutoCloseable {
     }
 
     private RegData createRegistration(RegInfo info) {
-        return RegFactory.newRegistration(myName, info.description(),
-                                          setup.proxyAddress(), info.type(), info.topic());
+        return createRegistration(myName, info);
+    }
+
+    private List<RegData> createRegistrations(Map<String, RegInfo> infos) {
+        return infos.entrySet().stream()
+                .map(e -> createRegistration(e.getKey(), e.getValue()))
+                .toList();
+    }
+
+    private RegData createRegistration(String name, RegInfo info) {
+        var data = RegFactory.newRegistration(name, info.description(),
+                                              setup.proxyAddress(), info.type(), info.topic());
+        if (setup.registrationTtl() > 0) {
+            return data.toBuilder().setTtl(setup.registrationTtl()).build();
+        }
+        return data;
     }
 
 
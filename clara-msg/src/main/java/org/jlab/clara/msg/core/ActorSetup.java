@@ -47,6 +47,8 @@ public final class ActorSetup extends ConnectionSetup {
         private RegAddress registrarAddress = new RegAddress();
         private CallbackMode subscriptionMode = CallbackMode.MULTI_THREAD;
         private int poolSize = DEFAULT_POOL_SIZE;
+        private long registrationTtl = 0;
+        private long discoveryCacheAge = 0;
 
         /**
          * Sets the address of the default registrar.
@@ -89,6 +91,43 @@ public final class ActorSetup extends ConnectionSetup {
             return this;
         }
 
+        /**
+         * Sets the time to live of the registrations of the actor.
+         * The registrations will be leased for the given time, and they
+         * will be removed by the registrar unless the lease is renewed
+         * with {@link Actor#renewRegistration}.
+         * By default the registrations never expire.
+         *
+         * @param ttl the time to live in milliseconds, or zero to never expire
+         * @return this builder
+         */
+        public Builder withRegistrationTtl(long ttl) {
+            if (ttl < 0) {
+                throw new IllegalArgumentException("invalid registration TTL: " + ttl);
+            }
+            this.registrationTtl = ttl;
+            return this;
+        }
+
+        /**
+         * Enables the cache of discovery results.
+         * Repeated discovery queries will be served locally, until the
+         * registrar publishes a change that affects the result of the query,
+         * or the cached result is older than the given age.
+         * By default the cache is disabled.
+         *
+         * @param maxAge the maximum age of a cached result in milliseconds,
+         *               or zero to disable the cache
+         * @return this builder
+         */
+        public Builder withDiscoveryCache(long maxAge) {
+            if (maxAge < 0) {
+                throw new IllegalArgumentException("invalid discovery cache age: " + maxAge);
+            }
+            this.discoveryCacheAge = maxAge;
+            return this;
+        }
+
         /**
          * Creates the setup for an actor.
          *
@@ -99,7 +138,9 @@ public final class ActorSetup extends ConnectionSetup {
                                   registrarAddress,
                                   subscriptionMode,
                                   conSetup.build(),
-                                  poolSize);
+                                  poolSize,
+                                  registrationTtl,
+                                  discoveryCacheAge);
         }
 
         @Override
@@ -112,16 +153,22 @@ public final class ActorSetup extends ConnectionSetup {
     private final RegAddress registrarAddress;
     private final CallbackMode subscriptionMode;
     private final int poolSize;
+    private final long registrationTtl;
+    private final long discoveryCacheAge;
 
     private ActorSetup(ProxyAddress proxyAddress,
                        RegAddress registrarAddress,
                        CallbackMode subscriptionMode,
                        ProxyDriverSetup connectionSetup,
-                       int poolSize) {
+                       int poolSize,
+                       long registrationTtl,
+                       long discoveryCacheAge) {
         super(proxyAddress, connectionSetup);
         this.registrarAddress = registrarAddress;
         this.subscriptionMode = subscriptionMode;
         this.poolSize = poolSize;
+        this.registrationTtl = registrationTtl;
+        this.discoveryCacheAge = discoveryCacheAge;
     }
 
     /**
@@ -150,4 +197,22 @@ public final class ActorSetup extends ConnectionSetup {
     public int poolSize() {
         return poolSize;
     }
+
+    /**
+     * Gets the time to live of the registrations.
+     *
+     * @return the TTL in milliseconds, or zero if the registrations never expire
+     */
+    public long registrationTtl() {
+        return registrationTtl;
+    }
+
+    /**
+     * Gets the maximum age of the cached discovery results.
+     *
+     * @return the age in milliseconds, or zero if the cache is disabled
+     */
+    public long discoveryCacheAge() {
+        return discoveryCacheAge;
+    }
 }
@@ -19,6 +19,7 @@ import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -207,30 +208,74 @@ public final class ActorUtils {
         }
     }
 
+    /**
+     * Sets if the threads created by the actors should be virtual threads.
+     * This applies to the subscription threads and the callback pools
+     * created after the call.
+     * <p>
+     * Virtual threads are only supported by Java 21 or newer.
+     * With virtual threads, many subscriptions and callbacks blocked waiting
+     * for messages or responses do not require a platform thread each,
+     * which reduces the number of threads and the memory footprint of
+     * processes with many actors.
+     * CPU-bound tasks should still use platform threads.
+     *
+     * @param enable true to use virtual threads, false to use platform threads
+     * @return false if virtual threads were requested but are not supported
+     *         by the JVM (platform threads will be used)
+     */
+    public static boolean setVirtualThreads(boolean enable) {
+        return ThreadUtils.setVirtualThreads(enable);
+    }
+
+    /**
+     * Returns true if the threads created by the actors are virtual threads.
+     *
+     * @return true if virtual threads are used
+     */
+    public static boolean useVirtualThreads() {
+        return ThreadUtils.useVirtualThreads();
+    }
+
     /**
      * Creates a new Thread that reports uncaught exceptions.
+     * It will be a virtual thread if virtual threads are enabled.
      *
      * @param name the name for the thread
      * @param target the object whose run method is invoked when this thread is started
      * @return a Thread object that will run the target
      */
     public static Thread newThread(String name, Runnable target) {
-        return ThreadUtils.newThread(name, target);
+        return ThreadUtils.newThread(name, target, ThreadUtils.useVirtualThreads());
     }
 
     /**
      * Creates a new ThreadPoolExecutor.
+     * It will use virtual threads if virtual threads are enabled.
      *
      * @param maxThreads the maximum number of threads
      * @param namePrefix the prefix for the name of the threads
      * @return the created custom thread pool executor
      */
     public static ThreadPoolExecutor newThreadPool(int maxThreads, String namePrefix) {
+        return newThreadPool(maxThreads, namePrefix, new LinkedBlockingQueue<>());
+    }
+
+    /**
+     * Creates a new ThreadPoolExecutor that always uses platform threads,
+     * for long-running or CPU-bound tasks.
+     *
+     * @param maxThreads the maximum number of threads
+     * @param namePrefix the prefix for the name of the threads
+     * @return the created custom thread pool executor
+     */
+    public static ThreadPoolExecutor newPlatformThreadPool(int maxThreads, String namePrefix) {
         return ThreadUtils.newThreadPool(maxThreads, namePrefix, new LinkedBlockingQueue<>());
     }
 
     /**
      * Creates a new ThreadPoolExecutor with a user controlled queue.
+     * It will use virtual threads if virtual threads are enabled.
      *
      * @param maxThreads the maximum number of threads
      * @param namePrefix the prefix for the name of the threads
@@ -240,6 +285,18 @@ public final class ActorUtils {
     public static ThreadPoolExecutor newThreadPool(int maxThreads,
                                                    String namePrefix,
                                                    BlockingQueue<Runnable> workQueue) {
-        return ThreadUtils.newThreadPool(maxThreads, namePrefix, workQueue);
+        return ThreadUtils.newThreadPool(maxThreads, namePrefix, workQueue,
+                                         ThreadUtils.useVirtualThreads());
+    }
+
+    /**
+     * Creates a new unbounded pool that creates threads as needed.
+     * It will use virtual threads if virtual threads are enabled.
+     *
+     * @param namePrefix the prefix for the name of the threads
+     * @return the created thread pool
+     */
+    public static ExecutorService newCachedThreadPool(String namePrefix) {
+        return ThreadUtils.newCachedThreadPool(namePrefix, ThreadUtils.useVirtualThreads());
     }
 }
@@ -7,6 +7,7 @@
 package org.jlab.clara.msg.core;
 
 import org.jlab.clara.msg.errors.ClaraMsgException;
+import org.jlab.clara.msg.errors.SendTimeoutException;
 import org.jlab.clara.msg.net.ProxyAddress;
 import org.jlab.clara.msg.sys.pubsub.ProxyDriver;
 import org.zeromq.ZMQException;
@@ -60,12 +61,17 @@ public class Connection implements Closeable {
         if (connection == null) {
             throw new IllegalStateException("connection is closed");
         }
+        boolean sent;
         try {
-            connection.send(msg.serialize());
+            sent = msg.send(connection.getSocket());
         } catch (ZMQException e) {
             destroy();
             throw new ClaraMsgException("could not publish message", e);
         }
+        if (!sent) {
+            throw new SendTimeoutException("could not publish message: the send queue to "
+                                           + connection.getAddress() + " is full");
+        }
     }
 
     /**
@@ -77,6 +77,10 @@ class ConnectionManager {
         registrarConnections.setConnection(connection.getAddress(), connection);
     }
 
+    int cachedProxyConnections() {
+        return proxyConnections.size();
+    }
+
     void destroy(int linger) {
         proxyConnections.destroyAll(c -> c.close(linger));
         registrarConnections.destroyAll(c -> c.close());
@@ -106,6 +110,14 @@ class ConnectionManager {
             cache.add(connection);
         }
 
+        public int size() {
+            var size = 0;
+            for (var cache : connections.values()) {
+                size += cache.size();
+            }
+            return size;
+        }
+
         public void destroyAll(Consumer<C> destroy) {
             for (Map.Entry<A, Queue<C>> cache : connections.entrySet()) {
                 cache.getValue().forEach(destroy);
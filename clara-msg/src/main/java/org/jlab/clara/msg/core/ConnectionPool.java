@@ -146,6 +146,16 @@ public final class ConnectionPool implements Closeable {
         connectionManager.releaseProxyConnection(connection);
     }
 
+    /**
+     * Gets the number of idle connections stored in the pool.
+     * Connections in use are not counted.
+     *
+     * @return the number of cached connections
+     */
+    public int cachedConnections() {
+        return connectionManager.cachedProxyConnections();
+    }
+
     /**
      * Destroys the given connection.
      *
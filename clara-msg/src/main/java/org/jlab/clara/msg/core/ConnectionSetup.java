@@ -136,6 +136,50 @@ class ConnectionSetup {
             return getThis();
         }
 
+        /**
+         * Sets the maximum number of outgoing messages that can be queued by
+         * a connection.
+         * When the limit is reached, publishing will block until there is
+         * space in the queue, or until the send timeout expires.
+         * A value of zero means no limit.
+         *
+         * @param hwm the send high-water mark
+         * @return this builder
+         */
+        public T withSendHighWaterMark(int hwm) {
+            this.conSetup.withSendHighWaterMark(hwm);
+            return getThis();
+        }
+
+        /**
+         * Sets the maximum number of incoming messages that can be queued by
+         * a subscription.
+         * When the limit is reached, the proxy will drop new messages for the
+         * subscription.
+         * A value of zero means no limit.
+         *
+         * @param hwm the receive high-water mark
+         * @return this builder
+         */
+        public T withReceiveHighWaterMark(int hwm) {
+            this.conSetup.withReceiveHighWaterMark(hwm);
+            return getThis();
+        }
+
+        /**
+         * Sets how long publishing can block when the send queue of the
+         * connection is full. If the timeout expires, publishing will fail
+         * with a {@link org.jlab.clara.msg.errors.SendTimeoutException}.
+         * A negative value means block until the message can be queued.
+         *
+         * @param timeout the send timeout, in milliseconds
+         * @return this builder
+         */
+        public T withSendTimeout(int timeout) {
+            this.conSetup.withSendTimeout(timeout);
+            return getThis();
+        }
+
         abstract T getThis();
     }
 
@@ -0,0 +1,245 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.core;
+
+import org.jlab.clara.msg.data.RegDataProto.RegData;
+import org.jlab.clara.msg.data.RegQuery;
+import org.jlab.clara.msg.data.RegRecord;
+import org.jlab.clara.msg.net.RegAddress;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the results of discovery requests, to serve repeated queries
+ * without a round trip to the registrar.
+ * <p>
+ * The results are cached per registrar and query, and they are invalidated
+ * by the change events published by the registrar when actors are registered
+ * or removed. Results are cached only for registrars whose events are being
+ * received, and only after the subscription had time to be established, since
+ * the events published before that are lost.
+ * <p>
+ * Events can still be lost if the connection to the registrar is broken,
+ * so every result is also discarded when it is older than the maximum age.
+ */
+public final class DiscoveryCache {
+
+    /** The time to wait for a new subscription to receive events. */
+    static final long SUBSCRIPTION_DELAY = 500;
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<RegAddress, Source> sources = new ConcurrentHashMap<>();
+
+    private final long maxAge;
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder totalStaleness = new LongAdder();
+    private final AtomicLong maxStaleness = new AtomicLong();
+
+    private record Key(RegAddress address, RegQuery.Category category, RegData query) { }
+
+    private record Entry(Set<RegRecord> records, long timestamp) { }
+
+    /*
+     * Every event received from the registrar increases the version,
+     * so results requested before the event are not stored.
+     */
+    private static final class Source {
+
+        private final long since;
+        private final AtomicLong version = new AtomicLong();
+
+        Source(long since) {
+            this.since = since;
+        }
+    }
+
+    /**
+     * The usage metrics of the cache.
+     *
+     * @param hits the number of queries served from the cache
+     * @param misses the number of queries sent to the registrar
+     * @param invalidations the number of results discarded by change events
+     * @param entries the number of cached results
+     * @param averageStaleness the average age of the results served from
+     *                         the cache, in milliseconds
+     * @param maxStaleness the maximum age of the results served from the
+     *                     cache, in milliseconds
+     */
+    public record Metrics(long hits,
+                          long misses,
+                          long invalidations,
+                          int entries,
+                          double averageStaleness,
+                          long maxStaleness) {
+
+        /**
+         * Returns the fraction of queries served from the cache.
+         *
+         * @return the hit rate, or zero if there were no queries
+         */
+        public double hitRate() {
+            var total = hits + misses;
+            return total > 0 ? (double) hits / total : 0.0;
+        }
+    }
+
+    DiscoveryCache(long maxAge) {
+        this(maxAge, System::currentTimeMillis);
+    }
+
+    DiscoveryCache(long maxAge, LongSupplier clock) {
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException("invalid max age: " + maxAge);
+        }
+        this.maxAge = maxAge;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached result of the query.
+     *
+     * @return a copy of the cached records, or null if the result of the
+     *         query is not cached or it is too old
+     */
+    Set<RegRecord> get(RegAddress address, RegQuery query) {
+        var key = key(address, query);
+        var entry = entries.get(key);
+        if (entry != null) {
+            var age = clock.getAsLong() - entry.timestamp();
+            if (age < maxAge) {
+                hits.increment();
+                totalStaleness.add(age);
+                maxStaleness.accumulateAndGet(age, Math::max);
+                return new HashSet<>(entry.records());
+            }
+            entries.remove(key, entry);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns the current version of the results of the given registrar.
+     * It must be obtained before sending the discovery request, and passed
+     * to {@link #put} with the result.
+     *
+     * @return the version, or a negative value if the events of the
+     *         registrar are not being received yet
+     */
+    long version(RegAddress address) {
+        var source = sources.get(address);
+        if (source == null || clock.getAsLong() - source.since < SUBSCRIPTION_DELAY) {
+            return -1;
+        }
+        return source.version.get();
+    }
+
+    /**
+     * Stores the result of the query, unless the registrar published a change
+     * since the given version was obtained.
+     */
+    void put(RegAddress address, RegQuery query, Set<RegRecord> records, long version) {
+        var source = sources.get(address);
+        if (version < 0 || source == null || source.version.get() != version) {
+            return;
+        }
+        var key = key(address, query);
+        var entry = new Entry(Set.copyOf(records), clock.getAsLong());
+        entries.put(key, entry);
+        if (source.version.get() != version) {
+            // an event was received while storing the result
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Starts caching the results of the given registrar.
+     * It must be called once its events are subscribed.
+     */
+    void addSource(RegAddress address) {
+        sources.putIfAbsent(address, new Source(clock.getAsLong()));
+    }
+
+    boolean containsSource(RegAddress address) {
+        return sources.containsKey(address);
+    }
+
+    /**
+     * Discards the cached results that may be changed by the given event.
+     *
+     * @param address the registrar that published the event
+     * @param event the data of the registered or removed actors
+     */
+    void invalidate(RegAddress address, RegData event) {
+        var source = sources.get(address);
+        if (source == null) {
+            return;
+        }
+        source.version.incrementAndGet();
+        var removed = new LongAdder();
+        entries.keySet().removeIf(key -> {
+            if (key.address().equals(address) && affects(event, key.query())) {
+                removed.increment();
+                return true;
+            }
+            return false;
+        });
+        invalidations.add(removed.sum());
+    }
+
+    /*
+     * Only the type, topic and host of the actor are checked.
+     * A query is affected by any event that has a topic related to its topic
+     * (one is a prefix of the other), which covers all query categories.
+     * Events without topic (removing all actors of a host) affect every query
+     * of the same type.
+     */
+    private static boolean affects(RegData event, RegData query) {
+        if (event.getType() != query.getType()) {
+            return false;
+        }
+        var eventTopic = event.getTopic();
+        var queryTopic = query.getTopic();
+        if (!eventTopic.isEmpty() && !queryTopic.isEmpty()
+                && !eventTopic.startsWith(queryTopic) && !queryTopic.startsWith(eventTopic)) {
+            return false;
+        }
+        var eventHost = event.getHost();
+        var queryHost = query.getHost();
+        return eventHost.isEmpty() || queryHost.isEmpty() || eventHost.equals(queryHost);
+    }
+
+    private static Key key(RegAddress address, RegQuery query) {
+        return new Key(address, query.category(), query.data());
+    }
+
+    /**
+     * Returns the usage metrics of the cache.
+     *
+     * @return the hits, misses, invalidations and staleness of the cache
+     */
+    public Metrics metrics() {
+        var served = hits.sum();
+        var averageStaleness = served > 0 ? (double) totalStaleness.sum() / served : 0.0;
+        return new Metrics(served,
+                           misses.sum(),
+                           invalidations.sum(),
+                           entries.size(),
+                           averageStaleness,
+                           maxStaleness.get());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.core;
+
+import org.jlab.clara.msg.data.RegDataProto.RegData;
+import org.jlab.clara.msg.errors.ClaraMsgException;
+import org.jlab.clara.msg.net.RegAddress;
+import org.jlab.clara.msg.net.SocketFactory;
+import org.jlab.clara.msg.sys.ConnectionFactory;
+import org.jlab.clara.msg.sys.utils.ThreadUtils;
+import org.zeromq.SocketType;
+import org.zeromq.ZMQ.Poller;
+import org.zeromq.ZMQ.Socket;
+import org.zeromq.ZMsg;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Receives the change events of the registrars used for discovery,
+ * and invalidates the affected results of the discovery cache.
+ */
+class DiscoveryListener implements Runnable {
+
+    private static final long TIMEOUT = 100;
+
+    private final DiscoveryCache cache;
+    private final SocketFactory factory;
+    private final ConcurrentMap<RegAddress, Socket> sockets;
+
+    private final Thread pollingThread;
+    private volatile boolean isRunning = false;
+
+    DiscoveryListener(String id, ConnectionFactory factory, DiscoveryCache cache) {
+        this.cache = cache;
+        this.factory = new SocketFactory(factory.getContext().getContext());
+        this.sockets = new ConcurrentHashMap<>();
+        this.pollingThread = ThreadUtils.newThread("discovery-" + id, this);
+    }
+
+    public void start() {
+        isRunning = true;
+        pollingThread.start();
+    }
+
+    public void stop() {
+        try {
+            isRunning = false;
+            pollingThread.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        sockets.values().forEach(factory::closeQuietly);
+    }
+
+    /**
+     * Subscribes to the change events of the given registrar,
+     * if it is not already subscribed.
+     *
+     * @param address the address of the registrar
+     * @throws ClaraMsgException if the events socket could not be created
+     */
+    public void subscribe(RegAddress address) throws ClaraMsgException {
+        if (sockets.get(address) == null) {
+            var socket = factory.createSocket(SocketType.SUB);
+            try {
+                factory.connectSocket(socket, address.host(), address.eventsPort());
+                socket.subscribe(new byte[0]);
+            } catch (Exception e) {
+                factory.closeQuietly(socket);
+                throw e;
+            }
+            var prev = sockets.putIfAbsent(address, socket);
+            if (prev != null) {
+                factory.closeQuietly(socket);
+            } else {
+                cache.addSource(address);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try (var poller = factory.context().poller(sockets.size())) {
+            while (isRunning) {
+                var subscribed = new HashMap<Socket, RegAddress>();
+                sockets.forEach((address, socket) -> subscribed.put(socket, address));
+                for (var socket : subscribed.keySet()) {
+                    poller.register(socket, Poller.POLLIN);
+                }
+                checkEvents(poller, subscribed);
+                for (var socket : subscribed.keySet()) {
+                    poller.unregister(socket);
+                }
+            }
+        }
+    }
+
+    private void checkEvents(Poller poller, Map<Socket, RegAddress> subscribed) {
+        var rc = poller.poll(TIMEOUT);
+        if (rc <= 0) {
+            return;
+        }
+        for (int i = 0; i < poller.getSize(); i++) {
+            if (poller.pollin(i)) {
+                var socket = poller.getSocket(i);
+                var event = ZMsg.recvMsg(socket);
+                if (event == null) {
+                    isRunning = false; // interrupted
+                    return;
+                }
+                try {
+                    if (event.size() == 2) {
+                        var data = RegData.parseFrom(event.getLast().getData());
+                        cache.invalidate(subscribed.get(socket), data);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    event.destroy();
+                }
+            }
+        }
+    }
+}
@@ -14,6 +14,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import org.jlab.clara.msg.data.MetaDataProto.MetaData;
 import org.jlab.clara.msg.data.MimeType;
 import org.jlab.clara.msg.errors.ClaraMsgException;
+import org.zeromq.ZMQ.Socket;
 import org.zeromq.ZMsg;
 
 import java.io.UncheckedIOException;
@@ -31,19 +32,25 @@ import java.nio.charset.StandardCharsets;
  * used to describe the data of the message and the communication request the
  * message is part of. At minimum, the {@code dataType} field is required to
  * indicate the mime-type of the binary data.
- * The data byte array contains the binary representation of the actual data of
+ * The data buffer contains the binary representation of the actual data of
  * the message. Helpers are provided to serialize primitive data types.
  * Complex objects must be serialized before creating the message
  * (i.e. applications must take care of the binary data format).
  * <p>
  * When a message is sync-published, the <i>metadata</i> will contain an
  * auto-generated {@code replyTopic} where the response can be published to.
+ * <p>
+ * The data is kept in a {@link ByteBuffer} (heap or direct).
+ * Received data and heap data arrays are passed to and from the 0MQ socket
+ * without intermediate copies.
  */
 public class Message {
 
+    private static final byte[] EMPTY_DATA = new byte[0];
+
     private final Topic topic;
     private final MetaData.Builder metaData;
-    private final byte[] data;
+    private final ByteBuffer data;
 
     /**
      * Constructs a new message.
@@ -61,9 +68,28 @@ public class Message {
      * @param data     serialized data
      */
     public Message(Topic topic, MetaData.Builder metaData, byte[] data) {
+        this(topic, metaData, wrap(data));
+    }
+
+    /**
+     * Constructs a new message with the data contained in the given buffer.
+     * The message will be published to the given topic.
+     * The metadata must contain the mime-type describing the data.
+     * <p>
+     * The data of the message are the bytes between the current position and
+     * the limit of the buffer. The buffer can be a heap or a direct buffer.
+     * Its content will be owned by the message, thus, it cannot be modified
+     * by the calling code after creating this message.
+     * The position and limit of the given buffer are not changed.
+     *
+     * @param topic    the topic of the message
+     * @param metaData the metadata of the message
+     * @param data     serialized data
+     */
+    public Message(Topic topic, MetaData.Builder metaData, ByteBuffer data) {
         this.topic = topic;
         this.metaData = metaData;
-        this.data = data;
+        this.data = data != null ? data.duplicate() : null;
     }
 
     /**
@@ -83,10 +109,7 @@ public class Message {
      * @param data     serialized data
      */
     public Message(Topic topic, String mimeType, byte[] data) {
-        this.topic = topic;
-        this.metaData = MetaData.newBuilder();
-        this.metaData.setDataType(mimeType);
-        this.data = data;
+        this(topic, MetaData.newBuilder().setDataType(mimeType), data);
     }
 
     /**
@@ -107,7 +130,7 @@ public class Message {
         try {
             this.topic = Topic.wrap(topicFrame.getData());
             this.metaData = MetaData.parseFrom(metaDataFrame.getData()).toBuilder();
-            this.data = dataFrame.getData();
+            this.data = wrap(dataFrame.getData());
         } catch (InvalidProtocolBufferException e) {
             throw new ClaraMsgException("could not parse metadata", e);
         }
@@ -123,10 +146,33 @@ public class Message {
         var msg = new ZMsg();
         msg.add(topic.toString());
         msg.add(metaData.build().toByteArray());
-        msg.add(data);
+        msg.add(getData());
         return msg;
     }
 
+    /**
+     * Sends this message over the wire.
+     * A data array is passed to the socket as is, without copying it.
+     * <p>
+     * 0MQ sends the frames asynchronously, after this method returns,
+     * and it does not notify when it is done with a buffer,
+     * so any other buffer (i.e. direct or pooled buffers that will be reused
+     * by the caller) is copied into the data frame.
+     *
+     * @param socket the 0MQ socket to send the message
+     * @return false if the message could not be queued before the send timeout
+     *         of the socket expired
+     */
+    boolean send(Socket socket) {
+        // the queue is checked with the first frame, the rest will not block
+        if (!socket.sendMore(topic.toString())) {
+            return false;
+        }
+        socket.sendMore(metaData.build().toByteArray());
+        var bytes = getData();
+        return socket.send(bytes != null ? bytes : EMPTY_DATA, 0);
+    }
+
     /**
      * Returns the topic of the message.
      *
@@ -201,21 +247,61 @@ public class Message {
     }
 
     /**
-     * Returns the size of the byte array containing the data.
+     * Returns the size of the buffer containing the data.
      *
      * @return the size of the data, in bytes
      */
     public int getDataSize() {
-        return data != null ? data.length : 0;
+        return data != null ? data.remaining() : 0;
     }
 
     /**
      * Returns the data of the message.
+     * <p>
+     * If the data is backed by a byte array that contains just the data,
+     * the array is returned without copying it. Otherwise, the data will be
+     * copied into a new array. Use {@link #getDataBuffer()} to always access
+     * the data without copies.
      *
      * @return the byte array with the raw message data
      */
     public byte[] getData() {
-        return data;
+        if (data == null) {
+            return null;
+        }
+        if (isArrayData(data)) {
+            return data.array();
+        }
+        var bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns a buffer with the data of the message.
+     * The buffer shares the content of the message data,
+     * but it has its own position and limit, and the byte order is set to
+     * the {@link #getDataOrder() data order} of the message.
+     * The data are the bytes between the position and the limit of the buffer.
+     *
+     * @return a buffer with the raw message data
+     */
+    public ByteBuffer getDataBuffer() {
+        if (data == null) {
+            return null;
+        }
+        return data.duplicate().order(getDataOrder());
+    }
+
+    private static ByteBuffer wrap(byte[] data) {
+        return data != null ? ByteBuffer.wrap(data) : null;
+    }
+
+    private static boolean isArrayData(ByteBuffer buffer) {
+        return buffer.hasArray()
+                && buffer.arrayOffset() == 0
+                && buffer.position() == 0
+                && buffer.limit() == buffer.array().length;
     }
 
 
@@ -228,6 +314,10 @@ public class Message {
      * <p>
      * In case of passing a Java object, this will fail if the object is not
      * serializable.
+     * <p>
+     * In case of passing a {@link ByteBuffer} backed by an accessible array,
+     * the whole array is the data of the message. For other buffers,
+     * the data are the bytes between the position and the limit.
      *
      * @param topic the topic of the message
      * @param data the data of the message
@@ -237,32 +327,32 @@ public class Message {
      */
     public static Message createFrom(Topic topic, Object data) {
 
-        final byte[] ba;
+        final ByteBuffer ba;
         final String mimeType;
 
         if (data instanceof String value) {
             mimeType = MimeType.STRING;
-            ba = value.getBytes(StandardCharsets.UTF_8);
+            ba = ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
 
         } else if (data instanceof Integer value) {
             mimeType = MimeType.INT32;
-            ba = Int32Value.of(value).toByteArray();
+            ba = ByteBuffer.wrap(Int32Value.of(value).toByteArray());
 
         } else if (data instanceof Long value) {
             mimeType = MimeType.INT64;
-            ba = Int64Value.of(value).toByteArray();
+            ba = ByteBuffer.wrap(Int64Value.of(value).toByteArray());
 
         } else if (data instanceof Float value) {
             mimeType = MimeType.FLOAT;
-            ba = FloatValue.of(value).toByteArray();
+            ba = ByteBuffer.wrap(FloatValue.of(value).toByteArray());
 
         } else if (data instanceof Double value) {
             mimeType = MimeType.DOUBLE;
-            ba = DoubleValue.of(value).toByteArray();
+            ba = ByteBuffer.wrap(DoubleValue.of(value).toByteArray());
 
         } else if (data instanceof ByteBuffer value) {
             mimeType = MimeType.BYTES;
-            ba = value.array();
+            ba = value.hasArray() ? ByteBuffer.wrap(value.array()) : value;
 
         } else {
             throw new IllegalArgumentException("unsupported type: " + data.getClass());
@@ -280,11 +370,11 @@ public class Message {
      */
     public static Object parseData(Message message) {
         try {
-            byte[] data = message.getData();
+            var data = message.getDataBuffer();
             String dataType = message.getMimeType();
 
             if (dataType.equals(MimeType.STRING)) {
-                return new String(data, StandardCharsets.UTF_8);
+                return StandardCharsets.UTF_8.decode(data).toString();
 
             } else if (dataType.equals(MimeType.INT32)) {
                 var value = Int32Value.parseFrom(data);
@@ -311,7 +401,7 @@ public class Message {
                 }
 
             } else if (dataType.equals(MimeType.BYTES)) {
-                return ByteBuffer.wrap(data);
+                return data;
 
             } else {
                 throw new IllegalArgumentException("unsupported mime-type:" + dataType);
@@ -342,10 +432,10 @@ public class Message {
      */
     public static <T> T parseData(Message message, Class<T> dataType) {
         try {
-            byte[] data = message.getData();
+            var data = message.getDataBuffer();
 
             if (dataType.equals(String.class)) {
-                var value = new String(data, StandardCharsets.UTF_8);
+                var value = StandardCharsets.UTF_8.decode(data).toString();
                 return dataType.cast(value);
 
             } else if (dataType.equals(Integer.class)) {
@@ -373,7 +463,7 @@ public class Message {
                 }
 
             } else if (dataType.equals(ByteBuffer.class)) {
-                var value = ByteBuffer.wrap(data);
+                var value = data;
                 return dataType.cast(value);
 
             } else {
@@ -399,7 +489,7 @@ public class Message {
         var topic = Topic.wrap(msg.metaData.getReplyTo());
         var meta = MetaData.newBuilder(msg.metaData.build());
         meta.clearReplyTo();
-        return new Message(topic, meta, msg.data);
+        return new Message(topic, meta, msg.data != null ? msg.data.duplicate() : null);
     }
 
     /**
@@ -13,16 +13,26 @@ import org.jlab.clara.msg.sys.pubsub.ProxyDriverSetup;
 import org.jlab.clara.msg.sys.pubsub.ProxyListener;
 import org.zeromq.ZMsg;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+/**
+ * Receives the responses to sync-publication requests.
+ * <p>
+ * Every request registers a future for its unique response topic before the
+ * request is published. The future is completed by the polling thread as
+ * soon as the response is received, so waiting threads are woken immediately.
+ */
 class ResponseListener extends ProxyListener {
 
     private final ConnectionFactory factory;
     private final String topic;
 
-    private final ConcurrentMap<String, Message> responses;
+    private final ConcurrentMap<String, CompletableFuture<Message>> responses;
 
     ResponseListener(String id, ConnectionFactory factory) {
         super("poll-" + id, factory.getContext());
@@ -48,22 +58,79 @@ class ResponseListener extends ProxyListener {
         }
     }
 
-    public Message waitMessage(String topic, long timeout) throws TimeoutException {
-        var t = 0;
-        while (t < timeout) {
-            var response = responses.remove(topic);
-            if (response != null) {
-                return response;
+    /**
+     * Registers a pending response for the given topic.
+     * It must be called before publishing the request,
+     * to not lose responses received before the caller starts waiting.
+     *
+     * @param topic the unique response topic of the request
+     * @param timeout the time to wait for the response, in milliseconds
+     * @return a future that will be completed with the response,
+     *         or with a {@link TimeoutException} if the timeout expires
+     */
+    public CompletableFuture<Message> expect(String topic, long timeout) {
+        var future = new CompletableFuture<Message>();
+        responses.put(topic, future);
+        future.whenComplete((msg, error) -> responses.remove(topic, future));
+        return future.orTimeout(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Discards the pending response for the given topic.
+     *
+     * @param topic the unique response topic of the request
+     * @param cause the reason to discard the response
+     */
+    public void cancel(String topic, Throwable cause) {
+        var future = responses.remove(topic);
+        if (future != null) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Blocks until the given pending response is received.
+     *
+     * @param response the future returned by {@link #expect}
+     * @param timeout the time to wait for the response, in milliseconds
+     * @return the response message
+     * @throws ClaraMsgException if the response could not be received
+     * @throws TimeoutException if the timeout expired before receiving the response
+     */
+    public Message waitMessage(CompletableFuture<Message> response, long timeout)
+            throws ClaraMsgException, TimeoutException {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.cancel(false);
+            throw new ClaraMsgException("interrupted while waiting for response", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new TimeoutException("no response for timeout = " + timeout);
             }
-            ActorUtils.sleep(1);
-            t += 1;
+            throw new ClaraMsgException("could not receive response", e.getCause());
         }
-        throw new TimeoutException("no response for timeout = " + t);
+    }
+
+    // for testing
+    int pending() {
+        return responses.size();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        var error = new IllegalStateException("response listener stopped");
+        responses.values().forEach(f -> f.completeExceptionally(error));
     }
 
     @Override
     public void handle(ZMsg rawMsg) throws ClaraMsgException {
         var msg = new Message(rawMsg);
-        responses.put(msg.getTopic().toString(), msg);
+        var future = responses.remove(msg.getTopic().toString());
+        if (future != null) {
+            future.complete(msg);
+        }
     }
 }
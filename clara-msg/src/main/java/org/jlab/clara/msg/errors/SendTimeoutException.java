@@ -0,0 +1,23 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.errors;
+
+/**
+ * Signals that a message could not be published because the send queue of
+ * the connection was full, and the send timeout expired.
+ */
+public class SendTimeoutException extends ClaraMsgException {
+
+    /**
+     * Constructs a new exception.
+     *
+     * @param message the detail message
+     */
+    public SendTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -74,6 +74,18 @@ public class RegAddress {
         return port;
     }
 
+    /**
+     * Returns the port where the registrar publishes the changes of the
+     * registration database.
+     * It is the port just below the request port, which is not used by the
+     * proxy of a DPE running with the same base port.
+     *
+     * @return the events port
+     */
+    public int eventsPort() {
+        return port - 1;
+    }
+
     @Override
     public String toString() {
         return host + ":" + port;
@@ -29,17 +29,31 @@ public class SocketFactory {
     }
 
     /**
-     * Creates a new 0MQ socket.
+     * Creates a new 0MQ socket with no limit of queued messages.
      *
      * @param type the type of the socket
      * @return a new socket of the given type
      * @throws ClaraMsgException if the context cannot create more sockets
      */
     public ZMQ.Socket createSocket(SocketType type) throws ClaraMsgException {
+        return createSocket(type, 0);
+    }
+
+    /**
+     * Creates a new 0MQ socket with the given high-water mark.
+     * Both the send and receive queues of the socket will be limited to the
+     * given number of messages. A value of zero means no limit.
+     *
+     * @param type the type of the socket
+     * @param hwm the high-water mark of the socket
+     * @return a new socket of the given type
+     * @throws ClaraMsgException if the context cannot create more sockets
+     */
+    public ZMQ.Socket createSocket(SocketType type, int hwm) throws ClaraMsgException {
         try {
             var socket = ctx.socket(type);
-            socket.setRcvHWM(0);
-            socket.setSndHWM(0);
+            socket.setRcvHWM(hwm);
+            socket.setSndHWM(hwm);
             return socket;
         } catch (IllegalStateException e) {
             throw new ClaraMsgException("reached maximum number of sockets: " + ctx.getMaxSockets());
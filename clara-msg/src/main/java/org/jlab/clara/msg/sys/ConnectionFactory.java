@@ -72,6 +72,7 @@ public class ConnectionFactory {
     private void prepareProxyConnection(ProxyDriver connection, ProxyDriverSetup setup)
             throws ClaraMsgException {
         try {
+            setup.setSocketOptions(connection.getSocket());
             setup.preConnection(connection.getSocket());
             connection.connect();
             ThreadUtils.sleep(10);
@@ -44,8 +44,12 @@ import java.util.logging.Logger;
  */
 public class Proxy {
 
+    /** The default high-water mark of the proxy sockets (no limit). */
+    public static final int HIGH_WATER_MARK = 0;
+
     private final ProxyAddress addr;
     private final Context ctx;
+    private final int hwm;
 
     private final Thread proxy;
     private final Thread controller;
@@ -62,6 +66,10 @@ public class Proxy {
                     .withRequiredArg()
                     .ofType(Integer.class)
                     .defaultsTo(ProxyAddress.DEFAULT_PORT);
+            OptionSpec<Integer> hwmSpec = parser.accepts("hwm")
+                    .withRequiredArg()
+                    .ofType(Integer.class)
+                    .defaultsTo(HIGH_WATER_MARK);
             parser.accepts("verbose");
             parser.acceptsAll(List.of("h", "help")).forHelp();
             var options = parser.parse(args);
@@ -76,8 +84,9 @@ public class Proxy {
             var host = options.valueOf(hostSpec);
             var port = options.valueOf(portSpec);
             var address = new ProxyAddress(host, port);
+            var hwm = options.valueOf(hwmSpec);
 
-            var proxy = new Proxy(Context.getInstance(), address);
+            var proxy = new Proxy(Context.getInstance(), address, hwm);
             if (options.has("verbose")) {
                 proxy.verbose();
             }
@@ -102,6 +111,8 @@ public class Proxy {
         out.printf("usage: j_proxy [options]%n%n  Options:%n");
         out.printf("  %-22s  %s%n", "-host <hostname>", "use the given hostname");
         out.printf("  %-22s  %s%n", "-port <port>", "use the given port");
+        out.printf("  %-22s  %s%n", "-hwm <messages>",
+                   "maximum number of queued messages (default: no limit)");
         out.printf("  %-22s  %s%n", "-verbose", "print debug information");
     }
 
@@ -124,8 +135,31 @@ public class Proxy {
      * @throws ClaraMsgException if the address is already in use
      */
     public Proxy(Context context, ProxyAddress address) throws ClaraMsgException {
+        this(context, address, HIGH_WATER_MARK);
+    }
+
+    /**
+     * Construct the proxy with the given local address and high-water mark.
+     * <p>
+     * The high-water mark limits how many messages can be queued by the proxy
+     * for every publisher and subscriber. Messages are never dropped:
+     * when the queue of a subscriber is full, the proxy stops forwarding
+     * messages until there is space, and the publishers will block once their
+     * own queues are full (or drop the messages, depending on the setup of
+     * their connections). A value of zero means no limit, which is the default.
+     *
+     * @param context the context to handle the proxy sockets
+     * @param address the local address
+     * @param hwm the high-water mark of the proxy sockets
+     * @throws ClaraMsgException if the address is already in use
+     */
+    public Proxy(Context context, ProxyAddress address, int hwm) throws ClaraMsgException {
+        if (hwm < 0) {
+            throw new IllegalArgumentException("invalid high-water mark: " + hwm);
+        }
         ctx = context;
         addr = address;
+        this.hwm = hwm;
 
         ProxyImpl proxyTask = null;
         Controller controllerTask = null;
@@ -211,8 +245,11 @@ public class Proxy {
             Socket in = null;
             Socket out = null;
             try {
-                in = factory.createSocket(SocketType.XSUB);
-                out = factory.createSocket(SocketType.XPUB);
+                in = factory.createSocket(SocketType.XSUB, hwm);
+                out = factory.createSocket(SocketType.XPUB, hwm);
+                if (hwm > 0) {
+                    out.setXpubNoDrop(true);
+                }
                 factory.bindSocket(in, addr.pubPort());
                 factory.bindSocket(out, addr.subPort());
             } catch (Exception e) {
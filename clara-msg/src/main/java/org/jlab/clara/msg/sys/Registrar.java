@@ -17,13 +17,21 @@ import org.jlab.clara.msg.sys.utils.LogUtils;
 import org.jlab.clara.msg.sys.utils.ThreadUtils;
 
 import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Main registration server.
  * It contains an in-memory database of registered actors.
+ * The database can be recorded in a journal on local disk,
+ * to restore the registered actors when the registrar is restarted.
+ * The journal directory is set with the {@code -journal} option, or the
+ * {@code CLARA_REGISTRAR_JOURNAL} environment variable.
  * <p>
  * Long-running actors subscribed to a topic of interest, or periodically
  * publishing messages, can register with the registrar service so others
@@ -33,7 +41,13 @@ import java.util.logging.Logger;
 public class Registrar {
 
     private final RegAddress addr;
+    private final RegService service;
     private final Thread registrar;
+    private final ScheduledExecutorService metricsLogger;
+
+    private static final long METRICS_PERIOD = 10;
+
+    private static final String JOURNAL_ENV = "CLARA_REGISTRAR_JOURNAL";
 
     private static final Logger LOGGER = LogUtils.getConsoleLogger("Registrar");
 
@@ -44,6 +58,12 @@ public class Registrar {
                     .withRequiredArg()
                     .ofType(Integer.class)
                     .defaultsTo(RegAddress.DEFAULT_PORT);
+            OptionSpec<Integer> workersSpec = parser.accepts("workers")
+                    .withRequiredArg()
+                    .ofType(Integer.class)
+                    .defaultsTo(RegService.DEFAULT_WORKERS);
+            OptionSpec<String> journalSpec = parser.accepts("journal")
+                    .withRequiredArg();
             parser.accepts("verbose");
             parser.acceptsAll(List.of("h", "help")).forHelp();
             var options = parser.parse(args);
@@ -57,8 +77,12 @@ public class Registrar {
 
             var port = options.valueOf(portSpec);
             var address = new RegAddress("localhost", port);
+            var workers = options.valueOf(workersSpec);
+            var journal = options.has(journalSpec)
+                    ? Path.of(options.valueOf(journalSpec))
+                    : defaultJournal();
 
-            var registrar = new Registrar(Context.getInstance(), address);
+            var registrar = new Registrar(Context.getInstance(), address, workers, journal);
             if (options.has("verbose")) {
                 registrar.verbose();
             }
@@ -80,9 +104,16 @@ public class Registrar {
     private static void usage(PrintStream out) {
         out.printf("usage: j_registrar [options]%n%n  Options:%n");
         out.printf("  %-22s  %s%n", "-port <port>", "use the given port");
+        out.printf("  %-22s  %s%n", "-workers <threads>", "serve requests with the given threads");
+        out.printf("  %-22s  %s%n", "-journal <dir>", "record the registered actors in the directory");
         out.printf("  %-22s  %s%n", "-verbose", "print debug information");
     }
 
+    private static Path defaultJournal() {
+        var dir = System.getenv(JOURNAL_ENV);
+        return dir != null && !dir.isEmpty() ? Path.of(dir) : null;
+    }
+
     /**
      * Constructs a registrar that uses the localhost and
      * {@link RegAddress#DEFAULT_PORT default port}.
@@ -102,9 +133,45 @@ public class Registrar {
      * @throws ClaraMsgException if the address is already in use
      */
     public Registrar(Context context, RegAddress address) throws ClaraMsgException {
+        this(context, address, RegService.DEFAULT_WORKERS);
+    }
+
+    /**
+     * Constructs a registrar that uses the specified address and serves
+     * requests with the given number of threads.
+     * The journal is enabled by the {@code CLARA_REGISTRAR_JOURNAL}
+     * environment variable.
+     *
+     * @param context the context to handle the registrar sockets
+     * @param address the address of the registrar service
+     * @param workers the number of threads serving requests
+     * @throws ClaraMsgException if the address is already in use
+     */
+    public Registrar(Context context, RegAddress address, int workers)
+            throws ClaraMsgException {
+        this(context, address, workers, defaultJournal());
+    }
+
+    /**
+     * Constructs a registrar that uses the specified address, serves
+     * requests with the given number of threads, and records the registered
+     * actors in the given journal directory.
+     *
+     * @param context the context to handle the registrar sockets
+     * @param address the address of the registrar service
+     * @param workers the number of threads serving requests
+     * @param journalDir the directory of the journal, or null to keep the
+     *                   registered actors only in memory
+     * @throws ClaraMsgException if the address is already in use,
+     *                           or the journal could not be opened
+     */
+    public Registrar(Context context, RegAddress address, int workers, Path journalDir)
+            throws ClaraMsgException {
         addr = address;
-        registrar = ThreadUtils.newThread("registration-service",
-                                          new RegService(context, address));
+        service = new RegService(context, address, workers, journalDir);
+        registrar = ThreadUtils.newThread("registration-service", service);
+        metricsLogger = Executors.newSingleThreadScheduledExecutor(
+                r -> ThreadUtils.newThread("registration-metrics", r));
 
         if (Environment.isDefined("CLARA_REGISTRAR_DEBUG")) {
             verbose();
@@ -123,6 +190,18 @@ public class Registrar {
      */
     public void start() {
         registrar.start();
+        metricsLogger.scheduleAtFixedRate(this::logMetrics,
+                METRICS_PERIOD, METRICS_PERIOD, TimeUnit.SECONDS);
+    }
+
+    private void logMetrics() {
+        var metrics = service.metrics().snapshot();
+        if (metrics.requests() > 0 || metrics.queueDepth() > 0) {
+            LOGGER.info(String.format(
+                    "requests = %d  rate = %.1f/s  p99 = %.3f ms  queue = %d  max_queue = %d",
+                    metrics.requests(), metrics.rate(), metrics.p99Latency() / 1000.0,
+                    metrics.queueDepth(), metrics.maxQueueDepth()));
+        }
     }
 
     /**
@@ -130,6 +209,7 @@ public class Registrar {
      * The context must be destroyed first.
      */
     public void shutdown() {
+        metricsLogger.shutdownNow();
         try {
             registrar.interrupt();
             registrar.join();
@@ -8,6 +8,7 @@ package org.jlab.clara.msg.sys.pubsub;
 
 import org.jlab.clara.msg.sys.utils.Environment;
 import org.jlab.clara.msg.sys.utils.ThreadUtils;
+import org.zeromq.SocketType;
 import org.zeromq.ZMQ.Socket;
 
 import java.util.Objects;
@@ -24,6 +25,12 @@ public final class ProxyDriverSetup {
     /** The default timeout to wait for a subscription confirmation. */
     public static final int SUBSCRIPTION_TIMEOUT = 1000;
 
+    /** The default high-water mark for sockets (no limit). */
+    public static final int HIGH_WATER_MARK = 0;
+
+    /** The default timeout to send a message (block until sent). */
+    public static final int SEND_TIMEOUT = -1;
+
 
     /**
      * Creates a new setup builder.
@@ -52,6 +59,10 @@ public final class ProxyDriverSetup {
         private boolean checkConnection;
         private boolean checkSubscription;
 
+        private int sendHighWaterMark;
+        private int receiveHighWaterMark;
+        private int sendTimeout;
+
         private Builder() {
             final var postConSleep = Environment.getLong("CLARA_POST_CONNECTION_SLEEP", 0);
             final var postSubSleep = Environment.getLong("CLARA_POST_SUBSCRIPTION_SLEEP", 10);
@@ -69,6 +80,10 @@ public final class ProxyDriverSetup {
 
             checkConnection = !Environment.isDefined("CLARA_NO_CHECK_CONNECTION");
             checkSubscription = !Environment.isDefined("CLARA_NO_CHECK_SUBSCRIPTION");
+
+            sendHighWaterMark = HIGH_WATER_MARK;
+            receiveHighWaterMark = HIGH_WATER_MARK;
+            sendTimeout = SEND_TIMEOUT;
         }
 
         /**
@@ -176,6 +191,57 @@ public final class ProxyDriverSetup {
             return this;
         }
 
+        /**
+         * Sets the maximum number of outgoing messages that can be queued
+         * by a publisher socket for the proxy.
+         * When the limit is reached, publishing will block until there is
+         * space in the queue, or until the send timeout expires.
+         * A value of zero means no limit.
+         *
+         * @param hwm the send high-water mark
+         * @return this builder
+         */
+        public Builder withSendHighWaterMark(int hwm) {
+            if (hwm < 0) {
+                throw new IllegalArgumentException("invalid high-water mark: " + hwm);
+            }
+            this.sendHighWaterMark = hwm;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of incoming messages that can be queued
+         * by a subscriber socket.
+         * When the limit is reached, the proxy will drop new messages for the
+         * subscriber.
+         * A value of zero means no limit.
+         *
+         * @param hwm the receive high-water mark
+         * @return this builder
+         */
+        public Builder withReceiveHighWaterMark(int hwm) {
+            if (hwm < 0) {
+                throw new IllegalArgumentException("invalid high-water mark: " + hwm);
+            }
+            this.receiveHighWaterMark = hwm;
+            return this;
+        }
+
+        /**
+         * Sets how long publishing can block when the send high-water mark
+         * has been reached.
+         * If the message cannot be queued before the timeout expires,
+         * publishing will fail.
+         * A negative value means block until the message can be queued.
+         *
+         * @param timeout the time to wait, in milliseconds
+         * @return this builder
+         */
+        public Builder withSendTimeout(int timeout) {
+            this.sendTimeout = timeout < 0 ? SEND_TIMEOUT : timeout;
+            return this;
+        }
+
         /**
          * Creates the setup.
          *
@@ -189,7 +255,10 @@ public final class ProxyDriverSetup {
                                         connectionTimeout,
                                         subscriptionTimeout,
                                         checkConnection,
-                                        checkSubscription);
+                                        checkSubscription,
+                                        sendHighWaterMark,
+                                        receiveHighWaterMark,
+                                        sendTimeout);
         }
     }
 
@@ -206,6 +275,10 @@ public final class ProxyDriverSetup {
     private final boolean checkConnection;
     private final boolean checkSubscription;
 
+    private final int sendHighWaterMark;
+    private final int receiveHighWaterMark;
+    private final int sendTimeout;
+
 
     // checkstyle.off: ParameterNumber
     private ProxyDriverSetup(Consumer<Socket> preConnection,
@@ -215,7 +288,10 @@ public final class ProxyDriverSetup {
                              long connectionTimeout,
                              long subscriptionTimeout,
                              boolean checkConnection,
-                             boolean checkSubscription) {
+                             boolean checkSubscription,
+                             int sendHighWaterMark,
+                             int receiveHighWaterMark,
+                             int sendTimeout) {
         this.preConnection = preConnection;
         this.postConnection = postConnection;
         this.preSubscription = preSubscription;
@@ -224,9 +300,34 @@ public final class ProxyDriverSetup {
         this.subscriptionTimeout = subscriptionTimeout;
         this.checkConnection = checkConnection;
         this.checkSubscription = checkSubscription;
+        this.sendHighWaterMark = sendHighWaterMark;
+        this.receiveHighWaterMark = receiveHighWaterMark;
+        this.sendTimeout = sendTimeout;
     }
     // checkstyle.on: ParameterNumber
 
+    /**
+     * Sets the high-water marks and the send timeout on the given socket.
+     * <p>
+     * When a publisher socket has a bounded send high-water mark,
+     * it will not drop the messages when the queue is full.
+     * It will block until the message can be queued,
+     * or the send timeout expires.
+     *
+     * @param socket the socket to be configured
+     */
+    public void setSocketOptions(Socket socket) {
+        if (socket.getSocketType() == SocketType.PUB) {
+            socket.setSndHWM(sendHighWaterMark);
+            socket.setSendTimeOut(sendTimeout);
+            if (sendHighWaterMark > 0) {
+                socket.setXpubNoDrop(true);
+            }
+        } else {
+            socket.setRcvHWM(receiveHighWaterMark);
+        }
+    }
+
     /**
      * Runs the pre-connection action on the given socket.
      *
@@ -297,4 +398,32 @@ public final class ProxyDriverSetup {
     public boolean checkSubscription() {
         return checkSubscription;
     }
+
+    /**
+     * Gets the high-water mark for publisher sockets.
+     *
+     * @return the maximum number of queued outgoing messages (zero means no limit)
+     */
+    public int sendHighWaterMark() {
+        return sendHighWaterMark;
+    }
+
+    /**
+     * Gets the high-water mark for subscriber sockets.
+     *
+     * @return the maximum number of queued incoming messages (zero means no limit)
+     */
+    public int receiveHighWaterMark() {
+        return receiveHighWaterMark;
+    }
+
+    /**
+     * Gets the timeout to queue an outgoing message.
+     *
+     * @return the time to wait when the send queue is full, in milliseconds
+     *         (negative means no timeout)
+     */
+    public int sendTimeout() {
+        return sendTimeout;
+    }
 }
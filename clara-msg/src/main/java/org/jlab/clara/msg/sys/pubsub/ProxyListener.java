@@ -31,7 +31,7 @@ public abstract class ProxyListener implements Runnable {
     public ProxyListener(String name, Context context) {
         this.connections = new ConcurrentHashMap<>();
         this.context = context;
-        this.pollingThread = ThreadUtils.newThread(name, this);
+        this.pollingThread = ThreadUtils.newThread(name, this, ThreadUtils.useVirtualThreads());
     }
 
     public void start() {
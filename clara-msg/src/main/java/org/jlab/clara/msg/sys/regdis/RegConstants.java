@@ -14,6 +14,10 @@ public final class RegConstants {
     public static final String REGISTER = "register";
     public static final String REMOVE = "remove";
     public static final String REMOVE_ALL = "remove_all";
+    public static final String RENEW = "renew";
+
+    public static final String REGISTER_MANY = "register_many";
+    public static final String REMOVE_MANY = "remove_many";
 
     public static final String FIND_MATCHING = "find_matching";
     public static final String FIND_EXACT = "find_exact";
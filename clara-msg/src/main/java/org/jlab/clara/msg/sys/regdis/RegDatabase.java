@@ -10,24 +10,60 @@ import org.jlab.clara.msg.core.Topic;
 import org.jlab.clara.msg.data.RegDataProto.RegData;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiPredicate;
+import java.util.function.LongSupplier;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * A registration database of actors.
  * Actors are grouped by topic, i.e., actors registered with the same topic will
  * be in the same group.
+ * <p>
+ * The groups are stored in a trie of topic parts (domain, subject and type
+ * parts), so matching topics are found by walking the path of the requested
+ * topic instead of testing every registered topic.
+ * Actors are also indexed by host.
+ * <p>
+ * Actors registered with a TTL hold a lease for their address (host and port).
+ * The lease must be renewed before it expires, or all the leased actors on
+ * that address will be removed by {@link #expire}.
+ * Actors registered without a TTL are never expired.
+ * <p>
+ * The database can be used by multiple threads. Queries can run concurrently,
+ * but updates are serialized, so they never interfere with each other
+ * (for example, when removing an empty topic group).
  */
 class RegDatabase {
 
-    private final ConcurrentMap<String, ConcurrentMap<Topic, Set<RegData>>>
-            db = new ConcurrentHashMap<>();
+    private final Node root = new Node(null, "", null);
+    private final Map<String, Set<RegData>> hosts = new HashMap<>();
+
+    private final Map<Address, Long> leases = new HashMap<>();
+    private final LongSupplier clock;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private record Address(String host, int port) { }
+
+
+    RegDatabase() {
+        this(System::currentTimeMillis);
+    }
+
+    RegDatabase(LongSupplier clock) {
+        this.clock = clock;
+    }
 
 
     enum TopicMatch {
@@ -106,13 +142,40 @@ class RegDatabase {
      * @param regData the description of the actor
      */
     public void register(RegData regData) {
-        var topic = getTopic(regData);
+        lock.writeLock().lock();
+        try {
+            var node = root;
+            for (var part : split(regData.getTopic())) {
+                node = node.child(part);
+            }
+            node.actors.add(regData);
+            hosts.computeIfAbsent(regData.getHost(), k -> new HashSet<>()).add(regData);
 
-        ConcurrentMap<Topic, Set<RegData>> regMap =
-                db.computeIfAbsent(getIndex(topic), k -> new ConcurrentHashMap<>());
+            if (regData.getTtl() > 0) {
+                var expiry = clock.getAsLong() + regData.getTtl();
+                leases.merge(getAddress(regData), expiry, Math::max);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        regMap.computeIfAbsent(topic, k -> ConcurrentHashMap.newKeySet())
-              .add(regData);
+
+    /**
+     * Adds all the given actors to the registration.
+     * The lock of the database is taken only once for the whole batch.
+     *
+     * @param regData the descriptions of the actors
+     */
+    public void register(Collection<RegData> regData) {
+        lock.writeLock().lock();
+        try {
+            for (var data : regData) {
+                register(data);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
 
@@ -122,17 +185,36 @@ class RegDatabase {
      * @param regData the description of the actor
      */
     public void remove(RegData regData) {
-        var topic = getTopic(regData);
-
-        ConcurrentMap<Topic, Set<RegData>> regMap = db.get(getIndex(topic));
-        if (regMap == null) {
-            return;
+        lock.writeLock().lock();
+        try {
+            var node = lookup(getTopic(regData));
+            if (node == null) {
+                return;
+            }
+            var removed = node.actors.stream()
+                    .filter(sameRegistration(regData))
+                    .toList();
+            removed.forEach(this::removeActor);
+        } finally {
+            lock.writeLock().unlock();
         }
+    }
 
-        var regActors = regMap.get(topic);
-        if (regActors != null) {
-            regActors.removeIf(sameRegistration(regData));
-            regMap.remove(topic, Set.of());
+
+    /**
+     * Removes all the given actors from the registration.
+     * The lock of the database is taken only once for the whole batch.
+     *
+     * @param regData the descriptions of the actors
+     */
+    public void remove(Collection<RegData> regData) {
+        lock.writeLock().lock();
+        try {
+            for (var data : regData) {
+                remove(data);
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -145,12 +227,87 @@ class RegDatabase {
      * @param host the host of the actors that should be removed
      */
     public void remove(String host) {
-        for (ConcurrentMap<Topic, Set<RegData>> regMap : db.values()) {
-            var modified = regMap.entrySet().stream()
-                    .filter(e -> e.getValue().removeIf(sameHost(host)))
-                    .map(e -> e.getKey())
-                    .collect(Collectors.toSet());
-            modified.forEach(k -> regMap.remove(k, Set.of()));
+        lock.writeLock().lock();
+        try {
+            leases.keySet().removeIf(a -> a.host().equals(host));
+            removeIf(host, r -> true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    private Set<RegData> removeIf(String host, Predicate<RegData> filter) {
+        var actors = hosts.get(host);
+        if (actors == null) {
+            return Set.of();
+        }
+        var removed = new HashSet<RegData>();
+        for (var actor : actors) {
+            if (filter.test(actor)) {
+                removed.add(actor);
+            }
+        }
+        removed.forEach(this::removeActor);
+        return removed;
+    }
+
+
+    private void removeActor(RegData regData) {
+        var node = lookup(getTopic(regData));
+        if (node != null && node.actors.remove(regData)) {
+            node.prune();
+        }
+        var actors = hosts.get(regData.getHost());
+        if (actors != null && actors.remove(regData) && actors.isEmpty()) {
+            hosts.remove(regData.getHost());
+        }
+    }
+
+
+    /**
+     * Renews the lease of the actors registered with a TTL on the given
+     * address. The lease will expire after the given TTL, unless it was
+     * already set to expire later.
+     *
+     * @param host the host of the leased actors
+     * @param port the port of the leased actors
+     * @param ttl the new time to live of the lease, in milliseconds
+     * @return true if there was a lease for the address, false otherwise
+     */
+    public boolean renew(String host, int port, long ttl) {
+        lock.writeLock().lock();
+        try {
+            var expiry = clock.getAsLong() + ttl;
+            return leases.computeIfPresent(new Address(host, port),
+                                           (k, v) -> Math.max(v, expiry)) != null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Removes all actors whose lease has expired.
+     *
+     * @return the removed actors
+     */
+    public Set<RegData> expire() {
+        lock.writeLock().lock();
+        try {
+            var now = clock.getAsLong();
+            var removed = new HashSet<RegData>();
+            leases.entrySet().removeIf(lease -> {
+                if (lease.getValue() > now) {
+                    return false;
+                }
+                var address = lease.getKey();
+                removed.addAll(removeIf(address.host(), leased(address)));
+                return true;
+            });
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -163,18 +320,80 @@ class RegDatabase {
      * @return the set of all actors that are matched by the topic
      */
     public Set<RegData> find(Topic topic, TopicMatch topicMatch) {
-        // Optimize the EXACT match case
-        if (topicMatch == TopicMatch.EXACT) {
-            return get(topic);
+        lock.readLock().lock();
+        try {
+            return switch (topicMatch) {
+                case PREFIX_MATCHING -> findChildren(topic);
+                case REVERSE_MATCHING -> findParents(topic);
+                case EXACT -> get(topic);
+            };
+        } finally {
+            lock.readLock().unlock();
         }
-        ConcurrentMap<Topic, Set<RegData>> regMap = db.get(getIndex(topic));
-        if (regMap == null) {
+    }
+
+
+    /*
+     * The requested topic is a prefix of the registered topic when all parts
+     * but the last one are the same, and the last part is a prefix of the
+     * registered part (the domain must always be the same).
+     */
+    private Set<RegData> findChildren(Topic topic) {
+        var parts = split(topic.toString());
+        var node = root.children.get(parts[0]);
+        for (int i = 1; i < parts.length - 1 && node != null; i++) {
+            node = node.children.get(parts[i]);
+        }
+        if (node == null) {
             return Set.of();
         }
-        return regMap.entrySet().stream()
-                .filter(entry -> topicMatch.test(topic, entry.getKey()))
-                .flatMap(entry -> entry.getValue().stream())
-                .collect(Collectors.toSet());
+        var result = new HashSet<RegData>();
+        if (parts.length == 1) {
+            node.collect(result);
+        } else {
+            var last = parts[parts.length - 1];
+            for (var child : childrenWithPrefix(node, last)) {
+                child.collect(result);
+            }
+        }
+        return result;
+    }
+
+
+    /*
+     * The registered topic is a prefix of the requested topic when all its
+     * parts are in the path of the requested topic, except the last one,
+     * which can be a prefix of the requested part.
+     */
+    private Set<RegData> findParents(Topic topic) {
+        var parts = split(topic.toString());
+        var result = new HashSet<RegData>();
+        var node = root.children.get(parts[0]);
+        for (int i = 1; node != null; i++) {
+            result.addAll(node.actors);
+            if (i == parts.length) {
+                break;
+            }
+            var part = parts[i];
+            for (int len = 0; len < part.length(); len++) {
+                var parent = node.children.get(part.substring(0, len));
+                if (parent != null) {
+                    result.addAll(parent.actors);
+                }
+            }
+            node = node.children.get(part);
+        }
+        return result;
+    }
+
+
+    private static Iterable<Node> childrenWithPrefix(Node node, String prefix) {
+        if (prefix.isEmpty()) {
+            return node.children.values();
+        }
+        var next = prefix.substring(0, prefix.length() - 1)
+                + (char) (prefix.charAt(prefix.length() - 1) + 1);
+        return node.children.subMap(prefix, true, next, false).values();
     }
 
 
@@ -195,12 +414,25 @@ class RegDatabase {
      * @return the set of all actors that match the terms
      */
     public Set<RegData> filter(RegData data) {
-        var filter = new Filter(data, TopicMatch.PREFIX_MATCHING);
-        db.entrySet().stream()
-                .filter(e -> filter.matchIndex(e.getKey()))
-                .flatMap(e -> e.getValue().entrySet().stream())
-                .forEach(e -> filter.filter(e.getKey(), e.getValue()));
-        return filter.result();
+        lock.readLock().lock();
+        try {
+            var filter = new Filter(data);
+            if (filter.host != null) {
+                var result = new HashSet<RegData>();
+                for (var actor : hosts.getOrDefault(filter.host, Set.of())) {
+                    if (filter.matchPort(actor) && filter.matchTopic(actor)) {
+                        result.add(actor);
+                    }
+                }
+                return result;
+            }
+            if (filter.topic != null) {
+                return findChildren(filter.topic);
+            }
+            return all();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
 
@@ -210,11 +442,14 @@ class RegDatabase {
      * @return the set of all actors
      */
     public Set<RegData> all() {
-        return db.values().stream()
-                .map(ConcurrentMap::values)
-                .flatMap(Collection::stream)
-                .flatMap(Set::stream)
-                .collect(Collectors.toSet());
+        lock.readLock().lock();
+        try {
+            var result = new HashSet<RegData>();
+            hosts.values().forEach(result::addAll);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
 
@@ -224,10 +459,14 @@ class RegDatabase {
      * @see #get
      */
     public Set<Topic> topics() {
-        return db.values().stream()
-                .map(ConcurrentMap::keySet)
-                .flatMap(Set::stream)
-                .collect(Collectors.toSet());
+        lock.readLock().lock();
+        try {
+            var result = new HashSet<Topic>();
+            root.collectTopics(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
 
@@ -247,20 +486,33 @@ class RegDatabase {
      * @see #topics
      */
     public Set<RegData> get(Topic topic) {
-        ConcurrentMap<Topic, Set<RegData>> regMap = db.get(getIndex(topic));
-        if (regMap == null) {
-            return Set.of();
+        lock.readLock().lock();
+        try {
+            var node = lookup(topic);
+            if (node == null) {
+                return Set.of();
+            }
+            return node.actors;
+        } finally {
+            lock.readLock().unlock();
         }
-        var result = regMap.get(topic);
-        if (result == null) {
-            return Set.of();
+    }
+
+
+    private @Nullable Node lookup(Topic topic) {
+        var node = root;
+        for (var part : split(topic.toString())) {
+            node = node.children.get(part);
+            if (node == null) {
+                return null;
+            }
         }
-        return result;
+        return node;
     }
 
 
-    private static String getIndex(Topic topic) {
-        return topic.domain();
+    private static String[] split(String topic) {
+        return topic.split(Topic.SEPARATOR, -1);
     }
 
 
@@ -274,56 +526,98 @@ class RegDatabase {
     }
 
 
-    private static Predicate<RegData> sameHost(String host) {
-        return r -> r.getHost().equals(host);
+    private static Predicate<RegData> leased(Address address) {
+        return r -> r.getTtl() > 0 && r.getPort() == address.port();
     }
 
 
-    private static final class Filter {
+    private static Address getAddress(RegData regData) {
+        return new Address(regData.getHost(), regData.getPort());
+    }
 
-        private final Set<RegData> result = new HashSet<>();
 
-        private final TopicMatch topicMatch;
+    /**
+     * A node of the topic trie.
+     * The actors of the node are registered with the topic of the path from
+     * the root to the node.
+     */
+    private static final class Node {
+
+        private final @Nullable Node parent;
+        private final String part;
         private final @Nullable Topic topic;
-        private final @Nullable String host;
-        private final int port;
 
-        private Filter(RegData data, TopicMatch topicMatch) {
-            this.topicMatch = topicMatch;
-            this.topic = data.hasTopic() ? Topic.wrap(data.getTopic()) : null;
-            this.host = data.hasHost() ? data.getHost() : null;
-            this.port = data.getPort();
+        private final NavigableMap<String, Node> children = new TreeMap<>();
+        private final Set<RegData> actors = ConcurrentHashMap.newKeySet();
+
+        private Node(@Nullable Node parent, String part, @Nullable Topic topic) {
+            this.parent = parent;
+            this.part = part;
+            this.topic = topic;
         }
 
-        public void filter(Topic topic, Set<RegData> actors) {
-            if (matchTopic(topic)) {
-                if (hasAddress()) {
-                    actors.stream().filter(this::matchAddress).forEach(result::add);
-                } else {
-                    result.addAll(actors);
-                }
+        Node child(String part) {
+            return children.computeIfAbsent(part, k -> {
+                var path = topic == null ? k : topic + Topic.SEPARATOR + k;
+                return new Node(this, k, Topic.wrap(path));
+            });
+        }
+
+        void prune() {
+            var node = this;
+            while (node.parent != null && node.actors.isEmpty() && node.children.isEmpty()) {
+                node.parent.children.remove(node.part);
+                node = node.parent;
             }
         }
 
-        public Set<RegData> result() {
-            return result;
+        void collect(Set<RegData> result) {
+            var stack = new ArrayList<Node>();
+            stack.add(this);
+            while (!stack.isEmpty()) {
+                var node = stack.remove(stack.size() - 1);
+                result.addAll(node.actors);
+                stack.addAll(node.children.values());
+            }
         }
 
-        public boolean matchIndex(String indexKey) {
-            return topic == null || indexKey.equals(topic.domain());
+        void collectTopics(Set<Topic> result) {
+            var stack = new ArrayList<Node>();
+            stack.add(this);
+            while (!stack.isEmpty()) {
+                var node = stack.remove(stack.size() - 1);
+                if (!node.actors.isEmpty()) {
+                    result.add(node.topic);
+                }
+                stack.addAll(node.children.values());
+            }
         }
+    }
 
-        private boolean matchTopic(Topic topic) {
-            return this.topic == null || topicMatch.test(this.topic, topic);
+
+    private static final class Filter {
+
+        private final @Nullable Topic topic;
+        private final @Nullable String host;
+        private final int port;
+
+        private Filter(RegData data) {
+            this.topic = data.hasTopic() ? Topic.wrap(data.getTopic()) : null;
+            this.host = data.hasHost() ? data.getHost() : null;
+            this.port = data.getPort();
         }
 
-        private boolean matchAddress(RegData actor) {
-            return actor.getHost().equals(host)
-                    && (port == 0 || actor.getPort() == port);
+        private boolean matchTopic(RegData actor) {
+            if (topic == null) {
+                return true;
+            }
+            var actorTopic = getTopic(actor);
+            return topic.domain().equals(actorTopic.domain())
+                    && TopicMatch.PREFIX_MATCHING.test(topic, actorTopic);
         }
 
-        private boolean hasAddress() {
-            return host != null;
+        private boolean matchPort(RegData actor) {
+            return port == 0 || actor.getPort() == port;
         }
     }
 }
@@ -16,6 +16,7 @@ import org.zeromq.ZMQ.Socket;
 import org.zeromq.ZMQException;
 import org.zeromq.ZMsg;
 
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -140,6 +141,60 @@ public class RegDriver {
         request(request, timeout);
     }
 
+    /**
+     * Sends a request to register many actors at once to the registrar service.
+     *
+     * @param sender the sender of the request
+     * @param data the registration data of all the actors
+     * @throws ClaraMsgException if the request to the registrar failed
+     */
+    public void addRegistrations(String sender, List<RegData> data)
+            throws ClaraMsgException {
+        addRegistrations(sender, data, RegConstants.REGISTRATION_TIMEOUT);
+    }
+
+    /**
+     * Sends a request to register many actors at once to the registrar service.
+     *
+     * @param sender the sender of the request
+     * @param data the registration data of all the actors
+     * @param timeout the milliseconds to wait for a response
+     * @throws ClaraMsgException if the request to the registrar failed
+     */
+    public void addRegistrations(String sender, List<RegData> data, long timeout)
+            throws ClaraMsgException {
+        var request = new RegRequest(RegConstants.REGISTER_MANY, sender, data);
+        request(request, timeout);
+    }
+
+    /**
+     * Sends a request to remove many registered actors at once to the
+     * registrar service.
+     *
+     * @param sender the sender of the request
+     * @param data the registration data of all the actors
+     * @throws ClaraMsgException if the request to the registrar failed
+     */
+    public void removeRegistrations(String sender, List<RegData> data)
+            throws ClaraMsgException {
+        removeRegistrations(sender, data, RegConstants.REGISTRATION_TIMEOUT);
+    }
+
+    /**
+     * Sends a request to remove many registered actors at once to the
+     * registrar service.
+     *
+     * @param sender the sender of the request
+     * @param data the registration data of all the actors
+     * @param timeout the milliseconds to wait for a response
+     * @throws ClaraMsgException if the request to the registrar failed
+     */
+    public void removeRegistrations(String sender, List<RegData> data, long timeout)
+            throws ClaraMsgException {
+        var request = new RegRequest(RegConstants.REMOVE_MANY, sender, data);
+        request(request, timeout);
+    }
+
     /**
      * Removes registration of all actors of the specified node.
      * This will remove all publishers and subscribers running
@@ -179,6 +234,49 @@ public class RegDriver {
         request(request, timeout);
     }
 
+    /**
+     * Renews the lease of all actors registered with a TTL on the specified
+     * address (both publishers and subscribers).
+     * The actors will be removed by the registrar service if the lease is not
+     * renewed again before the given TTL.
+     *
+     * @param sender the sender of the request
+     * @param host the host of the leased actors
+     * @param port the port of the leased actors
+     * @param ttl the new time to live of the lease, in milliseconds
+     * @throws ClaraMsgException if the request to the registrar failed,
+     *                           or there is no lease for the address
+     */
+    public void renewRegistration(String sender, String host, int port, long ttl)
+            throws ClaraMsgException {
+        renewRegistration(sender, host, port, ttl, RegConstants.REGISTRATION_TIMEOUT);
+    }
+
+    /**
+     * Renews the lease of all actors registered with a TTL on the specified
+     * address (both publishers and subscribers).
+     * The actors will be removed by the registrar service if the lease is not
+     * renewed again before the given TTL.
+     *
+     * @param sender the sender of the request
+     * @param host the host of the leased actors
+     * @param port the port of the leased actors
+     * @param ttl the new time to live of the lease, in milliseconds
+     * @param timeout the milliseconds to wait for a response
+     * @throws ClaraMsgException if the request to the registrar failed,
+     *                           or there is no lease for the address
+     */
+    public void renewRegistration(String sender, String host, int port, long ttl, long timeout)
+            throws ClaraMsgException {
+        var data = RegFactory.newFilter(RegData.Type.PUBLISHER)
+                             .setHost(host)
+                             .setPort(port)
+                             .setTtl(ttl)
+                             .build();
+        var request = new RegRequest(RegConstants.RENEW, sender, data);
+        request(request, timeout);
+    }
+
     /**
      * Sends a request to search the database for publishers or subscribers
      * to a specific topic to the registrar server and waits the response.
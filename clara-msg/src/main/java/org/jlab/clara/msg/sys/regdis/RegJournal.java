@@ -0,0 +1,306 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.sys.regdis;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.jlab.clara.msg.data.RegDataProto.RegData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Persists the changes of the registration databases on local disk,
+ * so a restarted registrar can recover the registered actors.
+ * <p>
+ * Every change is appended to a journal, a memory-mapped file of fixed size.
+ * When the journal is full, or periodically, the whole state of the databases
+ * is written into a compact snapshot and the journal is cleared.
+ * On startup, the snapshot and then the journal are replayed.
+ * <p>
+ * Every record is written with its length and checksum, and the length is
+ * written last, so a record partially written when the registrar crashed
+ * is detected and ignored. Changes written to the mapped journal survive a
+ * crash of the registrar, but they are flushed to the disk only when
+ * {@link #maintain} is called, so the last changes can be lost if the node
+ * crashes.
+ * <p>
+ * The journal is not thread-safe. The caller must serialize the changes
+ * of the databases with the calls to the journal, so the records are
+ * written in the same order as the changes are applied, and the snapshot
+ * is consistent with the journal.
+ */
+class RegJournal implements AutoCloseable {
+
+    /** The record of registered actors. */
+    static final byte REGISTER = 1;
+
+    /** The record of removed actors. */
+    static final byte REMOVE = 2;
+
+    /** The record of all actors of a host and type being removed. */
+    static final byte REMOVE_ALL = 3;
+
+    static final int DEFAULT_CAPACITY = 16 * 1024 * 1024;
+    static final long DEFAULT_SNAPSHOT_PERIOD = 5 * 60 * 1000;
+
+    private static final String SNAPSHOT_FILE = "registrar.snapshot";
+    private static final String JOURNAL_FILE = "registrar.journal";
+
+    // length + checksum + action
+    private static final int HEADER_SIZE = 9;
+    private static final int END_MARK_SIZE = 4;
+
+    /**
+     * Applies a replayed record to the databases.
+     */
+    @FunctionalInterface
+    interface Handler {
+        void apply(byte action, RegData data);
+    }
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final FileChannel channel;
+    private final MappedByteBuffer journal;
+    private final int capacity;
+
+    private final Supplier<Collection<RegData>> state;
+    private final long snapshotPeriod;
+    private final LongSupplier clock;
+
+    private int position = 0;
+    private boolean dirty = false;
+    private long lastSnapshot;
+
+    /**
+     * Opens the journal stored in the given directory.
+     *
+     * @param dir the directory of the journal files
+     * @param state supplies all registered actors, to write a snapshot
+     * @throws IOException if the journal could not be opened
+     */
+    RegJournal(Path dir, Supplier<Collection<RegData>> state) throws IOException {
+        this(dir, state, DEFAULT_CAPACITY, DEFAULT_SNAPSHOT_PERIOD, System::currentTimeMillis);
+    }
+
+    RegJournal(Path dir,
+               Supplier<Collection<RegData>> state,
+               int capacity,
+               long snapshotPeriod,
+               LongSupplier clock) throws IOException {
+        Files.createDirectories(dir);
+        this.snapshotFile = dir.resolve(SNAPSHOT_FILE);
+        this.journalFile = dir.resolve(JOURNAL_FILE);
+        this.channel = FileChannel.open(journalFile,
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+        this.journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.capacity = capacity;
+        this.state = state;
+        this.snapshotPeriod = snapshotPeriod;
+        this.clock = clock;
+        this.lastSnapshot = clock.getAsLong();
+    }
+
+    /**
+     * Replays the snapshot and the journal, in order.
+     * Records after the first corrupted record of the journal are discarded.
+     *
+     * @param handler applies every record to the databases
+     * @return the number of replayed records
+     * @throws IOException if the snapshot could not be read
+     */
+    int replay(Handler handler) throws IOException {
+        var count = 0;
+        if (Files.exists(snapshotFile)) {
+            try (var snapshot = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+                var buffer = snapshot.map(FileChannel.MapMode.READ_ONLY, 0, snapshot.size());
+                count += read(buffer, handler);
+            }
+        }
+        var buffer = journal.duplicate().clear();
+        count += read(buffer, handler);
+        position = buffer.position();
+        if (clear(position, capacity)) {
+            // discarded the rest of a partially written record
+            journal.force();
+        }
+        return count;
+    }
+
+    private static int read(ByteBuffer buffer, Handler handler) {
+        var count = 0;
+        var checksum = new CRC32();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            var start = buffer.position();
+            var length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - 4) {
+                buffer.position(start);
+                break;
+            }
+            var crc = buffer.getInt();
+            var record = new byte[length];
+            buffer.get(record);
+            checksum.reset();
+            checksum.update(record);
+            if ((int) checksum.getValue() != crc) {
+                buffer.position(start);
+                break;
+            }
+            try {
+                var data = RegData.parseFrom(ByteBuffer.wrap(record, 1, length - 1));
+                handler.apply(record[0], data);
+                count++;
+            } catch (InvalidProtocolBufferException e) {
+                buffer.position(start);
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Appends a record for every given actor.
+     * If the journal is full, a snapshot of the current state is written
+     * instead. The changes must already be applied to the databases.
+     *
+     * @param action the change of the actors
+     * @param data the changed actors
+     * @throws IOException if the snapshot could not be written
+     */
+    void append(byte action, Collection<RegData> data) throws IOException {
+        for (var reg : data) {
+            var bytes = reg.toByteArray();
+            if (position + recordSize(bytes) + END_MARK_SIZE > capacity) {
+                // the current state already contains the remaining changes
+                snapshot();
+                return;
+            }
+            position += write(journal, position, action, bytes);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Flushes the journal to the disk, and writes a snapshot
+     * if the snapshot period has elapsed since the last one.
+     *
+     * @throws IOException if the snapshot could not be written
+     */
+    void maintain() throws IOException {
+        if (position > 0 && clock.getAsLong() - lastSnapshot >= snapshotPeriod) {
+            snapshot();
+        } else if (dirty) {
+            journal.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Writes the current state of the databases into a new snapshot,
+     * and clears the journal.
+     * The new snapshot replaces the old one atomically. If the registrar
+     * crashes before the journal is cleared, replaying the old journal
+     * over the new snapshot produces the same state.
+     *
+     * @throws IOException if the snapshot could not be written
+     */
+    void snapshot() throws IOException {
+        var tmpFile = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (var out = FileChannel.open(tmpFile,
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            var buffer = ByteBuffer.allocate(64 * 1024);
+            for (var reg : state.get()) {
+                var bytes = reg.toByteArray();
+                var size = recordSize(bytes);
+                if (size > buffer.remaining()) {
+                    flush(out, buffer);
+                    if (size > buffer.capacity()) {
+                        buffer = ByteBuffer.allocate(size);
+                    }
+                }
+                buffer.position(buffer.position() + write(buffer, buffer.position(), REGISTER, bytes));
+            }
+            flush(out, buffer);
+            out.force(true);
+        }
+        Files.move(tmpFile, snapshotFile,
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        clear(0, position);
+        journal.force();
+        position = 0;
+        dirty = false;
+        lastSnapshot = clock.getAsLong();
+    }
+
+    private static void flush(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private boolean clear(int from, int to) {
+        var changed = false;
+        for (int i = from; i < to; i++) {
+            if (journal.get(i) != 0) {
+                journal.put(i, (byte) 0);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static int recordSize(byte[] data) {
+        return HEADER_SIZE + data.length;
+    }
+
+    /*
+     * The length is written after the rest of the record,
+     * so a non-zero length always marks a complete record.
+     */
+    private static int write(ByteBuffer buffer, int index, byte action, byte[] data) {
+        var checksum = new CRC32();
+        checksum.update(action);
+        checksum.update(data);
+        buffer.putInt(index + 4, (int) checksum.getValue());
+        buffer.put(index + 8, action);
+        buffer.put(index + HEADER_SIZE, data);
+        buffer.putInt(index, data.length + 1);
+        return recordSize(data);
+    }
+
+    /**
+     * Returns the number of bytes used by the journal.
+     */
+    int size() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (dirty) {
+            journal.force();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.sys.regdis;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load metrics of the registrar service.
+ * <p>
+ * The metrics are collected for the interval between two consecutive
+ * snapshots. The latency percentile is estimated from a uniform sample of
+ * the latencies of the requests served in the interval.
+ */
+public final class RegMetrics {
+
+    private static final int MAX_SAMPLES = 8192;
+
+    private final long[] samples = new long[MAX_SAMPLES];
+
+    private long requests;
+    private int queueDepth;
+    private int maxQueueDepth;
+    private long intervalStart = System.nanoTime();
+
+    /**
+     * The metrics of an interval.
+     *
+     * @param requests the number of requests served in the interval
+     * @param rate the number of requests served per second
+     * @param p99Latency the 99th percentile of the latency, in microseconds
+     * @param queueDepth the number of pending requests at the end of the interval
+     * @param maxQueueDepth the maximum number of pending requests in the interval
+     */
+    public record Snapshot(long requests,
+                           double rate,
+                           long p99Latency,
+                           int queueDepth,
+                           int maxQueueDepth) { }
+
+    synchronized void received(int pending) {
+        queueDepth = pending;
+        maxQueueDepth = Math.max(maxQueueDepth, pending);
+    }
+
+    synchronized void served(int pending, long latencyNanos) {
+        queueDepth = pending;
+        var latency = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+        if (requests < MAX_SAMPLES) {
+            samples[(int) requests] = latency;
+        } else {
+            var index = ThreadLocalRandom.current().nextLong(requests + 1);
+            if (index < MAX_SAMPLES) {
+                samples[(int) index] = latency;
+            }
+        }
+        requests++;
+    }
+
+    /**
+     * Returns the metrics collected since the last snapshot, and starts a
+     * new interval.
+     *
+     * @return the metrics of the last interval
+     */
+    public synchronized Snapshot snapshot() {
+        var now = System.nanoTime();
+        var elapsed = (now - intervalStart) / 1e9;
+        var rate = elapsed > 0 ? requests / elapsed : 0.0;
+
+        var count = (int) Math.min(requests, MAX_SAMPLES);
+        var p99 = 0L;
+        if (count > 0) {
+            var sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            p99 = sorted[(int) Math.ceil(0.99 * count) - 1];
+        }
+
+        var snapshot = new Snapshot(requests, rate, p99, queueDepth, maxQueueDepth);
+
+        requests = 0;
+        maxQueueDepth = queueDepth;
+        intervalStart = now;
+
+        return snapshot;
+    }
+}
@@ -11,14 +11,20 @@ import org.jlab.clara.msg.data.RegDataProto.RegData;
 import org.jlab.clara.msg.errors.ClaraMsgException;
 import org.zeromq.ZMsg;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A wrapper for a registration request.
+ * <p>
+ * Batch requests contain the registration data of many actors,
+ * one frame per actor.
  */
 class RegRequest {
 
     private final String action;
     private final String sender;
-    private final RegData data;
+    private final List<RegData> data;
 
     /**
      * Constructs a data request.
@@ -30,7 +36,23 @@ class RegRequest {
     RegRequest(String action, String sender, RegData data) {
         this.action = action;
         this.sender = sender;
-        this.data = data;
+        this.data = List.of(data);
+    }
+
+    /**
+     * Constructs a batch request.
+     *
+     * @param action the registrar action being requested
+     * @param sender the sender of the response
+     * @param data the registration data of all actors of the request
+     */
+    RegRequest(String action, String sender, List<RegData> data) {
+        if (data.isEmpty()) {
+            throw new IllegalArgumentException("empty registration data");
+        }
+        this.action = action;
+        this.sender = sender;
+        this.data = List.copyOf(data);
     }
 
     /**
@@ -42,17 +64,22 @@ class RegRequest {
      */
     RegRequest(ZMsg msg) throws ClaraMsgException, InvalidProtocolBufferException {
 
-        if (msg.size() != 3) {
+        if (msg.size() < 3) {
             throw new ClaraMsgException("invalid registrar server request format");
         }
 
         var actionFrame = msg.pop();
         var senderFrame = msg.pop();
-        var dataFrame = msg.pop();
 
         action = new String(actionFrame.getData());
         sender = new String(senderFrame.getData());
-        data = RegData.parseFrom(dataFrame.getData());
+
+        var allData = new ArrayList<RegData>(msg.size());
+        while (!msg.isEmpty()) {
+            var dataFrame = msg.pop();
+            allData.add(RegData.parseFrom(dataFrame.getData()));
+        }
+        data = allData;
     }
 
     /**
@@ -64,7 +91,9 @@ class RegRequest {
         var msg = new ZMsg();
         msg.addString(action);
         msg.addString(sender);
-        msg.add(data.toByteArray());
+        for (var reg : data) {
+            msg.add(reg.toByteArray());
+        }
         return msg;
     }
 
@@ -84,8 +113,16 @@ class RegRequest {
 
     /**
      * Returns the data of the request.
+     * For batch requests, it is the data of the first actor.
      */
     public RegData data() {
+        return data.get(0);
+    }
+
+    /**
+     * Returns the data of all actors of the request.
+     */
+    public List<RegData> allData() {
         return data;
     }
 
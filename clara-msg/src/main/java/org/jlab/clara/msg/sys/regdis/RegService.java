@@ -14,14 +14,25 @@ import org.jlab.clara.msg.net.Context;
 import org.jlab.clara.msg.net.RegAddress;
 import org.jlab.clara.msg.net.SocketFactory;
 import org.jlab.clara.msg.sys.utils.LogUtils;
+import org.jlab.clara.msg.sys.utils.ThreadUtils;
 import org.zeromq.SocketType;
 import org.zeromq.ZMQ;
 import org.zeromq.ZMQ.Socket;
 import org.zeromq.ZMQException;
 import org.zeromq.ZMsg;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -35,48 +46,182 @@ import java.util.logging.Logger;
  * <ul>
  *   <li>Register publisher</li>
  *   <li>Register subscriber</li>
+ *   <li>Register or remove many actors at once</li>
  *   <li>Find publisher</li>
  *   <li>Find subscriber</li>
+ *   <li>Renew the lease of the actors on an address</li>
  * </ul>
+ * <p>
+ * The requests are received by a ROUTER socket and distributed to a pool of
+ * worker threads, so many requests can be served concurrently.
+ * Discovery requests only take a read lock of the databases, while
+ * registration requests are serialized.
+ * The load of the service can be checked with {@link #metrics}.
+ * <p>
+ * Actors registered with a TTL are removed when their lease is not renewed
+ * in time. The expired leases are checked periodically by a background
+ * thread.
+ * <p>
+ * Every change of the databases is published on the events port of the
+ * registrar, so clients can invalidate their cached discovery results.
+ * An event is composed of the registration action and the data of the
+ * registered or removed actor.
+ * <p>
+ * If a journal directory is given, every change of the databases is also
+ * recorded on local disk, and the recorded actors are restored when the
+ * registrar is restarted. The restored actors registered with a TTL get a new
+ * lease, so the actors of DPEs that are still alive are kept by their lease
+ * renewals, and the actors of dead DPEs expire after their TTL.
+ * Actors registered without a TTL are restored until they are removed.
  */
 public class RegService implements Runnable {
 
+    /** The default number of worker threads. */
+    public static final int DEFAULT_WORKERS = 4;
+
     private final RegDatabase publishers = new RegDatabase();
     private final RegDatabase subscribers = new RegDatabase();
 
     private final RegAddress regAddress;
     private final String sender;
+    private final String workersAddress;
+    private final int numWorkers;
 
-    private final Socket regSocket;
+    private final Socket frontend;
+    private final Socket backend;
+    private final Socket events;
+    private boolean eventsClosed = false;
     private final SocketFactory factory;
 
+    private final RegMetrics metrics = new RegMetrics();
+
+    private final RegJournal journal;
+    private boolean journalClosed = false;
+    private final Object updates = new Object();
+
     private static final Set<RegData> NO_DATA = Collections.emptySet();
 
+    private static final long LEASE_CHECK_PERIOD = 1000;
+    private static final long JOURNAL_SYNC_PERIOD = 1000;
+
     private static final Logger LOGGER = Logger.getLogger("Registrar");
 
 
     /**
-     * Creates a registrar object.
+     * Creates a registrar object with the default number of workers.
      *
      * @param context the context to run the registrar service
      * @param address the address of the registrar service
      * @throws ClaraMsgException if the address is already in use
      */
     public RegService(Context context, RegAddress address) throws ClaraMsgException {
+        this(context, address, DEFAULT_WORKERS);
+    }
+
+    /**
+     * Creates a registrar object.
+     *
+     * @param context the context to run the registrar service
+     * @param address the address of the registrar service
+     * @param workers the number of threads serving requests
+     * @throws ClaraMsgException if the address is already in use
+     */
+    public RegService(Context context, RegAddress address, int workers)
+            throws ClaraMsgException {
+        this(context, address, workers, null);
+    }
+
+    /**
+     * Creates a registrar object that records the registered actors in the
+     * given journal directory. The actors recorded by a previous registrar
+     * are restored.
+     *
+     * @param context the context to run the registrar service
+     * @param address the address of the registrar service
+     * @param workers the number of threads serving requests
+     * @param journalDir the directory of the journal, or null to keep the
+     *                   registered actors only in memory
+     * @throws ClaraMsgException if the address is already in use,
+     *                           or the journal could not be opened
+     */
+    public RegService(Context context, RegAddress address, int workers, Path journalDir)
+            throws ClaraMsgException {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("invalid number of workers: " + workers);
+        }
         factory = new SocketFactory(context.getContext());
 
         regAddress = address;
-        regSocket = factory.createSocket(SocketType.REP);
+        workersAddress = "inproc://registrar-workers-" + address.port();
+        numWorkers = workers;
+
+        Socket frontend = null;
+        Socket backend = null;
+        Socket events = null;
         try {
-            factory.bindSocket(regSocket, regAddress.port());
+            frontend = factory.createSocket(SocketType.ROUTER);
+            backend = factory.createSocket(SocketType.DEALER);
+            events = factory.createSocket(SocketType.PUB);
+            factory.bindSocket(frontend, regAddress.port());
+            factory.bindSocket(events, regAddress.eventsPort());
+            backend.bind(workersAddress);
         } catch (Exception e) {
-            factory.closeQuietly(regSocket);
+            factory.closeQuietly(frontend);
+            factory.closeQuietly(backend);
+            factory.closeQuietly(events);
+            throw e;
+        }
+        this.frontend = frontend;
+        this.backend = backend;
+        this.events = events;
+
+        try {
+            journal = journalDir != null ? openJournal(journalDir) : null;
+        } catch (ClaraMsgException e) {
+            factory.closeQuietly(frontend);
+            factory.closeQuietly(backend);
+            factory.closeQuietly(events);
             throw e;
         }
 
         sender = address + "registrar";
     }
 
+    private RegJournal openJournal(Path dir) throws ClaraMsgException {
+        RegJournal journal = null;
+        try {
+            var start = System.nanoTime();
+            journal = new RegJournal(dir, this::allRegistrations);
+            var restored = journal.replay(this::restore);
+            var elapsed = (System.nanoTime() - start) / 1e6;
+            LOGGER.info(String.format("restored %d registration records from %s in %.1f ms",
+                    restored, dir, elapsed));
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            if (journal != null) {
+                closeJournal(journal);
+            }
+            throw new ClaraMsgException("could not open registrar journal: " + dir, e);
+        }
+    }
+
+    private void restore(byte action, RegData data) {
+        var database = database(data);
+        switch (action) {
+            case RegJournal.REGISTER -> database.register(data);
+            case RegJournal.REMOVE -> database.remove(data);
+            case RegJournal.REMOVE_ALL -> database.remove(data.getHost());
+            default -> LOGGER.warning("unknown journal record: " + action);
+        }
+    }
+
+    private List<RegData> allRegistrations() {
+        var all = new ArrayList<RegData>();
+        all.addAll(publishers.all());
+        all.addAll(subscribers.all());
+        return all;
+    }
+
     /**
      * Returns the address of the registrar.
      */
@@ -84,18 +229,115 @@ public class RegService implements Runnable {
         return regAddress;
     }
 
+    /**
+     * Returns the load metrics of the registrar.
+     */
+    public RegMetrics metrics() {
+        return metrics;
+    }
+
     @Override
     public void run() {
+        var sweeper = startSweeper();
+        var workers = startWorkers();
+        try {
+            LOGGER.info("running on host = " + regAddress.host() + "  port = " + regAddress.port()
+                        + "  workers = " + numWorkers);
+            forwardRequests();
+        } catch (Exception e) {
+            LOGGER.severe(LogUtils.exceptionReporter(e));
+        } finally {
+            sweeper.shutdownNow();
+            factory.closeQuietly(frontend);
+            factory.closeQuietly(backend);
+            for (var worker : workers) {
+                worker.interrupt();
+            }
+            synchronized (events) {
+                factory.closeQuietly(events);
+                eventsClosed = true;
+            }
+            if (journal != null) {
+                synchronized (updates) {
+                    closeJournal(journal);
+                    journalClosed = true;
+                }
+            }
+        }
+    }
+
+    /*
+     * Forwards the requests to the workers and the responses back to the
+     * clients, keeping track of the pending requests to measure the load.
+     * Every client (a REQ socket) has at most one pending request.
+     */
+    private void forwardRequests() {
+        var pending = new HashMap<ByteBuffer, Long>();
+        try (var poller = factory.context().poller(2)) {
+            poller.register(frontend, ZMQ.Poller.POLLIN);
+            poller.register(backend, ZMQ.Poller.POLLIN);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (poller.poll() < 0) {
+                        break;
+                    }
+                    if (poller.pollin(0)) {
+                        var request = ZMsg.recvMsg(frontend);
+                        if (request == null) {
+                            break;
+                        }
+                        pending.put(clientId(request), System.nanoTime());
+                        metrics.received(pending.size());
+                        request.send(backend);
+                    }
+                    if (poller.pollin(1)) {
+                        var response = ZMsg.recvMsg(backend);
+                        if (response == null) {
+                            break;
+                        }
+                        var start = pending.remove(clientId(response));
+                        if (start != null) {
+                            metrics.served(pending.size(), System.nanoTime() - start);
+                        }
+                        response.send(frontend);
+                    }
+                } catch (ZMQException e) {
+                    if (e.getErrorCode() == ZMQ.Error.ETERM.getCode()) {
+                        break;
+                    }
+                    LOGGER.warning(LogUtils.exceptionReporter(e));
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer clientId(ZMsg msg) {
+        return ByteBuffer.wrap(msg.getFirst().getData());
+    }
+
+    private List<Thread> startWorkers() {
+        var workers = new ArrayList<Thread>();
+        for (int i = 0; i < numWorkers; i++) {
+            var worker = ThreadUtils.newThread("registration-worker-" + i, this::serveRequests);
+            worker.start();
+            workers.add(worker);
+        }
+        return workers;
+    }
+
+    private void serveRequests() {
+        Socket socket = null;
         try {
-            LOGGER.info("running on host = " + regAddress.host() + "  port = " + regAddress.port());
+            socket = factory.createSocket(SocketType.REP);
+            socket.connect(workersAddress);
             while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    ZMsg request = ZMsg.recvMsg(regSocket);
+                    ZMsg request = ZMsg.recvMsg(socket);
                     if (request == null) {
                         break;
                     }
                     ZMsg response = processRequest(request);
-                    response.send(regSocket);
+                    response.send(socket);
                 } catch (ZMQException e) {
                     if (e.getErrorCode() == ZMQ.Error.ETERM.getCode()) {
                         break;
@@ -106,12 +348,52 @@ public class RegService implements Runnable {
         } catch (Exception e) {
             LOGGER.severe(LogUtils.exceptionReporter(e));
         } finally {
-            factory.closeQuietly(regSocket);
+            factory.closeQuietly(socket);
+        }
+    }
+
+    private ScheduledExecutorService startSweeper() {
+        var sweeper = Executors.newSingleThreadScheduledExecutor(
+                r -> ThreadUtils.newThread("registration-sweeper", r));
+        sweeper.scheduleWithFixedDelay(this::expireLeases,
+                LEASE_CHECK_PERIOD, LEASE_CHECK_PERIOD, TimeUnit.MILLISECONDS);
+        if (journal != null) {
+            sweeper.scheduleWithFixedDelay(this::syncJournal,
+                    JOURNAL_SYNC_PERIOD, JOURNAL_SYNC_PERIOD, TimeUnit.MILLISECONDS);
+        }
+        return sweeper;
+    }
+
+    /**
+     * Removes the actors with expired leases from both databases.
+     */
+    void expireLeases() {
+        try {
+            publishExpired(expire(publishers));
+            publishExpired(expire(subscribers));
+        } catch (Exception e) {
+            LOGGER.warning(LogUtils.exceptionReporter(e));
+        }
+    }
+
+    /**
+     * Flushes the journal to disk, and writes a new snapshot if needed.
+     */
+    void syncJournal() {
+        synchronized (updates) {
+            if (journalClosed) {
+                return;
+            }
+            try {
+                journal.maintain();
+            } catch (IOException e) {
+                LOGGER.warning(LogUtils.exceptionReporter(e));
+            }
         }
     }
 
     /**
-     * Registration request processing routine that runs in this thread.
+     * Registration request processing routine that runs in the worker threads.
      *
      * @param requestMsg serialized 0MQ message of the wire
      * @return serialized response: 0MQ message ready to go over the wire
@@ -125,28 +407,57 @@ public class RegService implements Runnable {
             action = request.action();
 
             var data = request.data();
-            var database = switch (data.getType()) {
-                case PUBLISHER -> publishers;
-                case SUBSCRIBER -> subscribers;
-            };
+            var database = database(data);
 
             reply = switch (action) {
                 case RegConstants.REGISTER -> {
                     checkRegistration(data);
                     logRegistration("register", data);
-                    database.register(data);
+                    register(List.of(data));
+                    publishEvent(action, data);
                     yield response(action, NO_DATA);
                 }
                 case RegConstants.REMOVE -> {
                     checkRegistration(data);
                     logRegistration("remove", data);
-                    database.remove(data);
+                    remove(List.of(data));
+                    publishEvent(action, data);
+                    yield response(action, NO_DATA);
+                }
+                case RegConstants.REGISTER_MANY -> {
+                    var batch = checkBatch(request);
+                    LOGGER.fine(() -> "register " + batch.size() + " actors");
+                    batch.forEach(d -> logRegistration("register", d));
+                    register(batch);
+                    batch.forEach(d -> publishEvent(RegConstants.REGISTER, d));
+                    yield response(action, NO_DATA);
+                }
+                case RegConstants.REMOVE_MANY -> {
+                    var batch = checkBatch(request);
+                    LOGGER.fine(() -> "remove " + batch.size() + " actors");
+                    batch.forEach(d -> logRegistration("remove", d));
+                    remove(batch);
+                    batch.forEach(d -> publishEvent(RegConstants.REMOVE, d));
                     yield response(action, NO_DATA);
                 }
                 case RegConstants.REMOVE_ALL -> {
                     var host = checkHost(data);
                     LOGGER.fine(() -> "remove all " + getType(data, true) + " from host = " + host);
-                    database.remove(host);
+                    removeAll(data);
+                    publishEvent(action, data);
+                    yield response(action, NO_DATA);
+                }
+                case RegConstants.RENEW -> {
+                    var host = checkHost(data);
+                    var ttl = checkTtl(data);
+                    LOGGER.fine(() -> String.format("renew lease host = %s  port = %d  ttl = %d",
+                            host, data.getPort(), ttl));
+                    var renewedPub = publishers.renew(host, data.getPort(), ttl);
+                    var renewedSub = subscribers.renew(host, data.getPort(), ttl);
+                    if (!renewedPub && !renewedSub) {
+                        throw new ClaraMsgException("no lease for address = "
+                                + host + ":" + data.getPort());
+                    }
                     yield response(action, NO_DATA);
                 }
                 case RegConstants.FIND_MATCHING -> {
@@ -185,6 +496,103 @@ public class RegService implements Runnable {
         return reply.msg();
     }
 
+    /*
+     * The changes are applied and recorded while holding the updates lock,
+     * so the journal records are written in the same order as the changes.
+     */
+    private void register(List<RegData> batch) {
+        synchronized (updates) {
+            publishers.register(filterType(batch, RegData.Type.PUBLISHER));
+            subscribers.register(filterType(batch, RegData.Type.SUBSCRIBER));
+            record(RegJournal.REGISTER, batch);
+        }
+    }
+
+    private void remove(List<RegData> batch) {
+        synchronized (updates) {
+            publishers.remove(filterType(batch, RegData.Type.PUBLISHER));
+            subscribers.remove(filterType(batch, RegData.Type.SUBSCRIBER));
+            record(RegJournal.REMOVE, batch);
+        }
+    }
+
+    private void removeAll(RegData data) {
+        synchronized (updates) {
+            database(data).remove(data.getHost());
+            record(RegJournal.REMOVE_ALL, List.of(data));
+        }
+    }
+
+    private Set<RegData> expire(RegDatabase database) {
+        synchronized (updates) {
+            var expired = database.expire();
+            record(RegJournal.REMOVE, expired);
+            return expired;
+        }
+    }
+
+    /*
+     * The databases are the source of truth for the running registrar,
+     * so an error writing the journal does not fail the request.
+     */
+    private void record(byte action, Collection<RegData> data) {
+        if (journal == null || journalClosed || data.isEmpty()) {
+            return;
+        }
+        try {
+            journal.append(action, data);
+        } catch (IOException e) {
+            LOGGER.warning(LogUtils.exceptionReporter(e));
+        }
+    }
+
+    private static void closeJournal(RegJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.warning(LogUtils.exceptionReporter(e));
+        }
+    }
+
+    /*
+     * The events socket is shared by the workers and the sweeper.
+     * A lost event only delays the invalidation of the client caches
+     * until their entries expire, so errors are just logged.
+     */
+    private void publishEvent(String action, RegData data) {
+        synchronized (events) {
+            if (eventsClosed) {
+                return;
+            }
+            try {
+                var msg = new ZMsg();
+                msg.add(action);
+                msg.add(data.toByteArray());
+                msg.send(events);
+            } catch (ZMQException e) {
+                LOGGER.warning(LogUtils.exceptionReporter(e));
+            }
+        }
+    }
+
+    private void publishExpired(Set<RegData> expired) {
+        logExpired(expired);
+        for (var data : expired) {
+            publishEvent(RegConstants.REMOVE, data);
+        }
+    }
+
+    private RegDatabase database(RegData data) {
+        return switch (data.getType()) {
+            case PUBLISHER -> publishers;
+            case SUBSCRIBER -> subscribers;
+        };
+    }
+
+    private static List<RegData> filterType(List<RegData> batch, RegData.Type type) {
+        return batch.stream().filter(d -> d.getType() == type).toList();
+    }
+
     private RegResponse response(String action, Set<RegData> data) {
         return new RegResponse(action, sender, data);
     }
@@ -199,6 +607,14 @@ public class RegService implements Runnable {
         }
     }
 
+    private static List<RegData> checkBatch(RegRequest request) throws ClaraMsgException {
+        var batch = request.allData();
+        for (var data : batch) {
+            checkRegistration(data);
+        }
+        return batch;
+    }
+
     private static String checkHost(RegData data) throws ClaraMsgException {
         var host = data.getHost();
         if (host.isEmpty()) {
@@ -207,6 +623,14 @@ public class RegService implements Runnable {
         return host;
     }
 
+    private static long checkTtl(RegData data) throws ClaraMsgException {
+        var ttl = data.getTtl();
+        if (ttl <= 0) {
+            throw new ClaraMsgException("invalid renew request: missing ttl");
+        }
+        return ttl;
+    }
+
     private static Topic checkTopic(RegData data) throws ClaraMsgException {
         var topic = data.getTopic();
         if (topic.isEmpty()) {
@@ -227,6 +651,13 @@ public class RegService implements Runnable {
                 data.getHost(), data.getPort(), data.getTopic()));
     }
 
+    private static void logExpired(Set<RegData> expired) {
+        for (var data : expired) {
+            LOGGER.info(() -> String.format("expired %s name = %s  host = %s  port = %d",
+                    getType(data, false), data.getName(), data.getHost(), data.getPort()));
+        }
+    }
+
     private static void logDiscovery(RegData data, String match) {
         LOGGER.fine(() -> String.format("search %s %s topic = %s",
                 getType(data, true), match, data.getTopic()));
@@ -10,7 +10,9 @@ import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -18,8 +20,33 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 public final class ThreadUtils {
 
+    private static volatile boolean virtualThreads =
+            Boolean.getBoolean("clara.virtualThreads") && VirtualThreads.isSupported();
+
     private ThreadUtils() { }
 
+    /**
+     * Sets if the threads of the actors should be virtual threads.
+     * Virtual threads are only supported by Java 21 or newer.
+     *
+     * @param enable true to use virtual threads, false to use platform threads
+     * @return false if virtual threads were requested but are not supported
+     */
+    public static boolean setVirtualThreads(boolean enable) {
+        if (enable && !VirtualThreads.isSupported()) {
+            return false;
+        }
+        virtualThreads = enable;
+        return true;
+    }
+
+    /**
+     * Returns true if the threads of the actors should be virtual threads.
+     */
+    public static boolean useVirtualThreads() {
+        return virtualThreads;
+    }
+
     /**
      * Thread sleep wrapper.
      *
@@ -37,10 +64,19 @@ public final class ThreadUtils {
      * A new Thread that reports uncaught exceptions.
      */
     public static Thread newThread(String name, Runnable target) {
+        return newThread(name, target, false);
+    }
+
+    /**
+     * A new Thread that reports uncaught exceptions.
+     * Virtual threads are always daemon threads.
+     */
+    public static Thread newThread(String name, Runnable target, boolean virtual) {
         Objects.requireNonNull(name, "name is null");
         Objects.requireNonNull(target, "target is null");
-        var thread = new Thread(target);
-        thread.setName(name);
+        var thread = virtual
+                ? VirtualThreads.newThread(name, target)
+                : new Thread(target, name);
         thread.setUncaughtExceptionHandler((t, e) -> e.printStackTrace());
         return thread;
     }
@@ -48,10 +84,36 @@ public final class ThreadUtils {
     public static ThreadPoolExecutor newThreadPool(int maxThreads,
                                                    String namePrefix,
                                                    BlockingQueue<Runnable> workQueue) {
+        return newThreadPool(maxThreads, namePrefix, workQueue, false);
+    }
+
+    public static ThreadPoolExecutor newThreadPool(int maxThreads,
+                                                   String namePrefix,
+                                                   BlockingQueue<Runnable> workQueue,
+                                                   boolean virtual) {
+        var factory = virtual
+                ? VirtualThreads.newFactory(namePrefix + "-thread-")
+                : new DefaultThreadFactory(namePrefix);
         return new FixedExecutor(maxThreads, maxThreads,
                                  0L, TimeUnit.MILLISECONDS,
                                  workQueue,
-                                 new DefaultThreadFactory(namePrefix));
+                                 factory);
+    }
+
+    /**
+     * A new unbounded pool that creates threads as needed and reuses idle
+     * threads, as {@link java.util.concurrent.Executors#newCachedThreadPool}.
+     * With virtual threads, every task runs in a new virtual thread.
+     */
+    public static ExecutorService newCachedThreadPool(String namePrefix, boolean virtual) {
+        var factory = virtual
+                ? VirtualThreads.newFactory(namePrefix + "-thread-")
+                : new DefaultThreadFactory(namePrefix);
+        var keepAlive = virtual ? 0L : 60L;
+        return new FixedExecutor(0, Integer.MAX_VALUE,
+                                 keepAlive, TimeUnit.SECONDS,
+                                 new SynchronousQueue<>(),
+                                 factory);
     }
 
     /**
@@ -0,0 +1,80 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.sys.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads when the JVM supports them (Java 21 or newer).
+ * <p>
+ * The project is compiled for Java 17, so the virtual thread builders are
+ * looked up at runtime.
+ */
+final class VirtualThreads {
+
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NAME;
+    private static final MethodHandle NAME_COUNTER;
+    private static final MethodHandle UNSTARTED;
+    private static final MethodHandle FACTORY;
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle nameCounter = null;
+        MethodHandle unstarted = null;
+        MethodHandle factory = null;
+        try {
+            var lookup = MethodHandles.publicLookup();
+            var builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual",
+                    MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+            name = lookup.findVirtual(builder, "name",
+                    MethodType.methodType(builder, String.class));
+            nameCounter = lookup.findVirtual(builder, "name",
+                    MethodType.methodType(builder, String.class, long.class));
+            unstarted = lookup.findVirtual(builder, "unstarted",
+                    MethodType.methodType(Thread.class, Runnable.class));
+            factory = lookup.findVirtual(builder, "factory",
+                    MethodType.methodType(ThreadFactory.class));
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        NAME_COUNTER = nameCounter;
+        UNSTARTED = unstarted;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() { }
+
+    static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    static Thread newThread(String name, Runnable target) {
+        try {
+            var builder = NAME.invoke(OF_VIRTUAL.invoke(), name);
+            return (Thread) UNSTARTED.invoke(builder, target);
+        } catch (Throwable e) {
+            throw new IllegalStateException("could not create virtual thread", e);
+        }
+    }
+
+    static ThreadFactory newFactory(String namePrefix) {
+        try {
+            var builder = NAME_COUNTER.invoke(OF_VIRTUAL.invoke(), namePrefix, 1L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (Throwable e) {
+            throw new IllegalStateException("could not create virtual thread factory", e);
+        }
+    }
+}
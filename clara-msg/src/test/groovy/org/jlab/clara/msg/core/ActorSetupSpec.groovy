@@ -42,4 +42,32 @@ class ActorSetupSpec extends Specification {
             subscriptionMode() == CallbackMode.SINGLE_THREAD
         }
     }
+
+    def "Configure the high-water marks of the connections"() {
+        when:
+        var setup = ActorSetup.newBuilder()
+            .withSendHighWaterMark(1000)
+            .withReceiveHighWaterMark(2000)
+            .withSendTimeout(500)
+            .build()
+
+        then:
+        with(setup.connectionSetup()) {
+            sendHighWaterMark() == 1000
+            receiveHighWaterMark() == 2000
+            sendTimeout() == 500
+        }
+    }
+
+    def "Connections have no high-water marks by default"() {
+        when:
+        var setup = ActorSetup.newBuilder().build()
+
+        then:
+        with(setup.connectionSetup()) {
+            sendHighWaterMark() == 0
+            receiveHighWaterMark() == 0
+            sendTimeout() == -1
+        }
+    }
 }
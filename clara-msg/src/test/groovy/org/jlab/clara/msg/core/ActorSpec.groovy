@@ -86,6 +86,40 @@ class ActorSpec extends Specification {
         RegInfo::subscriber | SUBSCRIBER
     }
 
+    def "Send a single registration request to register many actors"() {
+        given:
+        var infos = [
+            bradbury: RegInfo.subscriber(topic, "desc"),
+            heinlein: RegInfo.publisher(topic, "desc"),
+        ]
+
+        when:
+        actor.register(infos, regAddr, 1000)
+
+        then:
+        1 * driver.addRegistrations(name, [
+            regOf("bradbury", SUBSCRIBER, topic, "desc"),
+            regOf("heinlein", PUBLISHER, topic, "desc"),
+        ], 1000L)
+    }
+
+    def "Send a single registration request to remove many actors"() {
+        given:
+        var infos = [
+            bradbury: RegInfo.subscriber(topic),
+            heinlein: RegInfo.publisher(topic),
+        ]
+
+        when:
+        actor.deregister(infos, regAddr, 1500)
+
+        then:
+        1 * driver.removeRegistrations(name, [
+            regOf("bradbury", SUBSCRIBER, topic),
+            regOf("heinlein", PUBLISHER, topic),
+        ], 1500L)
+    }
+
     def "Send discovery request to find #type actors"() {
         given:
         RegQuery query = factory().matching(topic)
@@ -137,4 +171,9 @@ class ActorSpec extends Specification {
     private RegData regOf(RegData.Type regType, Topic topic, String description = "") {
         return RegFactory.newRegistration(name, description, localAddr, regType, topic)
     }
+
+    private RegData regOf(String actorName, RegData.Type regType, Topic topic,
+                          String description = "") {
+        return RegFactory.newRegistration(actorName, description, localAddr, regType, topic)
+    }
 }
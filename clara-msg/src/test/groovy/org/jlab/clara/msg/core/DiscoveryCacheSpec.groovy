@@ -0,0 +1,171 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.core
+
+import org.jlab.clara.msg.data.RegDataProto.RegData
+import org.jlab.clara.msg.data.RegQuery
+import org.jlab.clara.msg.data.RegRecord
+import org.jlab.clara.msg.net.RegAddress
+import org.jlab.clara.msg.sys.regdis.RegFactory
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.function.LongSupplier
+
+class DiscoveryCacheSpec extends Specification {
+
+    static final RegAddress REGISTRAR = new RegAddress("10.2.9.1")
+
+    long now = 0
+
+    @Subject
+    DiscoveryCache cache = new DiscoveryCache(10_000, { now } as LongSupplier)
+
+    def setup() {
+        cache.addSource(REGISTRAR)
+        now = DiscoveryCache.SUBSCRIPTION_DELAY
+    }
+
+    def "A stored result is served from the cache"() {
+        given:
+        var query = RegQuery.subscribers(Topic.wrap("writer:scifi"))
+        var records = records(subscriber("writer:scifi"))
+
+        when:
+        cache.put(REGISTRAR, query, records, cache.version(REGISTRAR))
+
+        then:
+        cache.get(REGISTRAR, query) == records
+        cache.get(new RegAddress("10.2.9.2"), query) == null
+    }
+
+    def "Queries of different category are cached separately"() {
+        given:
+        var topic = Topic.wrap("writer:scifi")
+        var version = cache.version(REGISTRAR)
+        cache.put(REGISTRAR, RegQuery.subscribers().withSame(topic), records(), version)
+
+        expect:
+        cache.get(REGISTRAR, RegQuery.subscribers().matching(topic)) == null
+    }
+
+    def "Results are not cached until the registrar events are received"() {
+        given:
+        var registrar = new RegAddress("10.2.9.2")
+        var query = RegQuery.subscribers(Topic.wrap("writer:scifi"))
+
+        when:
+        cache.put(registrar, query, records(), cache.version(registrar))
+
+        then:
+        cache.get(registrar, query) == null
+
+        when:
+        cache.addSource(registrar)
+        cache.put(registrar, query, records(), cache.version(registrar))
+
+        then:
+        cache.get(registrar, query) == null
+
+        when:
+        now += DiscoveryCache.SUBSCRIPTION_DELAY
+        cache.put(registrar, query, records(), cache.version(registrar))
+
+        then:
+        cache.get(registrar, query) == [] as Set
+    }
+
+    def "Results requested before a change event are not cached"() {
+        given:
+        var query = RegQuery.subscribers(Topic.wrap("writer:scifi"))
+        var version = cache.version(REGISTRAR)
+
+        when:
+        cache.invalidate(REGISTRAR, subscriber("writer:scifi"))
+        cache.put(REGISTRAR, query, records(), version)
+
+        then:
+        cache.get(REGISTRAR, query) == null
+    }
+
+    def "Old results are not served"() {
+        given:
+        var query = RegQuery.subscribers(Topic.wrap("writer:scifi"))
+        cache.put(REGISTRAR, query, records(), cache.version(REGISTRAR))
+
+        when:
+        now += 10_000
+
+        then:
+        cache.get(REGISTRAR, query) == null
+    }
+
+    def "A change event invalidates the affected results"() {
+        given:
+        cache.put(REGISTRAR, query, records(), cache.version(REGISTRAR))
+
+        when:
+        cache.invalidate(REGISTRAR, event)
+
+        then:
+        (cache.get(REGISTRAR, query) == null) == invalidated
+
+        where:
+        query                                            | event                   || invalidated
+        RegQuery.subscribers(Topic.wrap("writer:scifi")) | subscriber("writer")    || true
+        RegQuery.subscribers(Topic.wrap("writer"))       | subscriber("writer:sf") || true
+        RegQuery.subscribers(Topic.wrap("writer:scifi")) | subscriber("writer:tv") || false
+        RegQuery.subscribers(Topic.wrap("writer:scifi")) | publisher("writer")     || false
+        RegQuery.subscribers().withPrefix("writer:sci")  | subscriber("writer:sf") || false
+        RegQuery.subscribers().withHost("10.2.9.5")      | subscriber("writer")    || true
+        RegQuery.subscribers().withHost("10.2.9.6")      | subscriber("writer")    || false
+        RegQuery.subscribers().all()                     | subscriber("writer")    || true
+        RegQuery.subscribers(Topic.wrap("writer:scifi")) | removeAll("10.2.9.6")   || true
+    }
+
+    def "Metrics report the usage of the cache"() {
+        given:
+        var query = RegQuery.subscribers(Topic.wrap("writer:scifi"))
+        cache.get(REGISTRAR, query)
+        cache.put(REGISTRAR, query, records(), cache.version(REGISTRAR))
+
+        now += 100
+        cache.get(REGISTRAR, query)
+        now += 200
+        cache.get(REGISTRAR, query)
+
+        cache.invalidate(REGISTRAR, subscriber("writer"))
+
+        when:
+        var metrics = cache.metrics()
+
+        then:
+        metrics.hits() == 2
+        metrics.misses() == 1
+        metrics.hitRate() == 2d / 3
+        metrics.invalidations() == 1
+        metrics.entries() == 0
+        metrics.averageStaleness() == 200
+        metrics.maxStaleness() == 300
+    }
+
+    private static RegData subscriber(String topic) {
+        RegFactory.newRegistration("actor", "10.2.9.5", RegData.Type.SUBSCRIBER, Topic.wrap(topic))
+    }
+
+    private static RegData publisher(String topic) {
+        RegFactory.newRegistration("actor", "10.2.9.5", RegData.Type.PUBLISHER, Topic.wrap(topic))
+    }
+
+    private static RegData removeAll(String host) {
+        RegFactory.newFilter(RegData.Type.SUBSCRIBER).setHost(host).build()
+    }
+
+    private static Set<RegRecord> records(RegData... data) {
+        data.collect { new RegRecord(it) } as Set
+    }
+}
@@ -110,4 +110,55 @@ class MessageSpec extends Specification {
         and: "the response has the 'replyTo' field not set"
         !res.hasReplyTopic()
     }
+
+    def "Creating a message from a byte array does not copy the array"() {
+        when:
+        var msg = new Message(testTopic, testMime, testData)
+
+        then:
+        msg.data.is(testData)
+        msg.dataSize == testData.length
+    }
+
+    def "Creating a message from an array buffer uses the whole array"() {
+        given:
+        var buffer = ByteBuffer.wrap(testData).position(testData.length)
+
+        when:
+        var msg = Message.createFrom(testTopic, buffer)
+
+        then:
+        msg.data == testData
+    }
+
+    def "Creating a message from a direct buffer uses the remaining bytes of the buffer"() {
+        given: "a direct buffer with the data after some header bytes"
+        var buffer = ByteBuffer.allocateDirect(16)
+        buffer.put([0x7, 0x7] as byte[]).put(testData).flip().position(2)
+
+        when:
+        var msg = new Message(testTopic, MetaData.newBuilder().setDataType(testMime), buffer)
+
+        then: "the message data are the remaining bytes"
+        msg.dataSize == testData.length
+        msg.data == testData
+        msg.dataBuffer.direct
+
+        and: "the original buffer is not modified"
+        buffer.position() == 2
+        buffer.limit() == 2 + testData.length
+    }
+
+    def "Getting the data buffer uses the byte order of the message"() {
+        given:
+        var meta = MetaData.newBuilder().tap {
+            dataType = testMime
+            byteOrder = MetaData.Endian.Little
+        }
+        var msg = new Message(testTopic, meta, ByteBuffer.wrap(testData))
+
+        expect:
+        msg.dataBuffer.order() == ByteOrder.LITTLE_ENDIAN
+        msg.dataBuffer !== msg.dataBuffer
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.core
+
+import org.jlab.clara.msg.errors.ClaraMsgException
+import org.jlab.clara.msg.sys.ConnectionFactory
+import org.zeromq.ZMsg
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+class ResponseListenerSpec extends Specification {
+
+    @Subject
+    ResponseListener listener = new ResponseListener("test", Stub(ConnectionFactory))
+
+    def "Concurrent responses are matched to their requests"() {
+        given:
+        var topics = (1..100).collect { "ret:test:$it".toString() }
+        var futures = topics.collect { listener.expect(it, 5000) }
+        var pool = Executors.newFixedThreadPool(4)
+
+        when:
+        topics.reverse().each { t -> pool.execute { listener.handle(response(t)) } }
+        var received = futures.collect { it.get(5, TimeUnit.SECONDS) }
+
+        then:
+        received*.topic*.toString() == topics
+        listener.pending() == 0
+
+        cleanup:
+        pool.shutdown()
+    }
+
+    def "Responses to unknown topics are ignored"() {
+        given:
+        var future = listener.expect("ret:test:1", 5000)
+
+        when:
+        listener.handle(response("ret:test:2"))
+
+        then:
+        !future.done
+        listener.pending() == 1
+    }
+
+    def "Pending responses are removed when they time out"() {
+        given:
+        var future = listener.expect("ret:test:1", 10)
+
+        when:
+        listener.waitMessage(future, 10)
+
+        then:
+        thrown(TimeoutException)
+        new PollingConditions(timeout: 1).eventually {
+            listener.pending() == 0
+        }
+    }
+
+    def "A late response after the timeout is ignored"() {
+        given:
+        var future = listener.expect("ret:test:1", 10)
+        new PollingConditions(timeout: 1).eventually {
+            assert listener.pending() == 0
+        }
+
+        when:
+        listener.handle(response("ret:test:1"))
+
+        then:
+        future.completedExceptionally
+        listener.pending() == 0
+    }
+
+    def "Cancelled responses are removed"() {
+        given:
+        var future = listener.expect("ret:test:1", 5000)
+
+        when:
+        listener.cancel("ret:test:1", new ClaraMsgException("could not publish"))
+        listener.waitMessage(future, 5000)
+
+        then:
+        var ex = thrown(ClaraMsgException)
+        ex.message == "could not receive response"
+        listener.pending() == 0
+    }
+
+    def "Stopping the listener fails the pending responses"() {
+        given:
+        var future = listener.expect("ret:test:1", 5000)
+
+        when:
+        listener.stop()
+        future.get()
+
+        then:
+        var ex = thrown(ExecutionException)
+        ex.cause instanceof IllegalStateException
+    }
+
+    private static ZMsg response(String topic) {
+        new Message(Topic.wrap(topic), "text/string", "done".bytes).serialize()
+    }
+}
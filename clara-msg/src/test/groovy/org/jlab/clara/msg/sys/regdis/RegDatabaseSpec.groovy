@@ -15,6 +15,8 @@ import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Subject
 
+import java.util.function.LongSupplier
+
 class RegDatabaseSpec extends Specification {
 
     static final RegData.Type TYPE = RegData.Type.PUBLISHER
@@ -30,6 +32,8 @@ class RegDatabaseSpec extends Specification {
 
     @Subject RegDatabase db
 
+    long now = 0
+
     void setupSpec() {
         // first test topic, four actors on two hosts
         asimov1 = regData("asimov", "10.2.9.1", "writer:scifi:books")
@@ -49,7 +53,7 @@ class RegDatabaseSpec extends Specification {
     }
 
     void setup() {
-        db = new RegDatabase()
+        db = new RegDatabase({ now } as LongSupplier)
     }
 
     private void register(RegData... regs) {
@@ -207,6 +211,24 @@ class RegDatabaseSpec extends Specification {
         db.get("writer:scifi:books") == old(db.get("writer:scifi:books"))
     }
 
+    def "Registering and removing many actors at once"() {
+        given: "a topic with registered actors"
+        register(asimov1)
+
+        when: "registering a batch of actors"
+        db.register([asimov2, twain1, tolkien1])
+
+        then: "all the actors are added to the database"
+        db.all() == setOf(asimov1, asimov2, twain1, tolkien1)
+
+        when: "removing a batch of actors"
+        db.remove([asimov1, twain1, bradbury2])
+
+        then: "all the registered actors in the batch are removed from the database"
+        db.all() == setOf(asimov2, tolkien1)
+        db.topics() == setOf("writer:scifi:books", "writer:adventure:tales")
+    }
+
     def "Removing all actors of a given host"() {
         given: "a database with registered actors from multiple hosts"
         register(asimov1, asimov2, bradbury1, bradbury2)
@@ -252,6 +274,7 @@ class RegDatabaseSpec extends Specification {
 
         "writer:scifi"              || setOf(asimov1, bradbury2)
         "writer:adventure"          || setOf(tolkien1)
+        "writer:sci"                || setOf(asimov1, bradbury2)
         "actor:romance"             || [] as Set
 
         "writer:scifi:books"        || setOf(asimov1, bradbury2)
@@ -283,6 +306,7 @@ class RegDatabaseSpec extends Specification {
         "writer:scifi:books"        || setOf(asimov1, bradbury2)
         "writer:adventure:tales"    || setOf(twain1, twain2, tolkien1)
         "actor:drama:movies"        || setOf(brando2)
+        "writer:adventures"         || setOf(twain1, twain2)
 
         "player"                    || [] as Set
         "writer:children"           || [] as Set
@@ -307,6 +331,14 @@ class RegDatabaseSpec extends Specification {
         regFilter { host = "10.2.9.3" }         || [] as Set
     }
 
+    def "Filtering registered actors by topic and host"() {
+        given:
+        registerAll()
+
+        expect:
+        db.filter(regFilter { topic = "writer:scifi"; host = "10.2.9.1" }) == setOf(asimov1, bradbury1)
+    }
+
     @Rollup
     def "Get registered actors with the exact same topic"() {
         given:
@@ -335,6 +367,82 @@ class RegDatabaseSpec extends Specification {
                           twain1, twain2, brando2, tolkien1)
     }
 
+    def "Leased actors are removed when the lease expires"() {
+        given:
+        var leased1 = leased(asimov1, 1000)
+        var leased2 = leased(bradbury1, 1000)
+        register(leased1, leased2, twain1, asimov2)
+
+        when: "the lease is still valid"
+        now = 999
+        var expired = db.expire()
+
+        then:
+        expired.empty
+
+        when: "the lease has expired"
+        now = 1000
+        expired = db.expire()
+
+        then:
+        expired == setOf(leased1, leased2)
+        db.all() == setOf(twain1, asimov2)
+    }
+
+    def "Renewing a lease keeps the leased actors registered"() {
+        given:
+        var leased1 = leased(asimov1, 1000)
+        var leased2 = leased(asimov2, 1000)
+        register(leased1, leased2)
+
+        when:
+        now = 800
+        var renewed = db.renew("10.2.9.1", leased1.port, 1000)
+        now = 1500
+        var expired = db.expire()
+
+        then:
+        renewed
+        expired == setOf(leased2)
+        db.all() == setOf(leased1)
+    }
+
+    def "Renewing a lease never shortens it"() {
+        given:
+        register(leased(asimov1, 5000))
+
+        when:
+        db.renew("10.2.9.1", asimov1.port, 1000)
+        now = 2000
+
+        then:
+        db.expire().empty
+    }
+
+    def "Renewing an unknown lease has no effect"() {
+        given:
+        register(asimov1)
+
+        expect:
+        !db.renew("10.2.9.1", asimov1.port, 1000)
+        !db.renew("10.2.9.3", asimov1.port, 1000)
+    }
+
+    def "Removing all actors of a host also removes its leases"() {
+        given:
+        register(leased(asimov1, 1000))
+
+        when:
+        db.remove("10.2.9.1")
+
+        then:
+        !db.renew("10.2.9.1", asimov1.port, 1000)
+    }
+
+    private static RegData leased(RegData data, long ttl) {
+        data.toBuilder().setTtl(ttl).build()
+    }
+
     private static RegData regData(String name, String host, String topic) {
         RegFactory.newRegistration(name, host, TYPE, Topic.wrap(topic))
     }
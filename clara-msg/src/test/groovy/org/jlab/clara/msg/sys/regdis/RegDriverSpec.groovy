@@ -61,6 +61,32 @@ class RegDriverSpec extends Specification {
         type << [PUBLISHER, SUBSCRIBER]
     }
 
+    def "Send proper request to register many actors at once"() {
+        given:
+        var data = [regData("bradbury", SUBSCRIBER, topic), regData("asimov", PUBLISHER, topic)]
+
+        when:
+        driver.addRegistrations(sender, data)
+
+        then:
+        interaction {
+            verifyRequest(REGISTER_MANY, data, REGISTRATION_TIMEOUT)
+        }
+    }
+
+    def "Send proper request to remove many registered actors at once"() {
+        given:
+        var data = [regData("bradbury", SUBSCRIBER, topic), regData("asimov", PUBLISHER, topic)]
+
+        when:
+        driver.removeRegistrations(sender, data)
+
+        then:
+        interaction {
+            verifyRequest(REMOVE_MANY, data, REGISTRATION_TIMEOUT)
+        }
+    }
+
     def "Send proper request to remove all registered actors from given host"() {
         when:
         driver.removeAllRegistration(sender, "10.2.9.1")
@@ -72,6 +98,19 @@ class RegDriverSpec extends Specification {
         }
     }
 
+    def "Send proper request to renew the lease of all actors on given address"() {
+        given:
+        var data = regFilter(PUBLISHER, "10.2.9.1").toBuilder().setPort(7771).setTtl(30000).build()
+
+        when:
+        driver.renewRegistration(sender, "10.2.9.1", 7771, 30000)
+
+        then:
+        interaction {
+            verifyRequest(RENEW, data, REGISTRATION_TIMEOUT)
+        }
+    }
+
     def "Send proper discovery request to find a #type actor"() {
         given:
         var data = regData("bradbury", type, topic)
@@ -157,4 +196,12 @@ class RegDriverSpec extends Specification {
             return new RegResponse(topic, sender)
         }
     }
+
+    private void verifyRequest(String topic, List<RegData> data, int timeout) {
+        1 * driver.request(_ as RegRequest, _ as Long) >> { requestArg, timeoutArg ->
+            assert requestArg == new RegRequest(topic, sender, data)
+            assert timeoutArg == timeout
+            return new RegResponse(topic, sender)
+        }
+    }
 }
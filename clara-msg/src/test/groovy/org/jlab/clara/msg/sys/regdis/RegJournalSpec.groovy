@@ -0,0 +1,175 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.sys.regdis
+
+import org.jlab.clara.msg.core.Topic
+import org.jlab.clara.msg.data.RegDataProto.RegData
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.util.function.LongSupplier
+import java.util.function.Supplier
+
+class RegJournalSpec extends Specification {
+
+    static final RegData ASIMOV = regData("asimov", "writer:scifi")
+    static final RegData BRADBURY = regData("bradbury", "writer:scifi")
+    static final RegData TWAIN = regData("twain", "writer:adventure")
+
+    @TempDir Path dir
+
+    long now = 0
+
+    List<RegData> state = []
+
+    List<List> replayed = []
+
+    def "Replay the recorded changes in order"() {
+        given:
+        withJournal { journal ->
+            journal.append(RegJournal.REGISTER, [ASIMOV, BRADBURY])
+            journal.append(RegJournal.REMOVE, [ASIMOV])
+            journal.append(RegJournal.REGISTER, [TWAIN])
+        }
+
+        when:
+        var count = replay()
+
+        then:
+        count == 4
+        replayed == [
+            [RegJournal.REGISTER, ASIMOV],
+            [RegJournal.REGISTER, BRADBURY],
+            [RegJournal.REMOVE, ASIMOV],
+            [RegJournal.REGISTER, TWAIN],
+        ]
+    }
+
+    def "A snapshot replaces the recorded changes"() {
+        given:
+        withJournal { journal ->
+            journal.append(RegJournal.REGISTER, [ASIMOV, BRADBURY])
+            journal.append(RegJournal.REMOVE, [ASIMOV])
+            state = [BRADBURY]
+            journal.snapshot()
+            journal.append(RegJournal.REGISTER, [TWAIN])
+        }
+
+        when:
+        replay()
+
+        then:
+        replayed == [
+            [RegJournal.REGISTER, BRADBURY],
+            [RegJournal.REGISTER, TWAIN],
+        ]
+    }
+
+    def "A full journal is compacted into a snapshot"() {
+        given:
+        var capacity = 128
+
+        when:
+        withJournal(capacity) { journal ->
+            state = [ASIMOV, BRADBURY, TWAIN]
+            journal.append(RegJournal.REGISTER, [ASIMOV, BRADBURY, TWAIN])
+
+            assert journal.size() == 0
+        }
+        replay(capacity)
+
+        then:
+        replayed == [
+            [RegJournal.REGISTER, ASIMOV],
+            [RegJournal.REGISTER, BRADBURY],
+            [RegJournal.REGISTER, TWAIN],
+        ]
+    }
+
+    def "A snapshot is written periodically"() {
+        given:
+        var journal = new RegJournal(dir, { state } as Supplier, 4096, 1000, { now } as LongSupplier)
+        journal.append(RegJournal.REGISTER, [ASIMOV])
+        state = [ASIMOV]
+
+        when:
+        now += 500
+        journal.maintain()
+
+        then:
+        journal.size() > 0
+
+        when:
+        now += 500
+        journal.maintain()
+
+        then:
+        journal.size() == 0
+
+        cleanup:
+        journal.close()
+    }
+
+    def "A partially written record is discarded"() {
+        given:
+        int start
+        withJournal { journal ->
+            journal.append(RegJournal.REGISTER, [ASIMOV])
+            start = journal.size()
+            journal.append(RegJournal.REGISTER, [BRADBURY])
+        }
+        corrupt(start + 12)
+
+        when:
+        replay()
+        withJournal { journal ->
+            journal.append(RegJournal.REGISTER, [TWAIN])
+        }
+        replayed.clear()
+        replay()
+
+        then:
+        replayed == [
+            [RegJournal.REGISTER, ASIMOV],
+            [RegJournal.REGISTER, TWAIN],
+        ]
+    }
+
+    private void withJournal(int capacity = 4096, Closure action) {
+        var journal = new RegJournal(dir, { state } as Supplier, capacity, 60_000, { now } as LongSupplier)
+        try {
+            journal.replay { a, d -> }
+            action(journal)
+        } finally {
+            journal.close()
+        }
+    }
+
+    private int replay(int capacity = 4096) {
+        var journal = new RegJournal(dir, { state } as Supplier, capacity, 60_000, { now } as LongSupplier)
+        try {
+            return journal.replay { byte action, RegData data -> replayed << [action, data] }
+        } finally {
+            journal.close()
+        }
+    }
+
+    private void corrupt(int position) {
+        var file = dir.resolve("registrar.journal").toFile()
+        new RandomAccessFile(file, "rw").withCloseable {
+            it.seek(position)
+            var value = it.read()
+            it.seek(position)
+            it.write(~value)
+        }
+    }
+
+    private static RegData regData(String name, String topic) {
+        RegFactory.newRegistration(name, "10.2.9.1", RegData.Type.SUBSCRIBER, Topic.wrap(topic))
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.sys.regdis
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.TimeUnit
+
+class RegMetricsSpec extends Specification {
+
+    @Subject
+    RegMetrics metrics = new RegMetrics()
+
+    def "A snapshot without requests is empty"() {
+        when:
+        var snapshot = metrics.snapshot()
+
+        then:
+        snapshot.requests() == 0
+        snapshot.p99Latency() == 0
+        snapshot.maxQueueDepth() == 0
+    }
+
+    def "A snapshot contains the served requests"() {
+        given:
+        (1..100).each {
+            metrics.received(1)
+            metrics.served(0, TimeUnit.MICROSECONDS.toNanos(it))
+        }
+
+        when:
+        var snapshot = metrics.snapshot()
+
+        then:
+        snapshot.requests() == 100
+        snapshot.p99Latency() == 99
+        snapshot.rate() > 0
+    }
+
+    def "A snapshot contains the current and maximum queue depth"() {
+        given:
+        metrics.received(1)
+        metrics.received(2)
+        metrics.received(3)
+        metrics.served(2, 1000)
+
+        when:
+        var snapshot = metrics.snapshot()
+
+        then:
+        snapshot.queueDepth() == 2
+        snapshot.maxQueueDepth() == 3
+    }
+
+    def "Taking a snapshot starts a new interval"() {
+        given:
+        metrics.received(3)
+        metrics.served(1, 1000)
+        metrics.snapshot()
+
+        when:
+        var snapshot = metrics.snapshot()
+
+        then:
+        snapshot.requests() == 0
+        snapshot.queueDepth() == 1
+        snapshot.maxQueueDepth() == 1
+    }
+}
@@ -40,6 +40,24 @@ class RegRequestSpec extends Specification {
         }
     }
 
+    def "Send and parse a batch request with the registration data of many actors"() {
+        given: "a request with the data of many actors"
+        var otherData = newRegistration("bradbury", "10.2.9.1", RegData.Type.SUBSCRIBER,
+                                        Topic.wrap("writer.scifi:tales"))
+        var sendRequest = new RegRequest("reg_action", "foo_service", [regData, otherData])
+
+        when: "parsing the request from the ZMQ raw message"
+        var recvRequest = new RegRequest(sendRequest.msg())
+
+        then: "all values are parsed correctly"
+        with(recvRequest) {
+            action() == "reg_action"
+            sender() == "foo_service"
+            data() == regData
+            allData() == [regData, otherData]
+        }
+    }
+
     def "Parsing a request from a malformed ZMQ message throws an exception"() {
         given: "a ZMQ message without the right number of parts"
         var msg = new ZMsg().tap {
@@ -0,0 +1,59 @@
+/*
+ * SPDX-FileCopyrightText: © The Clara Framework Authors
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.jlab.clara.msg.sys.utils
+
+import org.jlab.clara.msg.core.ActorUtils
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+
+class ThreadUtilsSpec extends Specification {
+
+    List<ExecutorService> pools = []
+
+    def cleanup() {
+        pools*.shutdownNow()
+        ThreadUtils.setVirtualThreads(false)
+    }
+
+    def "Actors use platform threads by default"() {
+        when:
+        pools << ActorUtils.newCachedThreadPool("test")
+        pools << ActorUtils.newThreadPool(2, "test")
+
+        then:
+        pools.every { runningThread(it).class == Thread }
+        ActorUtils.newThread("test", {}).class == Thread
+    }
+
+    @Requires({ VirtualThreads.isSupported() })
+    def "Actors use virtual threads when the virtual mode is enabled"() {
+        given:
+        ThreadUtils.setVirtualThreads(true)
+
+        when:
+        pools << ActorUtils.newCachedThreadPool("test")
+        pools << ActorUtils.newThreadPool(2, "test")
+
+        then:
+        pools.every { runningThread(it).virtual }
+        ActorUtils.newThread("test", {}).virtual
+    }
+
+    @Requires({ !VirtualThreads.isSupported() })
+    def "The virtual mode cannot be enabled if the JVM does not support it"() {
+        expect:
+        !ThreadUtils.setVirtualThreads(true)
+        !ThreadUtils.useVirtualThreads()
+    }
+
+    private static Thread runningThread(ExecutorService pool) {
+        pool.submit({ Thread.currentThread() } as Callable<Thread>).get()
+    }
+}
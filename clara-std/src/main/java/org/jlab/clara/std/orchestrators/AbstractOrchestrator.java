@@ -6,6 +6,7 @@
 
 package org.jlab.clara.std.orchestrators;
 
+import org.jlab.clara.base.ClaraUtil;
 import org.jlab.clara.base.EngineCallback;
 import org.jlab.clara.engine.EngineData;
 
@@ -16,7 +17,6 @@ import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -129,7 +129,7 @@ abstract class AbstractOrchestrator {
         this.options = options;
 
         this.freeNodes = new LinkedBlockingQueue<>();
-        this.nodesExecutor = Executors.newCachedThreadPool();
+        this.nodesExecutor = ClaraUtil.newCachedThreadPool("nodes");
 
         this.recSem = new Semaphore(1);
         this.stats = new DataProcessingStats();
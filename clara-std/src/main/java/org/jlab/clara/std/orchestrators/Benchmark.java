@@ -7,10 +7,13 @@
 package org.jlab.clara.std.orchestrators;
 
 import org.jlab.clara.base.ClaraLang;
+import org.jlab.clara.base.LatencyHistogram;
 import org.jlab.clara.base.ServiceName;
 import org.jlab.clara.base.ServiceRuntimeData;
+import org.jlab.clara.base.ServiceRuntimeData.Phase;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +26,8 @@ class Benchmark {
     private static class Runtime {
         long initialTime = 0;
         long totalTime = 0;
+        Map<Phase, LatencyHistogram> initialLatency = new EnumMap<>(Phase.class);
+        Map<Phase, LatencyHistogram> totalLatency = new EnumMap<>(Phase.class);
     }
 
     private final Map<ServiceKey, Runtime> runtimeStats = new HashMap<>();
@@ -45,6 +50,9 @@ class Benchmark {
             Runtime r = runtimeStats.get(key(s));
             if (r != null) {
                 r.initialTime = s.executionTime();
+                for (var phase : Phase.values()) {
+                    r.initialLatency.put(phase, s.latency(phase));
+                }
             }
         });
     }
@@ -54,6 +62,9 @@ class Benchmark {
             Runtime r = runtimeStats.get(key(s));
             if (r != null) {
                 r.totalTime = s.executionTime();
+                for (var phase : Phase.values()) {
+                    r.totalLatency.put(phase, s.latency(phase));
+                }
             }
         });
     }
@@ -66,6 +77,16 @@ class Benchmark {
         throw new OrchestratorException("Invalid runtime report: missing " + service.name());
     }
 
+    LatencyHistogram latency(ServiceInfo service, Phase phase) {
+        Runtime r = runtimeStats.get(key(service));
+        if (r != null) {
+            var total = r.totalLatency.getOrDefault(phase, new LatencyHistogram());
+            var initial = r.initialLatency.getOrDefault(phase, new LatencyHistogram());
+            return total.minus(initial);
+        }
+        throw new OrchestratorException("Invalid runtime report: missing " + service.name());
+    }
+
     private static ServiceKey key(ServiceInfo service) {
         return new ServiceKey(service.name(), service.cont(), service.lang());
     }
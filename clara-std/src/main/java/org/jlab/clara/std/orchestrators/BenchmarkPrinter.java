@@ -6,6 +6,9 @@
 
 package org.jlab.clara.std.orchestrators;
 
+import org.jlab.clara.base.LatencyHistogram;
+import org.jlab.clara.base.ServiceRuntimeData.Phase;
+
 class BenchmarkPrinter {
 
     private final Benchmark benchmark;
@@ -29,6 +32,7 @@ class BenchmarkPrinter {
         }
         printService("WRITER", time(application.getWriterService()));
         printTotal();
+        printLatencies();
     }
 
     private long time(ServiceInfo service) {
@@ -52,4 +56,32 @@ class BenchmarkPrinter {
                 name, requests, time / 1e6,
                 timePerEvent);
     }
+
+    private void printLatencies() {
+        Logging.info("Latency percentiles:");
+        printLatencies("READER", application.getReaderService());
+        for (var service : application.getDataProcessingServices()) {
+            printLatencies(service.name(), service);
+        }
+        printLatencies("WRITER", application.getWriterService());
+    }
+
+    private void printLatencies(String label, ServiceInfo service) {
+        for (var phase : Phase.values()) {
+            var latency = benchmark.latency(service, phase);
+            if (latency.count() > 0) {
+                printLatency(label, phase, latency);
+            }
+        }
+    }
+
+    private void printLatency(String name, Phase phase, LatencyHistogram latency) {
+        Logging.info("  %-12.12s   %-11s    p50 = %8.2f ms    p90 = %8.2f ms    "
+                + "p99 = %8.2f ms    max = %8.2f ms",
+                name, phase.key(),
+                latency.percentile(50) / 1e3,
+                latency.percentile(90) / 1e3,
+                latency.percentile(99) / 1e3,
+                latency.max() / 1e3);
+    }
 }
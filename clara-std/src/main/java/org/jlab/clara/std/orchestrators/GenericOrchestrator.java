@@ -57,6 +57,9 @@ public final class GenericOrchestrator extends AbstractOrchestrator {
                 System.out.println(cl.usage());
                 System.exit(0);
             }
+            if (cl.useVirtualThreads() && !ClaraUtil.setVirtualThreads(true)) {
+                System.err.println("Warning: virtual threads are not supported by this JVM");
+            }
             GenericOrchestrator fo = cl.build();
             boolean status = fo.run();
             if (status) {
@@ -616,6 +619,7 @@ public final class GenericOrchestrator extends AbstractOrchestrator {
             parser.accepts("C");
             parser.accepts("F");
             parser.accepts("L");
+            parser.accepts("V");
 
             inputDir = parser.accepts("i")
                     .withRequiredArg()
@@ -693,6 +697,10 @@ public final class GenericOrchestrator extends AbstractOrchestrator {
             return options.has("help");
         }
 
+        public boolean useVirtualThreads() {
+            return options.has("V");
+        }
+
         public GenericOrchestrator build() {
             try {
                 var argsList = arguments.values(options);
@@ -775,6 +783,8 @@ public final class GenericOrchestrator extends AbstractOrchestrator {
                         "Use the front-end for processing (on cloud mode).")
                 + OptUtils.optionHelp("-L",
                         "Stage input files in the local file-system.")
+                + OptUtils.optionHelp("-V",
+                        "Use virtual threads for subscriptions and callbacks (Java 21+).")
                 + OptUtils.optionHelp(frontEnd, "frontEnd",
                         "The name of the Clara front-end DPE")
                 + OptUtils.optionHelp(session, "session",